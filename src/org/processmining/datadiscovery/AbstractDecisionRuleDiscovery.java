@@ -1,33 +1,48 @@
 package org.processmining.datadiscovery;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.AttributeVector;
+import org.processmining.datadiscovery.estimators.CompiledGuardProducer;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
 import org.processmining.datadiscovery.estimators.FunctionEstimator;
+import org.processmining.datadiscovery.estimators.RowTable;
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.util.ParallelTasks;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
 import org.processmining.datadiscovery.estimators.weka.WekaUtil;
 
-import com.google.common.base.Function;
-import com.google.common.collect.HashMultiset;
+import com.google.common.base.Objects;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multiset;
+import com.google.common.collect.ListMultimap;
 
 public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule, C extends RuleDiscoveryConfig>
 		implements RuleDiscovery<R> {
 
-	static class RuleImpl implements Rule {
+	static class RuleImpl implements Rule, CompiledGuardProducer {
 
 		private final Map<Object, FunctionEstimation> estimation;
 		private final Object decisionPoint;
+		private final Map<Object, CompiledGuard> compiledGuards;
 
 		private String estimatorInfo;
 
@@ -35,6 +50,11 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 			this.decisionPoint = decisionPoint;
 			this.estimation = estimation;
 			this.estimatorInfo = estimator.toString();
+			if (estimator instanceof CompiledGuardProducer) {
+				this.compiledGuards = ((CompiledGuardProducer) estimator).getCompiledGuards();
+			} else {
+				this.compiledGuards = ImmutableMap.of();
+			}
 		}
 
 		public Map<Object, FunctionEstimation> getRules() {
@@ -49,10 +69,16 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 			return decisionPoint;
 		}
 
+		public Map<Object, CompiledGuard> getCompiledGuards() {
+			return compiledGuards;
+		}
+
 		public Object classify(Map<String, Object> attributes) {
 			// assume mutually-exclusive rules
 			for (Entry<Object, FunctionEstimation> entry : estimation.entrySet()) {
-				if (entry.getValue().getExpression().isTrue(attributes)) {
+				CompiledGuard compiledGuard = compiledGuards.get(entry.getKey());
+				if (compiledGuard != null ? compiledGuard.isTrue(attributes)
+						: entry.getValue().getExpression().isTrue(attributes)) {
 					return entry.getKey();
 				}
 			}
@@ -61,17 +87,94 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 
 	}
 
-	private static final Object NULL = new Object();
-
 	protected final ProjectedLog projectedLog;
 	protected final Map<String, Type> attributeType;
 	protected final Map<String, Set<String>> literalValues;
 	protected final C config;
 	private final int numInstancesEstimate;
+	private final AttributeSchema attributeSchema;
+
+	private static final int MIN_TRACES_PER_PARTITION = 256;
 
 	public AbstractDecisionRuleDiscovery(C config, Iterable<ProjectedTrace> projectedLog, int numInstancesEstimate) {
-		this(config, projectedLog, extractAttributeInformation(projectedLog), getLiteralValuesMap(projectedLog),
-				numInstancesEstimate); //TODO join both literal values map and attribute type info in one data structure
+		this(config, projectedLog, extractAttributeInformation(projectedLog, config.getExecutor()),
+				getLiteralValuesMap(projectedLog, config.getExecutor()), numInstancesEstimate); //TODO join both literal values map and attribute type info in one data structure
+	}
+
+	/**
+	 * Splits a {@link SplittableProjectedLog} into one range of traces per
+	 * thread of the executor. Other logs, or when there is no executor, are
+	 * not split.
+	 */
+	private static List<Iterable<ProjectedTrace>> partition(Iterable<ProjectedTrace> projectedLog,
+			Executor executor) {
+		if (executor != null && projectedLog instanceof SplittableProjectedLog) {
+			SplittableProjectedLog splittableLog = (SplittableProjectedLog) projectedLog;
+			int size = splittableLog.size();
+			int numPartitions = Math.min(getParallelism(executor), size / MIN_TRACES_PER_PARTITION);
+			if (numPartitions > 1) {
+				List<Iterable<ProjectedTrace>> partitions = new ArrayList<>(numPartitions);
+				for (int i = 0; i < numPartitions; i++) {
+					partitions.add(splittableLog.getTraces((int) ((long) size * i / numPartitions),
+							(int) ((long) size * (i + 1) / numPartitions)));
+				}
+				return partitions;
+			}
+		}
+		return ImmutableList.<Iterable<ProjectedTrace>>of(projectedLog);
+	}
+
+	private static int getParallelism(Executor executor) {
+		if (executor instanceof ForkJoinPool) {
+			return ((ForkJoinPool) executor).getParallelism();
+		} else if (executor instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+		} else {
+			return Runtime.getRuntime().availableProcessors();
+		}
+	}
+
+	/**
+	 * Runs one task per partition, the results are in the order of the
+	 * partitions.
+	 */
+	private static <T> List<T> invokeAll(Executor executor, List<Callable<T>> tasks) {
+		if (tasks.size() == 1) {
+			executor = null;
+		}
+		try {
+			return ParallelTasks.invokeAll(executor, tasks);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Map<String, Set<String>> getLiteralValuesMap(Iterable<ProjectedTrace> projectedLog,
+			Executor executor) {
+		List<Callable<Map<String, Set<String>>>> tasks = new ArrayList<>();
+		for (final Iterable<ProjectedTrace> traces : partition(projectedLog, executor)) {
+			tasks.add(new Callable<Map<String, Set<String>>>() {
+
+				public Map<String, Set<String>> call() {
+					return getLiteralValuesMap(traces);
+				}
+			});
+		}
+		Iterator<Map<String, Set<String>>> partitionValues = invokeAll(executor, tasks).iterator();
+		Map<String, Set<String>> retValue = partitionValues.next();
+		while (partitionValues.hasNext()) {
+			for (Entry<String, Set<String>> entry : partitionValues.next().entrySet()) {
+				Set<String> literalValues = retValue.get(entry.getKey());
+				if (literalValues == null) {
+					retValue.put(entry.getKey(), entry.getValue());
+				} else {
+					literalValues.addAll(entry.getValue());
+				}
+			}
+		}
+		return retValue;
 	}
 
 	private static Map<String, Set<String>> getLiteralValuesMap(Iterable<ProjectedTrace> projectedLog) {
@@ -96,6 +199,30 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 		return retValue;
 	}
 
+	private static Map<String, Type> extractAttributeInformation(Iterable<ProjectedTrace> projectedLog,
+			Executor executor) {
+		List<Callable<Map<String, Type>>> tasks = new ArrayList<>();
+		for (final Iterable<ProjectedTrace> traces : partition(projectedLog, executor)) {
+			tasks.add(new Callable<Map<String, Type>>() {
+
+				public Map<String, Type> call() {
+					return extractAttributeInformation(traces);
+				}
+			});
+		}
+		Iterator<Map<String, Type>> partitionTypes = invokeAll(executor, tasks).iterator();
+		Map<String, Type> retValue = partitionTypes.next();
+		while (partitionTypes.hasNext()) {
+			for (Entry<String, Type> entry : partitionTypes.next().entrySet()) {
+				// Earlier partitions contain the first occurrence
+				if (!retValue.containsKey(entry.getKey())) {
+					retValue.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return retValue;
+	}
+
 	private static Map<String, Type> extractAttributeInformation(Iterable<ProjectedTrace> projectedLog) {
 		HashMap<String, Type> retValue = new HashMap<>();
 		for (ProjectedTrace trace : projectedLog) {
@@ -159,6 +286,7 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 		this.attributeType = attributeType;
 		this.literalValues = literalValues;
 		this.numInstancesEstimate = numInstancesEstimate;
+		this.attributeSchema = new AttributeSchema(attributeType, literalValues);
 	}
 
 	protected abstract void configureWithInstance(FunctionEstimator estimator);
@@ -166,13 +294,166 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 	protected abstract R newRule(Object decisionPoint, FunctionEstimator estimator,
 			Map<Object, FunctionEstimation> estimation);
 
+	/**
+	 * @return the layout and encoding of the attributes considered by the
+	 *         discovery, e.g., to serve the discovered rules with a
+	 *         {@link org.processmining.datadiscovery.serving.DecisionServer}
+	 */
+	public AttributeSchema getAttributeSchema() {
+		return attributeSchema;
+	}
+
 	protected int getNumInstanceEstimate() {
 		return numInstancesEstimate;
 	}
 
+	/**
+	 * Creates the estimator used to discover the rule of a decision point.
+	 * 
+	 * @param decisionPoint
+	 * @param classes
+	 *            that may follow the decision point
+	 * @return a new estimator or NULL if the estimator cannot be created
+	 *         independently of {@link #discover(Object, Set)}, in which case
+	 *         {@link #doDiscoverDecisionTrees(Map)} discovers the rule of the
+	 *         decision point with a separate scan of the projected log
+	 */
+	protected FunctionEstimator newEstimator(Object decisionPoint, Set<? extends Object> classes) {
+		return null;
+	}
+
 	protected final R doDiscoverDecisionTree(Object decisionPoint, Set<? extends Object> transitions,
 			FunctionEstimator estimator) throws RuleDiscoveryException {
-		
+		Map<Object, Set<? extends Object>> classesByDecisionPoint = new HashMap<>();
+		classesByDecisionPoint.put(decisionPoint, transitions);
+		Map<Object, Map<Object, RowTable>> instances = collectInstances(classesByDecisionPoint);
+		return estimateRule(decisionPoint, estimator, instances.get(decisionPoint));
+	}
+
+	/**
+	 * Discovers the rules of several decision points with a single scan of the
+	 * projected log. The attribute values observed before each event are
+	 * routed to all decision points that are followed by the activity of the
+	 * event. Afterwards, the rules are discovered on the executor of the
+	 * configuration using the estimators returned by
+	 * {@link #newEstimator(Object, Set)}. Decision points with more instances
+	 * are started first, so that the longest tasks do not end up last.
+	 * 
+	 * @param classesByDecisionPoint
+	 *            the classes that may follow each decision point
+	 * @return the discovered rule of each decision point in the iteration
+	 *         order of the given map
+	 * @throws RuleDiscoveryException
+	 */
+	protected final Map<Object, R> doDiscoverDecisionTrees(
+			Map<Object, ? extends Set<? extends Object>> classesByDecisionPoint) throws RuleDiscoveryException {
+		Map<Object, R> rules = new LinkedHashMap<>();
+		if (classesByDecisionPoint.isEmpty()) {
+			return rules;
+		}
+
+		// Estimators may reserve room for all instances, so they are created by the tasks except for the first
+		Entry<Object, ? extends Set<? extends Object>> first = classesByDecisionPoint.entrySet().iterator().next();
+		FunctionEstimator firstEstimator = newEstimator(first.getKey(), first.getValue());
+		if (firstEstimator == null) {
+			for (Entry<Object, ? extends Set<? extends Object>> entry : classesByDecisionPoint.entrySet()) {
+				rules.put(entry.getKey(), discover(entry.getKey(), entry.getValue()));
+			}
+			return rules;
+		}
+
+		Map<Object, Map<Object, RowTable>> instances = collectInstances(classesByDecisionPoint);
+		final Map<Object, Integer> numInstances = new HashMap<>();
+		List<Object> decisionPoints = new ArrayList<>();
+		for (Entry<Object, Map<Object, RowTable>> entry : instances.entrySet()) {
+			int count = 0;
+			for (RowTable classInstances : entry.getValue().values()) {
+				count += classInstances.getNumOccurrences();
+			}
+			numInstances.put(entry.getKey(), count);
+			decisionPoints.add(entry.getKey());
+		}
+		Collections.sort(decisionPoints, new Comparator<Object>() {
+
+			public int compare(Object o1, Object o2) {
+				return Integer.compare(numInstances.get(o2), numInstances.get(o1));
+			}
+		});
+
+		List<DiscoveryTask> tasks = new ArrayList<>(decisionPoints.size());
+		for (Object decisionPoint : decisionPoints) {
+			DiscoveryTask task = new DiscoveryTask(decisionPoint, classesByDecisionPoint.get(decisionPoint),
+					instances.remove(decisionPoint));
+			if (Objects.equal(decisionPoint, first.getKey())) {
+				task.estimator = firstEstimator;
+			}
+			tasks.add(task);
+		}
+
+		List<R> discoveredRules;
+		try {
+			discoveredRules = ParallelTasks.invokeAll(config.getExecutor(), tasks);
+		} catch (RuleDiscoveryException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuleDiscoveryException(e);
+		}
+
+		Map<Object, R> rulesByDecisionPoint = new HashMap<>();
+		for (int i = 0; i < decisionPoints.size(); i++) {
+			rulesByDecisionPoint.put(decisionPoints.get(i), discoveredRules.get(i));
+		}
+		for (Object decisionPoint : classesByDecisionPoint.keySet()) {
+			rules.put(decisionPoint, rulesByDecisionPoint.get(decisionPoint));
+		}
+		return rules;
+	}
+
+	/**
+	 * Discovers the rule of one decision point from its collected instances.
+	 * The instances are released as soon as they have been added to the
+	 * estimator. The estimator is created by the task unless it was already
+	 * created beforehand.
+	 */
+	private final class DiscoveryTask implements Callable<R> {
+
+		private final Object decisionPoint;
+		private final Set<? extends Object> classes;
+		private Map<Object, RowTable> instances;
+		private FunctionEstimator estimator;
+
+		private DiscoveryTask(Object decisionPoint, Set<? extends Object> classes,
+				Map<Object, RowTable> instances) {
+			this.decisionPoint = decisionPoint;
+			this.classes = classes;
+			this.instances = instances;
+		}
+
+		public R call() throws RuleDiscoveryException {
+			Map<Object, RowTable> classInstances = instances;
+			instances = null;
+			FunctionEstimator estimator = this.estimator;
+			this.estimator = null;
+			if (estimator == null) {
+				estimator = newEstimator(decisionPoint, classes);
+			}
+			if (estimator == null) {
+				return discover(decisionPoint, classes);
+			}
+			return estimateRule(decisionPoint, estimator, classInstances);
+		}
+
+	}
+
+	/**
+	 * Scans the projected log once and counts the distinct rows of attribute
+	 * values observed before each occurrence of a class for all decision
+	 * points that are followed by the class. Ranges of a
+	 * {@link SplittableProjectedLog} are scanned in parallel and their counts
+	 * are merged in the order of the ranges.
+	 */
+	Map<Object, Map<Object, RowTable>> collectInstances(
+			final Map<Object, ? extends Set<? extends Object>> classesByDecisionPoint) {
 		//TODO check how to fix this in weka
 		// Workaround for bug in Weka, weighted instance seem to fail with one attribute
 		if (projectedLog.getAttributes().size() == 1) {
@@ -181,79 +462,108 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 
 		// Order: 1st add instances, then configure estimator
 
-		final Map<Object, Multiset<Map<String, Object>>> instances = new HashMap<>();
-		for (Object clazz : transitions) {
-			instances.put(clazz, HashMultiset.<Map<String, Object>>create());
+		// Only read while scanning
+		final ListMultimap<Object, Object> decisionPointsByClass = ArrayListMultimap.create();
+		for (Entry<Object, ? extends Set<? extends Object>> entry : classesByDecisionPoint.entrySet()) {
+			for (Object clazz : entry.getValue()) {
+				decisionPointsByClass.put(clazz, entry.getKey());
+			}
 		}
-		final Map<String, Object> escapedInitialAttributes = getEscapedInitialAttributes(projectedLog);
-		final Map<String, Object> currentAttributeValues = new HashMap<>();
-		for (ProjectedTrace trace : projectedLog) {
-			currentAttributeValues.putAll(escapedInitialAttributes);
+		final AttributeVector initialAttributeValues = getInitialAttributeValues(projectedLog);
+
+		List<Callable<Map<Object, Map<Object, RowTable>>>> tasks = new ArrayList<>();
+		for (final Iterable<ProjectedTrace> traces : partition(projectedLog, config.getExecutor())) {
+			tasks.add(new Callable<Map<Object, Map<Object, RowTable>>>() {
+
+				public Map<Object, Map<Object, RowTable>> call() {
+					return collectInstances(traces, classesByDecisionPoint, decisionPointsByClass,
+							initialAttributeValues);
+				}
+			});
+		}
+		Iterator<Map<Object, Map<Object, RowTable>>> partitionInstances = invokeAll(config.getExecutor(), tasks)
+				.iterator();
+		Map<Object, Map<Object, RowTable>> instances = partitionInstances.next();
+		while (partitionInstances.hasNext()) {
+			for (Entry<Object, Map<Object, RowTable>> entry : partitionInstances.next().entrySet()) {
+				Map<Object, RowTable> classInstances = instances.get(entry.getKey());
+				for (Entry<Object, RowTable> classEntry : entry.getValue().entrySet()) {
+					classInstances.get(classEntry.getKey()).addAll(classEntry.getValue());
+				}
+			}
+		}
+		return instances;
+	}
+
+	private Map<Object, Map<Object, RowTable>> collectInstances(Iterable<ProjectedTrace> traces,
+			Map<Object, ? extends Set<? extends Object>> classesByDecisionPoint,
+			ListMultimap<Object, Object> decisionPointsByClass, AttributeVector initialAttributeValues) {
+		final Map<Object, Map<Object, RowTable>> instances = new HashMap<>();
+		for (Entry<Object, ? extends Set<? extends Object>> entry : classesByDecisionPoint.entrySet()) {
+			Map<Object, RowTable> classInstances = new HashMap<>();
+			for (Object clazz : entry.getValue()) {
+				classInstances.put(clazz, new RowTable());
+			}
+			instances.put(entry.getKey(), classInstances);
+		}
+
+		final AttributeVector currentAttributeValues = new AttributeVector(attributeSchema);
+		for (ProjectedTrace trace : traces) {
+			currentAttributeValues.copyFrom(initialAttributeValues);
 			Object lastActivity = null;
 			for (Iterator<ProjectedEvent> iterator = trace.iterator(); iterator.hasNext();) {
 				ProjectedEvent e = iterator.next();
 				if (config.isMinePrimeGuards()) {
 					for (String attributeKey : e.getAttributes()) {
-						// NULL is used as marker for missing values
-						Object value = e.getAttributeValue(attributeKey);
-						String escapedKey = escapeAttributeName(attributeKey).concat("'");
-						if (value == null) {
-							currentAttributeValues.put(escapedKey, NULL);
-						} else {
-							currentAttributeValues.put(escapedKey, value);
+						int index = attributeSchema.indexOf(escapeAttributeName(attributeKey).concat("'"));
+						if (index >= 0) {
+							// NULL is used for missing values
+							currentAttributeValues.update(index, e.getAttributeValue(attributeKey));
 						}
 					}
 				}
 				final Object activity = e.getActivity();
-				// only add instance if 
-				// decision point is NULL 
-				// or the class does not directly follow the decision point 
-				// or when the last activity equals the decision point 
-				if (!config.isMineDirectlyFollowingClasses() || decisionPoint == null
-						|| decisionPoint.equals(lastActivity)) {
-					if (activity != null && transitions.contains(activity)) {
-						instances.get(activity).add(ImmutableMap.copyOf(currentAttributeValues));
+				if (activity != null) {
+					for (Object decisionPoint : decisionPointsByClass.get(activity)) {
+						// only add instance if 
+						// decision point is NULL 
+						// or the class does not directly follow the decision point 
+						// or when the last activity equals the decision point 
+						if (!config.isMineDirectlyFollowingClasses() || decisionPoint == null
+								|| decisionPoint.equals(lastActivity)) {
+							// The row is only copied on its first occurrence
+							instances.get(decisionPoint).get(activity).add(currentAttributeValues);
+						}
 					}
 				}
 				// Update current values					
 				for (String attributeKey : e.getAttributes()) {
-					// NULL is used as marker for missing values
-					Object value = e.getAttributeValue(attributeKey);
-					String escapedKey = escapeAttributeName(attributeKey);
-					if (value == null) {
-						currentAttributeValues.put(escapedKey, NULL);
-					} else {
-						currentAttributeValues.put(escapedKey, value);
+					int index = attributeSchema.indexOfKey(attributeKey);
+					if (index >= 0) {
+						// NULL is used for missing values
+						currentAttributeValues.update(index, e.getAttributeValue(attributeKey));
 					}
 				}
 				lastActivity = activity;
 			}
-			currentAttributeValues.clear();
 		}
+		return instances;
+	}
 
+	private R estimateRule(Object decisionPoint, final FunctionEstimator estimator,
+			Map<Object, RowTable> instances) throws RuleDiscoveryException {
 		try {
-			for (Entry<Object, Multiset<Map<String, Object>>> classEntry : instances.entrySet()) {
-				for (com.google.common.collect.Multiset.Entry<Map<String, Object>> instanceEntry : classEntry.getValue()
-						.entrySet()) {
-					Map<String, Object> attributesWithNull = Maps.transformValues(instanceEntry.getElement(),
-							new Function<Object, Object>() {
-
-								public Object apply(Object val) {
-									if (val == NULL) {
-										return null;
-									} else {
-										return val;
-									}
-								}
-							});
-					if (config.isUseWeights()) {
-						estimator.addInstance(attributesWithNull, classEntry.getKey(), instanceEntry.getCount());
-					} else {
-						for (int i = 0; i < instanceEntry.getCount(); i++) {
-							estimator.addInstance(attributesWithNull, classEntry.getKey(), 1.0f);
-						}
+			final AttributeVector attributes = new AttributeVector(attributeSchema);
+			for (Entry<Object, RowTable> classEntry : instances.entrySet()) {
+				final Object classObject = classEntry.getKey();
+				classEntry.getValue().forEachRow(new RowTable.RowVisitor() {
+
+					public void visit(double[] row, int count) throws Exception {
+						// The estimator copies the row into its store
+						attributes.load(row);
+						estimator.addInstances(attributes, classObject, count, !config.isUseWeights());
 					}
-				}
+				});
 			}
 		} catch (Exception ex) {
 			throw new RuleDiscoveryException(ex);
@@ -276,17 +586,15 @@ public abstract class AbstractDecisionRuleDiscovery<R extends RuleDiscovery.Rule
 		}
 	}
 
-	private Map<String, Object> getEscapedInitialAttributes(ProjectedLog projectedLog) {
-		Builder<String, Object> valueBuilder = ImmutableMap.builder();
+	private AttributeVector getInitialAttributeValues(ProjectedLog projectedLog) {
+		AttributeVector initialValues = new AttributeVector(attributeSchema);
 		for (String attribute : projectedLog.getAttributes()) {
-			Object value = projectedLog.getInitialValue(attribute);
-			if (value != null) {
-				valueBuilder.put(escapeAttributeName(attribute), value);
-			} else {
-				valueBuilder.put(escapeAttributeName(attribute), NULL);
+			int index = attributeSchema.indexOfKey(attribute);
+			if (index >= 0) {
+				initialValues.update(index, projectedLog.getInitialValue(attribute));
 			}
 		}
-		return valueBuilder.build();
+		return initialValues;
 	}
 
 	public static String escapeAttributeName(String attribute) {
@@ -36,6 +36,7 @@ abstract class AbstractDecisionTreeRuleDiscovery<R extends RuleDiscovery.Rule>
 		decisionTreeEstimator.setCrossValidate(config.isCrossValidate());
 		decisionTreeEstimator.setUnpruned(config.isUnpruned());
 		decisionTreeEstimator.setConfidenceFactor(config.getConfidenceThreshold());
+		decisionTreeEstimator.setExecutor(config.getExecutor());
 
 		// Each place gets its own minNumObj configuration
 		int minNumObj = 2;
@@ -1,6 +1,8 @@
 package org.processmining.datadiscovery;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
@@ -48,13 +50,22 @@ abstract public class AbstractPetrinetDecisionRuleDiscovery<R extends RuleDiscov
 		super(config, projectedLog, numInstancesEstimate);
 	}
 
+	/**
+	 * Discovers the rules of all places with more than one outgoing arc. The
+	 * projected log is scanned only once for all places, see
+	 * {@link #doDiscoverDecisionTrees(Map)}.
+	 */
 	public final PetrinetDecisionRules discoverRules(Petrinet net) throws RuleDiscoveryException {
-		Builder<Place, PetrinetDecisionRule> builder = ImmutableMap.<Place, PetrinetDecisionRule>builder();
+		Map<Object, Set<Transition>> transitionsByPlace = new LinkedHashMap<>();
 		for (Place place : net.getPlaces()) {
 			if (net.getOutEdges(place).size() > 1) {
-				builder.put(place, discoverRulesForPlace(net, place));
+				transitionsByPlace.put(place, getTransitionPostset(net, place));
 			}
 		}
+		Builder<Place, PetrinetDecisionRule> builder = ImmutableMap.<Place, PetrinetDecisionRule>builder();
+		for (Entry<Object, R> entry : doDiscoverDecisionTrees(transitionsByPlace).entrySet()) {
+			builder.put((Place) entry.getKey(), convertToPetrinetRule(entry.getValue()));
+		}
 		return new DecisionRulesResultImpl(builder.build());
 	}
 
@@ -108,13 +108,16 @@ public class BasicDecisionTreeImpl extends AbstractDecisionTreeRuleDiscovery<Wek
 	}
 
 	public TreeRule discover(Object decisionPoint, Set<? extends Object> classes) throws RuleDiscoveryException {
+		return doDiscoverDecisionTree(decisionPoint, classes, newEstimator(decisionPoint, classes));
+	}
 
+	protected FunctionEstimator newEstimator(Object decisionPoint, Set<? extends Object> classes) {
 		DecisionTreeFunctionEstimator estimator = new DecisionTreeFunctionEstimator(attributeType, literalValues,
 				classes.toArray(), decisionPoint.toString(), getNumInstanceEstimate());
 		
 		estimator.setTreatNoLeafAsFalse(noLeafAction == NoLeafAction.TREAT_AS_FALSE);
 		
-		return doDiscoverDecisionTree(decisionPoint, classes, estimator);
+		return estimator;
 	}
 
 	public NoLeafAction getNoLeafAction() {
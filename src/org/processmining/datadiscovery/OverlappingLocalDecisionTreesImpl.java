@@ -22,12 +22,15 @@ public class OverlappingLocalDecisionTreesImpl extends AbstractDecisionTreeRuleD
 	}
 
 	public Rule discover(Object decisionPoint, Set<? extends Object> classes) throws RuleDiscoveryException {
+		return doDiscoverDecisionTree(decisionPoint, classes, newEstimator(decisionPoint, classes));
+	}
 
+	protected FunctionEstimator newEstimator(Object decisionPoint, Set<? extends Object> classes) {
 		OverlappingEstimatorLocalDecisionTree estimator = new OverlappingEstimatorLocalDecisionTree(attributeType, literalValues,
 				classes.toArray(), getNumInstanceEstimate(), decisionPoint.toString());
 		estimator.setReduceMinLeafs(isReduceMinLeafs);
 		
-		return doDiscoverDecisionTree(decisionPoint, classes, estimator);
+		return estimator;
 	}
 	
 	public boolean isReduceMinLeafs() {
@@ -2,11 +2,7 @@ package org.processmining.datadiscovery;
 
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
-import org.processmining.datadiscovery.estimators.DecisionTreeBasedFunctionEstimator;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
 import org.processmining.datadiscovery.estimators.FunctionEstimator;
 import org.processmining.datadiscovery.estimators.Type;
@@ -25,17 +21,17 @@ public class OverlappingPairwiseDecisionTreeImpl extends AbstractDecisionTreeRul
 	}
 
 	public Rule discover(Object decisionPoint, Set<? extends Object> classes) throws RuleDiscoveryException {
-		ThreadPoolExecutor pool = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors() / 2,
-				Runtime.getRuntime().availableProcessors() / 2, 60, TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>());
-
-		try {
-			DecisionTreeBasedFunctionEstimator estimator = new OverlappingEstimatorPairwiseDecisionTrees(attributeType,
-					literalValues, classes.toArray(), getNumInstanceEstimate(), decisionPoint.toString(), pool);
-			return doDiscoverDecisionTree(decisionPoint, classes, estimator);
-		} finally {
-			pool.shutdown();
-		}
+		return doDiscoverDecisionTree(decisionPoint, classes, newEstimator(decisionPoint, classes));
+	}
+
+	protected FunctionEstimator newEstimator(Object decisionPoint, Set<? extends Object> classes) {
+		// The executor of the configuration is set by configureWithInstance
+		OverlappingEstimatorPairwiseDecisionTrees estimator = new OverlappingEstimatorPairwiseDecisionTrees(
+				attributeType, literalValues, classes.toArray(), getNumInstanceEstimate(), decisionPoint.toString());
+		estimator.setMaxPartitions(config.getMaxPartitions());
+		estimator.setMinConfusion(config.getMinConfusion());
+		estimator.setPruneCandidates(config.isPrunePartitionCandidates());
+		return estimator;
 	}
 	
 	protected Rule newRule(Object decisionPoint, FunctionEstimator estimator,
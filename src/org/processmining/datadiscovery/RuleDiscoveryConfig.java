@@ -1,10 +1,16 @@
 package org.processmining.datadiscovery;
 
+import java.util.concurrent.Executor;
+
 public class RuleDiscoveryConfig {
 	
 	private boolean isMinePrimeGuards = false;
 	private boolean isMineDirectlyFollowingClasses = false;
 	private boolean isUseWeights = true;
+	private Executor executor = null;
+	private int maxPartitions = 0;
+	private double minConfusion = 0.0;
+	private boolean isPrunePartitionCandidates = false;
 	
 	public boolean isMinePrimeGuards() {
 		return isMinePrimeGuards;
@@ -30,4 +36,62 @@ public class RuleDiscoveryConfig {
 		this.isUseWeights = isUseWeights;
 	}
 
-}
\ No newline at end of file
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @param executor
+	 *            (may be NULL) used to discover the rules of several decision
+	 *            points in parallel, which is shared with the parallel work of
+	 *            each decision point. The calling thread always takes part in
+	 *            the work, so that a bounded executor cannot starve. NULL
+	 *            discovers all rules on the calling thread.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public int getMaxPartitions() {
+		return maxPartitions;
+	}
+
+	/**
+	 * @param maxPartitions
+	 *            the maximum number of pairs of classes that pairwise decision
+	 *            trees try to combine, in the order of their confusion by the
+	 *            normal tree, 0 (default) for no limit
+	 */
+	public void setMaxPartitions(int maxPartitions) {
+		this.maxPartitions = maxPartitions;
+	}
+
+	public double getMinConfusion() {
+		return minConfusion;
+	}
+
+	/**
+	 * @param minConfusion
+	 *            pairs of classes whose instances are confused by the normal
+	 *            tree with less than this weight are not combined by pairwise
+	 *            decision trees, 0 (default) to combine all pairs
+	 */
+	public void setMinConfusion(double minConfusion) {
+		this.minConfusion = minConfusion;
+	}
+
+	public boolean isPrunePartitionCandidates() {
+		return isPrunePartitionCandidates;
+	}
+
+	/**
+	 * @param isPrunePartitionCandidates
+	 *            whether pairwise decision trees skip pairs of classes that
+	 *            are unlikely to improve the estimation, which may miss
+	 *            improvements
+	 */
+	public void setPrunePartitionCandidates(boolean isPrunePartitionCandidates) {
+		this.isPrunePartitionCandidates = isPrunePartitionCandidates;
+	}
+
+}
@@ -0,0 +1,31 @@
+package org.processmining.datadiscovery;
+
+/**
+ * {@link ProjectedLog} with random access to ranges of its traces. The rule
+ * discovery splits such logs into ranges that are processed in parallel on the
+ * executor of the {@link RuleDiscoveryConfig}, both to infer the attributes
+ * and to extract the instances. Other logs are processed by a single thread.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public interface SplittableProjectedLog extends ProjectedLog {
+
+	/**
+	 * @return the number of traces
+	 */
+	int size();
+
+	/**
+	 * Returns the traces in the range in the order of the log. Different
+	 * ranges may be iterated concurrently.
+	 *
+	 * @param fromIndex
+	 *            index of the first trace (inclusive)
+	 * @param toIndex
+	 *            index of the last trace (exclusive)
+	 * @return the traces of the range
+	 */
+	Iterable<ProjectedTrace> getTraces(int fromIndex, int toIndex);
+
+}
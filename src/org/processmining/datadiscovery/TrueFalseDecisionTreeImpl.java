@@ -21,9 +21,12 @@ public class TrueFalseDecisionTreeImpl extends AbstractDecisionTreeRuleDiscovery
 	}
 
 	public Rule discover(Object decisionPoint, Set<? extends Object> classes) throws RuleDiscoveryException {
-		DiscriminatingFunctionEstimator estimator = new DiscriminatingFunctionEstimator(attributeType, literalValues,
-				classes.toArray(), getNumInstanceEstimate(), decisionPoint.toString());
-		return doDiscoverDecisionTree(decisionPoint, classes, estimator);
+		return doDiscoverDecisionTree(decisionPoint, classes, newEstimator(decisionPoint, classes));
+	}
+
+	protected FunctionEstimator newEstimator(Object decisionPoint, Set<? extends Object> classes) {
+		return new DiscriminatingFunctionEstimator(attributeType, literalValues, classes.toArray(),
+				getNumInstanceEstimate(), decisionPoint.toString());
 	}
 
 	protected Rule newRule(Object decisionPoint, FunctionEstimator estimator,
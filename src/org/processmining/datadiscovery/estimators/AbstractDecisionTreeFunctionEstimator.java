@@ -9,10 +9,13 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 
+import org.processmining.datadiscovery.estimators.store.ColumnarInstanceStore;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter;
 import org.processmining.datadiscovery.visualizers.PrefuseTreeVisualization;
 
@@ -26,6 +29,7 @@ import weka.core.DenseInstance;
 import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.core.converters.ArffSaver;
 import weka.gui.treevisualizer.PlaceNode2;
 import weka.gui.treevisualizer.TreeDisplayListener;
@@ -60,6 +64,7 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 
 	protected final Instances instances;
 	protected AbstractClassifier tree;
+	private WekaTreeClassificationAdapter treeAdapter; // Adapter of 'tree', built on first use
 	protected Evaluation evaluation;
 
 	protected boolean crossValidate = false;
@@ -72,11 +77,32 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 	protected int numFoldErrorPruning = 3;
 	protected boolean binarySplit = false;
 	protected boolean saveData;
+	protected TreeBackend treeBackend = TreeBackend.WEKA_J48;
+	protected int histogramBins = 0; // Only supported by TreeBackend.C45
+	protected Executor executor = null; // Used to build cross-validation folds concurrently
 	
 
 	protected final Map<String, Type> variableType; // Mapping from variable name to variable data type
 	protected final ArrayList<Attribute> attributeList; // ArrayList of attributes and the format of their values (WEKA requires an ArrayList instead of a List)
 	private final Map<String, Integer> attributeIndexMap; // Mapping from Attribute name to their index in attributeList	
+	private volatile AttributeSchema compatibleSchema; // Last schema whose vectors are valid rows of 'instances'
+
+	/*
+	 * FM, instances are first collected in one columnar store per adding
+	 * thread and only moved to 'instances' when they are needed. This avoids
+	 * all threads competing for a single lock while the log is processed and
+	 * keeps the instances in primitive arrays until the tree is built.
+	 */
+	private final ConcurrentLinkedQueue<ColumnarInstanceStore> instanceBuffers = new ConcurrentLinkedQueue<>();
+	private final ThreadLocal<ColumnarInstanceStore> localInstanceBuffer = new ThreadLocal<ColumnarInstanceStore>() {
+
+		protected ColumnarInstanceStore initialValue() {
+			ColumnarInstanceStore buffer = new ColumnarInstanceStore(attributeList, variableType);
+			instanceBuffers.add(buffer);
+			return buffer;
+		}
+
+	};
 
 	protected AbstractDecisionTreeFunctionEstimator(String name, Map<String, Type> attributeType,
 			Map<String, Set<String>> literalValues, Object[] outputClasses, int capacity) {
@@ -84,10 +110,7 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 		this.variableType = attributeType;
 		this.attributeIndexMap = Maps.newHashMapWithExpectedSize(attributeType.keySet().size() + 1);
 		this.attributeList = createAttributeList(attributeType, literalValues, outputClasses);
-		int attributeCounter = 0;
-		for (Attribute attribute : attributeList) {
-			attributeIndexMap.put(attribute.name(), attributeCounter++);
-		}
+		indexAttributes();
 		/*
 		 * Create an empty set of instances with relation name 'name' (the
 		 * Place's name), attribute information 'attributeList' and capacity
@@ -96,6 +119,33 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 		this.instances = new Instances(name, attributeList, capacity);
 	}
 
+	/**
+	 * Creates an estimator over already created Weka attributes, e.g., those of
+	 * another estimator to train on relabelled views of its instances.
+	 * 
+	 * @param name
+	 * @param attributeType
+	 * @param attributeList
+	 *            all attributes including the class attribute
+	 * @param capacity
+	 */
+	protected AbstractDecisionTreeFunctionEstimator(String name, Map<String, Type> attributeType,
+			ArrayList<Attribute> attributeList, int capacity) {
+		this.name = name;
+		this.variableType = attributeType;
+		this.attributeIndexMap = Maps.newHashMapWithExpectedSize(attributeList.size());
+		this.attributeList = attributeList;
+		indexAttributes();
+		this.instances = new Instances(name, attributeList, capacity);
+	}
+
+	private void indexAttributes() {
+		int attributeCounter = 0;
+		for (Attribute attribute : attributeList) {
+			attributeIndexMap.put(attribute.name(), attributeCounter++);
+		}
+	}
+
 	protected Attribute getAttributeByName(String attributeName) {
 		Integer index = attributeIndexMap.get(attributeName);
 		if (index < attributeList.size()) {
@@ -170,7 +220,129 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 		return instance;
 	}
 
+	/**
+	 * Creates an instance from the attribute vector. If the vector is laid out
+	 * as {@link #attributeList}, this is a single array copy. Otherwise, the
+	 * values are assigned by name.
+	 * 
+	 * @param attributes
+	 * @return An Instance containing the attribute values and a missing class
+	 */
+	protected Instance createInstance(AttributeVector attributes) {
+		return new DenseInstance(1.0, createRow(attributes));
+	}
+
+	/**
+	 * Creates a row in the Weka encoding from the attribute vector. If the
+	 * vector is laid out as {@link #attributeList}, this is a single array
+	 * copy. Otherwise, the values are assigned by name.
+	 * 
+	 * @param attributes
+	 * @return the attribute values and a missing class
+	 */
+	protected double[] createRow(AttributeVector attributes) {
+		if (isCompatible(attributes.getSchema())) {
+			double[] values = attributes.toArray(attributeList.size());
+			if (instances.classIndex() >= attributes.getSchema().size()) {
+				values[instances.classIndex()] = Utils.missingValue();
+			}
+			return values;
+		} else {
+			return createInstance(attributes.toMap()).toDoubleArray();
+		}
+	}
+
+	private boolean isCompatible(AttributeSchema schema) {
+		if (schema == compatibleSchema) {
+			return true;
+		}
+		if (schema.isCompatible(attributeList)) {
+			compatibleSchema = schema;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the instance to the buffer of the calling thread. The instance is
+	 * added to {@link #instances} by {@link #mergeBufferedInstances()}.
+	 * 
+	 * @param instance
+	 */
+	protected void bufferInstance(Instance instance) {
+		bufferRow(instance.toDoubleArray(), instance.weight());
+	}
+
+	/**
+	 * Adds the row to the buffer of the calling thread. The row is added to
+	 * {@link #instances} by {@link #mergeBufferedInstances()}.
+	 * 
+	 * @param values
+	 *            values of all attributes including the class in the Weka
+	 *            encoding
+	 * @param weight
+	 */
+	protected void bufferRow(double[] values, double weight) {
+		ColumnarInstanceStore buffer = localInstanceBuffer.get();
+		// Only contended while merging
+		synchronized (buffer) {
+			buffer.add(values, weight);
+		}
+	}
+
+	/**
+	 * Adds the same row several times to the buffer of the calling thread.
+	 * 
+	 * @param values
+	 *            values of all attributes including the class in the Weka
+	 *            encoding
+	 * @param weight
+	 *            of each copy
+	 * @param count
+	 *            number of copies
+	 */
+	protected void bufferRow(double[] values, double weight, int count) {
+		ColumnarInstanceStore buffer = localInstanceBuffer.get();
+		// Only contended while merging
+		synchronized (buffer) {
+			buffer.add(values, weight, count);
+		}
+	}
+
+	/**
+	 * Moves all instances buffered by {@link #bufferInstance(Instance)} to
+	 * {@link #instances}. Needs to be called before {@link #instances} is used.
+	 */
+	protected void mergeBufferedInstances() {
+		synchronized (instances) {
+			for (ColumnarInstanceStore buffer : instanceBuffers) {
+				synchronized (buffer) {
+					buffer.addTo(instances);
+					buffer.clear();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all instances buffered by {@link #bufferInstance(Instance)} and
+	 * passes them to the visitor instead of adding them to {@link #instances}.
+	 * 
+	 * @param visitor
+	 */
+	public void drainBufferedRows(ColumnarInstanceStore.RowVisitor visitor) {
+		synchronized (instances) {
+			for (ColumnarInstanceStore buffer : instanceBuffers) {
+				synchronized (buffer) {
+					buffer.forEachRow(visitor);
+					buffer.clear();
+				}
+			}
+		}
+	}
+
 	public void saveInstances(File file) throws IOException {
+		mergeBufferedInstances();
 		ArffSaver saver = new ArffSaver();
 		saver.setInstances(instances);
 		saver.setFile(file);
@@ -217,9 +389,16 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 		}
 	}
 
-	public WekaTreeClassificationAdapter getTreeClassificationAdapter() {
+	/**
+	 * @return the adapter of the current tree, which is built only once per
+	 *         tree, or NULL if no tree was built
+	 */
+	public synchronized WekaTreeClassificationAdapter getTreeClassificationAdapter() {
 		if (tree != null) {
-			return new WekaTreeClassificationAdapter((Drawable) tree, instances, variableType);
+			if (treeAdapter == null || treeAdapter.getTreeClassifier() != tree) {
+				treeAdapter = new WekaTreeClassificationAdapter((Drawable) tree, instances, variableType);
+			}
+			return treeAdapter;
 		} else {
 			return null;
 		}
@@ -236,12 +415,28 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 
 	@Override
 	public int getNumInstances() {
-		return instances.numInstances();
+		synchronized (instances) {
+			int numInstances = instances.numInstances();
+			for (ColumnarInstanceStore buffer : instanceBuffers) {
+				synchronized (buffer) {
+					numInstances += buffer.size();
+				}
+			}
+			return numInstances;
+		}
 	}
 	
 	@Override
 	public double getSumOfWeights() {
-		return instances.sumOfWeights();
+		synchronized (instances) {
+			double sumOfWeights = instances.sumOfWeights();
+			for (ColumnarInstanceStore buffer : instanceBuffers) {
+				synchronized (buffer) {
+					sumOfWeights += buffer.sumOfWeights();
+				}
+			}
+			return sumOfWeights;
+		}
 	}
 
 	@Override
@@ -276,6 +471,45 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 		this.binarySplit = binarySplit;
 	}
 
+	@Override
+	public void setTreeBackend(TreeBackend treeBackend) {
+		this.treeBackend = treeBackend;
+	}
+
+	@Override
+	public void setHistogramBins(int numBins) {
+		if (numBins < 0 || numBins == 1) {
+			throw new IllegalArgumentException("Invalid number of histogram buckets " + numBins);
+		}
+		this.histogramBins = numBins;
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Copies all options of the tree and how it is built and evaluated to the
+	 * other estimator, e.g., one that is trained on a subset of the instances
+	 * of this estimator.
+	 * 
+	 * @param other
+	 */
+	public void copyTreeSettingsTo(AbstractDecisionTreeFunctionEstimator other) {
+		other.setUnpruned(unpruned);
+		other.setConfidenceFactor(confidenceThreshold);
+		other.setMinNumObj(minNumInstancePerLeaf);
+		other.setNumFolds(numFoldErrorPruning);
+		other.setBinarySplit(binarySplit);
+		other.setSaveData(saveData);
+		other.setCrossValidate(crossValidate);
+		other.setNumFoldCrossValidation(numFoldCrossValidation);
+		other.setTreeBackend(treeBackend);
+		other.setHistogramBins(histogramBins);
+		other.setExecutor(executor);
+	}
+
 	/**
 	 * Returns a JPanel containing a visualization of the weka tree.
 	 * 
@@ -380,6 +614,18 @@ abstract public class AbstractDecisionTreeFunctionEstimator extends AbstractFunc
 		return binarySplit;
 	}
 
+	public TreeBackend getTreeBackend() {
+		return treeBackend;
+	}
+
+	public int getHistogramBins() {
+		return histogramBins;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
 	public Map<String, Integer> getAttributeIndexMap() {
 		return attributeIndexMap;
 	}
@@ -1,8 +1,13 @@
 package org.processmining.datadiscovery.estimators;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import org.processmining.datadiscovery.estimators.util.GuardExpressionUtil;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaLeafNode;
 import org.processmining.datapetrinets.expression.GuardExpression;
 
@@ -10,6 +15,29 @@ import com.google.common.base.Function;
 
 abstract public class AbstractFunctionEstimator implements FunctionEstimator {
 
+	/**
+	 * Falls back to {@link #addInstance(Map, Object, float)}, estimators should
+	 * override this if they can use the vector directly.
+	 */
+	public void addInstance(AttributeVector attributes, Object classObject, float weight) throws Exception {
+		addInstance(attributes.toMap(), classObject, weight);
+	}
+
+	/**
+	 * Falls back to {@link #addInstance(AttributeVector, Object, float)},
+	 * estimators should override this if they can add the copies at once.
+	 */
+	public void addInstances(AttributeVector attributes, Object classObject, int count, boolean replicate)
+			throws Exception {
+		if (replicate) {
+			for (int i = 0; i < count; i++) {
+				addInstance(attributes, classObject, 1.0f);
+			}
+		} else {
+			addInstance(attributes, classObject, count);
+		}
+	}
+
 	/**
 	 * Converts the supplied {@link WekaLeafNode}s to a {@link Map} of {@link FunctionEstimation}s.
 	 * 
@@ -21,25 +49,59 @@ abstract public class AbstractFunctionEstimator implements FunctionEstimator {
 	 */
 	protected static Map<Object, FunctionEstimation> buildExpressionsFromLeafs(Iterable<WekaLeafNode> wekaLeafsNodes,
 			Function<String, Object> classMapping) throws org.processmining.datapetrinets.expression.syntax.ParseException {
-		Map<Object, FunctionEstimation> expressionEstimation = new HashMap<>();
+		Map<Object, List<GuardExpression>> leafExpressions = new HashMap<>();
 		for (WekaLeafNode leaf : wekaLeafsNodes) {
 			if (leaf.getInstanceCount() > 0.0) {
-				Object leafClass = classMapping.apply(leaf.getClassName());
-				FunctionEstimation existingCondition = expressionEstimation.get(leafClass);
-				if (existingCondition != null) {
-					GuardExpression newCondition = GuardExpression.Operation.or(existingCondition.getExpression(),
-							leaf.getExpression());
-					expressionEstimation.put(leafClass, FunctionEstimation.Factory.create(newCondition, -1d));
-				} else {
-					GuardExpression expression = leaf.getExpression();
-					if (expression != null) {
-						expressionEstimation.put(leafClass, FunctionEstimation.Factory.create(expression, -1d));
+				GuardExpression expression = leaf.getExpression();
+				if (expression != null) {
+					Object leafClass = classMapping.apply(leaf.getClassName());
+					List<GuardExpression> expressions = leafExpressions.get(leafClass);
+					if (expressions == null) {
+						expressions = new ArrayList<>();
+						leafExpressions.put(leafClass, expressions);
 					}
-				}				
+					expressions.add(expression);
+				}
 			}
 		}
-		
+
+		// Balanced disjunction, a chain of thousands of leaves overflows the stack
+		Map<Object, FunctionEstimation> expressionEstimation = new HashMap<>();
+		for (Entry<Object, List<GuardExpression>> entry : leafExpressions.entrySet()) {
+			expressionEstimation.put(entry.getKey(),
+					FunctionEstimation.Factory.create(GuardExpressionUtil.or(entry.getValue()), -1d));
+		}
 		return expressionEstimation;
 	}
 
+	/**
+	 * Compiles the same guards as
+	 * {@link #buildExpressionsFromLeafs(Iterable, Function)} to a
+	 * {@link CompiledGuard} for each class.
+	 * 
+	 * @param wekaLeafsNodes
+	 * @param classMapping
+	 * @return
+	 */
+	protected static Map<Object, CompiledGuard> compileGuardsFromLeafs(Iterable<WekaLeafNode> wekaLeafsNodes,
+			Function<String, Object> classMapping) {
+		Map<Object, List<WekaLeafNode>> leafsByClass = new HashMap<>();
+		for (WekaLeafNode leaf : wekaLeafsNodes) {
+			if (leaf.getInstanceCount() > 0.0) {
+				Object leafClass = classMapping.apply(leaf.getClassName());
+				List<WekaLeafNode> leafs = leafsByClass.get(leafClass);
+				if (leafs == null) {
+					leafs = new ArrayList<>();
+					leafsByClass.put(leafClass, leafs);
+				}
+				leafs.add(leaf);
+			}
+		}
+		Map<Object, CompiledGuard> compiledGuards = new HashMap<>();
+		for (Entry<Object, List<WekaLeafNode>> entry : leafsByClass.entrySet()) {
+			compiledGuards.put(entry.getKey(), CompiledGuard.compile(entry.getValue()));
+		}
+		return compiledGuards;
+	}
+
 }
@@ -0,0 +1,187 @@
+package org.processmining.datadiscovery.estimators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.processmining.datadiscovery.estimators.weka.WekaUtil;
+
+import com.google.common.collect.Maps;
+
+import weka.core.Attribute;
+
+/**
+ * Fixed order of the attributes considered for the discovery together with
+ * the integer codes of their nominal values. An {@link AttributeVector} stores
+ * the value of the attribute at position i in slot i encoded as Weka does:
+ * numbers as they are, timestamps as milliseconds, literals and booleans as
+ * the index of their value.
+ * <p>
+ * The order is the iteration order of the attribute type map, which is also
+ * the order used by the decision tree estimators for their Weka attributes.
+ * Hence, a vector can be used as Weka row without any lookup (see
+ * {@link #isCompatible(List)}).
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class AttributeSchema {
+
+	private static final Integer NOT_CONSIDERED = -1;
+
+	private final String[] names;
+	private final Type[] types;
+	private final Map<String, Integer>[] nominalCodes;
+	private final String[][] nominalValues;
+	private final Map<String, Integer> indexByName;
+
+	// Caches the escaped name of the original attribute keys
+	private final ConcurrentHashMap<String, Integer> indexByKey = new ConcurrentHashMap<>();
+
+	/**
+	 * @param attributeType
+	 *            types of the (escaped) attributes
+	 * @param literalValues
+	 *            values of the literal attributes
+	 */
+	@SuppressWarnings("unchecked")
+	public AttributeSchema(Map<String, Type> attributeType, Map<String, Set<String>> literalValues) {
+		int size = attributeType.size();
+		this.names = new String[size];
+		this.types = new Type[size];
+		this.nominalCodes = new Map[size];
+		this.nominalValues = new String[size][];
+		this.indexByName = Maps.newHashMapWithExpectedSize(size);
+		int index = 0;
+		for (Entry<String, Type> entry : attributeType.entrySet()) {
+			names[index] = entry.getKey();
+			types[index] = entry.getValue();
+			switch (entry.getValue()) {
+				case LITERAL :
+					setNominalValues(index, new ArrayList<>(literalValues.get(entry.getKey())));
+					break;
+				case BOOLEAN :
+					setNominalValues(index, AbstractDecisionTreeFunctionEstimator.booleanValues);
+					break;
+				default :
+					break;
+			}
+			indexByName.put(entry.getKey(), index);
+			index++;
+		}
+	}
+
+	private void setNominalValues(int index, List<String> values) {
+		Map<String, Integer> codes = Maps.newHashMapWithExpectedSize(values.size());
+		for (int i = 0; i < values.size(); i++) {
+			codes.put(values.get(i), i);
+		}
+		nominalCodes[index] = codes;
+		nominalValues[index] = values.toArray(new String[values.size()]);
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public String getName(int index) {
+		return names[index];
+	}
+
+	public Type getType(int index) {
+		return types[index];
+	}
+
+	/**
+	 * @param name
+	 *            escaped attribute name
+	 * @return the index of the attribute or -1 if it is not considered
+	 */
+	public int indexOf(String name) {
+		Integer index = indexByName.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param attributeKey
+	 *            original (unescaped) attribute key as used in the log
+	 * @return the index of the attribute or -1 if it is not considered
+	 */
+	public int indexOfKey(String attributeKey) {
+		Integer index = indexByKey.get(attributeKey);
+		if (index == null) {
+			index = indexByName.get(WekaUtil.fixVarName(attributeKey));
+			if (index == null) {
+				index = NOT_CONSIDERED;
+			}
+			indexByKey.putIfAbsent(attributeKey, index);
+		}
+		return index;
+	}
+
+	/**
+	 * @param index
+	 * @param value
+	 * @return the code of the literal or boolean value or -1 if unknown
+	 */
+	public int encode(int index, String value) {
+		Integer code = nominalCodes[index].get(value);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * @param index
+	 * @param code
+	 * @return the literal or boolean value
+	 */
+	public String decode(int index, int code) {
+		return nominalValues[index][code];
+	}
+
+	/**
+	 * @param index
+	 * @return the literal or boolean values in the order of their codes, NULL
+	 *         for numeric attributes
+	 */
+	public List<String> getNominalValues(int index) {
+		return nominalValues[index] == null ? null : Arrays.asList(nominalValues[index].clone());
+	}
+
+	/**
+	 * Checks whether Weka attributes start with the attributes of this schema
+	 * in the same order and with the same nominal values, so that vectors of
+	 * this schema can be copied directly into Weka instances.
+	 *
+	 * @param attributes
+	 * @return whether the vectors of this schema are valid Weka rows
+	 */
+	public boolean isCompatible(List<Attribute> attributes) {
+		if (attributes.size() < names.length) {
+			return false;
+		}
+		for (int i = 0; i < names.length; i++) {
+			Attribute attribute = attributes.get(i);
+			if (!names[i].equals(attribute.name())) {
+				return false;
+			}
+			if (nominalValues[i] != null) {
+				if (!attribute.isNominal() || attribute.numValues() != nominalValues[i].length) {
+					return false;
+				}
+				for (int j = 0; j < nominalValues[i].length; j++) {
+					if (!nominalValues[i][j].equals(attribute.value(j))) {
+						return false;
+					}
+				}
+			} else if (!attribute.isNumeric()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,309 @@
+package org.processmining.datadiscovery.estimators;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deckfour.xes.model.XAttribute;
+import org.deckfour.xes.model.XAttributeBoolean;
+import org.deckfour.xes.model.XAttributeContinuous;
+import org.deckfour.xes.model.XAttributeDiscrete;
+import org.deckfour.xes.model.XAttributeLiteral;
+import org.deckfour.xes.model.XAttributeMap;
+import org.deckfour.xes.model.XAttributeTimestamp;
+
+import weka.core.Utils;
+
+/**
+ * Current values of the attributes of an {@link AttributeSchema} as primitive
+ * vector. Missing values are NaN, as in Weka, and additionally tracked in a
+ * bit set. Values of a type that does not match the schema are treated as
+ * missing, attributes that are not part of the schema are ignored.
+ * <p>
+ * A 64-bit fingerprint of the values is updated with each change, so that
+ * equal vectors can be found by a {@link RowTable} without hashing all values.
+ * <p>
+ * Not thread-safe, each trace is processed with its own vector.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class AttributeVector {
+
+	private final AttributeSchema schema;
+	private final double[] values;
+	private final BitSet missing;
+	private long fingerprint;
+
+	public AttributeVector(AttributeSchema schema) {
+		this.schema = schema;
+		this.values = new double[schema.size()];
+		this.missing = new BitSet(schema.size());
+		clear();
+	}
+
+	public AttributeSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * Marks all attributes as missing.
+	 */
+	public void clear() {
+		Arrays.fill(values, Utils.missingValue());
+		missing.set(0, values.length);
+		updateFingerprint();
+	}
+
+	/**
+	 * Replaces the values with those of the other vector of the same schema.
+	 *
+	 * @param other
+	 */
+	public void copyFrom(AttributeVector other) {
+		System.arraycopy(other.values, 0, values, 0, values.length);
+		missing.clear();
+		missing.or(other.missing);
+		fingerprint = other.fingerprint;
+	}
+
+	/**
+	 * Replaces the values with a row of the schema.
+	 *
+	 * @param row
+	 *            encoded values, NaN if missing
+	 */
+	public void load(double[] row) {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = row[i];
+			missing.set(i, Utils.isMissingValue(row[i]));
+		}
+		updateFingerprint();
+	}
+
+	private void updateFingerprint() {
+		fingerprint = 0;
+		for (int i = 0; i < values.length; i++) {
+			fingerprint ^= hash(i, values[i]);
+		}
+	}
+
+	/**
+	 * Updates the vector with all attributes in the map.
+	 *
+	 * @param attributes
+	 */
+	public void update(XAttributeMap attributes) {
+		for (XAttribute attribute : attributes.values()) {
+			update(attribute);
+		}
+	}
+
+	/**
+	 * Updates the vector with the value of the attribute.
+	 *
+	 * @param attribute
+	 */
+	public void update(XAttribute attribute) {
+		int index = schema.indexOfKey(attribute.getKey());
+		if (index < 0) {
+			return;
+		}
+		Type type = schema.getType(index);
+		if (attribute instanceof XAttributeBoolean) {
+			if (type == Type.BOOLEAN) {
+				set(index, ((XAttributeBoolean) attribute).getValue() ? 0 : 1);
+			} else {
+				setMissing(index);
+			}
+		} else if (attribute instanceof XAttributeContinuous) {
+			if (type == Type.CONTINUOS || type == Type.DISCRETE) {
+				set(index, ((XAttributeContinuous) attribute).getValue());
+			} else {
+				setMissing(index);
+			}
+		} else if (attribute instanceof XAttributeDiscrete) {
+			if (type == Type.CONTINUOS || type == Type.DISCRETE) {
+				set(index, ((XAttributeDiscrete) attribute).getValue());
+			} else {
+				setMissing(index);
+			}
+		} else if (attribute instanceof XAttributeTimestamp) {
+			Date value = ((XAttributeTimestamp) attribute).getValue();
+			if (type == Type.TIMESTAMP && value != null) {
+				set(index, value.getTime());
+			} else {
+				setMissing(index);
+			}
+		} else if (attribute instanceof XAttributeLiteral) {
+			int code = type == Type.LITERAL ? schema.encode(index, ((XAttributeLiteral) attribute).getValue()) : -1;
+			if (code >= 0) {
+				set(index, code);
+			} else {
+				setMissing(index);
+			}
+		}
+	}
+
+	/**
+	 * Updates the vector with a decoded value as passed to
+	 * {@link FunctionEstimator#addInstance(Map, Object, float)}.
+	 *
+	 * @param index
+	 *            of the attribute in the schema
+	 * @param value
+	 *            (may be NULL) for a missing value
+	 */
+	public void update(int index, Object value) {
+		Type type = schema.getType(index);
+		if (value instanceof Boolean && type == Type.BOOLEAN) {
+			set(index, (Boolean) value ? 0 : 1);
+		} else if (value instanceof Number && (type == Type.CONTINUOS || type == Type.DISCRETE)) {
+			set(index, ((Number) value).doubleValue());
+		} else if (value instanceof Date && type == Type.TIMESTAMP) {
+			set(index, ((Date) value).getTime());
+		} else if (value instanceof String && type == Type.LITERAL) {
+			int code = schema.encode(index, (String) value);
+			if (code >= 0) {
+				set(index, code);
+			} else {
+				setMissing(index);
+			}
+		} else {
+			setMissing(index);
+		}
+	}
+
+	private void set(int index, double value) {
+		fingerprint ^= hash(index, values[index]) ^ hash(index, value);
+		values[index] = value;
+		missing.clear(index);
+	}
+
+	private void setMissing(int index) {
+		set(index, Utils.missingValue());
+		missing.set(index);
+	}
+
+	/**
+	 * Mixes the position and the bits of a value (all NaNs are equal), so
+	 * that the XOR over all positions is a good hash of the vector.
+	 */
+	private static long hash(int index, double value) {
+		long h = Double.doubleToLongBits(value) + (index + 1) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * @return a 64-bit hash of the values, equal vectors have equal
+	 *         fingerprints
+	 */
+	public long fingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @param row
+	 *            encoded values, NaN if missing
+	 * @return whether the row holds exactly the values of this vector
+	 */
+	public boolean hasValues(double[] row) {
+		for (int i = 0; i < values.length; i++) {
+			if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(row[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isMissing(int index) {
+		return missing.get(index);
+	}
+
+	/**
+	 * @param index
+	 * @return the encoded value, NaN if missing
+	 */
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Copies the values into a new array of the given length, which may be
+	 * larger than the schema to leave room for a class value.
+	 *
+	 * @param length
+	 * @return a copy of the values
+	 */
+	public double[] toArray(int length) {
+		return Arrays.copyOf(values, length);
+	}
+
+	/**
+	 * @return the set values decoded to objects as expected by
+	 *         {@link FunctionEstimator#addInstance(Map, Object, float)}
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> map = new HashMap<>();
+		for (int i = missing.nextClearBit(0); i < values.length; i = missing.nextClearBit(i + 1)) {
+			switch (schema.getType(i)) {
+				case BOOLEAN :
+					map.put(schema.getName(i), values[i] == 0);
+					break;
+				case LITERAL :
+					map.put(schema.getName(i), schema.decode(i, (int) values[i]));
+					break;
+				case TIMESTAMP :
+					map.put(schema.getName(i), new Date((long) values[i]));
+					break;
+				case DISCRETE :
+					map.put(schema.getName(i), (long) values[i]);
+					break;
+				case CONTINUOS :
+					map.put(schema.getName(i), values[i]);
+					break;
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Decodes a row laid out and encoded as the vectors of the schema.
+	 *
+	 * @param schema
+	 * @param values
+	 *            encoded values, NaN if missing
+	 * @return the values decoded to objects as by {@link #toMap()}
+	 */
+	public static Map<String, Object> toMap(AttributeSchema schema, double[] values) {
+		Map<String, Object> map = new HashMap<>();
+		for (int i = 0; i < schema.size(); i++) {
+			if (Utils.isMissingValue(values[i])) {
+				continue;
+			}
+			switch (schema.getType(i)) {
+				case BOOLEAN :
+					map.put(schema.getName(i), values[i] == 0);
+					break;
+				case LITERAL :
+					map.put(schema.getName(i), schema.decode(i, (int) values[i]));
+					break;
+				case TIMESTAMP :
+					map.put(schema.getName(i), new Date((long) values[i]));
+					break;
+				case DISCRETE :
+					map.put(schema.getName(i), (long) values[i]);
+					break;
+				case CONTINUOS :
+					map.put(schema.getName(i), values[i]);
+					break;
+			}
+		}
+		return map;
+	}
+
+}
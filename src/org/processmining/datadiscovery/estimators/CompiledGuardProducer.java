@@ -0,0 +1,24 @@
+package org.processmining.datadiscovery.estimators;
+
+import java.util.Map;
+
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
+
+/**
+ * Estimator that can provide its guards in compiled form, see
+ * {@link CompiledGuard}.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public interface CompiledGuardProducer {
+
+	/**
+	 * @return for each class of the last
+	 *         {@link FunctionEstimator#getFunctionEstimation(Object[])}, the
+	 *         compiled form of its guard (classes without compiled guard are
+	 *         left out)
+	 */
+	Map<Object, CompiledGuard> getCompiledGuards();
+
+}
@@ -1,5 +1,7 @@
 package org.processmining.datadiscovery.estimators;
 
+import java.util.concurrent.Executor;
+
 public interface DecisionTreeBasedFunctionEstimator extends FunctionEstimator {
 
 	/**
@@ -45,4 +47,32 @@ public interface DecisionTreeBasedFunctionEstimator extends FunctionEstimator {
 	 */
 	void setNumFolds(int numFoldErrorPruning);
 
+	/**
+	 * Sets the implementation used to induce the tree. Estimators that do not
+	 * build C4.5 trees ignore this option.
+	 * 
+	 * @param treeBackend
+	 */
+	void setTreeBackend(TreeBackend treeBackend);
+
+	/**
+	 * Sets the number of quantile buckets whose boundaries are the only
+	 * thresholds considered for numeric attributes. Only supported by the
+	 * {@link TreeBackend#C45} backend.
+	 * 
+	 * @param numBins
+	 *            at least 2, or 0 to consider all values
+	 */
+	void setHistogramBins(int numBins);
+
+	/**
+	 * Sets the executor used to build the trees of the cross-validation
+	 * folds concurrently. The executor may be the one that runs the estimator
+	 * itself.
+	 * 
+	 * @param executor
+	 *            (may be NULL) to build all trees on the calling thread
+	 */
+	void setExecutor(Executor executor);
+
 }
@@ -18,6 +18,33 @@ public interface FunctionEstimator {
 	 */
 	public void addInstance(Map<String, Object> attributes, Object classObject, float weight) throws Exception; //TODO weight should be double as in WEKA
 
+	/**
+	 * Adds a new instance to the estimator.
+	 * 
+	 * @param attributes
+	 *            current attribute values, copied by the estimator
+	 * @param classObject
+	 * @param weight
+	 * @throws Exception
+	 */
+	public void addInstance(AttributeVector attributes, Object classObject, float weight) throws Exception;
+
+	/**
+	 * Adds an instance that occurred several times to the estimator.
+	 * 
+	 * @param attributes
+	 *            current attribute values, copied by the estimator
+	 * @param classObject
+	 * @param count
+	 *            number of occurrences
+	 * @param replicate
+	 *            whether to add count instances of weight 1 instead of a
+	 *            single instance of weight count
+	 * @throws Exception
+	 */
+	public void addInstances(AttributeVector attributes, Object classObject, int count, boolean replicate)
+			throws Exception;
+
 	/**
 	 * Gets the estimation in terms of a {@link FunctionEstimation} for each
 	 * class.
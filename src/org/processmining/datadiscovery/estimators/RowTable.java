@@ -0,0 +1,186 @@
+package org.processmining.datadiscovery.estimators;
+
+import java.util.Arrays;
+
+/**
+ * Counts the occurrences of distinct rows of an {@link AttributeSchema}. Rows
+ * are looked up by the fingerprint of the {@link AttributeVector} in an
+ * open-addressing table and compared value by value only if the fingerprints
+ * match. A row is copied only on its first occurrence. Rows are visited in
+ * the order of their first occurrence.
+ * <p>
+ * Not thread-safe.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class RowTable {
+
+	public interface RowVisitor {
+
+		/**
+		 * @param row
+		 *            encoded values, NaN if missing, must not be modified
+		 * @param count
+		 *            number of occurrences of the row
+		 * @throws Exception
+		 */
+		void visit(double[] row, int count) throws Exception;
+
+	}
+
+	private static final int EMPTY = -1;
+
+	// Index of the row stored in each slot
+	private int[] slots;
+
+	private double[][] rows;
+	private long[] fingerprints;
+	private int[] counts;
+	private int size;
+	private int numOccurrences;
+
+	public RowTable() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedRows
+	 *            number of distinct rows
+	 */
+	public RowTable(int expectedRows) {
+		int capacity = Math.max(4, expectedRows);
+		this.rows = new double[capacity][];
+		this.fingerprints = new long[capacity];
+		this.counts = new int[capacity];
+		this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+		Arrays.fill(slots, EMPTY);
+	}
+
+	/**
+	 * Counts one occurrence of the current values of the vector.
+	 *
+	 * @param vector
+	 */
+	public void add(AttributeVector vector) {
+		long fingerprint = vector.fingerprint();
+		int mask = slots.length - 1;
+		int slot = spread(fingerprint) & mask;
+		int index;
+		while ((index = slots[slot]) != EMPTY) {
+			if (fingerprints[index] == fingerprint && vector.hasValues(rows[index])) {
+				counts[index]++;
+				numOccurrences++;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (size == rows.length) {
+			grow();
+			add(vector);
+			return;
+		}
+		insert(slot, vector.toArray(vector.getSchema().size()), fingerprint, 1);
+	}
+
+	/**
+	 * Adds the occurrences of all rows of the other table. Rows that are new
+	 * to this table are shared with the other table and keep their order.
+	 *
+	 * @param other
+	 *            table of the same schema
+	 */
+	public void addAll(RowTable other) {
+		for (int i = 0; i < other.size; i++) {
+			add(other.rows[i], other.fingerprints[i], other.counts[i]);
+		}
+	}
+
+	private void add(double[] row, long fingerprint, int count) {
+		int mask = slots.length - 1;
+		int slot = spread(fingerprint) & mask;
+		int index;
+		while ((index = slots[slot]) != EMPTY) {
+			if (fingerprints[index] == fingerprint && hasSameValues(rows[index], row)) {
+				counts[index] += count;
+				numOccurrences += count;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (size == rows.length) {
+			grow();
+			add(row, fingerprint, count);
+			return;
+		}
+		insert(slot, row, fingerprint, count);
+	}
+
+	private void insert(int slot, double[] row, long fingerprint, int count) {
+		slots[slot] = size;
+		rows[size] = row;
+		fingerprints[size] = fingerprint;
+		counts[size] = count;
+		size++;
+		numOccurrences += count;
+	}
+
+	private static boolean hasSameValues(double[] row1, double[] row2) {
+		for (int i = 0; i < row1.length; i++) {
+			if (Double.doubleToLongBits(row1[i]) != Double.doubleToLongBits(row2[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	private void grow() {
+		int capacity = rows.length * 2;
+		rows = Arrays.copyOf(rows, capacity);
+		fingerprints = Arrays.copyOf(fingerprints, capacity);
+		counts = Arrays.copyOf(counts, capacity);
+		// Keeps the load factor at or below 0.5
+		slots = new int[slots.length * 2];
+		Arrays.fill(slots, EMPTY);
+		int mask = slots.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = spread(fingerprints[i]) & mask;
+			while (slots[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = i;
+		}
+	}
+
+	/**
+	 * @return the number of distinct rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of occurrences of all rows
+	 */
+	public int getNumOccurrences() {
+		return numOccurrences;
+	}
+
+	/**
+	 * Visits each distinct row once with its number of occurrences.
+	 *
+	 * @param visitor
+	 * @throws Exception
+	 *             thrown by the visitor
+	 */
+	public void forEachRow(RowVisitor visitor) throws Exception {
+		for (int i = 0; i < size; i++) {
+			visitor.visit(rows[i], counts[i]);
+		}
+	}
+
+}
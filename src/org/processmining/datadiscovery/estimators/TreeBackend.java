@@ -0,0 +1,24 @@
+package org.processmining.datadiscovery.estimators;
+
+/**
+ * Implementation used to induce C4.5 decision trees.
+ */
+public enum TreeBackend {
+	/** Weka's J48, supports all options */
+	WEKA_J48("Weka J48"),
+	/**
+	 * Native multi-threaded C4.5 inducer, see
+	 * {@link org.processmining.datadiscovery.estimators.tree.C45Classifier}
+	 */
+	C45("Native C4.5 (multi-threaded)");
+
+	private final String label;
+
+	private TreeBackend(String label) {
+		this.label = label;
+	}
+
+	public String toString() {
+		return label;
+	}
+}
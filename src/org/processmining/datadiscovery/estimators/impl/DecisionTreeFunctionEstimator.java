@@ -1,6 +1,8 @@
 package org.processmining.datadiscovery.estimators.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -8,10 +10,21 @@ import java.util.Set;
 
 import org.deckfour.xes.model.XLog;
 import org.processmining.datadiscovery.estimators.AbstractDecisionTreeFunctionEstimator;
+import org.processmining.datadiscovery.estimators.AttributeVector;
+import org.processmining.datadiscovery.estimators.CompiledGuardProducer;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.TreeBackend;
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.tree.C45Classifier;
 import org.processmining.datadiscovery.estimators.util.AttributeUtil;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
+import org.processmining.datadiscovery.estimators.weka.LeafDistributionJ48;
+import org.processmining.datadiscovery.estimators.weka.LeafDistributionProducer;
+import org.processmining.datadiscovery.estimators.weka.LeafEvaluation;
+import org.processmining.datadiscovery.estimators.weka.ParallelCrossValidation;
+import org.processmining.datadiscovery.estimators.weka.RelabelledInstance;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter;
+import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaLeafNode;
 import org.processmining.datapetrinets.expression.GuardExpression;
 
 import com.google.common.base.Function;
@@ -22,11 +35,11 @@ import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Evaluation;
 import weka.classifiers.trees.J48;
 import weka.core.Attribute;
-import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
 
-public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionEstimator {
+public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionEstimator implements
+		CompiledGuardProducer {
 
 	protected final Object[] outputClasses;
 	protected List<String> classValues; // ArrayList of unique identifiers for target transitions
@@ -34,6 +47,7 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 	protected BiMap<String, Object> classMapping; // Bidirectional mapping from unique identifiers of target transitions
 
 	private boolean treatNoLeafAsFalse = false;
+	private Map<Object, CompiledGuard> compiledGuards = new HashMap<>();
 
 	/**
 	 * Constructs a new DecisionTreeFunctionEstimator with the place's target
@@ -61,6 +75,31 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 		instances.setClass(classAttribute);
 	}
 
+	/**
+	 * Constructs a new DecisionTreeFunctionEstimator for other target classes
+	 * over the attributes of the base estimator. The Weka attributes are
+	 * shared, so that the instances of the base estimator can be added with
+	 * {@link #addSharedInstance(Instance, Object, double)} without copying
+	 * their values.
+	 * 
+	 * @param base
+	 *            estimator whose attributes are used
+	 * @param outputClasses
+	 *            An Object[] array of target CLASS objects.
+	 * @param name
+	 *            The label of the place associated with this function estimator
+	 * @param capacity
+	 *            parameter for weka 'instances'.
+	 */
+	public DecisionTreeFunctionEstimator(DecisionTreeFunctionEstimator base, Object[] outputClasses, String name,
+			int capacity) {
+		super(name, base.variableType, replaceClassAttribute(base, outputClasses), capacity);
+		this.outputClasses = outputClasses;
+		this.classValues = createClassValues(outputClasses);
+		createClassMapping(outputClasses);
+		instances.setClassIndex(base.instances.classIndex());
+	}
+
 	protected ArrayList<Attribute> createAttributeList(Map<String, Type> attributeType,
 			Map<String, Set<String>> literalValues, Object[] outputClasses) {
 		ArrayList<Attribute> attributeList = new ArrayList<>(attributeType.keySet().size() + 1);
@@ -88,18 +127,13 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 			}
 		} // END for(Entry<String, Type> entry : map.entrySet())
 
-		// Initialize the classValues ArrayList to an ArrayList<String> of size outputValuesAsObjects.length
-		classValues = new ArrayList<String>(outputClasses.length);
-		// Add the predefined nullValue to classValues
-		classValues.add(nullValue);
-		classIndexMap = HashBiMap.create();
-		classIndexMap.put(nullValue, 0);
 		/*
 		 * Populate the classValues array with unique identifiers for class
 		 * values and populate 'mapping' with mappings from the unique String
 		 * identifier of a class value to the actual class value Object
 		 */
-		createArray(outputClasses);
+		classValues = createClassValues(outputClasses);
+		createClassMapping(outputClasses);
 		// Define a new attribute ("CLASS",classValues) containing the unique textual representations of target Transitions
 		Attribute classAttribute = new Attribute(classAttributeName, classValues);
 
@@ -113,29 +147,41 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 		return attributeList;
 	}
 
+	/**
+	 * Returns the attributes of the base estimator with a class attribute for
+	 * the output classes in place of its own class attribute.
+	 * 
+	 * @param base
+	 * @param outputClasses
+	 * @return
+	 */
+	private static ArrayList<Attribute> replaceClassAttribute(DecisionTreeFunctionEstimator base,
+			Object[] outputClasses) {
+		ArrayList<Attribute> attributeList = new ArrayList<>(base.attributeList);
+		attributeList.set(base.instances.classIndex(),
+				new Attribute(classAttributeName, createClassValues(outputClasses)));
+		return attributeList;
+	}
+
 	/**
 	 * Converts all class values (from Object[] outputValues) to unique String
-	 * identifiers in classValues, and maps them to the actual Objects.
+	 * identifiers, preceded by the predefined nullValue.
 	 * 
 	 * @param outputValues
 	 *            An Object[] of the target Transitions of associated Place
-	 * @param classValues
-	 *            An ArrayList<String> containing the unique String
-	 *            representations of a transition
-	 * @param classMapping
-	 *            a Map<String,Object> from the unique String representation of
-	 *            a transition's Object representation to the Object itself
+	 * @return An ArrayList<String> containing the unique String
+	 *         representations of the transitions
 	 */
-	private void createArray(Object[] outputValues) {
-		classMapping = HashBiMap.create();
+	private static List<String> createClassValues(Object[] outputValues) {
+		List<String> classValues = new ArrayList<String>(outputValues.length + 1);
+		classValues.add(nullValue);
 		for (int i = 0; i < outputValues.length; i++) {
 			/*
 			 * For each Object (Transition) in outputValues, convert the
 			 * Transition to a string 'value', replacing newlines with spaces
 			 * and put it in classValues. If ArrayList<String> classValues
 			 * already contains that value, concatenate an integer to it until
-			 * it's not in classValues. Finally, add the mapping (String value,
-			 * Object outputValues[i]) to Map<String,Object> 'mapping'
+			 * it's not in classValues.
 			 */
 			String value = outputValues[i].toString().replace('\n', ' ');
 			int n = 0;
@@ -144,8 +190,24 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 				value = value + n;
 			}
 			classValues.add(value);
+		}
+		return classValues;
+	}
+
+	/**
+	 * Maps the unique String identifiers in classValues and their Weka class
+	 * index to the actual Objects.
+	 * 
+	 * @param outputValues
+	 *            An Object[] of the target Transitions of associated Place
+	 */
+	private void createClassMapping(Object[] outputValues) {
+		classIndexMap = HashBiMap.create();
+		classIndexMap.put(nullValue, 0);
+		classMapping = HashBiMap.create();
+		for (int i = 0; i < outputValues.length; i++) {
 			classIndexMap.put(outputValues[i], i + 1);
-			classMapping.put(value, outputValues[i]);
+			classMapping.put(classValues.get(i + 1), outputValues[i]);
 		}
 	}
 
@@ -167,6 +229,41 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 		addWekaInstance(instance, outputValue, weight);
 	}
 
+	/**
+	 * Adds a new instance to the estimator's 'instances' copying the values of
+	 * the attribute vector.
+	 * 
+	 * @param attributes
+	 * @param outputValue
+	 * @param weight
+	 */
+	public void addInstance(AttributeVector attributes, Object outputValue, float weight) {
+		bufferRow(createRow(attributes, outputValue), weight);
+	}
+
+	/**
+	 * Copies the values of the attribute vector only once and adds the copies
+	 * to the estimator's store at once.
+	 */
+	public void addInstances(AttributeVector attributes, Object outputValue, int count, boolean replicate) {
+		double[] row = createRow(attributes, outputValue);
+		if (replicate) {
+			bufferRow(row, 1.0, count);
+		} else {
+			bufferRow(row, count);
+		}
+	}
+
+	private double[] createRow(AttributeVector attributes, Object outputValue) {
+		double[] row = createRow(attributes);
+		Integer classIndex = classIndexMap.get(outputValue == null ? nullValue : outputValue);
+		if (classIndex == null) {
+			throw new IllegalArgumentException("Unknown class " + outputValue);
+		}
+		row[instances.classIndex()] = classIndex;
+		return row;
+	}
+
 	public void addWekaInstance(Instance instance, Object outputValue, float weight) {
 		// Set the weight 
 		instance.setWeight(weight);
@@ -177,13 +274,67 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 		// FM, instances.classAttribute() is thread-safe!
 		instance.setValue(instances.classAttribute(), classValue);
 
-		//FM, It is safe to just synchronize here on the instances, 
-		//    as we are not using the list of instances anywhere else!
+		bufferInstance(instance);
+	}
+
+	/**
+	 * Adds an instance whose attribute values are shared with other estimators
+	 * over the same attributes. Only the class is stored by this estimator (see
+	 * {@link RelabelledInstance}), the array must not be changed afterwards.
+	 * 
+	 * @param sharedValues
+	 *            row in the Weka encoding of this estimator, its class value
+	 *            is ignored
+	 * @param outputValue
+	 * @param weight
+	 */
+	public void addSharedInstance(double[] sharedValues, Object outputValue, double weight) {
+		Integer classIndex = classIndexMap.get(outputValue == null ? nullValue : outputValue);
+		if (classIndex == null) {
+			throw new IllegalArgumentException("Unknown class " + outputValue);
+		}
 		synchronized (instances) {
-			instances.add(instance);
+			instances.add(new RelabelledInstance(weight, sharedValues, instances.classIndex(), classIndex));
 		}
 	}
 
+	/**
+	 * Adds a view of an instance of an estimator over the same attributes with
+	 * another class (see
+	 * {@link #DecisionTreeFunctionEstimator(DecisionTreeFunctionEstimator, Object[], String, int)}
+	 * ). The values are shared with the instance if it is a
+	 * {@link RelabelledInstance}.
+	 * 
+	 * @param sharedInstance
+	 * @param outputValue
+	 * @param weight
+	 */
+	public void addSharedInstance(Instance sharedInstance, Object outputValue, double weight) {
+		Integer classIndex = classIndexMap.get(outputValue == null ? nullValue : outputValue);
+		if (classIndex == null) {
+			throw new IllegalArgumentException("Unknown class " + outputValue);
+		}
+		RelabelledInstance view = RelabelledInstance.relabel(sharedInstance, classIndex);
+		view.setWeight(weight);
+		synchronized (instances) {
+			instances.add(view);
+		}
+	}
+
+	/**
+	 * @param row
+	 *            in the Weka encoding of this estimator
+	 * @return the class object of the row, NULL if the class is not set
+	 */
+	protected Object getOutputValue(double[] row) {
+		double classValue = row[instances.classIndex()];
+		if (Double.isNaN(classValue)) {
+			return null;
+		}
+		Object outputValue = classIndexMap.inverse().get((int) classValue);
+		return outputValue == nullValue ? null : outputValue;
+	}
+
 	/**
 	 * Retrieve the classValue from 'mapping' for a given target class (Object)
 	 * 
@@ -223,18 +374,59 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 	}
 
 	/**
-	 * Creates the RepTree using the earlier supplied options.
+	 * Creates the tree of the configured {@link TreeBackend} using the earlier
+	 * supplied options.
 	 * 
 	 * @param option
 	 *            Array of Strings containing J48 tree options.
 	 * @param saveData
 	 *            Boolean. True to enable saving instance data to the tree.
-	 * @return a J48 tree defined by options, associated with 'instances'.
+	 * @return a C4.5 tree defined by options, associated with 'instances'.
 	 * @throws Exception
 	 *             if classifier can't be built correctly
 	 */
 	protected AbstractClassifier createClassifier(Object option[], boolean saveData) throws Exception {
-		J48 tree = new J48();
+		AbstractClassifier tree = newClassifier(option, saveData);
+
+		mergeBufferedInstances();
+		if (crossValidate && instances.size() > (numFoldCrossValidation + 1)) {
+			// k-fold cross validation 
+			evaluation = ParallelCrossValidation.crossValidateAndBuild(tree, instances, numFoldCrossValidation,
+					crossValidateRandom, executor);
+		} else {
+			tree.buildClassifier(instances);
+			if (tree instanceof LeafDistributionProducer) {
+				// No need to classify all instances again
+				evaluation = LeafEvaluation.evaluate(instances, tree);
+			} else {
+				evaluation = new Evaluation(instances);
+				evaluation.evaluateModel(tree, instances);
+			}
+		}
+
+		return tree;
+	}
+
+	/**
+	 * Creates the unbuilt classifier of the configured {@link TreeBackend}.
+	 * 
+	 * @param option
+	 * @param saveData
+	 * @return the configured classifier
+	 * @throws Exception
+	 */
+	protected AbstractClassifier newClassifier(Object option[], boolean saveData) throws Exception {
+		if (treeBackend == TreeBackend.C45) {
+			return createC45Classifier(option);
+		} else if (histogramBins > 0) {
+			throw new IllegalArgumentException("Histogram buckets are not supported by " + treeBackend);
+		} else {
+			return createJ48Classifier(option, saveData);
+		}
+	}
+
+	private J48 createJ48Classifier(Object option[], boolean saveData) throws Exception {
+		J48 tree = new LeafDistributionJ48();
 		if (option != null && option instanceof String[])
 			tree.setOptions((String[]) option);
 		tree.setUnpruned(unpruned);
@@ -243,18 +435,20 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 		tree.setNumFolds(numFoldErrorPruning);
 		tree.setBinarySplits(binarySplit);
 		tree.setSaveInstanceData(saveData);
+		return tree;
+	}
 
-		if (crossValidate && instances.size() > (numFoldCrossValidation + 1)) {
-			// k-fold cross validation 
-			evaluation = new Evaluation(instances);
-			evaluation.crossValidateModel(tree, instances, numFoldCrossValidation, crossValidateRandom);	
-			tree.buildClassifier(instances);
-		} else {
-			tree.buildClassifier(instances);
-			evaluation = new Evaluation(instances);
-			evaluation.evaluateModel(tree, instances);
-		}
-
+	// FM, saveData is not supported by C4.5 and the number of folds only applies to reduced error pruning
+	protected C45Classifier createC45Classifier(Object option[]) throws Exception {
+		C45Classifier tree = new C45Classifier();
+		if (option != null && option instanceof String[])
+			tree.setOptions((String[]) option);
+		tree.setUnpruned(unpruned);
+		tree.setConfidenceFactor(confidenceThreshold);
+		tree.setMinNumObj(minNumInstancePerLeaf);
+		tree.setBinarySplits(binarySplit);
+		tree.setNumBins(histogramBins);
+		tree.setExecutor(executor);
 		return tree;
 	}
 
@@ -280,16 +474,18 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 		tree = createClassifier(option, saveData);
 
 		// Build guard expressions using the information from the tree
-		WekaTreeClassificationAdapter wekaJ48Adapter = new WekaTreeClassificationAdapter((Drawable) tree, instances,
-				variableType);
+		WekaTreeClassificationAdapter wekaJ48Adapter = getTreeClassificationAdapter();
 
-		Map<Object, FunctionEstimation> expressions = buildExpressionsFromLeafs(wekaJ48Adapter.traverseLeafNodes(),
-				new Function<String, Object>() {
+		Function<String, Object> leafClassMapping = new Function<String, Object>() {
 
-					public Object apply(String leafLabel) {
-						return classMapping.get(leafLabel); // lookup class object
-					}
-				});
+			public Object apply(String leafLabel) {
+				return classMapping.get(leafLabel); // lookup class object
+			}
+		};
+		List<WekaLeafNode> leafs = wekaJ48Adapter.traverseLeafNodes().toList();
+		Map<Object, FunctionEstimation> expressions = buildExpressionsFromLeafs(leafs, leafClassMapping);
+		Map<Object, CompiledGuard> guards = compileGuardsFromLeafs(leafs, leafClassMapping);
+		guards.keySet().retainAll(expressions.keySet());
 
 		if (treatNoLeafAsFalse) {
 			for (Object classObj : classIndexMap.keySet()) {
@@ -298,6 +494,7 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 					if (estimation == null) {
 						expressions.put(classObj,
 								FunctionEstimation.Factory.create(GuardExpression.Factory.falseInstance(), 0.0));
+						guards.put(classObj, CompiledGuard.FALSE);
 					}
 				}
 			}
@@ -308,11 +505,14 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 					if (estimation == null) {
 						expressions.put(classObj,
 								FunctionEstimation.Factory.create(GuardExpression.Factory.trueInstance(), 0.0));
+						guards.put(classObj, CompiledGuard.TRUE);
 					}
 				}
 			}
 		}
 
+		compiledGuards = guards;
+
 		// Add evaluation
 		Evaluation eval = getEvaluation();
 		double fScore;
@@ -330,6 +530,10 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 
 	}
 
+	public Map<Object, CompiledGuard> getCompiledGuards() {
+		return Collections.unmodifiableMap(compiledGuards);
+	}
+
 	@Override
 	public Object classifyInstance(Map<String, Object> attributes) throws Exception {
 		double index = classify(attributes);
@@ -349,6 +553,7 @@ public class DecisionTreeFunctionEstimator extends AbstractDecisionTreeFunctionE
 	}
 
 	public Instances getInstances() {
+		mergeBufferedInstances();
 		return instances;
 	}
 
@@ -2,35 +2,53 @@ package org.processmining.datadiscovery.estimators.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import org.processmining.datadiscovery.estimators.AbstractFunctionEstimator;
+import org.processmining.datadiscovery.estimators.AttributeVector;
+import org.processmining.datadiscovery.estimators.CompiledGuardProducer;
 import org.processmining.datadiscovery.estimators.DecisionTreeBasedFunctionEstimator;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.TreeBackend;
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.store.ColumnarInstanceStore.RowVisitor;
+import org.processmining.datadiscovery.estimators.util.ParallelTasks;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
 
 
 /**
  * Function Estimator that utilizes separate Decision Trees for each involved
  * Transition. Resulting expressions describe the features that discriminate one
  * Transition's occurrences from all other Transitions.
+ * <p>
+ * The instances are stored only once with their original class. Before the
+ * trees are built, each instance is converted to a single array of values
+ * that is shared by the views of all trees, which only add their own label.
+ * The trees are built in parallel on the executor.
  * 
  * @author SCandel (original class)
  * @author F. Mannhardt
  *
  */
 public class DiscriminatingFunctionEstimator extends AbstractFunctionEstimator implements
-		DecisionTreeBasedFunctionEstimator {
+		DecisionTreeBasedFunctionEstimator, CompiledGuardProducer {
 
 	private static final Boolean[] CLASS_OBJECTS = new Boolean[] { true, false };
 
 	private final DecisionTreeFunctionEstimator[] estimators;
 	private final Object[] outputValuesAsObjects;
+	private final DecisionTreeFunctionEstimator sharedRows; // Collects the instances once with their original class
+	private Executor executor = null;
 
 	public DiscriminatingFunctionEstimator(Map<String, Type> map, Map<String, Set<String>> literalValues,
 			Object[] outputValuesAsObjects, int capacity, String name) {
+		sharedRows = new DecisionTreeFunctionEstimator(map, literalValues, outputValuesAsObjects, name, capacity);
 		estimators = new DecisionTreeFunctionEstimator[outputValuesAsObjects.length];
 		for (int i = 0; i < outputValuesAsObjects.length; i++) {
 			estimators[i] = new DecisionTreeFunctionEstimator(map, literalValues, CLASS_OBJECTS, name + " "
@@ -41,29 +59,67 @@ public class DiscriminatingFunctionEstimator extends AbstractFunctionEstimator i
 
 	@Override
 	public void addInstance(Map<String, Object> variableAssignment, Object outputValue, float weight) throws Exception {
-		for (int i = 0; i < estimators.length; i++) {
-			if (outputValuesAsObjects[i].equals(outputValue)) {
-				estimators[i].addInstance(variableAssignment, true, weight);
-			} else {
-				estimators[i].addInstance(variableAssignment, false, weight);
+		sharedRows.addInstance(variableAssignment, toKnownClass(outputValue), weight);
+	}
+
+	@Override
+	public void addInstance(AttributeVector attributes, Object outputValue, float weight) throws Exception {
+		sharedRows.addInstance(attributes, toKnownClass(outputValue), weight);
+	}
+
+	@Override
+	public void addInstances(AttributeVector attributes, Object outputValue, int count, boolean replicate)
+			throws Exception {
+		sharedRows.addInstances(attributes, toKnownClass(outputValue), count, replicate);
+	}
+
+	// Other values are a negative example for all trees, same as a missing class
+	private Object toKnownClass(Object outputValue) {
+		return sharedRows.getClassIndexMap().containsKey(outputValue) ? outputValue : null;
+	}
+
+	/**
+	 * Moves the instances collected so far to the one-vs-rest estimators. The
+	 * values of each instance are stored in one array shared by all of them.
+	 */
+	private synchronized void distributeSharedRows() {
+		sharedRows.drainBufferedRows(new RowVisitor() {
+
+			public void visit(double[] values, double weight) {
+				Object outputValue = sharedRows.getOutputValue(values);
+				for (int i = 0; i < estimators.length; i++) {
+					estimators[i].addSharedInstance(values, outputValuesAsObjects[i].equals(outputValue), weight);
+				}
 			}
-		}
+		});
 	}
 
 	public void saveInstances(File file) throws IOException {
+		distributeSharedRows();
 		for (int i = 0; i < estimators.length; i++) {
 			estimators[i].saveInstances(new File(outputValuesAsObjects[i]+file.getName()));
 		}
 	}
 
 	@Override
-	public Map<Object, FunctionEstimation> getFunctionEstimation(Object[] option) throws Exception {
+	public Map<Object, FunctionEstimation> getFunctionEstimation(final Object[] option) throws Exception {
 
-		Map<Object, FunctionEstimation> retValue = new HashMap<>();
+		distributeSharedRows();
+
+		List<Callable<FunctionEstimation>> builds = new ArrayList<>(estimators.length);
+		for (final DecisionTreeFunctionEstimator currentEstimator : estimators) {
+			builds.add(new Callable<FunctionEstimation>() {
 
+				public FunctionEstimation call() throws Exception {
+					return currentEstimator.getFunctionEstimation(option).get(true);
+				}
+			});
+		}
+		List<FunctionEstimation> pairs = ParallelTasks.invokeAll(executor, builds);
+
+		Map<Object, FunctionEstimation> retValue = new HashMap<>();
 		for (int i = 0; i < estimators.length; i++) {
-			DecisionTreeFunctionEstimator currentEstimator = estimators[i];
-			FunctionEstimation pair = currentEstimator.getFunctionEstimation(option).get(true);
+			FunctionEstimation pair = pairs.get(i);
 			if (pair != null) {
 				retValue.put(outputValuesAsObjects[i], pair);
 			}
@@ -72,6 +128,17 @@ public class DiscriminatingFunctionEstimator extends AbstractFunctionEstimator i
 		return retValue;
 	}
 	
+	public Map<Object, CompiledGuard> getCompiledGuards() {
+		Map<Object, CompiledGuard> compiledGuards = new HashMap<>();
+		for (int i = 0; i < estimators.length; i++) {
+			CompiledGuard guard = estimators[i].getCompiledGuards().get(true);
+			if (guard != null) {
+				compiledGuards.put(outputValuesAsObjects[i], guard);
+			}
+		}
+		return compiledGuards;
+	}
+
 	@Override
 	public Object classifyInstance(Map<String, Object> attributes) throws Exception {
 		throw new UnsupportedOperationException();
@@ -79,12 +146,13 @@ public class DiscriminatingFunctionEstimator extends AbstractFunctionEstimator i
 	
 	@Override
 	public int getNumInstances() {
-		return estimators[0].getNumInstances();
+		// Distributed instances are in every estimator
+		return sharedRows.getNumInstances() + estimators[0].getNumInstances();
 	}
 	
 	@Override
 	public double getSumOfWeights() {
-		return estimators[0].getSumOfWeights();
+		return sharedRows.getSumOfWeights() + estimators[0].getSumOfWeights();
 	}
 
 	@Override
@@ -129,6 +197,28 @@ public class DiscriminatingFunctionEstimator extends AbstractFunctionEstimator i
 		}
 	}
 
+	@Override
+	public void setTreeBackend(TreeBackend treeBackend) {
+		for (DecisionTreeFunctionEstimator estimator : estimators) {
+			estimator.setTreeBackend(treeBackend);
+		}
+	}
+
+	@Override
+	public void setHistogramBins(int numBins) {
+		for (DecisionTreeFunctionEstimator estimator : estimators) {
+			estimator.setHistogramBins(numBins);
+		}
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+		for (DecisionTreeFunctionEstimator estimator : estimators) {
+			estimator.setExecutor(executor);
+		}
+	}
+
 	public double computeQualityMeasure() {
 		return -1;
 	}
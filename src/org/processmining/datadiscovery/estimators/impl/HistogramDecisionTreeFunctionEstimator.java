@@ -0,0 +1,84 @@
+package org.processmining.datadiscovery.estimators.impl;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.processmining.datadiscovery.estimators.TreeBackend;
+import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.tree.C45Classifier;
+import org.processmining.datadiscovery.estimators.tree.QuantileSketch;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Decision tree estimator for decision points with very many instances. The
+ * values of {@link Type#CONTINUOS}, {@link Type#DISCRETE} and
+ * {@link Type#TIMESTAMP} attributes are sampled into a {@link QuantileSketch}
+ * in proportion to the weights of the instances once all instances are added
+ * (see {@link QuantileSketch#of(weka.core.Instances, int)}), so that the same
+ * instances give the same buckets regardless of the threads that added them.
+ * The tree is always built by the {@link TreeBackend#C45} backend, but only
+ * considers the boundaries of the resulting quantile buckets as
+ * thresholds. The thresholds in the guards may therefore differ from those of
+ * an exact tree, by at most {@link #getThresholdErrors()}.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class HistogramDecisionTreeFunctionEstimator extends DecisionTreeFunctionEstimator {
+
+	public static final int DEFAULT_NUM_BINS = 255;
+
+	/**
+	 * @param attributeType
+	 * @param literalValues
+	 * @param outputClasses
+	 * @param name
+	 * @param capacity
+	 * @param numBins
+	 *            maximum number of buckets per numeric attribute
+	 */
+	public HistogramDecisionTreeFunctionEstimator(Map<String, Type> attributeType,
+			Map<String, Set<String>> literalValues, Object[] outputClasses, String name, int capacity, int numBins) {
+		super(attributeType, literalValues, outputClasses, name, capacity);
+		setHistogramBins(numBins);
+		this.treeBackend = TreeBackend.C45;
+	}
+
+	/**
+	 * Only {@link TreeBackend#C45} supports the buckets.
+	 */
+	public void setTreeBackend(TreeBackend treeBackend) {
+		if (treeBackend != TreeBackend.C45) {
+			throw new IllegalArgumentException("Histogram buckets are not supported by " + treeBackend);
+		}
+		super.setTreeBackend(treeBackend);
+	}
+
+	/**
+	 * @param numBins
+	 *            at least 2
+	 */
+	public void setHistogramBins(int numBins) {
+		if (numBins < 2) {
+			throw new IllegalArgumentException("Need at least two buckets, got " + numBins);
+		}
+		super.setHistogramBins(numBins);
+	}
+
+	/**
+	 * @return for each numeric attribute used in the last tree, the largest
+	 *         possible distance of its thresholds from the exact thresholds
+	 */
+	public Map<String, Double> getThresholdErrors() {
+		if (tree instanceof C45Classifier) {
+			return ((C45Classifier) tree).getThresholdErrors();
+		}
+		return ImmutableMap.of();
+	}
+
+	public int getNumBins() {
+		return histogramBins;
+	}
+
+}
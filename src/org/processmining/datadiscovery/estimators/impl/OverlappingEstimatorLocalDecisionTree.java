@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -13,30 +12,36 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import org.processmining.datadiscovery.estimators.AbstractFunctionEstimator;
+import org.processmining.datadiscovery.estimators.AttributeVector;
+import org.processmining.datadiscovery.estimators.CompiledGuardProducer;
 import org.processmining.datadiscovery.estimators.DecisionTreeBasedFunctionEstimator;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.TreeBackend;
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.util.ParallelTasks;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaCondition;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaLeafNode;
 import org.processmining.datapetrinets.expression.GuardExpression;
-import org.processmining.datapetrinets.expression.VariableProvider;
 import org.processmining.datapetrinets.expression.syntax.ParseException;
 
 import com.google.common.base.Function;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import weka.classifiers.AbstractClassifier;
-import weka.classifiers.trees.J48;
-import weka.core.Attribute;
+import weka.core.Drawable;
 import weka.core.Instance;
 import weka.core.Instances;
 
 public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstimator
-		implements DecisionTreeBasedFunctionEstimator {
+		implements DecisionTreeBasedFunctionEstimator, CompiledGuardProducer {
 
 	// Weka does not work with a setting less than 2
 	private static final int MIN_INSTANCES_AT_LEAF = 2;
@@ -47,57 +52,20 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 		private final Integer predictedClassIndex;
 		private final List<Instance> instancesAtLeaf;
 
-		public LeafProcessor(WekaLeafNode node, DecisionTreeFunctionEstimator normalEstimator) {
+		/**
+		 * @param node
+		 * @param normalEstimator
+		 * @param instancesAtLeaf
+		 *            instances of the normal estimator that are routed to the
+		 *            leaf (see
+		 *            {@link WekaTreeClassificationAdapter#routeInstances(Instances)}
+		 *            )
+		 */
+		public LeafProcessor(WekaLeafNode node, DecisionTreeFunctionEstimator normalEstimator,
+				List<Instance> instancesAtLeaf) {
 			this.predictedClassObject = normalEstimator.classMapping.get(node.getClassName());
 			this.predictedClassIndex = normalEstimator.classIndexMap.get(predictedClassObject);
-			this.instancesAtLeaf = new ArrayList<>((int) node.getInstanceCount());
-
-			for (Instance instance : normalEstimator.getInstances()) {
-				boolean fulfills = true;
-				for (WekaCondition c : node.getConditions()) {
-					if (!fulfillsCondition(instance, c)) {
-						fulfills = false;
-						break;
-					}
-				}
-				if (fulfills) {
-					instancesAtLeaf.add(instance);
-				}
-			}
-		}
-
-		private static boolean fulfillsCondition(Instance instance, WekaCondition condition) {
-			Instances dataset = instance.dataset();
-			Attribute attribute = dataset.attribute(condition.getAttributeName());
-			double value = instance.value(attribute.index());
-			double instanceValue;
-			if (!instance.isMissing(attribute)) {
-				if (attribute.isNominal()) {
-					instanceValue = attribute.indexOfValue(condition.getValue());
-				} else {
-					instanceValue = Double.valueOf(condition.getValue());
-				}
-
-				switch (condition.getOperator()) {
-					case "=" :
-						return Double.compare(value, instanceValue) == 0;
-					case "!=" :
-						return Double.compare(value, instanceValue) != 0;
-					case "<" :
-						return Double.compare(value, instanceValue) < 0;
-					case ">" :
-						return Double.compare(value, instanceValue) > 0;
-					case "<=" :
-						return Double.compare(value, instanceValue) <= 0;
-					case ">=" :
-						return Double.compare(value, instanceValue) >= 0;
-				}
-
-				throw new IllegalArgumentException("Operator unkown in: " + condition);
-
-			} else {
-				return false;
-			}
+			this.instancesAtLeaf = instancesAtLeaf;
 		}
 
 		public List<Instance> getInstancesAtLeaf() {
@@ -110,14 +78,31 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 
 	}
 
+	private static final class LeafRefinement {
+
+		private final DecisionTreeFunctionEstimator estimator;
+		private final AbstractClassifier tree;
+		private final WekaTreeClassificationAdapter treeAdapter;
+		private final int originalMinNumObjs;
+
+		LeafRefinement(DecisionTreeFunctionEstimator estimator, AbstractClassifier tree,
+				WekaTreeClassificationAdapter treeAdapter, int originalMinNumObjs) {
+			this.estimator = estimator;
+			this.tree = tree;
+			this.treeAdapter = treeAdapter;
+			this.originalMinNumObjs = originalMinNumObjs;
+		}
+
+	}
+
 	private final Object[] outputClasses;
 	private final String decisionPointName;
 	private final DecisionTreeFunctionEstimator normalEstimator;
 	private final Map<WekaLeafNode, AbstractClassifier> additionalClassifiers = new HashMap<>();
 
 	private final Map<String, Type> attributeType;
-	private final Map<String, Set<String>> literalValues;
 	private List<WekaLeafNode> manipulatedLeafs;
+	private Map<Object, CompiledGuard> compiledGuards = ImmutableMap.of();
 
 	private boolean isReduceMinLeafs = true;
 	private boolean alwaysMergeExistingLeafs = false;
@@ -128,7 +113,6 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 		super();
 		this.attributeType = attributeType;
 		this.outputClasses = outputClasses;
-		this.literalValues = literalValues;
 		this.decisionPointName = name;
 		this.normalEstimator = new DecisionTreeFunctionEstimator(attributeType, literalValues, outputClasses, name,
 				capacity);
@@ -139,6 +123,17 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 		normalEstimator.addInstance(variableAssignment, outputValue, weight);
 	}
 
+	@Override
+	public void addInstance(AttributeVector attributes, Object outputValue, float weight) throws Exception {
+		normalEstimator.addInstance(attributes, outputValue, weight);
+	}
+
+	@Override
+	public void addInstances(AttributeVector attributes, Object outputValue, int count, boolean replicate)
+			throws Exception {
+		normalEstimator.addInstances(attributes, outputValue, count, replicate);
+	}
+
 	public void saveInstances(File file) throws IOException {
 		normalEstimator.saveInstances(file);
 	}
@@ -151,12 +146,14 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 
 		if (outputClasses.length > 1) {
 
-			J48 tree = (J48) normalEstimator.getClassifier();
+			Instances instances = normalEstimator.getInstances();
+			WekaTreeClassificationAdapter wekaJ48Adapter = normalEstimator.getTreeClassificationAdapter();
 
-			WekaTreeClassificationAdapter wekaJ48Adapter = new WekaTreeClassificationAdapter(tree,
-					normalEstimator.getInstances(), attributeType);
+			List<WekaLeafNode> leaves = wekaJ48Adapter.traverseLeafNodes().toList();
+			Map<WekaLeafNode, List<Instance>> instancesAtLeaves = groupByLeaf(leaves, instances,
+					wekaJ48Adapter.routeInstances(instances));
 
-			ImmutableList<WekaLeafNode> leavesSortedByWrongInstances = wekaJ48Adapter.traverseLeafNodes()
+			ImmutableList<WekaLeafNode> leavesSortedByWrongInstances = FluentIterable.from(leaves)
 					.toSortedList(new Comparator<WekaLeafNode>() {
 
 						public int compare(WekaLeafNode o1, WekaLeafNode o2) {
@@ -165,6 +162,16 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 
 					});
 
+			// Trees for the instances at the candidate leaves are independent
+			List<Callable<LeafRefinement>> refinementTasks = new ArrayList<>();
+			for (WekaLeafNode leafNode : leavesSortedByWrongInstances) {
+				if (isCandidateLeaf(leafNode)) {
+					refinementTasks.add(createRefinementTask(leafNode, instancesAtLeaves.get(leafNode)));
+				}
+			}
+			Iterator<LeafRefinement> refinements = ParallelTasks
+					.invokeAll(normalEstimator.getExecutor(), refinementTasks).iterator();
+
 			for (WekaLeafNode leafNode : leavesSortedByWrongInstances) {
 
 				if (isCandidateLeaf(leafNode)) {
@@ -172,104 +179,11 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 					// Add original leaf node
 					manipulatedLeafs.add(leafNode);
 
-					final LeafProcessor leafProcessor = new LeafProcessor(leafNode, normalEstimator);
-					final DecisionTreeFunctionEstimator overlappingClassesEstimator = new DecisionTreeFunctionEstimator(
-							attributeType, literalValues, outputClasses, decisionPointName,
-							leafProcessor.getInstancesAtLeaf().size());
-
-					overlappingClassesEstimator.setBinarySplit(normalEstimator.isBinarySplit());
-					overlappingClassesEstimator.setNumFolds(normalEstimator.getNumFoldErrorPruning());
-					overlappingClassesEstimator.setUnpruned(normalEstimator.isUnpruned());
-					overlappingClassesEstimator.setCrossValidate(normalEstimator.isCrossValidate());
-
-					boolean hasWeights = false;
-					// Build new data set only retaining the wrongly classified instances
-					for (Instance instance : leafProcessor.getInstancesAtLeaf()) {
-						Integer realClassIndex = (int) instance.value(instance.classIndex());
-						Object realClass = normalEstimator.classIndexMap.inverse().get(realClassIndex);
-						if (realClassIndex != leafProcessor.getPredictedClassIndex()) {
-							if (instance.weight() > 1) {
-								hasWeights = true;
-							}
-							overlappingClassesEstimator.addWekaInstance(instance, realClass, (float) instance.weight());
-						}
+					LeafRefinement refinement = refinements.next();
+					if (refinement != null) {
+						addRefinedLeafs(leafNode, refinement, leavesSortedByWrongInstances);
 					}
 
-					int originalMinNumObjs = normalEstimator.getMinNumInstancePerLeaf();
-					int newMinNumObjs = originalMinNumObjs;
-					if (isReduceMinLeafs()) {
-						if (hasWeights) {
-							double originalMinPercentageLeafs = (originalMinNumObjs
-									/ normalEstimator.getInstances().sumOfWeights());
-							newMinNumObjs = Math.max(MIN_INSTANCES_AT_LEAF, (int) (Math
-									.ceil(originalMinPercentageLeafs * overlappingClassesEstimator.getInstances().sumOfWeights())));
-						} else {
-							double originalMinPercentageLeafs = (originalMinNumObjs
-									/ (double) normalEstimator.getNumInstances());
-							newMinNumObjs = Math.max(MIN_INSTANCES_AT_LEAF, (int) (Math
-									.ceil(originalMinPercentageLeafs * overlappingClassesEstimator.getNumInstances())));
-						}
-					}
-					overlappingClassesEstimator.setMinNumObj(newMinNumObjs);
-					if (overlappingClassesEstimator.isCrossValidate()
-							&& newMinNumObjs < overlappingClassesEstimator.getNumFoldCrossValidation()) {
-						continue; // Don't try to find a decision tree as cross validation would not work
-					}
-
-					final AbstractClassifier overlappingTree = overlappingClassesEstimator.createClassifier(null,
-							false);
-					final WekaTreeClassificationAdapter overlappingTreeAdapter = new WekaTreeClassificationAdapter(
-							(J48) overlappingTree, overlappingClassesEstimator.getInstances(), attributeType);
-
-					additionalClassifiers.put(leafNode, overlappingTree);
-
-					if (overlappingTreeAdapter.treeDepth() > 0) {
-
-						// Add newly found overlapping conditions
-						for (WekaLeafNode newLeaf : overlappingTreeAdapter.traverseLeafNodes()) {
-							ArrayDeque<WekaCondition> mergedConditions = new ArrayDeque<WekaTreeClassificationAdapter.WekaCondition>();
-							for (WekaCondition oldCondition : leafNode.getConditions()) {
-								mergedConditions.addLast(oldCondition);
-							}
-							for (WekaCondition newCondition : newLeaf.getConditions()) {
-								mergedConditions.addLast(newCondition);
-							}
-							WekaLeafNode newLeafNode = new WekaLeafNode(overlappingClassesEstimator.getInstances(),
-									newLeaf.getClassName(), mergedConditions, newLeaf.getInstanceCount(),
-									newLeaf.getWrongInstanceCount(), attributeType);
-
-							if (newLeafNode.getInstanceCount() > 0.0) {
-								// only add leaf if we actually saw instances
-								manipulatedLeafs.add(newLeafNode);
-							}
-						}
-
-					} else {
-
-						// No decision tree found
-						WekaLeafNode root = (WekaLeafNode) overlappingTreeAdapter.getRootNode();
-						// Here we check with the original parameter to avoid just merging most leafs
-						// only leafs with many wrong instances should be considered to be merged to avoid over-fitting
-						if (root.getInstanceCount() > originalMinNumObjs) {
-							// Enough instances available, check merge condition 
-							if (fulfillsMergeCondition(root, leavesSortedByWrongInstances)) {
-								ArrayDeque<WekaCondition> mergedConditions = new ArrayDeque<WekaTreeClassificationAdapter.WekaCondition>();
-								for (WekaCondition oldCondition : leafNode.getConditions()) {
-									mergedConditions.addLast(oldCondition);
-								}
-
-								WekaLeafNode newLeafNode = new WekaLeafNode(overlappingClassesEstimator.getInstances(),
-										root.getClassName(), mergedConditions, root.getInstanceCount(),
-										root.getWrongInstanceCount(), attributeType);
-
-								if (newLeafNode.getInstanceCount() > 0.0) {
-									// only add leaf if we actually saw instances
-									manipulatedLeafs.add(newLeafNode);
-								}
-							}
-						}
-
-					}
 				} else {
 					// Add leaf as-is
 					manipulatedLeafs.add(leafNode);
@@ -278,30 +192,172 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 			}
 		}
 
-		Map<Object, FunctionEstimation> estimation = buildExpressionsFromLeafs(manipulatedLeafs,
-				new Function<String, Object>() {
+		Function<String, Object> leafClassMapping = new Function<String, Object>() {
 
-					public Object apply(String classLabel) {
-						return normalEstimator.classMapping.get(classLabel);
-					}
-				});
+			public Object apply(String classLabel) {
+				return normalEstimator.classMapping.get(classLabel);
+			}
+		};
+		Map<Object, FunctionEstimation> estimation = buildExpressionsFromLeafs(manipulatedLeafs, leafClassMapping);
+		Map<Object, CompiledGuard> guards = compileGuardsFromLeafs(manipulatedLeafs, leafClassMapping);
+		guards.keySet().retainAll(estimation.keySet());
 
 		Set<Object> tautologies = new HashSet<Object>();
-		for (Iterator<Entry<Object, FunctionEstimation>> iterator = estimation.entrySet().iterator(); iterator
-				.hasNext();) {
-			Entry<Object, FunctionEstimation> entry = iterator.next();
-			GuardExpression expression = entry.getValue().getExpression();
-			if (checkForTautology(expression)) {
+		for (Iterator<Entry<Object, CompiledGuard>> iterator = guards.entrySet().iterator(); iterator.hasNext();) {
+			Entry<Object, CompiledGuard> entry = iterator.next();
+			if (checkForTautology(entry.getValue())) {
 				tautologies.add(entry.getKey());
 			}
 		}
 		for (Object obj : tautologies) {
 			estimation.put(obj, FunctionEstimation.Factory.create(GuardExpression.Factory.newInstance("true"), -1.0d));
+			guards.put(obj, CompiledGuard.TRUE);
 		}
 
+		compiledGuards = ImmutableMap.copyOf(guards);
 		return ImmutableMap.copyOf(estimation);
 	}
 
+	private static Map<WekaLeafNode, List<Instance>> groupByLeaf(List<WekaLeafNode> leaves, Instances instances,
+			int[] leafIndices) {
+		int[] leafSizes = new int[leaves.size()];
+		for (int leafIndex : leafIndices) {
+			if (leafIndex >= 0) {
+				leafSizes[leafIndex]++;
+			}
+		}
+		List<List<Instance>> instancesByIndex = new ArrayList<>(leaves.size());
+		for (int leafSize : leafSizes) {
+			instancesByIndex.add(new ArrayList<Instance>(leafSize));
+		}
+		for (int i = 0; i < leafIndices.length; i++) {
+			if (leafIndices[i] >= 0) {
+				instancesByIndex.get(leafIndices[i]).add(instances.get(i));
+			}
+		}
+		Map<WekaLeafNode, List<Instance>> instancesAtLeaves = new HashMap<>();
+		for (int i = 0; i < leaves.size(); i++) {
+			instancesAtLeaves.put(leaves.get(i), instancesByIndex.get(i));
+		}
+		return instancesAtLeaves;
+	}
+
+	/**
+	 * Builds a tree that distinguishes the instances wrongly classified at the
+	 * leaf. The task returns NULL if no tree can be built.
+	 */
+	private Callable<LeafRefinement> createRefinementTask(final WekaLeafNode leafNode,
+			final List<Instance> instancesAtLeaf) {
+		return new Callable<LeafRefinement>() {
+
+			public LeafRefinement call() throws Exception {
+				LeafProcessor leafProcessor = new LeafProcessor(leafNode, normalEstimator, instancesAtLeaf);
+				// Shares the attributes and the instance values of the normal estimator
+				DecisionTreeFunctionEstimator overlappingClassesEstimator = new DecisionTreeFunctionEstimator(
+						normalEstimator, outputClasses, decisionPointName, leafProcessor.getInstancesAtLeaf().size());
+				// The minimal number of instances per leaf is adjusted below
+				normalEstimator.copyTreeSettingsTo(overlappingClassesEstimator);
+
+				boolean hasWeights = false;
+				// Build new data set only retaining the wrongly classified instances
+				for (Instance instance : leafProcessor.getInstancesAtLeaf()) {
+					Integer realClassIndex = (int) instance.value(instance.classIndex());
+					Object realClass = normalEstimator.classIndexMap.inverse().get(realClassIndex);
+					if (realClassIndex != leafProcessor.getPredictedClassIndex()) {
+						if (instance.weight() > 1) {
+							hasWeights = true;
+						}
+						overlappingClassesEstimator.addSharedInstance(instance, realClass, instance.weight());
+					}
+				}
+
+				int originalMinNumObjs = normalEstimator.getMinNumInstancePerLeaf();
+				int newMinNumObjs = originalMinNumObjs;
+				if (isReduceMinLeafs()) {
+					if (hasWeights) {
+						double originalMinPercentageLeafs = (originalMinNumObjs
+								/ normalEstimator.getInstances().sumOfWeights());
+						newMinNumObjs = Math.max(MIN_INSTANCES_AT_LEAF, (int) (Math
+								.ceil(originalMinPercentageLeafs * overlappingClassesEstimator.getInstances().sumOfWeights())));
+					} else {
+						double originalMinPercentageLeafs = (originalMinNumObjs
+								/ (double) normalEstimator.getNumInstances());
+						newMinNumObjs = Math.max(MIN_INSTANCES_AT_LEAF, (int) (Math
+								.ceil(originalMinPercentageLeafs * overlappingClassesEstimator.getNumInstances())));
+					}
+				}
+				overlappingClassesEstimator.setMinNumObj(newMinNumObjs);
+				if (overlappingClassesEstimator.isCrossValidate()
+						&& newMinNumObjs < overlappingClassesEstimator.getNumFoldCrossValidation()) {
+					return null; // Don't try to find a decision tree as cross validation would not work
+				}
+
+				AbstractClassifier overlappingTree = overlappingClassesEstimator.createClassifier(null, false);
+				WekaTreeClassificationAdapter overlappingTreeAdapter = new WekaTreeClassificationAdapter(
+						(Drawable) overlappingTree, overlappingClassesEstimator.getInstances(), attributeType);
+				return new LeafRefinement(overlappingClassesEstimator, overlappingTree, overlappingTreeAdapter,
+						originalMinNumObjs);
+			}
+		};
+	}
+
+	private void addRefinedLeafs(WekaLeafNode leafNode, LeafRefinement refinement,
+			ImmutableList<WekaLeafNode> leavesSortedByWrongInstances) {
+		DecisionTreeFunctionEstimator overlappingClassesEstimator = refinement.estimator;
+		WekaTreeClassificationAdapter overlappingTreeAdapter = refinement.treeAdapter;
+		int originalMinNumObjs = refinement.originalMinNumObjs;
+
+		additionalClassifiers.put(leafNode, refinement.tree);
+
+		if (overlappingTreeAdapter.treeDepth() > 0) {
+
+			// Add newly found overlapping conditions
+			for (WekaLeafNode newLeaf : overlappingTreeAdapter.traverseLeafNodes()) {
+				ArrayDeque<WekaCondition> mergedConditions = new ArrayDeque<WekaTreeClassificationAdapter.WekaCondition>();
+				for (WekaCondition oldCondition : leafNode.getConditions()) {
+					mergedConditions.addLast(oldCondition);
+				}
+				for (WekaCondition newCondition : newLeaf.getConditions()) {
+					mergedConditions.addLast(newCondition);
+				}
+				WekaLeafNode newLeafNode = new WekaLeafNode(overlappingClassesEstimator.getInstances(),
+						newLeaf.getClassName(), mergedConditions, newLeaf.getInstanceCount(),
+						newLeaf.getWrongInstanceCount(), attributeType);
+
+				if (newLeafNode.getInstanceCount() > 0.0) {
+					// only add leaf if we actually saw instances
+					manipulatedLeafs.add(newLeafNode);
+				}
+			}
+
+		} else {
+
+			// No decision tree found
+			WekaLeafNode root = (WekaLeafNode) overlappingTreeAdapter.getRootNode();
+			// Here we check with the original parameter to avoid just merging most leafs
+			// only leafs with many wrong instances should be considered to be merged to avoid over-fitting
+			if (root.getInstanceCount() > originalMinNumObjs) {
+				// Enough instances available, check merge condition 
+				if (fulfillsMergeCondition(root, leavesSortedByWrongInstances)) {
+					ArrayDeque<WekaCondition> mergedConditions = new ArrayDeque<WekaTreeClassificationAdapter.WekaCondition>();
+					for (WekaCondition oldCondition : leafNode.getConditions()) {
+						mergedConditions.addLast(oldCondition);
+					}
+
+					WekaLeafNode newLeafNode = new WekaLeafNode(overlappingClassesEstimator.getInstances(),
+							root.getClassName(), mergedConditions, root.getInstanceCount(),
+							root.getWrongInstanceCount(), attributeType);
+
+					if (newLeafNode.getInstanceCount() > 0.0) {
+						// only add leaf if we actually saw instances
+						manipulatedLeafs.add(newLeafNode);
+					}
+				}
+			}
+
+		}
+	}
+
 	private boolean fulfillsMergeCondition(WekaLeafNode root,
 			ImmutableList<WekaLeafNode> leavesSortedByWrongInstances) {
 		if ((root.getWrongInstanceCount() / root.getInstanceCount()) < mergeWrongInstanceRatio) {
@@ -323,55 +379,18 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 	/**
 	 * Basic tautology check using all available instances
 	 * 
-	 * @param expression
-	 *            to be checked
+	 * @param guard
+	 *            compiled expression to be checked
 	 * @return whether the expression is always true for all available instances
 	 */
-	private final boolean checkForTautology(GuardExpression expression) {
-		boolean allSatisfied = true;
-		Set<String> normalVariables = expression.getNormalVariables();
-		final Map<String, Object> valueMap = new HashMap<String, Object>();
-		instanceFor: for (Instance instance : normalEstimator.getInstances()) {
-			for (String variable : normalVariables) {
-				Type type = attributeType.get(variable);
-				Integer wekaIndex = normalEstimator.getAttributeIndexMap().get(variable);
-				if (!instance.isMissing(wekaIndex)) {
-					Object value = convertFromWekaData(type, instance, wekaIndex);
-					valueMap.put(variable, value);
-				} else {
-					// Do not check this instances due to a missing value
-					continue instanceFor;
-				}
+	private final boolean checkForTautology(CompiledGuard guard) {
+		for (Instance instance : normalEstimator.getInstances()) {
+			// Do not check instances with a missing value
+			if (!guard.hasMissingValue(instance) && !guard.isTrue(instance)) {
+				return false;
 			}
-			allSatisfied &= expression.isTrue(new VariableProvider.DefaultVariableProvider(valueMap));
-			valueMap.clear();
 		}
-		return allSatisfied;
-	}
-
-	private static Object convertFromWekaData(Type type, Instance instance, Integer wekaIndex) {
-		Object value = null;
-		switch (type) {
-			case BOOLEAN :
-				String bool = instance.stringValue(wekaIndex);
-				value = DecisionTreeFunctionEstimator.TRUE_VALUE.equals(bool);
-				break;
-			case CONTINUOS :
-				value = Double.valueOf(instance.value(wekaIndex));
-				break;
-			case DISCRETE :
-				value = Double.valueOf(instance.value(wekaIndex)).longValue();
-				break;
-			case LITERAL :
-				value = instance.stringValue(wekaIndex);
-				break;
-			case TIMESTAMP :
-				value = new Date(Double.valueOf(instance.value(wekaIndex)).longValue());
-				break;
-			default :
-				break;
-		}
-		return value;
+		return true;
 	}
 
 	private boolean isCandidateLeaf(WekaLeafNode node) {
@@ -457,6 +476,22 @@ public class OverlappingEstimatorLocalDecisionTree extends AbstractFunctionEstim
 		normalEstimator.setNumFolds(numFoldErrorPruning);
 	}
 
+	public void setTreeBackend(TreeBackend treeBackend) {
+		normalEstimator.setTreeBackend(treeBackend);
+	}
+
+	public void setHistogramBins(int numBins) {
+		normalEstimator.setHistogramBins(numBins);
+	}
+
+	public void setExecutor(Executor executor) {
+		normalEstimator.setExecutor(executor);
+	}
+
+	public Map<Object, CompiledGuard> getCompiledGuards() {
+		return compiledGuards;
+	}
+
 	public Object classifyInstance(Map<String, Object> attributes) throws Exception {
 		throw new UnsupportedOperationException();
 	}
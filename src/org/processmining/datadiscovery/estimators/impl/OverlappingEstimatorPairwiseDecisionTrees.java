@@ -4,35 +4,34 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Executor;
 
 import org.processmining.datadiscovery.estimators.AbstractFunctionEstimator;
+import org.processmining.datadiscovery.estimators.AttributeVector;
 import org.processmining.datadiscovery.estimators.DecisionTreeBasedFunctionEstimator;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.TreeBackend;
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.util.ParallelTasks;
 import org.processmining.datapetrinets.expression.GuardExpression;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
 
 import weka.classifiers.AbstractClassifier;
-import weka.classifiers.trees.J48;
-import weka.core.DenseInstance;
+import weka.core.AdditionalMeasureProducer;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -79,57 +78,6 @@ public class OverlappingEstimatorPairwiseDecisionTrees extends AbstractFunctionE
 
 	}
 
-	public class PartitionGenerator implements Iterator<Partition> {
-
-		private final List<Object> classSet;
-		private ListIterator<Object> firstClassIterator;
-		private Iterator<Object> secondClassIterator;
-		private Object currentClass;
-		private int partitionIndex = 0;
-
-		public PartitionGenerator(Set<Object> classSet) {
-			this.classSet = Lists.newArrayList(classSet);
-			this.firstClassIterator = this.classSet.listIterator();
-		}
-
-		public boolean hasNext() {
-			return firstClassIterator.hasNext() && !(firstClassIterator.nextIndex() + 1 == classSet.size());
-		}
-
-		public Partition next() {
-			if (currentClass != null && secondClassIterator.hasNext()) {
-				final Object secondClass = secondClassIterator.next();
-				Set<Object> combinedClass = ImmutableSet.of(currentClass, secondClass);
-				partitionIndex++;
-				Iterable<Object> filter = Iterables.filter(classSet,
-						new Predicate<Object>() {
-
-							public boolean apply(Object o) {
-								return o != currentClass && o != secondClass;
-							}
-						});
-				return new Partition(combinedClass, ImmutableSet.copyOf(filter));
-			} else {
-				currentClass = firstClassIterator.next();
-				secondClassIterator = this.classSet.listIterator(firstClassIterator.nextIndex());
-				if (secondClassIterator.hasNext()) {
-					return next();
-				} else {
-					throw new IllegalStateException("Second Iterator should not have been called!");
-				}
-			}
-		}
-
-		public void remove() {
-			throw new UnsupportedOperationException();
-		}
-
-		public int numPartitionsGenerated() {
-			return partitionIndex;
-		}
-
-	}
-
 	private static class CombinedClass implements Iterable<Object> {
 
 		private Set<Object> classes;
@@ -172,13 +120,8 @@ public class OverlappingEstimatorPairwiseDecisionTrees extends AbstractFunctionE
 
 	}
 
-	private final ThreadPoolExecutor pool;
-
 	private final Map<Object, AbstractClassifier> usedClassifiers = new HashMap<>();
-	private final Map<String, Type> attributeType;
-	private final Map<String, Set<String>> literalValues;
 	private final Object[] outputClasses;
-	private final int capacity;
 	private final String decisionPointName;
 
 	private final DecisionTreeFunctionEstimator normalEstimator;
@@ -186,24 +129,45 @@ public class OverlappingEstimatorPairwiseDecisionTrees extends AbstractFunctionE
 	private Map<Object, FunctionEstimation> estimation;
 
 	private boolean mixEstimations = true;
+	private int maxPartitions = 0; // 0 considers all pairs
+	private double minConfusion = 0.0; // 0 considers all pairs
+	private boolean pruneCandidates = false; // Approximate, may miss improvements
 
 	public OverlappingEstimatorPairwiseDecisionTrees(Map<String, Type> attributeType,
-			Map<String, Set<String>> literalValues, Object[] outputClasses, int capacity, String name,
-			ThreadPoolExecutor pool) {
+			Map<String, Set<String>> literalValues, Object[] outputClasses, int capacity, String name) {
 		super();
-		this.attributeType = attributeType;
-		this.literalValues = literalValues;
 		this.outputClasses = outputClasses;
-		this.capacity = capacity;
 		this.decisionPointName = name;
-		this.pool = pool;
 		this.normalEstimator = new DecisionTreeFunctionEstimator(attributeType, literalValues, outputClasses, name,
 				capacity);
 	}
 
+	/**
+	 * @param executor
+	 *            (may be NULL) used to evaluate the candidate partitions in
+	 *            parallel, see {@link #setExecutor(Executor)}
+	 */
+	public OverlappingEstimatorPairwiseDecisionTrees(Map<String, Type> attributeType,
+			Map<String, Set<String>> literalValues, Object[] outputClasses, int capacity, String name,
+			Executor executor) {
+		this(attributeType, literalValues, outputClasses, capacity, name);
+		setExecutor(executor);
+	}
+
 	public void addInstance(Map<String, Object> variableAssignment, Object outputValue, float weight) throws Exception {
 		normalEstimator.addInstance(variableAssignment, outputValue, weight);
 	}
+
+	@Override
+	public void addInstance(AttributeVector attributes, Object outputValue, float weight) throws Exception {
+		normalEstimator.addInstance(attributes, outputValue, weight);
+	}
+
+	@Override
+	public void addInstances(AttributeVector attributes, Object outputValue, int count, boolean replicate)
+			throws Exception {
+		normalEstimator.addInstances(attributes, outputValue, count, replicate);
+	}
 	
 	public void saveInstances(File file) throws IOException {
 		normalEstimator.saveInstances(file);
@@ -214,154 +178,250 @@ public class OverlappingEstimatorPairwiseDecisionTrees extends AbstractFunctionE
 
 		if (numOutputClasses() > 2) {
 
-			final Set<Object> recomputeSet = new HashSet<>();
-			for (Object o : outputClasses) {
-				recomputeSet.add(o);
-			}
-
 			double currentFScore = normalEstimator.computeQualityMeasure();
+			double[][] confusionMatrix = normalEstimator.getEvaluation().confusionMatrix();
+
+			List<Partition> candidates = collectCandidatePartitions(confusionMatrix);
+			int numChecked = 0;
 
-			List<Future<PartitionEstimatorResult>> partitionedEstimators = new ArrayList<>();
+			// With pruning, candidates are evaluated in batches to skip those that are unlikely to improve
+			int batchSize = candidates.size();
+			if (pruneCandidates) {
+				batchSize = normalEstimator.getExecutor() == null ? 1 : Runtime.getRuntime().availableProcessors();
+			}
+			Iterator<Partition> candidateIterator = candidates.iterator();
+			while (candidateIterator.hasNext()) {
+
+				List<Callable<PartitionEstimatorResult>> partitionTasks = new ArrayList<>();
+				while (candidateIterator.hasNext() && partitionTasks.size() < batchSize) {
+					Partition partition = candidateIterator.next();
+					if (!pruneCandidates || mayImprove(partition, confusionMatrix)) {
+						partitionTasks.add(createPartitionTask(partition, option));
+					}
+				}
 
-			PartitionGenerator partitionView = new PartitionGenerator(recomputeSet);
-			while (partitionView.hasNext()) {
+				// The calling thread takes part, so that the executor may be shared with the caller
+				for (PartitionEstimatorResult partitionEstimatorResult : ParallelTasks
+						.invokeAll(normalEstimator.getExecutor(), partitionTasks)) {
+					currentFScore = applyPartitionResult(partitionEstimatorResult, currentFScore);
+					numChecked++;
+				}
 
-				final Partition partition = partitionView.next();
-				final Instances instances = normalEstimator.getInstances();
+			}
 
-				partitionedEstimators.add(pool.submit(new Callable<PartitionEstimatorResult>() {
+			System.out.println(String.format("Checked %s of %s candidate partitions at decision point %s",
+					numChecked, candidates.size(), decisionPointName));
 
-					public PartitionEstimatorResult call() throws Exception {
+		}
+		return estimation;
+	}
 
-						final DecisionTreeFunctionEstimator partitionEstimator = new DecisionTreeFunctionEstimator(
-								attributeType, literalValues, partition.getSubSets().toArray(), decisionPointName,
-								capacity);
-					
-						partitionEstimator.setBinarySplit(normalEstimator.isBinarySplit());
-						partitionEstimator.setNumFolds(normalEstimator.getNumFoldErrorPruning());
-						partitionEstimator.setMinNumObj(normalEstimator.getMinNumInstancePerLeaf());
-						partitionEstimator.setUnpruned(normalEstimator.isUnpruned());
-						partitionEstimator.setCrossValidate(normalEstimator.isCrossValidate());
+	/**
+	 * Collects the pairs of classes that the tree of the normal estimator
+	 * confuses at least {@link #getMinConfusion()}. By default, these are all
+	 * pairs in the order of the output classes. If
+	 * {@link #getMaxPartitions()} is set, only that many pairs with the
+	 * highest confusion are returned in order of decreasing confusion.
+	 * 
+	 * @param confusionMatrix
+	 *            of the normal estimator
+	 * @return the partitions combining the pairs
+	 */
+	private List<Partition> collectCandidatePartitions(final double[][] confusionMatrix) {
+		List<Partition> candidates = new ArrayList<>();
+		final Map<Partition, Double> confusion = new HashMap<>();
+		for (int i = 0; i < outputClasses.length; i++) {
+			for (int j = i + 1; j < outputClasses.length; j++) {
+				double pairConfusion = getConfusion(confusionMatrix, outputClasses[i], outputClasses[j])
+						+ getConfusion(confusionMatrix, outputClasses[j], outputClasses[i]);
+				if (pairConfusion >= minConfusion) {
+					Set<Object> otherClasses = new LinkedHashSet<>(Arrays.asList(outputClasses));
+					otherClasses.remove(outputClasses[i]);
+					otherClasses.remove(outputClasses[j]);
+					Partition partition = new Partition(ImmutableSet.of(outputClasses[i], outputClasses[j]),
+							ImmutableSet.copyOf(otherClasses));
+					confusion.put(partition, pairConfusion);
+					candidates.add(partition);
+				}
+			}
+		}
+		if (maxPartitions > 0 && candidates.size() > maxPartitions) {
+			Collections.sort(candidates, new Comparator<Partition>() {
 
-						for (Instance instance : instances) {
+				public int compare(Partition p1, Partition p2) {
+					return Double.compare(confusion.get(p2), confusion.get(p1));
+				}
+			});
+			return candidates.subList(0, maxPartitions);
+		}
+		return candidates;
+	}
 
-							Integer wekaClass = (int) instance.value(instances.classIndex());
-							Object classObj = normalEstimator.classIndexMap.inverse().get(wekaClass);
+	private double getConfusion(double[][] confusionMatrix, Object actualClass, Object predictedClass) {
+		int actual = normalEstimator.classIndexMap.get(actualClass);
+		int predicted = normalEstimator.classIndexMap.get(predictedClass);
+		return confusionMatrix[actual][predicted];
+	}
 
-							Object classPartition = partition.get(classObj);
-							DenseInstance combinedClassInstance = new DenseInstance(instance);
-							partitionEstimator.addWekaInstance(combinedClassInstance, classPartition, 1.0f);
-						}
+	/**
+	 * Estimates whether combining the classes of the partition could improve
+	 * the current f-score of one of them, assuming the tree of the partition
+	 * would classify all instances as the normal tree, except that it no
+	 * longer confuses the two combined classes. This is a heuristic and not an
+	 * upper bound, since the tree of the partition may split differently.
+	 * Only used if {@link #isPruneCandidates()}.
+	 * 
+	 * @param partition
+	 * @param confusionMatrix
+	 *            of the normal estimator
+	 * @return whether the partition is worth evaluating
+	 */
+	private boolean mayImprove(Partition partition, double[][] confusionMatrix) {
+		Iterator<Object> iterator = partition.combinedClasses.iterator();
+		Object class1 = iterator.next();
+		Object class2 = iterator.next();
+		return mayImprove(class1, class2, confusionMatrix) || mayImprove(class2, class1, confusionMatrix);
+	}
 
-						final Map<Object, FunctionEstimation> partitionEstimation = partitionEstimator
-								.getFunctionEstimation(option);
+	private boolean mayImprove(Object classObj, Object combinedWith, double[][] confusionMatrix) {
+		FunctionEstimation currentEstimation = estimation.get(classObj);
+		if (currentEstimation == null) {
+			return true;
+		}
+		int index = normalEstimator.classIndexMap.get(classObj);
+		int otherIndex = normalEstimator.classIndexMap.get(combinedWith);
+		double tp = confusionMatrix[index][index];
+		double fn = -tp;
+		double fp = -tp;
+		for (int i = 0; i < confusionMatrix.length; i++) {
+			fn += confusionMatrix[index][i];
+			fp += confusionMatrix[i][index];
+		}
+		double bestFScore = calculateFScore(tp + confusionMatrix[index][otherIndex],
+				fp - confusionMatrix[otherIndex][index], fn - confusionMatrix[index][otherIndex]);
+		return Double.compare(bestFScore, currentEstimation.getQualityMeasure()) > 0;
+	}
 
-						final Map<Object, Double> updatedFScores = reEvaluateClasses(instances,
-								partitionEstimator.getInstances(), partitionEstimator.getClassifier(),
-								partitionEstimator.classIndexMap.inverse());
+	private Callable<PartitionEstimatorResult> createPartitionTask(final Partition partition, final Object[] option) {
+		final Instances instances = normalEstimator.getInstances();
+		return new Callable<PartitionEstimatorResult>() {
 
-						final Map<Object, FunctionEstimation> fixedEstimation = new HashMap<>();
+			public PartitionEstimatorResult call() throws Exception {
 
-						for (Entry<Object, FunctionEstimation> entry : partitionEstimation.entrySet()) {
+				// Shares the attributes and the instance values of the normal estimator
+				final DecisionTreeFunctionEstimator partitionEstimator = new DecisionTreeFunctionEstimator(
+						normalEstimator, partition.getSubSets().toArray(), decisionPointName,
+						instances.size());
+				normalEstimator.copyTreeSettingsTo(partitionEstimator);
 
-							Object classObj = entry.getKey();
-							GuardExpression guard = entry.getValue().getExpression();
+				for (Instance instance : instances) {
 
-							if (classObj instanceof CombinedClass) {
+					Integer wekaClass = (int) instance.value(instances.classIndex());
+					Object classObj = normalEstimator.classIndexMap.inverse().get(wekaClass);
 
-								CombinedClass combinedClass = (CombinedClass) classObj;
-								Iterator<Object> iterator = combinedClass.iterator();
-								Object class1 = iterator.next();
-								Object class2 = iterator.next();
+					Object classPartition = partition.get(classObj);
+					partitionEstimator.addSharedInstance(instance, classPartition, (float) instance.weight());
+				}
 
-								fixedEstimation.put(class1,
-										FunctionEstimation.Factory.create(guard, updatedFScores.get(class1)));
-								fixedEstimation.put(class2,
-										FunctionEstimation.Factory.create(guard, updatedFScores.get(class2)));
-							} else {
-								fixedEstimation.put(classObj,
-										FunctionEstimation.Factory.create(guard, updatedFScores.get(classObj)));
-							}
+				final Map<Object, FunctionEstimation> partitionEstimation = partitionEstimator
+						.getFunctionEstimation(option);
 
-						}
+				final Map<Object, Double> updatedFScores = reEvaluateClasses(instances,
+						partitionEstimator.getInstances(), partitionEstimator.getClassifier(),
+						partitionEstimator.classIndexMap.inverse());
 
-						return new PartitionEstimatorResult() {
+				final Map<Object, FunctionEstimation> fixedEstimation = new HashMap<>();
 
-							public Partition getPartition() {
-								return partition;
-							}
+				for (Entry<Object, FunctionEstimation> entry : partitionEstimation.entrySet()) {
 
-							public double getFMeasure() {
-								return partitionEstimator.computeQualityMeasure();
-							}
+					Object classObj = entry.getKey();
+					GuardExpression guard = entry.getValue().getExpression();
 
-							public Map<Object, FunctionEstimation> getPartitionEstimation() {
-								return fixedEstimation;
-							}
+					if (classObj instanceof CombinedClass) {
 
-							public AbstractClassifier getTree() {
-								return partitionEstimator.getClassifier();
-							}
+						CombinedClass combinedClass = (CombinedClass) classObj;
+						Iterator<Object> iterator = combinedClass.iterator();
+						Object class1 = iterator.next();
+						Object class2 = iterator.next();
 
-						};
+						fixedEstimation.put(class1,
+								FunctionEstimation.Factory.create(guard, updatedFScores.get(class1)));
+						fixedEstimation.put(class2,
+								FunctionEstimation.Factory.create(guard, updatedFScores.get(class2)));
+					} else {
+						fixedEstimation.put(classObj,
+								FunctionEstimation.Factory.create(guard, updatedFScores.get(classObj)));
 					}
 
-				}));
+				}
 
-			}
+				return new PartitionEstimatorResult() {
 
-			for (Future<PartitionEstimatorResult> partitionEstimatorResultFuture : partitionedEstimators) {
+					public Partition getPartition() {
+						return partition;
+					}
 
-				PartitionEstimatorResult partitionEstimatorResult = partitionEstimatorResultFuture.get();
+					public double getFMeasure() {
+						return partitionEstimator.computeQualityMeasure();
+					}
 
-				Partition partition = partitionEstimatorResult.getPartition();
-				double newFScore = partitionEstimatorResult.getFMeasure();
-				J48 partitionClassifier = (J48) partitionEstimatorResult.getTree();
-				Map<Object, FunctionEstimation> partitionEstimation = partitionEstimatorResult
-						.getPartitionEstimation();
+					public Map<Object, FunctionEstimation> getPartitionEstimation() {
+						return fixedEstimation;
+					}
 
-				if (!mixEstimations) {
+					public AbstractClassifier getTree() {
+						return partitionEstimator.getClassifier();
+					}
 
-					//TODO this calculates wrong f-scores for the guards
+				};
+			}
 
-					if (newFScore > currentFScore && partitionClassifier.measureNumLeaves() > 1) {
+		};
+	}
 
-						System.out.println(String.format(
-								"Improving f-score at decision point %s from %s to %s, using partition %s",
-								decisionPointName, currentFScore, newFScore, partition));
+	private double applyPartitionResult(PartitionEstimatorResult partitionEstimatorResult, double currentFScore) {
+		Partition partition = partitionEstimatorResult.getPartition();
+		double newFScore = partitionEstimatorResult.getFMeasure();
+		AdditionalMeasureProducer partitionClassifier = (AdditionalMeasureProducer) partitionEstimatorResult.getTree();
+		Map<Object, FunctionEstimation> partitionEstimation = partitionEstimatorResult.getPartitionEstimation();
 
-						currentFScore = newFScore;
-						estimation.clear();
+		if (!mixEstimations) {
 
-						for (Entry<Object, FunctionEstimation> entry : partitionEstimation.entrySet()) {
-							Object classObj = entry.getKey();
-							estimation.put(classObj, entry.getValue());
-						}
+			//TODO this calculates wrong f-scores for the guards
 
-					}
+			if (newFScore > currentFScore && partitionClassifier.getMeasure("measureNumLeaves") > 1) {
 
-				} else {
+				System.out.println(String.format(
+						"Improving f-score at decision point %s from %s to %s, using partition %s",
+						decisionPointName, currentFScore, newFScore, partition));
 
-					for (Entry<Object, FunctionEstimation> newEstimation : partitionEstimation.entrySet()) {
+				currentFScore = newFScore;
+				estimation.clear();
 
-						Object classObj = newEstimation.getKey();
-						FunctionEstimation oldEstimation = estimation.get(classObj);
-						boolean updated = updateIfBetter(oldEstimation, newEstimation.getValue(), classObj);
-						if (updated) {
-							logImprovement(partition, oldEstimation, newEstimation.getValue(), classObj);
-							usedClassifiers.put(classObj, partitionClassifier);
-						}
+				for (Entry<Object, FunctionEstimation> entry : partitionEstimation.entrySet()) {
+					Object classObj = entry.getKey();
+					estimation.put(classObj, entry.getValue());
+				}
 
-					}
+			}
+
+		} else {
 
+			for (Entry<Object, FunctionEstimation> newEstimation : partitionEstimation.entrySet()) {
+
+				Object classObj = newEstimation.getKey();
+				FunctionEstimation oldEstimation = estimation.get(classObj);
+				boolean updated = updateIfBetter(oldEstimation, newEstimation.getValue(), classObj);
+				if (updated) {
+					logImprovement(partition, oldEstimation, newEstimation.getValue(), classObj);
+					usedClassifiers.put(classObj, partitionEstimatorResult.getTree());
 				}
 
 			}
 
-			System.out.println(String.format("Checked %s partitions", partitionView.numPartitionsGenerated()));
-
 		}
-		return estimation;
+
+		return currentFScore;
 	}
 
 	private Map<Object, Double> reEvaluateClasses(Instances normalInstances, Instances pairWiseInstances,
@@ -444,7 +504,7 @@ public class OverlappingEstimatorPairwiseDecisionTrees extends AbstractFunctionE
 
 	}
 
-	private static double calculateFScore(int tp, int fp, int fn) {
+	private static double calculateFScore(double tp, double fp, double fn) {
 		double precision;
 		double recall;
 		
@@ -556,7 +616,75 @@ public class OverlappingEstimatorPairwiseDecisionTrees extends AbstractFunctionE
 	public void setNumFolds(int numFoldErrorPruning) {
 		normalEstimator.setNumFolds(numFoldErrorPruning);
 	}
+
+	public void setTreeBackend(TreeBackend treeBackend) {
+		normalEstimator.setTreeBackend(treeBackend);
+	}
+
+	public void setHistogramBins(int numBins) {
+		normalEstimator.setHistogramBins(numBins);
+	}
+
+	public void setExecutor(Executor executor) {
+		normalEstimator.setExecutor(executor);
+	}
 	
+	/**
+	 * @return the maximum number of pairs of classes that are combined, 0 for
+	 *         no limit
+	 */
+	public int getMaxPartitions() {
+		return maxPartitions;
+	}
+
+	/**
+	 * @param maxPartitions
+	 *            the maximum number of pairs of classes that are combined, in
+	 *            the order of their confusion by the normal tree, 0 for no
+	 *            limit
+	 */
+	public void setMaxPartitions(int maxPartitions) {
+		this.maxPartitions = maxPartitions;
+	}
+
+	/**
+	 * @return the weight of instances that the normal tree needs to confuse
+	 *         between two classes at least to consider combining them
+	 */
+	public double getMinConfusion() {
+		return minConfusion;
+	}
+
+	/**
+	 * @param minConfusion
+	 *            pairs of classes whose instances are confused by the normal
+	 *            tree with less than this weight are not combined, 0 (default)
+	 *            to combine all pairs
+	 */
+	public void setMinConfusion(double minConfusion) {
+		this.minConfusion = minConfusion;
+	}
+
+	/**
+	 * @return whether candidate partitions that are unlikely to improve the
+	 *         estimation are skipped
+	 */
+	public boolean isPruneCandidates() {
+		return pruneCandidates;
+	}
+
+	/**
+	 * @param pruneCandidates
+	 *            skip candidate partitions that would not improve the
+	 *            f-score of the combined classes if the tree of the partition
+	 *            only resolved their mutual confusion. This is an
+	 *            approximation that may miss improvements, by default all
+	 *            candidates are evaluated.
+	 */
+	public void setPruneCandidates(boolean pruneCandidates) {
+		this.pruneCandidates = pruneCandidates;
+	}
+
 	public Object classifyInstance(Map<String, Object> attributes) throws Exception {
 		throw new UnsupportedOperationException();
 	}
@@ -5,6 +5,7 @@ import java.util.Random;
 import java.util.Set;
 
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.weka.ParallelCrossValidation;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Evaluation;
@@ -24,11 +25,11 @@ public class RandomTreeFunctionEstimator extends DecisionTreeFunctionEstimator {
 		tree.setMinNum(minNumInstancePerLeaf);
 		tree.setNumFolds(numFoldErrorPruning);
 
+		mergeBufferedInstances();
 		if (crossValidate && instances.size() > (numFoldErrorPruning + 1)) {
 			// k-fold cross validation 
-			evaluation = new Evaluation(instances);
-			evaluation.crossValidateModel(tree, instances, numFoldCrossValidation, new Random());
-			tree.buildClassifier(instances);
+			evaluation = ParallelCrossValidation.crossValidateAndBuild(tree, instances, numFoldCrossValidation,
+					new Random(), executor);
 		} else {
 			tree.buildClassifier(instances);
 			evaluation = new Evaluation(instances);
@@ -9,8 +9,10 @@ import java.util.Random;
 import java.util.Set;
 
 import org.processmining.datadiscovery.estimators.AbstractDecisionTreeFunctionEstimator;
+import org.processmining.datadiscovery.estimators.AttributeVector;
 import org.processmining.datadiscovery.estimators.FunctionEstimation;
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.weka.ParallelCrossValidation;
 import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter;
 
 import com.google.common.base.Function;
@@ -77,8 +79,7 @@ public class RepTreeEstimator extends AbstractDecisionTreeFunctionEstimator {
 		tree = createClassifier(option, saveData);
 
 		// Build guard expressions using the information from the tree
-		WekaTreeClassificationAdapter wekaTreeAdapter = new WekaTreeClassificationAdapter((REPTree) tree, instances,
-				variableType);
+		WekaTreeClassificationAdapter wekaTreeAdapter = getTreeClassificationAdapter();
 		Map<Object, FunctionEstimation> expressions = buildExpressionsFromLeafs(wekaTreeAdapter.traverseLeafNodes(),
 				new Function<String, Object>() {
 
@@ -117,10 +118,10 @@ public class RepTreeEstimator extends AbstractDecisionTreeFunctionEstimator {
 		tree.setMinNum(minNumInstancePerLeaf);
 		tree.setNumFolds(numFoldErrorPruning);
 
+		mergeBufferedInstances();
 		if (crossValidate) {
-			evaluation = new Evaluation(instances);
-			evaluation.crossValidateModel(tree, instances, numFoldCrossValidation, new Random(1));
-			tree.buildClassifier(instances);
+			evaluation = ParallelCrossValidation.crossValidateAndBuild(tree, instances, numFoldCrossValidation,
+					new Random(1), executor);
 		} else {
 			tree.buildClassifier(instances);
 			evaluation = new Evaluation(instances);
@@ -132,9 +133,16 @@ public class RepTreeEstimator extends AbstractDecisionTreeFunctionEstimator {
 		return tree;
 	}
 
-	public synchronized void addInstance(Map<String, Object> variableAssignment, Object outputValue, float weight) {
+	public void addInstance(Map<String, Object> variableAssignment, Object outputValue, float weight) {
 		// Create an instance based on the variable value assignment
-		Instance instance = createInstance(variableAssignment);
+		addInstance(createInstance(variableAssignment), outputValue, weight);
+	}
+
+	public void addInstance(AttributeVector attributes, Object outputValue, float weight) {
+		addInstance(createInstance(attributes), outputValue, weight);
+	}
+
+	private void addInstance(Instance instance, Object outputValue, float weight) {
 		// Set the weight to 1 (default, not doing weighted analysis)
 		instance.setWeight(weight);
 
@@ -148,7 +156,7 @@ public class RepTreeEstimator extends AbstractDecisionTreeFunctionEstimator {
 			instance.setValue(instances.classAttribute(), outputValue.toString());
 		else
 			instance.setValue(instances.classAttribute(), ((Number) outputValue).doubleValue());
-		instances.add(instance);
+		bufferInstance(instance);
 	}
 
 	private boolean isOutputLiteral() {
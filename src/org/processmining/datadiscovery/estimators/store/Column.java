@@ -0,0 +1,218 @@
+package org.processmining.datadiscovery.estimators.store;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.processmining.datadiscovery.estimators.Type;
+
+import weka.core.Attribute;
+import weka.core.Utils;
+
+/**
+ * Growable primitive column of a {@link ColumnarInstanceStore}. Values are
+ * written and read in the Weka encoding (NaN for missing values, nominal values
+ * as index), but stored in the most compact primitive representation of their
+ * {@link Type}.
+ *
+ * @author F. Mannhardt
+ *
+ */
+abstract class Column {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Creates the column for a Weka attribute.
+	 *
+	 * @param attribute
+	 * @param type
+	 *            type of the attribute or NULL if unknown (e.g., class
+	 *            attribute)
+	 * @return an empty column
+	 */
+	static Column create(Attribute attribute, Type type) {
+		if (type == Type.BOOLEAN) {
+			return new BooleanColumn();
+		} else if (attribute.isNominal()) {
+			return new NominalColumn();
+		} else if (type == Type.TIMESTAMP || attribute.isDate()) {
+			return new LongColumn();
+		} else {
+			// DISCRETE is kept as double too, a log may mix discrete and continuous values
+			return new DoubleColumn();
+		}
+	}
+
+	private BitSet missing = null;
+	protected int size = 0;
+
+	final void write(double value) {
+		if (Utils.isMissingValue(value)) {
+			if (missing == null) {
+				missing = new BitSet();
+			}
+			missing.set(size);
+			ensureCapacity(size + 1);
+			size++;
+		} else {
+			ensureCapacity(size + 1);
+			set(size++, value);
+		}
+	}
+
+	/**
+	 * Writes the same value to the next rows.
+	 *
+	 * @param value
+	 * @param count
+	 *            number of rows
+	 */
+	final void write(double value, int count) {
+		ensureCapacity(size + count);
+		if (Utils.isMissingValue(value)) {
+			if (missing == null) {
+				missing = new BitSet();
+			}
+			missing.set(size, size + count);
+			size += count;
+		} else {
+			for (int i = 0; i < count; i++) {
+				set(size++, value);
+			}
+		}
+	}
+
+	final double read(int row) {
+		if (missing != null && missing.get(row)) {
+			return Utils.missingValue();
+		}
+		return get(row);
+	}
+
+	final boolean isMissing(int row) {
+		return missing != null && missing.get(row);
+	}
+
+	final int size() {
+		return size;
+	}
+
+	void clear() {
+		size = 0;
+		missing = null;
+	}
+
+	static int grow(int capacity, int minCapacity) {
+		return Math.max(minCapacity, capacity == 0 ? INITIAL_CAPACITY : capacity + (capacity >> 1));
+	}
+
+	abstract void ensureCapacity(int minCapacity);
+
+	abstract void set(int row, double value);
+
+	abstract double get(int row);
+
+	static final class DoubleColumn extends Column {
+
+		private double[] values = new double[0];
+
+		void ensureCapacity(int minCapacity) {
+			if (minCapacity > values.length) {
+				values = Arrays.copyOf(values, grow(values.length, minCapacity));
+			}
+		}
+
+		void set(int row, double value) {
+			values[row] = value;
+		}
+
+		double get(int row) {
+			return values[row];
+		}
+
+		void clear() {
+			super.clear();
+			values = new double[0];
+		}
+
+	}
+
+	static final class LongColumn extends Column {
+
+		private long[] values = new long[0];
+
+		void ensureCapacity(int minCapacity) {
+			if (minCapacity > values.length) {
+				values = Arrays.copyOf(values, grow(values.length, minCapacity));
+			}
+		}
+
+		void set(int row, double value) {
+			values[row] = (long) value;
+		}
+
+		double get(int row) {
+			return values[row];
+		}
+
+		void clear() {
+			super.clear();
+			values = new long[0];
+		}
+
+	}
+
+	/**
+	 * Dictionary codes of a literal or class attribute.
+	 */
+	static final class NominalColumn extends Column {
+
+		private int[] codes = new int[0];
+
+		void ensureCapacity(int minCapacity) {
+			if (minCapacity > codes.length) {
+				codes = Arrays.copyOf(codes, grow(codes.length, minCapacity));
+			}
+		}
+
+		void set(int row, double value) {
+			codes[row] = (int) value;
+		}
+
+		double get(int row) {
+			return codes[row];
+		}
+
+		void clear() {
+			super.clear();
+			codes = new int[0];
+		}
+
+	}
+
+	/**
+	 * Boolean attribute encoded as in Weka: 0 is TRUE, 1 is FALSE.
+	 */
+	static final class BooleanColumn extends Column {
+
+		private final BitSet falseValues = new BitSet();
+
+		void ensureCapacity(int minCapacity) {
+		}
+
+		void set(int row, double value) {
+			falseValues.set(row, value != 0);
+		}
+
+		double get(int row) {
+			return falseValues.get(row) ? 1 : 0;
+		}
+
+		void clear() {
+			super.clear();
+			falseValues.clear();
+		}
+
+	}
+
+}
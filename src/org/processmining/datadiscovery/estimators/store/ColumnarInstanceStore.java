@@ -0,0 +1,217 @@
+package org.processmining.datadiscovery.estimators.store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.weka.RelabelledInstance;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Stores instances column-wise in primitive arrays instead of one
+ * {@link Instance} object per row. Each attribute is kept in a column
+ * specialised to its {@link Type}: doubles for numbers, longs for timestamps,
+ * dictionary codes for literals and the class, bits for booleans. Missing
+ * values are tracked in a bitmap per column, weights in an extra column.
+ * <p>
+ * Rows are added in the Weka encoding (see {@link Instance#toDoubleArray()})
+ * and only converted to Weka {@link Instances} on demand. Not thread-safe.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class ColumnarInstanceStore {
+
+	/**
+	 * Receives the rows of a store, see {@link ColumnarInstanceStore#forEachRow(RowVisitor)}.
+	 */
+	public interface RowVisitor {
+
+		/**
+		 * @param values
+		 *            a new array with the values of the row in the Weka
+		 *            encoding
+		 * @param weight
+		 */
+		void visit(double[] values, double weight);
+
+	}
+
+	private final Column[] columns;
+	private float[] weights = new float[0];
+	private int size = 0;
+
+	/**
+	 * @param attributes
+	 *            Weka attributes in the order of the rows
+	 * @param attributeType
+	 *            types of the attributes, attributes without type are stored
+	 *            based on their Weka type
+	 */
+	public ColumnarInstanceStore(List<Attribute> attributes, Map<String, Type> attributeType) {
+		this.columns = new Column[attributes.size()];
+		for (int i = 0; i < columns.length; i++) {
+			Attribute attribute = attributes.get(i);
+			columns[i] = Column.create(attribute, attributeType.get(attribute.name()));
+		}
+	}
+
+	/**
+	 * Adds a row.
+	 *
+	 * @param values
+	 *            one value per attribute, NaN for missing values
+	 * @param weight
+	 */
+	public void add(double[] values, double weight) {
+		if (values.length != columns.length) {
+			throw new IllegalArgumentException(
+					"Expected " + columns.length + " values, but got " + values.length + " values!");
+		}
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].write(values[i]);
+		}
+		if (size == weights.length) {
+			weights = Arrays.copyOf(weights, Column.grow(weights.length, size + 1));
+		}
+		weights[size++] = (float) weight;
+	}
+
+	/**
+	 * Adds the same row several times, growing the columns only once.
+	 *
+	 * @param values
+	 *            one value per attribute, NaN for missing values
+	 * @param weight
+	 *            of each copy
+	 * @param count
+	 *            number of copies
+	 */
+	public void add(double[] values, double weight, int count) {
+		if (values.length != columns.length) {
+			throw new IllegalArgumentException(
+					"Expected " + columns.length + " values, but got " + values.length + " values!");
+		}
+		for (int i = 0; i < columns.length; i++) {
+			columns[i].write(values[i], count);
+		}
+		if (size + count > weights.length) {
+			weights = Arrays.copyOf(weights, Column.grow(weights.length, size + count));
+		}
+		Arrays.fill(weights, size, size + count, (float) weight);
+		size += count;
+	}
+
+	/**
+	 * Adds the values and weight of a Weka instance.
+	 *
+	 * @param instance
+	 */
+	public void add(Instance instance) {
+		add(instance.toDoubleArray(), instance.weight());
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int numAttributes() {
+		return columns.length;
+	}
+
+	/**
+	 * @param row
+	 * @param attributeIndex
+	 * @return the value in the Weka encoding, NaN if missing
+	 */
+	public double value(int row, int attributeIndex) {
+		return columns[attributeIndex].read(row);
+	}
+
+	public boolean isMissing(int row, int attributeIndex) {
+		return columns[attributeIndex].isMissing(row);
+	}
+
+	public double weight(int row) {
+		return weights[row];
+	}
+
+	/**
+	 * @return the sum of the weights of all rows
+	 */
+	public double sumOfWeights() {
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += weights[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @param row
+	 * @return a new array with the values of the row in the Weka encoding
+	 */
+	public double[] row(int row) {
+		double[] values = new double[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			values[i] = columns[i].read(row);
+		}
+		return values;
+	}
+
+	/**
+	 * @param row
+	 * @return a new Weka instance of the row
+	 */
+	public Instance instance(int row) {
+		return new DenseInstance(weights[row], row(row));
+	}
+
+	/**
+	 * Passes all rows to the visitor in the order they were added.
+	 *
+	 * @param visitor
+	 */
+	public void forEachRow(RowVisitor visitor) {
+		for (int row = 0; row < size; row++) {
+			visitor.visit(row(row), weights[row]);
+		}
+	}
+
+	/**
+	 * Adds all rows to the Weka instances, which need to have the same
+	 * attributes. If a class is set, the rows are added as
+	 * {@link RelabelledInstance} so that relabelled views and the copies made
+	 * by Weka can share their values.
+	 *
+	 * @param instances
+	 */
+	public void addTo(Instances instances) {
+		int classIndex = instances.classIndex();
+		for (int row = 0; row < size; row++) {
+			if (classIndex < 0) {
+				instances.add(instance(row));
+			} else {
+				double[] values = row(row);
+				instances.add(new RelabelledInstance(weights[row], values, classIndex, values[classIndex]));
+			}
+		}
+	}
+
+	/**
+	 * Removes all rows and releases their memory.
+	 */
+	public void clear() {
+		for (Column column : columns) {
+			column.clear();
+		}
+		weights = new float[0];
+		size = 0;
+	}
+
+}
@@ -0,0 +1,600 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.processmining.datadiscovery.estimators.util.ParallelTasks;
+
+import weka.classifiers.trees.j48.Stats;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Induces a C4.5 decision tree following the algorithm of Weka's J48 with
+ * default settings: gain ratio among the splits with at least average
+ * information gain, MDL correction for numeric splits, fractional instances
+ * for missing values, collapsing, and error-based pruning with subtree
+ * raising.
+ * <p>
+ * Subclasses decide how candidate thresholds of numeric attributes are found,
+ * based on statistics of type S that each node passes on to its children.
+ * Candidate splits of different attributes, as well as the subtrees of large
+ * nodes, are computed in parallel.
+ *
+ * @author F. Mannhardt
+ *
+ * @param <S>
+ *            statistics of the numeric attributes at a node
+ */
+abstract class AbstractC45TreeInducer<S> {
+
+	// Smaller nodes are not worth the overhead of parallel tasks
+	private static final int PARALLEL_THRESHOLD = 2048;
+
+	protected final int minNumObj;
+	private final float confidenceFactor;
+	private final boolean binarySplits;
+	private final boolean unpruned;
+
+	// Number of all instances including those without class as in J48
+	private final int numAllInstances;
+	protected final int numAttributes;
+	protected final int classIndex;
+	protected final int numClasses;
+	protected final boolean[] nominal;
+	protected final int[] numValues;
+
+	// Attribute-major values, NaN for missing values
+	protected final double[][] values;
+	protected final int[] classes;
+	protected final double[] weights;
+
+	AbstractC45TreeInducer(Instances data, int minNumObj, float confidenceFactor, boolean binarySplits,
+			boolean unpruned) {
+		this.minNumObj = minNumObj;
+		this.confidenceFactor = confidenceFactor;
+		this.binarySplits = binarySplits;
+		this.unpruned = unpruned;
+		this.numAllInstances = data.numInstances();
+		this.numAttributes = data.numAttributes();
+		this.classIndex = data.classIndex();
+		this.numClasses = data.numClasses();
+		this.nominal = new boolean[numAttributes];
+		this.numValues = new int[numAttributes];
+
+		int numRows = 0;
+		for (Instance instance : data) {
+			if (!instance.classIsMissing()) {
+				numRows++;
+			}
+		}
+		this.values = new double[numAttributes][];
+		this.classes = new int[numRows];
+		this.weights = new double[numRows];
+		for (int a = 0; a < numAttributes; a++) {
+			if (a != classIndex) {
+				values[a] = new double[numRows];
+			}
+		}
+		int row = 0;
+		for (Instance instance : data) {
+			if (!instance.classIsMissing()) {
+				for (int a = 0; a < numAttributes; a++) {
+					if (a != classIndex) {
+						values[a][row] = instance.value(a);
+					}
+				}
+				classes[row] = (int) instance.classValue();
+				weights[row] = instance.weight();
+				row++;
+			}
+		}
+
+		for (int a = 0; a < numAttributes; a++) {
+			Attribute attribute = data.attribute(a);
+			nominal[a] = attribute.isNominal();
+			numValues[a] = attribute.numValues();
+		}
+	}
+
+	/**
+	 * Builds the tree.
+	 *
+	 * @param executor
+	 *            used to evaluate splits and build subtrees in parallel, the
+	 *            calling thread takes part in the work (see
+	 *            {@link ParallelTasks}), NULL to build the tree on the calling
+	 *            thread only
+	 * @return the root of the tree
+	 */
+	C45Node induce(Executor executor) {
+		C45Node root = createRoot();
+		grow(root, rootStatistics(root), executor);
+
+		collapse(root);
+		if (!unpruned) {
+			prune(root);
+		}
+		cleanup(root);
+		return root;
+	}
+
+	/**
+	 * @return the root node with all training instances and no distribution
+	 */
+	C45Node createRoot() {
+		int numRows = classes.length;
+		C45Node root = new C45Node();
+		root.rows = new int[numRows];
+		for (int i = 0; i < numRows; i++) {
+			root.rows[i] = i;
+		}
+		root.rowWeights = Arrays.copyOf(weights, numRows);
+		return root;
+	}
+
+	private final class GrowTask implements Callable<Void> {
+
+		private final C45Node node;
+		private final S statistics;
+		private final Executor executor;
+
+		GrowTask(C45Node node, S statistics, Executor executor) {
+			this.node = node;
+			this.statistics = statistics;
+			this.executor = executor;
+		}
+
+		public Void call() {
+			grow(node, statistics, executor);
+			return null;
+		}
+
+	}
+
+	private final class SplitTask implements Callable<C45Split> {
+
+		private final C45Node node;
+		private final int attribute;
+		private final S statistics;
+
+		SplitTask(C45Node node, int attribute, S statistics) {
+			this.node = node;
+			this.attribute = attribute;
+			this.statistics = statistics;
+		}
+
+		public C45Split call() {
+			return evaluateSplit(node, attribute, statistics);
+		}
+
+	}
+
+	private static <T> List<T> invokeAll(Executor executor, List<? extends Callable<T>> tasks) {
+		try {
+			return ParallelTasks.invokeAll(executor, tasks);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void grow(C45Node node, S statistics, Executor executor) {
+		node.setDistribution(distribution(node.rows, node.rowWeights));
+		boolean parallel = executor != null && node.rows.length >= PARALLEL_THRESHOLD;
+		C45Split split = selectSplit(node, statistics, parallel ? executor : null);
+		if (split == null) {
+			return;
+		}
+		node.split = split;
+		int numBags = split.getNumBags();
+		int[][] childPositions = new int[numBags][];
+		node.children = partition(split, node.rows, node.rowWeights, childPositions);
+
+		List<S> childStatistics = childStatistics(node, statistics, childPositions);
+		List<GrowTask> subtrees = new ArrayList<>(numBags);
+		for (int bag = 0; bag < numBags; bag++) {
+			subtrees.add(new GrowTask(node.children[bag], childStatistics.get(bag), executor));
+		}
+		if (parallel) {
+			invokeAll(executor, subtrees);
+		} else {
+			for (GrowTask subtree : subtrees) {
+				subtree.call();
+			}
+		}
+	}
+
+	/**
+	 * @param node
+	 * @param statistics
+	 * @param executor
+	 *            (may be NULL) to evaluate the attributes in parallel
+	 * @return the best split as chosen by J48 or NULL
+	 */
+	private C45Split selectSplit(C45Node node, S statistics, Executor executor) {
+		double total = node.weight;
+		if (Utils.sm(total, 2 * minNumObj) || Utils.eq(total, node.distribution[node.maxClass()])) {
+			return null;
+		}
+
+		C45Split[] splits = new C45Split[numAttributes];
+		if (executor != null) {
+			List<SplitTask> tasks = new ArrayList<>(numAttributes);
+			for (int a = 0; a < numAttributes; a++) {
+				if (a != classIndex) {
+					tasks.add(new SplitTask(node, a, statistics));
+				}
+			}
+			List<C45Split> results = invokeAll(executor, tasks);
+			for (int i = 0; i < tasks.size(); i++) {
+				splits[tasks.get(i).attribute] = results.get(i);
+			}
+		} else {
+			for (int a = 0; a < numAttributes; a++) {
+				if (a != classIndex) {
+					splits[a] = evaluateSplit(node, a, statistics);
+				}
+			}
+		}
+
+		// Nominal attributes with many values only count if all attributes have many values
+		double numInstances = numAllInstances;
+		boolean multiVal = true;
+		for (int a = 0; a < numAttributes; a++) {
+			if (a != classIndex && (!nominal[a] || Utils.sm(numValues[a], 0.3 * numInstances))) {
+				multiVal = false;
+			}
+		}
+
+		double averageInfoGain = 0;
+		int validModels = 0;
+		for (int a = 0; a < numAttributes; a++) {
+			if (splits[a] != null && (!nominal[a] || multiVal || Utils.sm(numValues[a], 0.3 * numInstances))) {
+				averageInfoGain += splits[a].getInfoGain();
+				validModels++;
+			}
+		}
+		if (validModels == 0) {
+			return null;
+		}
+		averageInfoGain = averageInfoGain / validModels;
+
+		C45Split bestSplit = null;
+		double minResult = 0;
+		for (int a = 0; a < numAttributes; a++) {
+			C45Split split = splits[a];
+			if (split != null && Utils.grOrEq(split.getInfoGain(), averageInfoGain - 1E-3)
+					&& Utils.gr(split.getGainRatio(), minResult)) {
+				bestSplit = split;
+				minResult = split.getGainRatio();
+			}
+		}
+		if (Utils.eq(minResult, 0)) {
+			return null;
+		}
+		if (bestSplit.getKind() == C45Split.Kind.NUMERIC) {
+			bestSplit.setSplitPoint(finalSplitPoint(bestSplit.getAttribute(), bestSplit.getSplitPoint()));
+		}
+		return bestSplit;
+	}
+
+	/**
+	 * @param root
+	 *            root node with all training instances
+	 * @return the statistics of the numeric attributes at the root
+	 */
+	protected abstract S rootStatistics(C45Node root);
+
+	/**
+	 * @param node
+	 *            node that has just been split into its children
+	 * @param statistics
+	 *            statistics of the node
+	 * @param childPositions
+	 *            position of each instance of the node in each child or -1
+	 * @return the statistics of each child
+	 */
+	protected abstract List<S> childStatistics(C45Node node, S statistics, int[][] childPositions);
+
+	/**
+	 * @param node
+	 * @param attribute
+	 *            numeric attribute
+	 * @param statistics
+	 *            statistics of the node
+	 * @return the best binary split of the attribute or NULL if there is no
+	 *         valid split
+	 */
+	protected abstract C45Split evaluateNumericSplit(C45Node node, int attribute, S statistics);
+
+	/**
+	 * @param attribute
+	 * @param splitPoint
+	 *            split point of the best split of the attribute at a node
+	 * @return the split point used in the tree
+	 */
+	protected abstract double finalSplitPoint(int attribute, double splitPoint);
+
+	private C45Split evaluateSplit(C45Node node, int attribute, S statistics) {
+		if (nominal[attribute]) {
+			return evaluateNominalSplit(node, attribute);
+		} else {
+			return evaluateNumericSplit(node, attribute, statistics);
+		}
+	}
+
+	/**
+	 * @return the minimal weight on both sides of a numeric split as in J48
+	 */
+	protected final double minSplit(double knownTotal) {
+		double minSplit = 0.1 * knownTotal / numClasses;
+		if (Utils.smOrEq(minSplit, minNumObj)) {
+			return minNumObj;
+		} else if (Utils.gr(minSplit, 25)) {
+			return 25;
+		}
+		return minSplit;
+	}
+
+	private C45Split evaluateNominalSplit(C45Node node, int attribute) {
+		int numBags = numValues[attribute];
+		double[][] perClassPerValue = new double[numBags][numClasses];
+		double[] perValue = new double[numBags];
+		double[] knownPerClass = new double[numClasses];
+		double knownTotal = 0;
+		double[] attributeValues = values[attribute];
+		for (int i = 0; i < node.rows.length; i++) {
+			int row = node.rows[i];
+			double value = attributeValues[row];
+			if (!Utils.isMissingValue(value)) {
+				double weight = node.rowWeights[i];
+				perClassPerValue[(int) value][classes[row]] += weight;
+				perValue[(int) value] += weight;
+				knownPerClass[classes[row]] += weight;
+				knownTotal += weight;
+			}
+		}
+		double total = node.weight;
+
+		if (!binarySplits) {
+			if (!C45Split.check(perValue, minNumObj)) {
+				return null;
+			}
+			double infoGain = C45Split.infoGain(C45Split.oldEnt(knownPerClass, knownTotal), perClassPerValue,
+					perValue, knownTotal, total);
+			double gainRatio = C45Split.gainRatio(infoGain, perValue, knownTotal, total);
+			return C45Split.multiway(attribute, numBags, infoGain, gainRatio);
+		}
+
+		double oldEnt = C45Split.oldEnt(knownPerClass, knownTotal);
+		C45Split bestSplit = null;
+		for (int v = 0; v < numBags; v++) {
+			double[][] perClassPerBag = new double[2][numClasses];
+			for (int c = 0; c < numClasses; c++) {
+				perClassPerBag[0][c] = perClassPerValue[v][c];
+				perClassPerBag[1][c] = knownPerClass[c] - perClassPerValue[v][c];
+			}
+			double[] perBag = new double[] { perValue[v], knownTotal - perValue[v] };
+			if (C45Split.check(perBag, minNumObj)) {
+				double infoGain = C45Split.infoGain(oldEnt, perClassPerBag, perBag, knownTotal, total);
+				double gainRatio = C45Split.gainRatio(infoGain, perBag, knownTotal, total);
+				if (bestSplit == null || Utils.gr(gainRatio, bestSplit.getGainRatio())) {
+					bestSplit = C45Split.binary(attribute, v, infoGain, gainRatio);
+				}
+			}
+		}
+		return bestSplit;
+	}
+
+	/**
+	 * Splits the instances into one child per branch. Instances with a
+	 * missing value are added to all branches with a weight proportional to
+	 * the known instances of the branch.
+	 *
+	 * @param split
+	 * @param rows
+	 * @param rowWeights
+	 * @param childPositions
+	 *            if not NULL, filled with the position of each instance in
+	 *            each child or -1
+	 * @return the children with their instances and class distribution
+	 */
+	C45Node[] partition(C45Split split, int[] rows, double[] rowWeights, int[][] childPositions) {
+		int numBags = split.getNumBags();
+		double[] attributeValues = values[split.getAttribute()];
+		int[] subsets = new int[rows.length];
+		int[] knownCount = new int[numBags];
+		double[] perBag = new double[numBags];
+		int numMissing = 0;
+		double knownTotal = 0;
+		for (int i = 0; i < rows.length; i++) {
+			int bag = split.whichSubset(attributeValues[rows[i]]);
+			subsets[i] = bag;
+			if (bag >= 0) {
+				knownCount[bag]++;
+				perBag[bag] += rowWeights[i];
+				knownTotal += rowWeights[i];
+			} else {
+				numMissing++;
+			}
+		}
+
+		C45Node[] children = new C45Node[numBags];
+		int[] fill = new int[numBags];
+		for (int bag = 0; bag < numBags; bag++) {
+			boolean receivesMissing = numMissing > 0 && Utils.gr(perBag[bag] / knownTotal, 0);
+			int size = knownCount[bag] + (receivesMissing ? numMissing : 0);
+			children[bag] = new C45Node();
+			children[bag].rows = new int[size];
+			children[bag].rowWeights = new double[size];
+			if (childPositions != null) {
+				childPositions[bag] = new int[rows.length];
+				Arrays.fill(childPositions[bag], -1);
+			}
+		}
+		for (int i = 0; i < rows.length; i++) {
+			int bag = subsets[i];
+			if (bag >= 0) {
+				add(children[bag], fill, bag, rows[i], rowWeights[i], childPositions, i);
+			} else {
+				for (int j = 0; j < numBags; j++) {
+					double fraction = perBag[j] / knownTotal;
+					if (Utils.gr(fraction, 0)) {
+						add(children[j], fill, j, rows[i], rowWeights[i] * fraction, childPositions, i);
+					}
+				}
+			}
+		}
+		for (C45Node child : children) {
+			child.setDistribution(distribution(child.rows, child.rowWeights));
+		}
+		return children;
+	}
+
+	private static void add(C45Node child, int[] fill, int bag, int row, double weight, int[][] childPositions,
+			int position) {
+		int childPosition = fill[bag]++;
+		child.rows[childPosition] = row;
+		child.rowWeights[childPosition] = weight;
+		if (childPositions != null) {
+			childPositions[bag][position] = childPosition;
+		}
+	}
+
+	protected final double[] distribution(int[] rows, double[] rowWeights) {
+		double[] distribution = new double[numClasses];
+		for (int i = 0; i < rows.length; i++) {
+			distribution[classes[rows[i]]] += rowWeights[i];
+		}
+		return distribution;
+	}
+
+	// Collapsing and pruning as in weka.classifiers.trees.j48.C45PruneableClassifierTree
+
+	private void collapse(C45Node node) {
+		if (!node.isLeaf()) {
+			double errorsOfSubtree = trainingErrors(node);
+			double errorsOfTree = node.numIncorrect();
+			if (errorsOfSubtree >= errorsOfTree - 1E-3) {
+				node.makeLeaf();
+			} else {
+				for (C45Node child : node.children) {
+					collapse(child);
+				}
+			}
+		}
+	}
+
+	private static double trainingErrors(C45Node node) {
+		if (node.isLeaf()) {
+			return node.numIncorrect();
+		}
+		double errors = 0;
+		for (C45Node child : node.children) {
+			errors += trainingErrors(child);
+		}
+		return errors;
+	}
+
+	private void prune(C45Node node) {
+		if (node.isLeaf()) {
+			return;
+		}
+		for (C45Node child : node.children) {
+			prune(child);
+		}
+		int indexOfLargestBranch = largestBranch(node);
+		double errorsLargestBranch = estimatedErrorsForBranch(node.children[indexOfLargestBranch], node.rows,
+				node.rowWeights);
+		double errorsLeaf = estimatedErrorsForDistribution(node.distribution, node.weight);
+		double errorsTree = estimatedErrors(node);
+
+		if (Utils.smOrEq(errorsLeaf, errorsTree + 0.1) && Utils.smOrEq(errorsLeaf, errorsLargestBranch + 0.1)) {
+			node.makeLeaf();
+			return;
+		}
+
+		// Subtree raising
+		if (Utils.smOrEq(errorsLargestBranch, errorsTree + 0.1)) {
+			C45Node largestBranch = node.children[indexOfLargestBranch];
+			node.split = largestBranch.split;
+			node.children = largestBranch.children;
+			newDistribution(node, node.rows, node.rowWeights);
+			prune(node);
+		}
+	}
+
+	private static int largestBranch(C45Node node) {
+		double max = 0;
+		int maxIndex = -1;
+		for (int i = 0; i < node.children.length; i++) {
+			if (Utils.grOrEq(node.children[i].weight, max)) {
+				max = node.children[i].weight;
+				maxIndex = i;
+			}
+		}
+		return maxIndex;
+	}
+
+	private double estimatedErrors(C45Node node) {
+		if (node.isLeaf()) {
+			return estimatedErrorsForDistribution(node.distribution, node.weight);
+		}
+		double errors = 0;
+		for (C45Node child : node.children) {
+			errors += estimatedErrors(child);
+		}
+		return errors;
+	}
+
+	private double estimatedErrorsForBranch(C45Node node, int[] rows, double[] rowWeights) {
+		if (node.isLeaf()) {
+			double[] distribution = distribution(rows, rowWeights);
+			return estimatedErrorsForDistribution(distribution, Utils.sum(distribution));
+		}
+		C45Node[] subsets = partition(node.split, rows, rowWeights, null);
+		double errors = 0;
+		for (int i = 0; i < subsets.length; i++) {
+			errors += estimatedErrorsForBranch(node.children[i], subsets[i].rows, subsets[i].rowWeights);
+		}
+		return errors;
+	}
+
+	private double estimatedErrorsForDistribution(double[] distribution, double total) {
+		if (Utils.eq(total, 0)) {
+			return 0;
+		}
+		double numIncorrect = total - distribution[C45Node.maxClass(distribution)];
+		return numIncorrect + Stats.addErrs(total, numIncorrect, confidenceFactor);
+	}
+
+	private void newDistribution(C45Node node, int[] rows, double[] rowWeights) {
+		node.rows = rows;
+		node.rowWeights = rowWeights;
+		node.setDistribution(distribution(rows, rowWeights));
+		if (!node.isLeaf()) {
+			C45Node[] subsets = partition(node.split, rows, rowWeights, null);
+			for (int i = 0; i < subsets.length; i++) {
+				newDistribution(node.children[i], subsets[i].rows, subsets[i].rowWeights);
+			}
+		}
+	}
+
+	private static void cleanup(C45Node node) {
+		node.rows = null;
+		node.rowWeights = null;
+		if (!node.isLeaf()) {
+			for (C45Node child : node.children) {
+				cleanup(child);
+			}
+		}
+	}
+
+}
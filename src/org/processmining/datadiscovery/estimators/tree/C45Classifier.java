@@ -0,0 +1,324 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.processmining.datadiscovery.estimators.weka.LeafDistributionProducer;
+import org.processmining.datadiscovery.estimators.weka.TreeModel;
+
+import weka.classifiers.AbstractClassifier;
+import weka.core.AdditionalMeasureProducer;
+import weka.core.Drawable;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * C4.5 decision tree classifier that can be used instead of Weka's J48. It
+ * builds the same kind of tree with the default J48 settings (see
+ * {@link C45TreeInducer}), but sorts each attribute only once and can
+ * evaluate splits and grow subtrees on the threads of an {@link Executor}
+ * shared with the caller (see {@link #setExecutor(Executor)}). The tree is rendered in the same textual and DOT
+ * format as J48, and its structure can be accessed directly as
+ * {@link TreeModel} by the
+ * {@link org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter}.
+ * <p>
+ * If a number of buckets is set, numeric attributes are split only at the
+ * boundaries of quantile buckets (see {@link HistogramTreeInducer}). The
+ * boundaries can be supplied from sketches built beforehand, otherwise they
+ * are computed from the training data. The resulting loss of precision of the
+ * thresholds is reported by {@link #getThresholdErrors()}.
+ * <p>
+ * Reduced error pruning and saving the instance data in the tree are not
+ * supported.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class C45Classifier extends AbstractClassifier
+		implements Drawable, AdditionalMeasureProducer, LeafDistributionProducer, TreeModel {
+
+	private static final long serialVersionUID = 6412083924713276551L;
+
+	private int minNumObj = 2;
+	private float confidenceFactor = 0.25f;
+	private boolean binarySplits = false;
+	private boolean unpruned = false;
+	private int numBins = 0;
+	private Map<String, double[]> cutPoints = Collections.emptyMap();
+	private transient Executor executor = null;
+
+	private C45Node root;
+	private Instances header;
+	private Map<String, Double> thresholdErrors = Collections.emptyMap();
+
+	public void buildClassifier(Instances data) throws Exception {
+		if (data.classIndex() < 0 || !data.classAttribute().isNominal()) {
+			throw new IllegalArgumentException("C4.5 requires a nominal class attribute!");
+		}
+		header = new Instances(data, 0);
+		if (numBins > 0) {
+			HistogramTreeInducer inducer = new HistogramTreeInducer(data, buildCutPoints(data), minNumObj,
+					confidenceFactor, binarySplits, unpruned);
+			root = inducer.induce(executor);
+			Map<String, Double> errors = new HashMap<>();
+			collectThresholdErrors(root, inducer, errors);
+			thresholdErrors = errors;
+		} else {
+			root = new C45TreeInducer(data, minNumObj, confidenceFactor, binarySplits, unpruned)
+					.induce(executor);
+			thresholdErrors = Collections.emptyMap();
+		}
+	}
+
+	private double[][] buildCutPoints(Instances data) {
+		double[][] attributeCutPoints = new double[data.numAttributes()][];
+		for (int a = 0; a < data.numAttributes(); a++) {
+			if (a != data.classIndex() && !data.attribute(a).isNominal()) {
+				double[] suppliedCutPoints = cutPoints.get(data.attribute(a).name());
+				if (suppliedCutPoints != null) {
+					attributeCutPoints[a] = suppliedCutPoints;
+				} else {
+					attributeCutPoints[a] = QuantileSketch.of(data, a).cutPoints(numBins);
+				}
+			}
+		}
+		return attributeCutPoints;
+	}
+
+	private void collectThresholdErrors(C45Node node, HistogramTreeInducer inducer, Map<String, Double> errors) {
+		if (node.isLeaf()) {
+			return;
+		}
+		C45Split split = node.split;
+		if (split.getKind() == C45Split.Kind.NUMERIC) {
+			String name = header.attribute(split.getAttribute()).name();
+			double error = inducer.thresholdError(split.getAttribute(), split.getSplitPoint());
+			Double previous = errors.get(name);
+			errors.put(name, previous == null ? error : Math.max(previous, error));
+		}
+		for (C45Node child : node.children) {
+			collectThresholdErrors(child, inducer, errors);
+		}
+	}
+
+	public double[] distributionForInstance(Instance instance) throws Exception {
+		double[] probs = new double[header.numClasses()];
+		root.addProbabilities(instance, 1, probs);
+		return probs;
+	}
+
+	public void setOptions(String[] options) throws Exception {
+		String confidenceString = Utils.getOption('C', options);
+		if (confidenceString.length() != 0) {
+			setConfidenceFactor(Float.parseFloat(confidenceString));
+		}
+		String minNumString = Utils.getOption('M', options);
+		if (minNumString.length() != 0) {
+			setMinNumObj(Integer.parseInt(minNumString));
+		}
+		String numBinsString = Utils.getOption('H', options);
+		if (numBinsString.length() != 0) {
+			setNumBins(Integer.parseInt(numBinsString));
+		}
+		setUnpruned(Utils.getFlag('U', options));
+		setBinarySplits(Utils.getFlag('B', options));
+		super.setOptions(options);
+	}
+
+	public String[] getOptions() {
+		List<String> options = new ArrayList<>();
+		if (unpruned) {
+			options.add("-U");
+		} else {
+			options.add("-C");
+			options.add(String.valueOf(confidenceFactor));
+		}
+		if (binarySplits) {
+			options.add("-B");
+		}
+		options.add("-M");
+		options.add(String.valueOf(minNumObj));
+		if (numBins > 0) {
+			options.add("-H");
+			options.add(String.valueOf(numBins));
+		}
+		Collections.addAll(options, super.getOptions());
+		return options.toArray(new String[options.size()]);
+	}
+
+	public List<double[]> getLeafDistributions() {
+		List<double[]> leafDistributions = new ArrayList<>();
+		root.addLeafDistributions(leafDistributions);
+		return leafDistributions;
+	}
+
+	public TreeNode getTreeRoot() {
+		return new C45TreeNode(root, null);
+	}
+
+	public int graphType() {
+		return Drawable.TREE;
+	}
+
+	public String graph() throws Exception {
+		StringBuilder text = new StringBuilder();
+		text.append("digraph J48Tree {\n");
+		if (root.isLeaf()) {
+			text.append("N0 [label=\"" + Utils.backQuoteChars(root.dumpLabel(null, header)) + "\" "
+					+ "shape=box style=filled ");
+			text.append("]\n");
+		} else {
+			text.append("N0 [label=\"" + Utils.backQuoteChars(root.split.leftSide(header)) + "\" ");
+			text.append("]\n");
+			root.graphTree(0, 1, header, text);
+		}
+		return text.toString() + "}\n";
+	}
+
+	public double measureNumLeaves() {
+		return root.numLeaves();
+	}
+
+	public double measureTreeSize() {
+		return root.numNodes();
+	}
+
+	/**
+	 * @return the largest possible distance of a threshold in the tree from
+	 *         the threshold exact C4.5 would have chosen, 0 without buckets
+	 */
+	public double measureMaxThresholdError() {
+		double maxError = 0;
+		for (Double error : thresholdErrors.values()) {
+			maxError = Math.max(maxError, error);
+		}
+		return maxError;
+	}
+
+	public Enumeration<String> enumerateMeasures() {
+		List<String> measures = new ArrayList<>();
+		measures.add("measureTreeSize");
+		measures.add("measureNumLeaves");
+		measures.add("measureMaxThresholdError");
+		return Collections.enumeration(measures);
+	}
+
+	public double getMeasure(String additionalMeasureName) {
+		if (additionalMeasureName.compareToIgnoreCase("measureNumLeaves") == 0) {
+			return measureNumLeaves();
+		} else if (additionalMeasureName.compareToIgnoreCase("measureTreeSize") == 0) {
+			return measureTreeSize();
+		} else if (additionalMeasureName.compareToIgnoreCase("measureMaxThresholdError") == 0) {
+			return measureMaxThresholdError();
+		} else {
+			throw new IllegalArgumentException(additionalMeasureName + " not supported (C4.5)");
+		}
+	}
+
+	public String toString() {
+		if (root == null) {
+			return "No classifier built";
+		}
+		StringBuilder text = new StringBuilder();
+		text.append(unpruned ? "C4.5 unpruned tree\n------------------\n" : "C4.5 pruned tree\n------------------\n");
+		if (root.isLeaf()) {
+			text.append(": ");
+			text.append(root.dumpLabel(null, header));
+		} else {
+			root.dumpTree(0, header, text);
+		}
+		text.append("\n\nNumber of Leaves  : \t" + root.numLeaves() + "\n");
+		text.append("\nSize of the tree : \t" + root.numNodes() + "\n");
+		if (!thresholdErrors.isEmpty()) {
+			text.append("\nMaximal threshold error (" + numBins + " buckets):\n");
+			for (Map.Entry<String, Double> entry : thresholdErrors.entrySet()) {
+				text.append(entry.getKey() + " : \t" + Utils.doubleToString(entry.getValue(), 6) + "\n");
+			}
+		}
+		return text.toString();
+	}
+
+	public int getMinNumObj() {
+		return minNumObj;
+	}
+
+	public void setMinNumObj(int minNumObj) {
+		this.minNumObj = minNumObj;
+	}
+
+	public float getConfidenceFactor() {
+		return confidenceFactor;
+	}
+
+	public void setConfidenceFactor(float confidenceFactor) {
+		this.confidenceFactor = confidenceFactor;
+	}
+
+	public boolean getBinarySplits() {
+		return binarySplits;
+	}
+
+	public void setBinarySplits(boolean binarySplits) {
+		this.binarySplits = binarySplits;
+	}
+
+	public boolean getUnpruned() {
+		return unpruned;
+	}
+
+	public void setUnpruned(boolean unpruned) {
+		this.unpruned = unpruned;
+	}
+
+	public int getNumBins() {
+		return numBins;
+	}
+
+	/**
+	 * @param numBins
+	 *            maximum number of quantile buckets per numeric attribute, 0
+	 *            to consider all values
+	 */
+	public void setNumBins(int numBins) {
+		this.numBins = numBins;
+	}
+
+	/**
+	 * @param cutPoints
+	 *            bucket boundaries by attribute name, attributes without
+	 *            boundaries are bucketed based on the training data
+	 */
+	public void setCutPoints(Map<String, double[]> cutPoints) {
+		this.cutPoints = cutPoints;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @param executor
+	 *            shared executor used to build the tree in parallel, the
+	 *            building thread takes part in the work, NULL to build the
+	 *            tree sequentially (default)
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @return for each numeric attribute used in the tree, the largest
+	 *         possible distance of its thresholds from those exact C4.5 would
+	 *         have chosen, empty without buckets
+	 */
+	public Map<String, Double> getThresholdErrors() {
+		return Collections.unmodifiableMap(thresholdErrors);
+	}
+
+}
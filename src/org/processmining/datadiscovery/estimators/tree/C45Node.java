@@ -0,0 +1,202 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.io.Serializable;
+import java.util.List;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Node of a tree built by the {@link C45TreeInducer}. Inner nodes carry a
+ * {@link C45Split} and one child per branch, every node carries the class
+ * distribution of its training instances. Instances with a missing value for
+ * the split attribute are passed down all branches, weighted by the fraction
+ * of training instances in each branch.
+ *
+ * @author F. Mannhardt
+ *
+ */
+final class C45Node implements Serializable {
+
+	private static final long serialVersionUID = -2848361227540396235L;
+
+	C45Split split;
+	C45Node[] children;
+	double[] distribution;
+	double weight;
+
+	// Training instances of the node, only kept while the tree is built
+	transient int[] rows;
+	transient double[] rowWeights;
+
+	boolean isLeaf() {
+		return split == null;
+	}
+
+	boolean isEmpty() {
+		return Utils.eq(weight, 0);
+	}
+
+	void makeLeaf() {
+		split = null;
+		children = null;
+	}
+
+	void setDistribution(double[] distribution) {
+		this.distribution = distribution;
+		this.weight = Utils.sum(distribution);
+	}
+
+	int maxClass() {
+		return maxClass(distribution);
+	}
+
+	double numIncorrect() {
+		return weight - distribution[maxClass()];
+	}
+
+	static int maxClass(double[] distribution) {
+		double maxCount = 0;
+		int maxIndex = 0;
+		for (int i = 0; i < distribution.length; i++) {
+			if (Utils.gr(distribution[i], maxCount)) {
+				maxCount = distribution[i];
+				maxIndex = i;
+			}
+		}
+		return maxIndex;
+	}
+
+	/**
+	 * Adds the weighted class probabilities of the instance to probs.
+	 *
+	 * @param instance
+	 * @param instanceWeight
+	 * @param probs
+	 */
+	void addProbabilities(Instance instance, double instanceWeight, double[] probs) {
+		if (isLeaf()) {
+			addOwnProbabilities(instanceWeight, probs);
+		} else {
+			int bag = split.whichSubset(instance.value(split.getAttribute()));
+			if (bag == -1) {
+				for (C45Node child : children) {
+					if (!child.isEmpty()) {
+						child.addProbabilities(instance, instanceWeight * child.weight / weight, probs);
+					}
+				}
+			} else if (children[bag].isEmpty()) {
+				addOwnProbabilities(instanceWeight, probs);
+			} else {
+				children[bag].addProbabilities(instance, instanceWeight, probs);
+			}
+		}
+	}
+
+	private void addOwnProbabilities(double instanceWeight, double[] probs) {
+		if (Utils.gr(weight, 0)) {
+			for (int i = 0; i < probs.length; i++) {
+				probs[i] += instanceWeight * distribution[i] / weight;
+			}
+		}
+	}
+
+	/**
+	 * @param parent
+	 *            parent of this node, used for empty nodes, or NULL for the
+	 *            root
+	 * @param header
+	 * @return the leaf label in the format of J48
+	 */
+	String dumpLabel(C45Node parent, Instances header) {
+		int classIndex = isEmpty() && parent != null ? parent.maxClass() : maxClass();
+		StringBuilder text = new StringBuilder();
+		text.append(header.classAttribute().value(classIndex));
+		text.append(" (").append(Utils.roundDouble(weight, 2));
+		if (!isEmpty() && Utils.gr(numIncorrect(), 0)) {
+			text.append("/").append(Utils.roundDouble(numIncorrect(), 2));
+		}
+		text.append(")");
+		return text.toString();
+	}
+
+	void addLeafDistributions(List<double[]> leafDistributions) {
+		if (isLeaf()) {
+			leafDistributions.add(distribution.clone());
+		} else {
+			for (C45Node child : children) {
+				child.addLeafDistributions(leafDistributions);
+			}
+		}
+	}
+
+	int numLeaves() {
+		if (isLeaf()) {
+			return 1;
+		}
+		int numLeaves = 0;
+		for (C45Node child : children) {
+			numLeaves += child.numLeaves();
+		}
+		return numLeaves;
+	}
+
+	int numNodes() {
+		if (isLeaf()) {
+			return 1;
+		}
+		int numNodes = 1;
+		for (C45Node child : children) {
+			numNodes += child.numNodes();
+		}
+		return numNodes;
+	}
+
+	void dumpTree(int depth, Instances header, StringBuilder text) {
+		for (int i = 0; i < children.length; i++) {
+			text.append("\n");
+			for (int j = 0; j < depth; j++) {
+				text.append("|   ");
+			}
+			text.append(split.leftSide(header));
+			text.append(split.rightSide(i, header));
+			if (children[i].isLeaf()) {
+				text.append(": ");
+				text.append(children[i].dumpLabel(this, header));
+			} else {
+				children[i].dumpTree(depth + 1, header, text);
+			}
+		}
+	}
+
+	/**
+	 * Appends the children in the DOT format of J48.
+	 *
+	 * @param id
+	 *            identifier of this node
+	 * @param nextId
+	 *            next free identifier
+	 * @param header
+	 * @param text
+	 * @return the next free identifier
+	 */
+	int graphTree(int id, int nextId, Instances header, StringBuilder text) {
+		for (int i = 0; i < children.length; i++) {
+			C45Node child = children[i];
+			int childId = nextId++;
+			text.append("N" + id + "->" + "N" + childId + " [label=\""
+					+ Utils.backQuoteChars(split.rightSide(i, header).trim()) + "\"]\n");
+			if (child.isLeaf()) {
+				text.append("N" + childId + " [label=\"" + Utils.backQuoteChars(child.dumpLabel(this, header)) + "\" "
+						+ "shape=box style=filled ]\n");
+			} else {
+				text.append("N" + childId + " [label=\"" + Utils.backQuoteChars(child.split.leftSide(header))
+						+ "\" ]\n");
+				nextId = child.graphTree(childId, nextId, header, text);
+			}
+		}
+		return nextId;
+	}
+
+}
@@ -0,0 +1,202 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.io.Serializable;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Split of a {@link C45Node} on a single attribute together with the C4.5
+ * split criteria. The entropy functions follow the (unnormalised) formulation
+ * used by J48, so that gain and gain ratio are the same as computed by Weka.
+ *
+ * @author F. Mannhardt
+ *
+ */
+final class C45Split implements Serializable {
+
+	private static final long serialVersionUID = 3270823187218713187L;
+
+	enum Kind {
+		/** One branch per nominal value */
+		MULTIWAY,
+		/** One nominal value against all others */
+		BINARY,
+		/** Numeric threshold */
+		NUMERIC
+	}
+
+	private static final double LOG2 = Math.log(2);
+
+	private final int attribute;
+	private final Kind kind;
+	private final int numBags;
+	private final int nominalValue;
+	private double splitPoint;
+
+	private final double infoGain;
+	private final double gainRatio;
+
+	private C45Split(int attribute, Kind kind, int numBags, int nominalValue, double splitPoint, double infoGain,
+			double gainRatio) {
+		this.attribute = attribute;
+		this.kind = kind;
+		this.numBags = numBags;
+		this.nominalValue = nominalValue;
+		this.splitPoint = splitPoint;
+		this.infoGain = infoGain;
+		this.gainRatio = gainRatio;
+	}
+
+	static C45Split multiway(int attribute, int numValues, double infoGain, double gainRatio) {
+		return new C45Split(attribute, Kind.MULTIWAY, numValues, -1, Double.NaN, infoGain, gainRatio);
+	}
+
+	static C45Split binary(int attribute, int nominalValue, double infoGain, double gainRatio) {
+		return new C45Split(attribute, Kind.BINARY, 2, nominalValue, Double.NaN, infoGain, gainRatio);
+	}
+
+	static C45Split numeric(int attribute, double splitPoint, double infoGain, double gainRatio) {
+		return new C45Split(attribute, Kind.NUMERIC, 2, -1, splitPoint, infoGain, gainRatio);
+	}
+
+	int getAttribute() {
+		return attribute;
+	}
+
+	Kind getKind() {
+		return kind;
+	}
+
+	int getNumBags() {
+		return numBags;
+	}
+
+	int getNominalValue() {
+		return nominalValue;
+	}
+
+	double getSplitPoint() {
+		return splitPoint;
+	}
+
+	void setSplitPoint(double splitPoint) {
+		this.splitPoint = splitPoint;
+	}
+
+	double getInfoGain() {
+		return infoGain;
+	}
+
+	double getGainRatio() {
+		return gainRatio;
+	}
+
+	/**
+	 * @param value
+	 *            value of the split attribute in the Weka encoding
+	 * @return the branch or -1 if the value is missing
+	 */
+	int whichSubset(double value) {
+		if (Utils.isMissingValue(value)) {
+			return -1;
+		}
+		switch (kind) {
+			case MULTIWAY :
+				return (int) value;
+			case BINARY :
+				return (int) value == nominalValue ? 0 : 1;
+			default :
+				return Utils.smOrEq(value, splitPoint) ? 0 : 1;
+		}
+	}
+
+	String leftSide(Instances header) {
+		return header.attribute(attribute).name();
+	}
+
+	String rightSide(int bag, Instances header) {
+		switch (kind) {
+			case MULTIWAY :
+				return " = " + header.attribute(attribute).value(bag);
+			case BINARY :
+				return (bag == 0 ? " = " : " != ") + header.attribute(attribute).value(nominalValue);
+			default :
+				return (bag == 0 ? " <= " : " > ") + Utils.doubleToString(splitPoint, 6);
+		}
+	}
+
+	// Split criteria as in weka.classifiers.trees.j48.EntropyBasedSplitCrit
+
+	static double lnFunc(double num) {
+		return num < 1e-6 ? 0 : num * Math.log(num);
+	}
+
+	static double oldEnt(double[] perClass, double total) {
+		double returnValue = 0;
+		for (double weight : perClass) {
+			returnValue += lnFunc(weight);
+		}
+		return (lnFunc(total) - returnValue) / LOG2;
+	}
+
+	static double newEnt(double[][] perClassPerBag, double[] perBag) {
+		double returnValue = 0;
+		for (int i = 0; i < perBag.length; i++) {
+			for (double weight : perClassPerBag[i]) {
+				returnValue -= lnFunc(weight);
+			}
+			returnValue += lnFunc(perBag[i]);
+		}
+		return returnValue / LOG2;
+	}
+
+	static double splitEnt(double[] perBag, double knownTotal, double total) {
+		if (!Utils.gr(knownTotal, 0)) {
+			return 0;
+		}
+		double returnValue = 0;
+		for (double weight : perBag) {
+			returnValue -= lnFunc(weight);
+		}
+		returnValue -= lnFunc(total - knownTotal);
+		returnValue += lnFunc(total);
+		return returnValue / LOG2;
+	}
+
+	/**
+	 * @return the information gain of the known instances, scaled by their
+	 *         fraction of all instances
+	 */
+	static double infoGain(double oldEnt, double[][] perClassPerBag, double[] perBag, double knownTotal,
+			double total) {
+		double numerator = oldEnt - newEnt(perClassPerBag, perBag);
+		if (Utils.eq(numerator, 0)) {
+			return 0;
+		}
+		double unknownRate = (total - knownTotal) / total;
+		return (1 - unknownRate) * numerator / knownTotal;
+	}
+
+	static double gainRatio(double infoGain, double[] perBag, double knownTotal, double total) {
+		double denumerator = splitEnt(perBag, knownTotal, total);
+		if (Utils.eq(denumerator, 0)) {
+			return 0;
+		}
+		return infoGain / (denumerator / total);
+	}
+
+	/**
+	 * @return whether at least two bags have the minimal weight
+	 */
+	static boolean check(double[] perBag, double minNoObj) {
+		int counter = 0;
+		for (double weight : perBag) {
+			if (Utils.grOrEq(weight, minNoObj)) {
+				counter++;
+			}
+		}
+		return counter > 1;
+	}
+
+}
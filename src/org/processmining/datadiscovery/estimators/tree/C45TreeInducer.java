@@ -0,0 +1,212 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Exact C4.5 tree inducer that evaluates every distinct value of a numeric
+ * attribute as threshold, like J48. Unlike J48, each numeric attribute is
+ * sorted only once. Nodes keep the positions of their instances in sorted
+ * order and pass them on to their children.
+ *
+ * @author F. Mannhardt
+ *
+ */
+final class C45TreeInducer extends AbstractC45TreeInducer<int[][]> {
+
+	// All known values of numeric attributes in ascending order
+	private final double[][] sortedValues;
+
+	C45TreeInducer(Instances data, int minNumObj, float confidenceFactor, boolean binarySplits, boolean unpruned) {
+		super(data, minNumObj, confidenceFactor, binarySplits, unpruned);
+		this.sortedValues = new double[numAttributes][];
+	}
+
+	protected int[][] rootStatistics(C45Node root) {
+		int[][] sorted = new int[numAttributes][];
+		for (int a = 0; a < numAttributes; a++) {
+			if (a != classIndex && !nominal[a]) {
+				sorted[a] = sortKnown(root.rows, values[a]);
+				sortedValues[a] = new double[sorted[a].length];
+				for (int i = 0; i < sorted[a].length; i++) {
+					sortedValues[a][i] = values[a][sorted[a][i]];
+				}
+			}
+		}
+		return sorted;
+	}
+
+	protected List<int[][]> childStatistics(C45Node node, int[][] sorted, int[][] childPositions) {
+		List<int[][]> childStatistics = new ArrayList<>(node.children.length);
+		for (int bag = 0; bag < node.children.length; bag++) {
+			int[][] childSorted = new int[numAttributes][];
+			for (int a = 0; a < numAttributes; a++) {
+				if (sorted[a] != null) {
+					childSorted[a] = filterSorted(sorted[a], childPositions[bag], node.children[bag].rows.length);
+				}
+			}
+			childStatistics.add(childSorted);
+		}
+		return childStatistics;
+	}
+
+	/**
+	 * @return the largest known value of the attribute that is not greater
+	 *         than the split point, as J48 uses actual values as split points
+	 */
+	protected double finalSplitPoint(int attribute, double splitPoint) {
+		double[] known = sortedValues[attribute];
+		int low = 0;
+		int high = known.length - 1;
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (Utils.smOrEq(known[mid], splitPoint)) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found >= 0 ? known[found] : splitPoint;
+	}
+
+	protected C45Split evaluateNumericSplit(C45Node node, int attribute, int[][] statistics) {
+		int[] sorted = statistics[attribute];
+		int numKnown = sorted.length;
+		double[] attributeValues = values[attribute];
+
+		double[][] perClassPerBag = new double[2][numClasses];
+		double[] perBag = new double[2];
+		for (int i = 0; i < numKnown; i++) {
+			int row = node.rows[sorted[i]];
+			double weight = node.rowWeights[sorted[i]];
+			perClassPerBag[1][classes[row]] += weight;
+			perBag[1] += weight;
+		}
+		double knownTotal = perBag[1];
+		double total = node.weight;
+
+		double minSplit = minSplit(knownTotal);
+		if (Utils.sm(numKnown, 2 * minSplit)) {
+			return null;
+		}
+
+		double defaultEnt = C45Split.oldEnt(perClassPerBag[1], knownTotal);
+		double bestInfoGain = 0;
+		int splitIndex = -1;
+		int numCandidates = 0;
+		for (int next = 1; next < numKnown; next++) {
+			int position = sorted[next - 1];
+			int row = node.rows[position];
+			double weight = node.rowWeights[position];
+			perClassPerBag[0][classes[row]] += weight;
+			perClassPerBag[1][classes[row]] -= weight;
+			perBag[0] += weight;
+			perBag[1] -= weight;
+			double lastValue = attributeValues[row];
+			double nextValue = attributeValues[node.rows[sorted[next]]];
+			if (lastValue + 1e-5 < nextValue) {
+				if (Utils.grOrEq(perBag[0], minSplit) && Utils.grOrEq(perBag[1], minSplit)) {
+					double infoGain = C45Split.infoGain(defaultEnt, perClassPerBag, perBag, knownTotal, total);
+					if (Utils.gr(infoGain, bestInfoGain)) {
+						bestInfoGain = infoGain;
+						splitIndex = next - 1;
+					}
+					numCandidates++;
+				}
+			}
+		}
+		if (numCandidates == 0 || splitIndex < 0) {
+			return null;
+		}
+
+		// MDL correction
+		bestInfoGain = bestInfoGain - (Utils.log2(numCandidates) / total);
+		if (Utils.smOrEq(bestInfoGain, 0)) {
+			return null;
+		}
+
+		double lowerValue = attributeValues[node.rows[sorted[splitIndex]]];
+		double upperValue = attributeValues[node.rows[sorted[splitIndex + 1]]];
+		double splitPoint = (upperValue + lowerValue) / 2;
+		if (splitPoint == upperValue) {
+			splitPoint = lowerValue;
+		}
+
+		double[] bestPerBag = new double[2];
+		for (int i = 0; i < numKnown; i++) {
+			bestPerBag[i <= splitIndex ? 0 : 1] += node.rowWeights[sorted[i]];
+		}
+		double gainRatio = C45Split.gainRatio(bestInfoGain, bestPerBag, knownTotal, total);
+		return C45Split.numeric(attribute, splitPoint, bestInfoGain, gainRatio);
+	}
+
+	private static int[] filterSorted(int[] sorted, int[] childPosition, int maxSize) {
+		int[] filtered = new int[Math.min(sorted.length, maxSize)];
+		int size = 0;
+		for (int position : sorted) {
+			int newPosition = childPosition[position];
+			if (newPosition >= 0) {
+				filtered[size++] = newPosition;
+			}
+		}
+		return size == filtered.length ? filtered : Arrays.copyOf(filtered, size);
+	}
+
+	/**
+	 * @return positions of the rows with a known value sorted by value
+	 */
+	private static int[] sortKnown(int[] rows, double[] attributeValues) {
+		int numKnown = 0;
+		for (int row : rows) {
+			if (!Utils.isMissingValue(attributeValues[row])) {
+				numKnown++;
+			}
+		}
+		int[] positions = new int[numKnown];
+		int size = 0;
+		for (int i = 0; i < rows.length; i++) {
+			if (!Utils.isMissingValue(attributeValues[rows[i]])) {
+				positions[size++] = i;
+			}
+		}
+		double[] keys = new double[numKnown];
+		for (int i = 0; i < numKnown; i++) {
+			keys[i] = attributeValues[rows[positions[i]]];
+		}
+		mergeSort(positions, keys, new int[numKnown], new double[numKnown], 0, numKnown);
+		return positions;
+	}
+
+	private static void mergeSort(int[] positions, double[] keys, int[] positionBuffer, double[] keyBuffer,
+			int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(positions, keys, positionBuffer, keyBuffer, from, mid);
+		mergeSort(positions, keys, positionBuffer, keyBuffer, mid, to);
+		if (keys[mid - 1] <= keys[mid]) {
+			return;
+		}
+		int left = from;
+		int right = mid;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < mid && keys[left] <= keys[right])) {
+				positionBuffer[i] = positions[left];
+				keyBuffer[i] = keys[left++];
+			} else {
+				positionBuffer[i] = positions[right];
+				keyBuffer[i] = keys[right++];
+			}
+		}
+		System.arraycopy(positionBuffer, from, positions, from, to - from);
+		System.arraycopy(keyBuffer, from, keys, from, to - from);
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.processmining.datadiscovery.estimators.weka.TreeModel;
+
+/**
+ * View of a {@link C45Node} as {@link TreeModel.TreeNode}. Leaves are labelled
+ * as in the output of {@link C45Classifier}, i.e., empty leaves predict the
+ * class of their parent.
+ *
+ * @author F. Mannhardt
+ *
+ */
+final class C45TreeNode implements TreeModel.TreeNode {
+
+	private final C45Node node;
+	private final C45Node parent;
+
+	C45TreeNode(C45Node node, C45Node parent) {
+		this.node = node;
+		this.parent = parent;
+	}
+
+	public boolean isLeaf() {
+		return node.isLeaf();
+	}
+
+	public List<? extends TreeModel.TreeNode> getChildren() {
+		List<C45TreeNode> children = new ArrayList<>(node.children.length);
+		for (C45Node child : node.children) {
+			children.add(new C45TreeNode(child, node));
+		}
+		return children;
+	}
+
+	public int getSplitAttribute() {
+		return node.split.getAttribute();
+	}
+
+	public String getSplitOperator(int child) {
+		switch (node.split.getKind()) {
+			case MULTIWAY :
+				return "=";
+			case BINARY :
+				return child == 0 ? "=" : "!=";
+			default :
+				return child == 0 ? "<=" : ">";
+		}
+	}
+
+	public double getSplitValue(int child) {
+		switch (node.split.getKind()) {
+			case MULTIWAY :
+				return child;
+			case BINARY :
+				return node.split.getNominalValue();
+			default :
+				return node.split.getSplitPoint();
+		}
+	}
+
+	public int getClassIndex() {
+		return node.isEmpty() && parent != null ? parent.maxClass() : node.maxClass();
+	}
+
+	public double getInstanceCount() {
+		return node.weight;
+	}
+
+	public double getWrongInstanceCount() {
+		return node.isEmpty() ? 0 : node.numIncorrect();
+	}
+
+}
@@ -0,0 +1,225 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Approximate C4.5 tree inducer that only considers the boundaries of
+ * quantile buckets as thresholds of numeric attributes. The values are mapped
+ * to their bucket once, afterwards each node only keeps the class distribution
+ * per bucket. The histograms of the largest child are obtained by subtracting
+ * the histograms of its siblings from those of the parent.
+ *
+ * @author F. Mannhardt
+ *
+ */
+final class HistogramTreeInducer extends AbstractC45TreeInducer<double[][]> {
+
+	private final double[][] cutPoints;
+	// Bucket of each value of numeric attributes, -1 for missing values
+	private final short[][] bins;
+	private final double[] minValues;
+	private final double[] maxValues;
+
+	/**
+	 * @param data
+	 * @param cutPoints
+	 *            strictly increasing bucket boundaries for each numeric
+	 *            attribute (see {@link QuantileSketch#cutPoints(int)})
+	 * @param minNumObj
+	 * @param confidenceFactor
+	 * @param binarySplits
+	 * @param unpruned
+	 */
+	HistogramTreeInducer(Instances data, double[][] cutPoints, int minNumObj, float confidenceFactor,
+			boolean binarySplits, boolean unpruned) {
+		super(data, minNumObj, confidenceFactor, binarySplits, unpruned);
+		this.cutPoints = cutPoints;
+		this.bins = new short[numAttributes][];
+		this.minValues = new double[numAttributes];
+		this.maxValues = new double[numAttributes];
+		int numRows = classes.length;
+		for (int a = 0; a < numAttributes; a++) {
+			if (a != classIndex && !nominal[a]) {
+				if (cutPoints[a].length >= Short.MAX_VALUE) {
+					throw new IllegalArgumentException("Too many buckets for attribute " + data.attribute(a).name());
+				}
+				bins[a] = new short[numRows];
+				minValues[a] = Double.POSITIVE_INFINITY;
+				maxValues[a] = Double.NEGATIVE_INFINITY;
+				for (int row = 0; row < numRows; row++) {
+					double value = values[a][row];
+					if (Utils.isMissingValue(value)) {
+						bins[a][row] = -1;
+					} else {
+						bins[a][row] = (short) bucket(cutPoints[a], value);
+						minValues[a] = Math.min(minValues[a], value);
+						maxValues[a] = Math.max(maxValues[a], value);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the first boundary that is not smaller than the
+	 *         value, or the number of boundaries for the last bucket
+	 */
+	private static int bucket(double[] cutPoints, double value) {
+		int index = Arrays.binarySearch(cutPoints, value);
+		return index >= 0 ? index : -(index + 1);
+	}
+
+	protected double[][] rootStatistics(C45Node root) {
+		return histograms(root);
+	}
+
+	protected List<double[][]> childStatistics(C45Node node, double[][] histograms, int[][] childPositions) {
+		C45Node[] children = node.children;
+		int largest = 0;
+		for (int bag = 1; bag < children.length; bag++) {
+			if (children[bag].rows.length > children[largest].rows.length) {
+				largest = bag;
+			}
+		}
+		List<double[][]> childStatistics = new ArrayList<>(children.length);
+		double[][] remaining = new double[numAttributes][];
+		for (int a = 0; a < numAttributes; a++) {
+			if (histograms[a] != null) {
+				remaining[a] = histograms[a].clone();
+			}
+		}
+		for (int bag = 0; bag < children.length; bag++) {
+			if (bag == largest) {
+				childStatistics.add(remaining);
+			} else {
+				double[][] childHistograms = histograms(children[bag]);
+				for (int a = 0; a < numAttributes; a++) {
+					if (childHistograms[a] != null) {
+						subtract(remaining[a], childHistograms[a]);
+					}
+				}
+				childStatistics.add(childHistograms);
+			}
+		}
+		return childStatistics;
+	}
+
+	private static void subtract(double[] histogram, double[] other) {
+		for (int i = 0; i < histogram.length; i++) {
+			// Avoid tiny negative weights due to rounding
+			histogram[i] = Math.max(0, histogram[i] - other[i]);
+		}
+	}
+
+	/**
+	 * @return the weight per bucket and class of each numeric attribute
+	 */
+	double[][] histograms(C45Node node) {
+		double[][] histograms = new double[numAttributes][];
+		for (int a = 0; a < numAttributes; a++) {
+			if (bins[a] != null) {
+				double[] histogram = new double[(cutPoints[a].length + 1) * numClasses];
+				short[] attributeBins = bins[a];
+				for (int i = 0; i < node.rows.length; i++) {
+					int row = node.rows[i];
+					int bin = attributeBins[row];
+					if (bin >= 0) {
+						histogram[bin * numClasses + classes[row]] += node.rowWeights[i];
+					}
+				}
+				histograms[a] = histogram;
+			}
+		}
+		return histograms;
+	}
+
+	protected C45Split evaluateNumericSplit(C45Node node, int attribute, double[][] histograms) {
+		double[] histogram = histograms[attribute];
+		int numBins = cutPoints[attribute].length + 1;
+
+		double[][] perClassPerBag = new double[2][numClasses];
+		double[] perBag = new double[2];
+		for (int bin = 0; bin < numBins; bin++) {
+			for (int c = 0; c < numClasses; c++) {
+				perClassPerBag[1][c] += histogram[bin * numClasses + c];
+			}
+		}
+		perBag[1] = Utils.sum(perClassPerBag[1]);
+		double knownTotal = perBag[1];
+		double total = node.weight;
+
+		// J48 requires 2 * minSplit known instances, we only know their weight
+		double minSplit = minSplit(knownTotal);
+		if (Utils.sm(knownTotal, 2 * minSplit)) {
+			return null;
+		}
+
+		double defaultEnt = C45Split.oldEnt(perClassPerBag[1], knownTotal);
+		double bestInfoGain = 0;
+		int splitBin = -1;
+		double[] bestPerBag = null;
+		int numCandidates = 0;
+		for (int bin = 0; bin < numBins - 1; bin++) {
+			double binWeight = 0;
+			for (int c = 0; c < numClasses; c++) {
+				double weight = histogram[bin * numClasses + c];
+				perClassPerBag[0][c] += weight;
+				perClassPerBag[1][c] -= weight;
+				binWeight += weight;
+			}
+			perBag[0] += binWeight;
+			perBag[1] -= binWeight;
+			// Empty buckets do not add a new threshold
+			if (Utils.gr(binWeight, 0) && Utils.grOrEq(perBag[0], minSplit)
+					&& Utils.grOrEq(perBag[1], minSplit)) {
+				double infoGain = C45Split.infoGain(defaultEnt, perClassPerBag, perBag, knownTotal, total);
+				if (Utils.gr(infoGain, bestInfoGain)) {
+					bestInfoGain = infoGain;
+					splitBin = bin;
+					bestPerBag = perBag.clone();
+				}
+				numCandidates++;
+			}
+		}
+		if (numCandidates == 0 || splitBin < 0) {
+			return null;
+		}
+
+		// MDL correction
+		bestInfoGain = bestInfoGain - (Utils.log2(numCandidates) / total);
+		if (Utils.smOrEq(bestInfoGain, 0)) {
+			return null;
+		}
+
+		double gainRatio = C45Split.gainRatio(bestInfoGain, bestPerBag, knownTotal, total);
+		return C45Split.numeric(attribute, cutPoints[attribute][splitBin], bestInfoGain, gainRatio);
+	}
+
+	protected double finalSplitPoint(int attribute, double splitPoint) {
+		return splitPoint;
+	}
+
+	/**
+	 * The exact C4.5 threshold lies somewhere between the smallest value of
+	 * the bucket left of the boundary and the largest value of the bucket
+	 * right of it.
+	 *
+	 * @param attribute
+	 * @param splitPoint
+	 *            bucket boundary used as split point
+	 * @return the maximal distance of the exact threshold from the split point
+	 */
+	double thresholdError(int attribute, double splitPoint) {
+		double[] attributeCutPoints = cutPoints[attribute];
+		int index = bucket(attributeCutPoints, splitPoint);
+		double lower = index > 0 ? attributeCutPoints[index - 1] : minValues[attribute];
+		double upper = index + 1 < attributeCutPoints.length ? attributeCutPoints[index + 1] : maxValues[attribute];
+		return Math.max(0, Math.max(splitPoint - lower, upper - splitPoint));
+	}
+
+}
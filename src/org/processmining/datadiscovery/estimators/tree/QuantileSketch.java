@@ -0,0 +1,314 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Fixed-size weighted sample of a stream of numeric values, used to determine
+ * the quantile buckets of a numeric attribute without keeping all of its
+ * values. Each value is drawn with a probability proportional to its weight
+ * (weighted reservoir sampling by Efraimidis and Spirakis): it gets a random
+ * key u^(1/weight) and the sample keeps the values with the largest keys.
+ * Sketches of different threads can be merged by keeping the largest keys of
+ * both samples, if their seeds differ. As long as all values fit into the
+ * sample, the buckets are computed from the exact weights. The sample depends
+ * on the seed and on the order of the values, {@link #of(Instances, int)}
+ * gives the same sample for any order of the instances. Not thread-safe.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class QuantileSketch {
+
+	public static final int DEFAULT_CAPACITY = 8192;
+	public static final long DEFAULT_SEED = 0;
+
+	private final double[] samples;
+	private final double[] weights;
+	// Logarithm of the keys, the sample is a min-heap by key
+	private final double[] keys;
+	private final Random random;
+	private int size = 0;
+	private long count = 0;
+	private double totalWeight = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public QuantileSketch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of sampled values
+	 */
+	public QuantileSketch(int capacity) {
+		this(capacity, DEFAULT_SEED);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of sampled values
+	 * @param seed
+	 *            of the random keys, sketches that are merged need different
+	 *            seeds
+	 */
+	public QuantileSketch(int capacity, long seed) {
+		this.samples = new double[capacity];
+		this.weights = new double[capacity];
+		this.keys = new double[capacity];
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Sketches the values of a numeric attribute independently of the order
+	 * of the instances. The weights of equal values are summed and the values
+	 * are added in ascending order, each occurrence with the average weight of
+	 * the value. The seed is derived from the name of the attribute, so each
+	 * attribute gets its own but the same keys in each run.
+	 *
+	 * @param data
+	 * @param attributeIndex
+	 *            of a numeric attribute
+	 * @return a sketch of all values of the attribute
+	 */
+	public static QuantileSketch of(Instances data, int attributeIndex) {
+		// Weight and number of occurrences of each value
+		Map<Double, double[]> valueStatistics = new HashMap<>();
+		for (int i = 0; i < data.numInstances(); i++) {
+			Instance instance = data.instance(i);
+			double value = instance.value(attributeIndex);
+			if (Utils.isMissingValue(value) || !(instance.weight() > 0)) {
+				continue;
+			}
+			double[] statistics = valueStatistics.get(value);
+			if (statistics == null) {
+				statistics = new double[2];
+				valueStatistics.put(value, statistics);
+			}
+			statistics[0] += instance.weight();
+			statistics[1]++;
+		}
+		double[] values = new double[valueStatistics.size()];
+		int index = 0;
+		for (Double value : valueStatistics.keySet()) {
+			values[index++] = value;
+		}
+		Arrays.sort(values);
+		QuantileSketch sketch = new QuantileSketch(DEFAULT_CAPACITY,
+				data.attribute(attributeIndex).name().hashCode());
+		for (double value : values) {
+			double[] statistics = valueStatistics.get(value);
+			long numOccurrences = (long) statistics[1];
+			double weight = statistics[0] / numOccurrences;
+			for (long i = 0; i < numOccurrences; i++) {
+				sketch.add(value, weight);
+			}
+		}
+		return sketch;
+	}
+
+	/**
+	 * Adds a value with weight 1, missing values are ignored.
+	 *
+	 * @param value
+	 */
+	public void add(double value) {
+		add(value, 1.0);
+	}
+
+	/**
+	 * Adds a weighted value, missing values and values without positive
+	 * weight are ignored.
+	 *
+	 * @param value
+	 * @param weight
+	 */
+	public void add(double value, double weight) {
+		if (Utils.isMissingValue(value) || !(weight > 0)) {
+			return;
+		}
+		count++;
+		totalWeight += weight;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+		// log(u^(1/weight)) with u in (0, 1]
+		offer(value, weight, Math.log(1 - random.nextDouble()) / weight);
+	}
+
+	/**
+	 * Adds the values of another sketch. The sample of the result keeps the
+	 * values with the largest keys of both samples, which is the sample of the
+	 * combined stream.
+	 *
+	 * @param other
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.count == 0) {
+			return;
+		}
+		for (int i = 0; i < other.size; i++) {
+			offer(other.samples[i], other.weights[i], other.keys[i]);
+		}
+		count += other.count;
+		totalWeight += other.totalWeight;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	private void offer(double value, double weight, double key) {
+		if (size < samples.length) {
+			set(size, value, weight, key);
+			siftUp(size++);
+		} else if (key > keys[0]) {
+			set(0, value, weight, key);
+			siftDown(0);
+		}
+	}
+
+	private void set(int index, double value, double weight, double key) {
+		samples[index] = value;
+		weights[index] = weight;
+		keys[index] = key;
+	}
+
+	private void swap(int i, int j) {
+		double value = samples[i];
+		double weight = weights[i];
+		double key = keys[i];
+		set(i, samples[j], weights[j], keys[j]);
+		set(j, value, weight, key);
+	}
+
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (keys[parent] <= keys[index]) {
+				return;
+			}
+			swap(parent, index);
+			index = parent;
+		}
+	}
+
+	private void siftDown(int index) {
+		while (true) {
+			int smallest = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if (left < size && keys[left] < keys[smallest]) {
+				smallest = left;
+			}
+			if (right < size && keys[right] < keys[smallest]) {
+				smallest = right;
+			}
+			if (smallest == index) {
+				return;
+			}
+			swap(smallest, index);
+			index = smallest;
+		}
+	}
+
+	/**
+	 * Computes the upper boundaries of (at most) numBins buckets with about
+	 * the same weight of values. The boundaries are sampled values, so
+	 * attributes with less distinct values than buckets get one bucket per
+	 * value. A value v falls into bucket i if boundary[i-1] < v <= boundary[i],
+	 * values above the last boundary fall into the last bucket.
+	 *
+	 * @param numBins
+	 * @return the strictly increasing boundaries between the buckets
+	 */
+	public double[] cutPoints(int numBins) {
+		if (size == 0 || numBins < 2) {
+			return new double[0];
+		}
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			public int compare(Integer i, Integer j) {
+				return Double.compare(samples[i], samples[j]);
+			}
+
+		});
+		// Values are sampled in proportion to their weight, unless all of them are kept
+		boolean exact = size == count;
+		double[] sorted = new double[size];
+		double[] sortedWeights = new double[size];
+		double sampleWeight = 0;
+		for (int i = 0; i < size; i++) {
+			sorted[i] = samples[order[i]];
+			sortedWeights[i] = exact ? weights[order[i]] : 1.0;
+			sampleWeight += sortedWeights[i];
+		}
+
+		double[] cutPoints = new double[numBins - 1];
+		int numCutPoints = 0;
+		if (countDistinct(sorted, numBins) <= numBins) {
+			for (int i = 0; i < sorted.length; i++) {
+				if (sorted[i] < max && (numCutPoints == 0 || sorted[i] > cutPoints[numCutPoints - 1])) {
+					cutPoints[numCutPoints++] = sorted[i];
+				}
+			}
+			return Arrays.copyOf(cutPoints, numCutPoints);
+		}
+		int index = 0;
+		double cumulativeWeight = sortedWeights[0];
+		for (int i = 1; i < numBins; i++) {
+			double targetWeight = i * sampleWeight / numBins;
+			while (cumulativeWeight < targetWeight && index < size - 1) {
+				cumulativeWeight += sortedWeights[++index];
+			}
+			double cutPoint = sorted[index];
+			// The maximum does not separate anything
+			if (cutPoint < max && (numCutPoints == 0 || cutPoint > cutPoints[numCutPoints - 1])) {
+				cutPoints[numCutPoints++] = cutPoint;
+			}
+		}
+		return Arrays.copyOf(cutPoints, numCutPoints);
+	}
+
+	private static int countDistinct(double[] sorted, int limit) {
+		int distinct = 1;
+		for (int i = 1; i < sorted.length && distinct <= limit; i++) {
+			if (sorted[i] > sorted[i - 1]) {
+				distinct++;
+			}
+		}
+		return distinct;
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of the weights of the values added
+	 */
+	public double getTotalWeight() {
+		return totalWeight;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+}
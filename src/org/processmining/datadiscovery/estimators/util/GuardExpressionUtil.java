@@ -0,0 +1,59 @@
+package org.processmining.datadiscovery.estimators.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.processmining.datapetrinets.expression.GuardExpression;
+
+/**
+ * Combines many {@link GuardExpression}s into balanced trees of binary
+ * operations. Folding n operands one by one yields a chain of depth n, on
+ * which evaluating or printing the expression recurses n levels deep. The
+ * balanced tree has depth log(n) and is built without recursion.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class GuardExpressionUtil {
+
+	private GuardExpressionUtil() {
+	}
+
+	/**
+	 * @param operands
+	 *            at least one expression
+	 * @return the conjunction of all operands
+	 */
+	public static GuardExpression and(List<GuardExpression> operands) {
+		return combine(operands, true);
+	}
+
+	/**
+	 * @param operands
+	 *            at least one expression
+	 * @return the disjunction of all operands
+	 */
+	public static GuardExpression or(List<GuardExpression> operands) {
+		return combine(operands, false);
+	}
+
+	private static GuardExpression combine(List<GuardExpression> operands, boolean isAnd) {
+		if (operands.isEmpty()) {
+			throw new IllegalArgumentException("Cannot combine an empty list of expressions!");
+		}
+		List<GuardExpression> level = operands;
+		while (level.size() > 1) {
+			List<GuardExpression> nextLevel = new ArrayList<>((level.size() + 1) / 2);
+			for (int i = 0; i + 1 < level.size(); i += 2) {
+				nextLevel.add(isAnd ? GuardExpression.Operation.and(level.get(i), level.get(i + 1))
+						: GuardExpression.Operation.or(level.get(i), level.get(i + 1)));
+			}
+			if (level.size() % 2 == 1) {
+				nextLevel.add(level.get(level.size() - 1));
+			}
+			level = nextLevel;
+		}
+		return level.get(0);
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.processmining.datadiscovery.estimators.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs independent tasks on a shared {@link Executor}, while the calling thread
+ * takes part in the work. The caller runs every task that no thread of the
+ * executor has started yet, and only waits for tasks that are already
+ * running. Therefore, tasks may be submitted from within tasks of the same
+ * bounded executor without risking a deadlock.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class ParallelTasks {
+
+	private ParallelTasks() {
+	}
+
+	/**
+	 * Runs all tasks and returns their results in the order of the tasks.
+	 *
+	 * @param executor
+	 *            (may be NULL) to run the tasks on the calling thread only
+	 * @param tasks
+	 * @return the results of the tasks
+	 * @throws Exception
+	 *             the exception of the first failed task
+	 */
+	public static <T> List<T> invokeAll(Executor executor, List<? extends Callable<T>> tasks) throws Exception {
+		List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			futures.add(new FutureTask<>(task));
+		}
+		if (executor != null) {
+			// The calling thread starts with the first task
+			for (int i = 1; i < futures.size(); i++) {
+				try {
+					executor.execute(futures.get(i));
+				} catch (RejectedExecutionException e) {
+					// Will be run by the calling thread
+				}
+			}
+		}
+		for (FutureTask<T> future : futures) {
+			// Does nothing if the task was already started by the executor
+			future.run();
+		}
+		List<T> results = new ArrayList<>(futures.size());
+		for (FutureTask<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+}
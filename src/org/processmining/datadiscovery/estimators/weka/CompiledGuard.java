@@ -0,0 +1,358 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.processmining.datadiscovery.estimators.AbstractDecisionTreeFunctionEstimator;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaCondition;
+import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaLeafNode;
+import org.processmining.datapetrinets.expression.GuardExpression;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Utils;
+
+/**
+ * Guard compiled from the conditions of {@link WekaLeafNode}s to a
+ * disjunction of conjunctions over the attribute indices of the Weka
+ * instances, which is the same as the {@link GuardExpression} built from the
+ * leaves. Literal and boolean values are resolved to their codes, timestamps
+ * to milliseconds, so that rows in the Weka encoding (also
+ * {@link org.processmining.datadiscovery.estimators.AttributeVector}s of a
+ * compatible schema) are evaluated without any lookup or conversion. A
+ * condition on a missing value is not fulfilled. Rows of another schema can be
+ * evaluated by a guard bound to it with {@link #bind(AttributeSchema)}.
+ * <p>
+ * Compiled guards are immutable and can be shared between threads.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class CompiledGuard {
+
+	public static final CompiledGuard TRUE = new CompiledGuard(
+			new Conjunction[] { new Conjunction(new int[0], new int[0], new double[0]) },
+			new LinkedHashMap<String, Variable>());
+	public static final CompiledGuard FALSE = new CompiledGuard(new Conjunction[0],
+			new LinkedHashMap<String, Variable>());
+
+	/**
+	 * Attribute read by the guard, with the codes of its nominal values.
+	 */
+	private static final class Variable {
+
+		private final String name;
+		private final int index;
+		private final List<String> nominalValues; // NULL for numeric attributes
+		private final Map<String, Integer> nominalCodes;
+
+		Variable(String name, int index, List<String> nominalValues) {
+			this.name = name;
+			this.index = index;
+			this.nominalValues = nominalValues;
+			this.nominalCodes = new HashMap<>();
+			if (nominalValues != null) {
+				for (int i = 0; i < nominalValues.size(); i++) {
+					nominalCodes.put(nominalValues.get(i), i);
+				}
+			}
+		}
+
+		static Variable of(Attribute attribute) {
+			if (attribute.isNominal()) {
+				List<String> nominalValues = new ArrayList<>(attribute.numValues());
+				for (int i = 0; i < attribute.numValues(); i++) {
+					nominalValues.add(attribute.value(i));
+				}
+				return new Variable(attribute.name(), attribute.index(), nominalValues);
+			} else {
+				return new Variable(attribute.name(), attribute.index(), null);
+			}
+		}
+
+		/**
+		 * @param code
+		 *            in the encoding of this variable
+		 * @param target
+		 *            the same attribute in another encoding
+		 * @return the code in the other encoding, -1 for an unknown nominal
+		 *         value, which is never equal to a value
+		 */
+		double recode(double code, Variable target) {
+			if (nominalValues == null) {
+				return code;
+			}
+			return target.encode(nominalValues.get((int) code));
+		}
+
+		/**
+		 * @param nominalValue
+		 * @return the code of the value, -1 if it is unknown
+		 */
+		double encode(String nominalValue) {
+			Integer code = nominalCodes.get(nominalValue);
+			return code == null ? -1 : code;
+		}
+
+	}
+
+	private static final class Conjunction {
+
+		private final int[] attributes;
+		private final int[] operators;
+		private final double[] values;
+
+		Conjunction(int[] attributes, int[] operators, double[] values) {
+			this.attributes = attributes;
+			this.operators = operators;
+			this.values = values;
+		}
+
+		boolean isTrue(double[] row) {
+			for (int i = 0; i < attributes.length; i++) {
+				double value = row[attributes[i]];
+				if (Utils.isMissingValue(value) || !ConditionOperator.fulfills(operators[i], value, values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		boolean isTrue(double[][] columns, int row) {
+			for (int i = 0; i < attributes.length; i++) {
+				double value = columns[attributes[i]][row];
+				if (Utils.isMissingValue(value) || !ConditionOperator.fulfills(operators[i], value, values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		boolean isTrue(Instance instance) {
+			for (int i = 0; i < attributes.length; i++) {
+				double value = instance.value(attributes[i]);
+				if (Utils.isMissingValue(value) || !ConditionOperator.fulfills(operators[i], value, values[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	private final Conjunction[] conjunctions;
+	private final String[] variableNames;
+	private final Variable[] variables;
+	private final int numAttributes;
+
+	private CompiledGuard(Conjunction[] conjunctions, Map<String, Variable> variables) {
+		this.conjunctions = conjunctions;
+		this.variableNames = variables.keySet().toArray(new String[variables.size()]);
+		this.variables = variables.values().toArray(new Variable[variables.size()]);
+		int maxIndex = -1;
+		for (Variable variable : this.variables) {
+			maxIndex = Math.max(maxIndex, variable.index);
+		}
+		this.numAttributes = maxIndex + 1;
+	}
+
+	/**
+	 * Compiles the disjunction of the conditions of all leaves. Leaves without
+	 * conditions are ignored, as they do not yield an expression.
+	 *
+	 * @param leaves
+	 *            of trees over the same Weka attributes
+	 * @return the compiled guard, {@link #FALSE} without any conditions
+	 */
+	public static CompiledGuard compile(Iterable<WekaLeafNode> leaves) {
+		List<Conjunction> conjunctions = new ArrayList<>();
+		Map<String, Variable> variables = new LinkedHashMap<>();
+		for (WekaLeafNode leaf : leaves) {
+			if (leaf.getConditions().isEmpty()) {
+				continue;
+			}
+			int size = leaf.getConditions().size();
+			int[] attributes = new int[size];
+			int[] operators = new int[size];
+			double[] values = new double[size];
+			int i = 0;
+			for (WekaCondition condition : leaf.getConditions()) {
+				attributes[i] = condition.getAttribute().index();
+				operators[i] = ConditionOperator.code(condition);
+				values[i] = conditionValue(condition);
+				variables.put(condition.getAttributeName(), Variable.of(condition.getAttribute()));
+				i++;
+			}
+			conjunctions.add(new Conjunction(attributes, operators, values));
+		}
+		return new CompiledGuard(conjunctions.toArray(new Conjunction[conjunctions.size()]), variables);
+	}
+
+	private static double conditionValue(WekaCondition condition) {
+		double value = ConditionOperator.value(condition);
+		if (condition.getAttributeType() == Type.TIMESTAMP) {
+			// The expression only contains the date with a precision of seconds
+			return Math.floor(value / 1000) * 1000;
+		}
+		return value;
+	}
+
+	/**
+	 * Compiles the disjunction of two compiled guards.
+	 *
+	 * @param guard1
+	 * @param guard2
+	 * @return a guard that is true if one of both is true
+	 */
+	public static CompiledGuard or(CompiledGuard guard1, CompiledGuard guard2) {
+		Conjunction[] conjunctions = Arrays.copyOf(guard1.conjunctions,
+				guard1.conjunctions.length + guard2.conjunctions.length);
+		System.arraycopy(guard2.conjunctions, 0, conjunctions, guard1.conjunctions.length,
+				guard2.conjunctions.length);
+		Map<String, Variable> variables = new LinkedHashMap<>();
+		for (int i = 0; i < guard1.variables.length; i++) {
+			variables.put(guard1.variableNames[i], guard1.variables[i]);
+		}
+		for (int i = 0; i < guard2.variables.length; i++) {
+			variables.put(guard2.variableNames[i], guard2.variables[i]);
+		}
+		return new CompiledGuard(conjunctions, variables);
+	}
+
+	/**
+	 * Binds the guard to the layout and the nominal codes of the schema.
+	 * Conjunctions with an attribute that is not part of the schema are never
+	 * true, as the value is always missing, and are left out.
+	 *
+	 * @param schema
+	 * @return a guard that evaluates rows in the encoding of the schema
+	 */
+	public CompiledGuard bind(AttributeSchema schema) {
+		Map<Integer, Variable> sourceByIndex = new HashMap<>();
+		Map<Integer, Variable> targetByIndex = new HashMap<>();
+		Map<String, Variable> boundVariables = new LinkedHashMap<>();
+		for (int i = 0; i < variables.length; i++) {
+			Variable source = variables[i];
+			int index = schema.indexOf(source.name);
+			if (index >= 0) {
+				Variable target = new Variable(source.name, index, schema.getNominalValues(index));
+				sourceByIndex.put(source.index, source);
+				targetByIndex.put(source.index, target);
+				boundVariables.put(variableNames[i], target);
+			}
+		}
+		List<Conjunction> boundConjunctions = new ArrayList<>(conjunctions.length);
+		conjunctionFor: for (Conjunction conjunction : conjunctions) {
+			int size = conjunction.attributes.length;
+			int[] attributes = new int[size];
+			double[] values = new double[size];
+			for (int i = 0; i < size; i++) {
+				Variable target = targetByIndex.get(conjunction.attributes[i]);
+				if (target == null) {
+					continue conjunctionFor;
+				}
+				attributes[i] = target.index;
+				values[i] = sourceByIndex.get(conjunction.attributes[i]).recode(conjunction.values[i], target);
+			}
+			boundConjunctions.add(new Conjunction(attributes, conjunction.operators, values));
+		}
+		return new CompiledGuard(boundConjunctions.toArray(new Conjunction[boundConjunctions.size()]),
+				boundVariables);
+	}
+
+	/**
+	 * @param row
+	 *            values in the Weka encoding, NaN for missing values
+	 * @return whether the guard is true for the row
+	 */
+	public boolean isTrue(double[] row) {
+		for (Conjunction conjunction : conjunctions) {
+			if (conjunction.isTrue(row)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param columns
+	 *            values of each attribute in the Weka encoding, NaN for
+	 *            missing values
+	 * @param row
+	 * @return whether the guard is true for the row of the columns
+	 */
+	public boolean isTrue(double[][] columns, int row) {
+		for (Conjunction conjunction : conjunctions) {
+			if (conjunction.isTrue(columns, row)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param instance
+	 * @return whether the guard is true for the instance
+	 */
+	public boolean isTrue(Instance instance) {
+		for (Conjunction conjunction : conjunctions) {
+			if (conjunction.isTrue(instance)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluates the guard on the values of its variables, which are converted
+	 * only once.
+	 *
+	 * @param attributes
+	 *            values by variable name as used in the {@link GuardExpression}
+	 * @return whether the guard is true for the values
+	 */
+	public boolean isTrue(Map<String, Object> attributes) {
+		double[] row = new double[numAttributes];
+		for (int i = 0; i < variables.length; i++) {
+			row[variables[i].index] = encode(variables[i], attributes.get(variableNames[i]));
+		}
+		return isTrue(row);
+	}
+
+	private static double encode(Variable variable, Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		} else if (value instanceof Date) {
+			return ((Date) value).getTime();
+		} else if (value instanceof Boolean) {
+			String booleanValue = ((Boolean) value).booleanValue() ? AbstractDecisionTreeFunctionEstimator.TRUE_VALUE
+					: AbstractDecisionTreeFunctionEstimator.FALSE_VALUE;
+			return variable.encode(booleanValue);
+		} else if (value instanceof String) {
+			return variable.encode((String) value);
+		} else {
+			return Utils.missingValue();
+		}
+	}
+
+	/**
+	 * @param instance
+	 * @return whether one of the attributes used by the guard is missing
+	 */
+	public boolean hasMissingValue(Instance instance) {
+		for (Variable variable : variables) {
+			if (instance.isMissing(variable.index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
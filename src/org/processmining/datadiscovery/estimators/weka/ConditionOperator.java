@@ -0,0 +1,80 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import org.processmining.datadiscovery.estimators.weka.WekaTreeClassificationAdapter.WekaCondition;
+
+/**
+ * Integer codes of the operators of {@link WekaCondition}s, so that compiled
+ * conditions can be evaluated on values in the Weka encoding without comparing
+ * strings.
+ *
+ * @author F. Mannhardt
+ *
+ */
+final class ConditionOperator {
+
+	static final int EQUAL = 0;
+	static final int NOT_EQUAL = 1;
+	static final int LESS = 2;
+	static final int GREATER = 3;
+	static final int LESS_OR_EQUAL = 4;
+	static final int GREATER_OR_EQUAL = 5;
+
+	private ConditionOperator() {
+	}
+
+	static int code(WekaCondition condition) {
+		switch (condition.getOperator()) {
+			case "=" :
+				return EQUAL;
+			case "!=" :
+				return NOT_EQUAL;
+			case "<" :
+				return LESS;
+			case ">" :
+				return GREATER;
+			case "<=" :
+				return LESS_OR_EQUAL;
+			case ">=" :
+				return GREATER_OR_EQUAL;
+		}
+		throw new IllegalArgumentException("Operator unkown in: " + condition);
+	}
+
+	/**
+	 * @param condition
+	 * @return the value of the condition in the Weka encoding of its attribute
+	 */
+	static double value(WekaCondition condition) {
+		if (condition.getAttribute().isNominal()) {
+			return condition.getAttribute().indexOfValue(condition.getValue());
+		} else {
+			return Double.parseDouble(condition.getValue());
+		}
+	}
+
+	/**
+	 * @param operator
+	 * @param value
+	 *            not missing
+	 * @param conditionValue
+	 * @return whether the value fulfills the condition
+	 */
+	static boolean fulfills(int operator, double value, double conditionValue) {
+		int comparison = Double.compare(value, conditionValue);
+		switch (operator) {
+			case EQUAL :
+				return comparison == 0;
+			case NOT_EQUAL :
+				return comparison != 0;
+			case LESS :
+				return comparison < 0;
+			case GREATER :
+				return comparison > 0;
+			case LESS_OR_EQUAL :
+				return comparison <= 0;
+			default :
+				return comparison >= 0;
+		}
+	}
+
+}
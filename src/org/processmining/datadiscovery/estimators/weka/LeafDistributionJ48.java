@@ -0,0 +1,138 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.j48.BinC45Split;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierSplitModel;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.Distribution;
+import weka.core.Instances;
+
+/**
+ * {@link J48} that exposes the training class distributions of its leaves and
+ * the structure of its tree.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class LeafDistributionJ48 extends J48 implements LeafDistributionProducer, TreeModel {
+
+	private static final long serialVersionUID = -4211478092151658411L;
+
+	private Instances header;
+
+	/**
+	 * Node of the {@link ClassifierTree}. As in the output of J48, the label
+	 * of a leaf is taken from the distribution of the branch of its parent.
+	 */
+	private static final class J48TreeNode implements TreeNode {
+
+		private final Instances header;
+		private final ClassifierTree node;
+		private final Distribution labelDistribution;
+		private final int labelBag;
+
+		J48TreeNode(Instances header, ClassifierTree node, Distribution labelDistribution, int labelBag) {
+			this.header = header;
+			this.node = node;
+			this.labelDistribution = labelDistribution;
+			this.labelBag = labelBag;
+		}
+
+		public boolean isLeaf() {
+			return node.isLeaf();
+		}
+
+		public List<? extends TreeNode> getChildren() {
+			ClassifierTree[] sons = node.getSons();
+			Distribution distribution = node.getLocalModel().distribution();
+			List<J48TreeNode> children = new ArrayList<>(sons.length);
+			for (int i = 0; i < sons.length; i++) {
+				children.add(new J48TreeNode(header, sons[i], distribution, i));
+			}
+			return children;
+		}
+
+		public int getSplitAttribute() {
+			ClassifierSplitModel split = node.getLocalModel();
+			if (split instanceof C45Split) {
+				return ((C45Split) split).attIndex();
+			} else if (split instanceof BinC45Split) {
+				return ((BinC45Split) split).attIndex();
+			}
+			throw new IllegalStateException("Unsupported split " + split.getClass().getName());
+		}
+
+		public String getSplitOperator(int child) {
+			ClassifierSplitModel split = node.getLocalModel();
+			if (isNominalSplit()) {
+				return split instanceof BinC45Split && child == 1 ? "!=" : "=";
+			} else {
+				return child == 0 ? "<=" : ">";
+			}
+		}
+
+		public double getSplitValue(int child) {
+			ClassifierSplitModel split = node.getLocalModel();
+			if (split instanceof C45Split) {
+				// Multi-way nominal splits have one branch per value
+				return isNominalSplit() ? child : ((C45Split) split).splitPoint();
+			} else if (split instanceof BinC45Split) {
+				// Either the threshold or the index of the tested nominal value
+				return ((BinC45Split) split).splitPoint();
+			}
+			throw new IllegalStateException("Unsupported split " + split.getClass().getName());
+		}
+
+		private boolean isNominalSplit() {
+			return header.attribute(getSplitAttribute()).isNominal();
+		}
+
+		public int getClassIndex() {
+			return labelDistribution.maxClass(labelBag);
+		}
+
+		public double getInstanceCount() {
+			return labelDistribution.perBag(labelBag);
+		}
+
+		public double getWrongInstanceCount() {
+			return labelDistribution.numIncorrect(labelBag);
+		}
+
+	}
+
+	public void buildClassifier(Instances instances) throws Exception {
+		header = new Instances(instances, 0);
+		super.buildClassifier(instances);
+	}
+
+	public TreeNode getTreeRoot() {
+		return new J48TreeNode(header, m_root, m_root.getLocalModel().distribution(), 0);
+	}
+
+	public List<double[]> getLeafDistributions() {
+		List<double[]> leafDistributions = new ArrayList<>();
+		addLeafDistributions(m_root, leafDistributions);
+		return leafDistributions;
+	}
+
+	private static void addLeafDistributions(ClassifierTree node, List<double[]> leafDistributions) {
+		if (node.isLeaf()) {
+			Distribution distribution = node.getLocalModel().distribution();
+			double[] classWeights = new double[distribution.numClasses()];
+			for (int i = 0; i < classWeights.length; i++) {
+				classWeights[i] = distribution.perClass(i);
+			}
+			leafDistributions.add(classWeights);
+		} else {
+			for (ClassifierTree son : node.getSons()) {
+				addLeafDistributions(son, leafDistributions);
+			}
+		}
+	}
+
+}
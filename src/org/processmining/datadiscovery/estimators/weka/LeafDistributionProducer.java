@@ -0,0 +1,20 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import java.util.List;
+
+/**
+ * Tree classifier that can report the class distribution of the training
+ * instances at each of its leaves.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public interface LeafDistributionProducer {
+
+	/**
+	 * @return for each leaf of the built tree, the weight of the training
+	 *         instances per class index
+	 */
+	List<double[]> getLeafDistributions();
+
+}
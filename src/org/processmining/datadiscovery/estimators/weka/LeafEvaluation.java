@@ -0,0 +1,215 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import java.util.List;
+
+import org.processmining.datadiscovery.estimators.weka.TreeModel.TreeNode;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Evaluates a tree on its training data from the class distributions at its
+ * leaves, without classifying the training instances again. All training
+ * instances that reach a leaf get the same prediction, so each class at each
+ * leaf is added to the {@link Evaluation} once with the total weight of its
+ * instances. The result is the same as evaluating every training instance.
+ * <p>
+ * Instances with a missing value of a tested attribute are split over several
+ * leaves during training, but classified by a weighted mix of the predictions
+ * of these leaves. If the training data contains missing values, the
+ * instances are therefore routed through the {@link TreeModel}: those that
+ * reach a single leaf are counted per leaf, the others are classified by the
+ * tree itself.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class LeafEvaluation {
+
+	/**
+	 * Inner node or leaf of the tree, materialized once to route instances.
+	 */
+	private static final class Route {
+
+		private final int attribute;
+		private final String[] operators;
+		private final double[] values;
+		private final Route[] children;
+		private final int leaf;
+
+		private Route(TreeNode node, int[] numLeaves) {
+			if (node.isLeaf()) {
+				this.attribute = -1;
+				this.operators = null;
+				this.values = null;
+				this.children = null;
+				this.leaf = numLeaves[0]++;
+			} else {
+				List<? extends TreeNode> nodeChildren = node.getChildren();
+				this.attribute = node.getSplitAttribute();
+				this.operators = new String[nodeChildren.size()];
+				this.values = new double[nodeChildren.size()];
+				this.children = new Route[nodeChildren.size()];
+				this.leaf = -1;
+				for (int i = 0; i < children.length; i++) {
+					operators[i] = node.getSplitOperator(i);
+					values[i] = node.getSplitValue(i);
+					children[i] = new Route(nodeChildren.get(i), numLeaves);
+				}
+			}
+		}
+
+		/**
+		 * @param instance
+		 * @return the leaf reached by the instance or -1 if a tested value is
+		 *         missing
+		 */
+		private int leafOf(Instance instance) {
+			Route node = this;
+			while (node.children != null) {
+				double value = instance.value(node.attribute);
+				if (Utils.isMissingValue(value)) {
+					return -1;
+				}
+				node = node.children[node.branch(value)];
+			}
+			return node.leaf;
+		}
+
+		private int branch(double value) {
+			for (int i = 0; i < children.length; i++) {
+				if (matches(operators[i], value, values[i])) {
+					return i;
+				}
+			}
+			throw new IllegalStateException("No branch for value " + value + " of attribute " + attribute);
+		}
+
+		private static boolean matches(String operator, double value, double splitValue) {
+			switch (operator) {
+				case "=" :
+					return value == splitValue;
+				case "!=" :
+					return value != splitValue;
+				case "<=" :
+					return value <= splitValue;
+				default :
+					return value > splitValue;
+			}
+		}
+
+	}
+
+	private LeafEvaluation() {
+	}
+
+	/**
+	 * @param trainingData
+	 *            data the tree was built on
+	 * @param tree
+	 *            built tree that is a {@link LeafDistributionProducer}, and a
+	 *            {@link TreeModel} to avoid classifying all instances if the
+	 *            data contains missing values
+	 * @return the evaluation of the tree on its training data
+	 * @throws Exception
+	 */
+	public static Evaluation evaluate(Instances trainingData, Classifier tree) throws Exception {
+		if (!(tree instanceof LeafDistributionProducer)) {
+			throw new IllegalArgumentException("Leaf distributions are not available for " + tree.getClass());
+		}
+		if (!hasMissingValues(trainingData)) {
+			return evaluateLeaves(trainingData, (LeafDistributionProducer) tree);
+		} else if (tree instanceof TreeModel) {
+			return evaluateRoutes(trainingData, tree, ((TreeModel) tree).getTreeRoot());
+		} else {
+			Evaluation evaluation = new Evaluation(trainingData);
+			evaluation.evaluateModel(tree, trainingData);
+			return evaluation;
+		}
+	}
+
+	private static boolean hasMissingValues(Instances data) {
+		int classIndex = data.classIndex();
+		for (Instance instance : data) {
+			for (int a = 0; a < instance.numAttributes(); a++) {
+				if (a != classIndex && instance.isMissing(a)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static Evaluation evaluateLeaves(Instances trainingData, LeafDistributionProducer tree)
+			throws Exception {
+		Evaluation evaluation = new Evaluation(trainingData);
+		Instances header = new Instances(trainingData, 0);
+		for (double[] leafDistribution : tree.getLeafDistributions()) {
+			double leafWeight = Utils.sum(leafDistribution);
+			if (!Utils.gr(leafWeight, 0)) {
+				continue;
+			}
+			double[] prediction = new double[leafDistribution.length];
+			for (int i = 0; i < prediction.length; i++) {
+				prediction[i] = leafDistribution[i] / leafWeight;
+			}
+			addClassWeights(evaluation, header, prediction, leafDistribution);
+		}
+		return evaluation;
+	}
+
+	private static Evaluation evaluateRoutes(Instances trainingData, Classifier tree, TreeNode treeRoot)
+			throws Exception {
+		Evaluation evaluation = new Evaluation(trainingData);
+		Instances header = new Instances(trainingData, 0);
+		int[] numLeaves = new int[1];
+		Route root = new Route(treeRoot, numLeaves);
+		double[][] classWeights = new double[numLeaves[0]][trainingData.numClasses()];
+		Instance[] representatives = new Instance[numLeaves[0]];
+		for (Instance instance : trainingData) {
+			if (instance.classIsMissing()) {
+				continue;
+			}
+			int leaf = root.leafOf(instance);
+			if (leaf < 0) {
+				// Mix of the predictions of several leaves as in J48
+				evaluation.evaluateModelOnce(tree.distributionForInstance(instance), instance);
+			} else {
+				classWeights[leaf][(int) instance.classValue()] += instance.weight();
+				if (representatives[leaf] == null) {
+					representatives[leaf] = instance;
+				}
+			}
+		}
+		for (int leaf = 0; leaf < representatives.length; leaf++) {
+			if (representatives[leaf] != null) {
+				double[] prediction = tree.distributionForInstance(representatives[leaf]);
+				addClassWeights(evaluation, header, prediction, classWeights[leaf]);
+			}
+		}
+		return evaluation;
+	}
+
+	/**
+	 * Adds one instance per class with the total weight of the class, all
+	 * with the same prediction.
+	 */
+	private static void addClassWeights(Evaluation evaluation, Instances header, double[] prediction,
+			double[] classWeights) throws Exception {
+		int classIndex = header.classIndex();
+		for (int actualClass = 0; actualClass < classWeights.length; actualClass++) {
+			if (Utils.gr(classWeights[actualClass], 0)) {
+				Instance instance = new DenseInstance(header.numAttributes());
+				instance.setDataset(header);
+				instance.setValue(classIndex, actualClass);
+				instance.setWeight(classWeights[actualClass]);
+				evaluation.evaluateModelOnce(prediction, instance);
+			}
+		}
+	}
+
+}
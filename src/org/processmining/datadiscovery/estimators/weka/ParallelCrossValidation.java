@@ -0,0 +1,97 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.processmining.datadiscovery.estimators.util.ParallelTasks;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+
+/**
+ * k-fold cross-validation that trains the fold models and the final model
+ * concurrently. The folds are drawn exactly as by
+ * {@link Evaluation#crossValidateModel(Classifier, Instances, int, Random, Object...)}
+ * on the calling thread, and the fold models are evaluated in the same order
+ * afterwards, so the resulting {@link Evaluation} is identical to the one of
+ * Weka for deterministic classifiers.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class ParallelCrossValidation {
+
+	private ParallelCrossValidation() {
+	}
+
+	/**
+	 * Cross-validates the classifier and builds it on all data.
+	 *
+	 * @param classifier
+	 *            unbuilt classifier, which is built on the whole data
+	 * @param data
+	 * @param numFolds
+	 * @param random
+	 *            used to randomize the folds
+	 * @param executor
+	 *            (may be NULL) used to build the models concurrently
+	 * @return the merged evaluation of all folds
+	 * @throws Exception
+	 */
+	public static Evaluation crossValidateAndBuild(final Classifier classifier, final Instances data, int numFolds,
+			Random random, Executor executor) throws Exception {
+		Evaluation evaluation = new Evaluation(data);
+
+		// Same order of random draws as Weka
+		Instances randomizedData = new Instances(data);
+		randomizedData.randomize(random);
+		if (randomizedData.classAttribute().isNominal()) {
+			randomizedData.stratify(numFolds);
+		}
+		List<Instances> trainingSets = new ArrayList<>(numFolds);
+		List<Instances> testSets = new ArrayList<>(numFolds);
+		List<Classifier> foldClassifiers = new ArrayList<>(numFolds);
+		for (int i = 0; i < numFolds; i++) {
+			trainingSets.add(randomizedData.trainCV(numFolds, i, random));
+			testSets.add(randomizedData.testCV(numFolds, i));
+			foldClassifiers.add(AbstractClassifier.makeCopy(classifier));
+		}
+
+		List<Callable<Void>> builds = new ArrayList<>(numFolds + 1);
+		// The final model is typically the most expensive one
+		builds.add(new BuildTask(classifier, data));
+		for (int i = 0; i < numFolds; i++) {
+			builds.add(new BuildTask(foldClassifiers.get(i), trainingSets.get(i)));
+		}
+		ParallelTasks.invokeAll(executor, builds);
+
+		for (int i = 0; i < numFolds; i++) {
+			evaluation.setPriors(trainingSets.get(i));
+			evaluation.evaluateModel(foldClassifiers.get(i), testSets.get(i));
+		}
+		return evaluation;
+	}
+
+	private static final class BuildTask implements Callable<Void> {
+
+		private final Classifier classifier;
+		private final Instances data;
+
+		BuildTask(Classifier classifier, Instances data) {
+			this.classifier = classifier;
+			this.data = data;
+		}
+
+		public Void call() throws Exception {
+			classifier.buildClassifier(data);
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+
+/**
+ * Weka instance that shares its array of attribute values with instances of
+ * other datasets over the same attributes, but has its own class value. The
+ * value stored at the class index of the shared array is ignored. Copies share
+ * the same array, so that Weka may copy the instance while building a tree
+ * without duplicating the attribute values. Views with another class value can
+ * be created with {@link #relabel(Instance, double)}.
+ * <p>
+ * The shared attribute values must not be changed, only the class value can
+ * be set.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class RelabelledInstance extends DenseInstance {
+
+	private static final long serialVersionUID = 2908213845019187163L;
+
+	private final int labelIndex;
+	private double label;
+
+	/**
+	 * @param weight
+	 * @param sharedValues
+	 *            attribute values in the Weka encoding, which are not copied
+	 * @param labelIndex
+	 *            index of the class attribute
+	 * @param label
+	 *            class value of this instance
+	 */
+	public RelabelledInstance(double weight, double[] sharedValues, int labelIndex, double label) {
+		super(weight, sharedValues);
+		this.labelIndex = labelIndex;
+		this.label = label;
+	}
+
+	/**
+	 * Creates a view with a different class value that shares the attribute
+	 * values of the instance, which needs to belong to a dataset.
+	 * 
+	 * @param instance
+	 * @param label
+	 * @return the view, which only shares the values of a
+	 *         {@link RelabelledInstance} and copies those of other instances
+	 */
+	public static RelabelledInstance relabel(Instance instance, double label) {
+		if (instance instanceof RelabelledInstance) {
+			RelabelledInstance source = (RelabelledInstance) instance;
+			return new RelabelledInstance(source.m_Weight, source.m_AttValues, source.labelIndex, label);
+		} else {
+			return new RelabelledInstance(instance.weight(), instance.toDoubleArray(), instance.classIndex(), label);
+		}
+	}
+
+	public double value(int attIndex) {
+		return attIndex == labelIndex ? label : m_AttValues[attIndex];
+	}
+
+	public double valueSparse(int indexOfIndex) {
+		return value(indexOfIndex);
+	}
+
+	public void setValue(int attIndex, double value) {
+		if (attIndex != labelIndex) {
+			throw new UnsupportedOperationException("Cannot change the shared value of attribute " + attIndex);
+		}
+		label = value;
+	}
+
+	public void setValueSparse(int indexOfIndex, double value) {
+		setValue(indexOfIndex, value);
+	}
+
+	public double[] toDoubleArray() {
+		double[] values = super.toDoubleArray();
+		values[labelIndex] = label;
+		return values;
+	}
+
+	public Object copy() {
+		RelabelledInstance copy = new RelabelledInstance(m_Weight, m_AttValues, labelIndex, label);
+		copy.m_Dataset = m_Dataset;
+		return copy;
+	}
+
+	public String toString() {
+		Instance materialized = new DenseInstance(m_Weight, toDoubleArray());
+		materialized.setDataset(m_Dataset);
+		return materialized.toString();
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import java.util.List;
+
+/**
+ * Tree classifier that gives direct access to the structure of its built
+ * tree, so that the {@link WekaTreeClassificationAdapter} does not need to
+ * parse the textual output of {@link weka.core.Drawable#graph()}. Split values
+ * are reported in the Weka encoding without any loss of precision.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public interface TreeModel {
+
+	/**
+	 * Node of the built tree. Each child of an inner node is reached by a
+	 * condition on the split attribute of the inner node.
+	 */
+	interface TreeNode {
+
+		boolean isLeaf();
+
+		/**
+		 * @return the children of an inner node in the order of its branches
+		 */
+		List<? extends TreeNode> getChildren();
+
+		/**
+		 * @return the Weka index of the attribute tested by an inner node
+		 */
+		int getSplitAttribute();
+
+		/**
+		 * @param child
+		 * @return the operator of the condition leading to the child, one of
+		 *         "=", "!=", "<=" and ">"
+		 */
+		String getSplitOperator(int child);
+
+		/**
+		 * @param child
+		 * @return the value of the condition leading to the child in the Weka
+		 *         encoding, i.e., the index of a nominal value
+		 */
+		double getSplitValue(int child);
+
+		/**
+		 * @return the class index predicted by a leaf
+		 */
+		int getClassIndex();
+
+		/**
+		 * @return the weight of the training instances at a leaf
+		 */
+		double getInstanceCount();
+
+		/**
+		 * @return the weight of the training instances at a leaf that do not
+		 *         belong to the predicted class
+		 */
+		double getWrongInstanceCount();
+
+	}
+
+	/**
+	 * @return the root of the built tree
+	 */
+	TreeNode getTreeRoot();
+
+}
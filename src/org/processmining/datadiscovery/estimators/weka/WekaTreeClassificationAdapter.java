@@ -1,12 +1,16 @@
 package org.processmining.datadiscovery.estimators.weka;
 
 import java.io.StringReader;
+import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -14,22 +18,22 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.util.GuardExpressionUtil;
 import org.processmining.datapetrinets.expression.GuardExpression;
 import org.processmining.datapetrinets.expression.syntax.ParseException;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.BoundType;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Range;
 import com.google.common.collect.TreeTraverser;
 
 import weka.core.Attribute;
 import weka.core.Drawable;
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.gui.treevisualizer.Edge;
 import weka.gui.treevisualizer.Node;
 import weka.gui.treevisualizer.TreeBuild;
@@ -47,7 +51,7 @@ public class WekaTreeClassificationAdapter {
 	private static final String BOOLEAN_TRUE = "T";
 
 	private final class WekaTreeTraverser extends TreeTraverser<Node> {
-		public Iterable<Node> children(final Node n) {
+		public ImmutableList<Node> children(final Node n) {
 			AbstractIterator<Node> iterator = new AbstractIterator<Node>() {
 
 				private int i = 0;
@@ -75,6 +79,9 @@ public class WekaTreeClassificationAdapter {
 		private final Attribute attribute;
 		private final Type attributeType;
 
+		// Parsed on first use, conditions are shared by the leaves below them
+		private volatile GuardExpression expression;
+
 		/**
 		 * Creates a new {@link WekaCondition} based on the parsing results.
 		 * 
@@ -85,12 +92,7 @@ public class WekaTreeClassificationAdapter {
 		 * @param attributeType
 		 */
 		public WekaCondition(String attributeName, String restriction, Attribute attribute, Type attributeType) {
-			String wekaUnescape = WekaUtil.wekaUnescape(attributeName);
-			if (!GuardExpression.Factory.isValidVariableIdentifier(wekaUnescape)) {
-				this.attributeName = GuardExpression.Factory.transformToVariableIdentifier(wekaUnescape);
-			} else {
-				this.attributeName = wekaUnescape;
-			}
+			this.attributeName = toVariableName(attributeName);
 			this.attribute = attribute;
 			this.attributeType = attributeType;
 			// Trim whitespace
@@ -100,6 +102,33 @@ public class WekaTreeClassificationAdapter {
 			this.value = restriction.substring(indexOfWhiteSpace + 1);
 		}
 
+		/**
+		 * Creates a new {@link WekaCondition} from a split of a
+		 * {@link TreeModel} without any loss of precision.
+		 * 
+		 * @param attribute
+		 * @param operator
+		 * @param value
+		 *            in the Weka encoding
+		 * @param attributeType
+		 */
+		public WekaCondition(Attribute attribute, String operator, double value, Type attributeType) {
+			this.attributeName = toVariableName(attribute.name());
+			this.attribute = attribute;
+			this.attributeType = attributeType;
+			this.operator = operator;
+			this.value = attribute.isNominal() ? attribute.value((int) value) : formatNumber(value);
+		}
+
+		private static String toVariableName(String attributeName) {
+			String wekaUnescape = WekaUtil.wekaUnescape(attributeName);
+			if (!GuardExpression.Factory.isValidVariableIdentifier(wekaUnescape)) {
+				return GuardExpression.Factory.transformToVariableIdentifier(wekaUnescape);
+			} else {
+				return wekaUnescape;
+			}
+		}
+
 		public String getAttributeName() {
 			return attributeName;
 		}
@@ -108,6 +137,14 @@ public class WekaTreeClassificationAdapter {
 			return value;
 		}
 
+		public Attribute getAttribute() {
+			return attribute;
+		}
+
+		public Type getAttributeType() {
+			return attributeType;
+		}
+
 		public String toExpressionString() {
 			String expressionValue;
 			String expressionOperator;
@@ -143,6 +180,19 @@ public class WekaTreeClassificationAdapter {
 			}
 		}
 
+		/**
+		 * @return the condition as expression, which is parsed only once
+		 * @throws ParseException
+		 */
+		public GuardExpression getExpression() throws ParseException {
+			GuardExpression parsedExpression = expression;
+			if (parsedExpression == null) {
+				parsedExpression = GuardExpression.Factory.newInstance(toExpressionString());
+				expression = parsedExpression;
+			}
+			return parsedExpression;
+		}
+
 		public String toString() {
 			return String.format("%s %s %s", getAttributeName(), operator, value);
 		}
@@ -159,6 +209,7 @@ public class WekaTreeClassificationAdapter {
 
 		private final Node node;
 		private final WekaCondition condition;
+		private List<WekaNode> children = ImmutableList.of();
 
 		public WekaNode(Node node, Instances instances, Map<String, Type> attributeType) {
 			this.node = node;
@@ -204,10 +255,21 @@ public class WekaTreeClassificationAdapter {
 			}
 		}
 
+		/**
+		 * @return the node parsed from the graph of the classifier, NULL if
+		 *         the tree is accessed as {@link TreeModel}
+		 */
 		protected Node getOriginalNode() {
 			return node;
 		}
 
+		/**
+		 * @return the children in the order of the branches
+		 */
+		public List<WekaNode> getChildren() {
+			return children;
+		}
+
 	}
 
 	public final static class WekaLeafNode extends WekaNode {
@@ -314,18 +376,18 @@ public class WekaTreeClassificationAdapter {
 				Range<Double> range = numericRange.getValue();
 				if (range.hasLowerBound() && range.hasUpperBound()) {
 					conditions.push(new WekaCondition(attributeName,
-							convertUpperBoundOperator(range.upperBoundType()) + " " + range.upperEndpoint(), attribute,
+							convertUpperBoundOperator(range.upperBoundType()) + " " + formatNumber(range.upperEndpoint()), attribute,
 							type));
 					conditions.push(new WekaCondition(attributeName,
-							convertLowerBoundOperator(range.lowerBoundType()) + " " + range.lowerEndpoint(), attribute,
+							convertLowerBoundOperator(range.lowerBoundType()) + " " + formatNumber(range.lowerEndpoint()), attribute,
 							type));
 				} else if (range.hasLowerBound()) {
 					conditions.push(new WekaCondition(attributeName,
-							convertLowerBoundOperator(range.lowerBoundType()) + " " + range.lowerEndpoint(), attribute,
+							convertLowerBoundOperator(range.lowerBoundType()) + " " + formatNumber(range.lowerEndpoint()), attribute,
 							type));
 				} else if (range.hasUpperBound()) {
 					conditions.push(new WekaCondition(attributeName,
-							convertUpperBoundOperator(range.upperBoundType()) + " " + range.upperEndpoint(), attribute,
+							convertUpperBoundOperator(range.upperBoundType()) + " " + formatNumber(range.upperEndpoint()), attribute,
 							type));
 				}
 			}
@@ -386,42 +448,118 @@ public class WekaTreeClassificationAdapter {
 			return wrongInstanceCount;
 		}
 
+		/**
+		 * @return the conjunction of the conditions as balanced expression
+		 *         tree, NULL without conditions
+		 * @throws ParseException
+		 */
 		public GuardExpression getExpression() throws ParseException {
 			if (conditions.isEmpty()) {
 				return null;
 			}
-			StringBuilder sBuilder = new StringBuilder();
-			Iterator<WekaCondition> iterator = conditions.iterator();
-			for (int i = 0; i < conditions.size() - 1; i++) {
-				sBuilder.append("(");
+			List<GuardExpression> operands = new ArrayList<>(conditions.size());
+			for (WekaCondition condition : conditions) {
+				operands.add(condition.getExpression());
 			}
+			return GuardExpressionUtil.and(operands);
+		}
 
-			boolean first = true;
-			while (iterator.hasNext()) {
-				WekaCondition condition = iterator.next();
-				sBuilder.append("(");
-				sBuilder.append(condition.toExpressionString());
-				sBuilder.append(")");
-				if (!first) {
-					sBuilder.append(")");
-				} else {
-					first = false;
+	}
+
+	/**
+	 * Node of the tree compiled for routing instances, see
+	 * {@link WekaTreeClassificationAdapter#routeInstances(Instances)}.
+	 */
+	private static final class RoutingNode {
+
+		private final int leafIndex; // -1 for inner nodes
+		private final int attributeIndex;
+		private final int[] operators;
+		private final double[] values;
+		private final RoutingNode[] children;
+
+		RoutingNode(int leafIndex) {
+			this.leafIndex = leafIndex;
+			this.attributeIndex = -1;
+			this.operators = null;
+			this.values = null;
+			this.children = null;
+		}
+
+		RoutingNode(int attributeIndex, int[] operators, double[] values, RoutingNode[] children) {
+			this.leafIndex = -1;
+			this.attributeIndex = attributeIndex;
+			this.operators = operators;
+			this.values = values;
+			this.children = children;
+		}
+
+		int route(Instance instance) {
+			RoutingNode node = this;
+			while (node.leafIndex < 0) {
+				double value = instance.value(node.attributeIndex);
+				if (Utils.isMissingValue(value)) {
+					return -1;
 				}
-				if (iterator.hasNext()) {
-					sBuilder.append(" && ");
+				RoutingNode next = null;
+				for (int i = 0; i < node.children.length && next == null; i++) {
+					if (ConditionOperator.fulfills(node.operators[i], value, node.values[i])) {
+						next = node.children[i];
+					}
+				}
+				if (next == null) {
+					return -1;
 				}
+				node = next;
 			}
+			return node.leafIndex;
+		}
 
-			return GuardExpression.Factory.newInstance(sBuilder.toString());
+	}
+
+	/**
+	 * Node whose children are being built, used instead of recursion to
+	 * support deep trees.
+	 */
+	private static final class BuildFrame<N> {
+
+		private final N node;
+		private final WekaCondition condition;
+		private final List<? extends N> childNodes;
+		private final List<WekaNode> children;
+		private int next = 0;
+
+		BuildFrame(N node, WekaCondition condition, List<? extends N> childNodes) {
+			this.node = node;
+			this.condition = condition;
+			this.childNodes = childNodes;
+			this.children = new ArrayList<>(childNodes.size());
 		}
 
 	}
 
-	private final Node rootNote;
 	private final Drawable treeClassifier;
 	private final Instances dataset;
 	private final Map<String, Type> attributeType;
 
+	// The tree is materialized once and never changed
+	private final WekaNode rootNode;
+	private final ImmutableList<WekaNode> preOrderNodes;
+	private final ImmutableList<WekaNode> postOrderNodes;
+	private final ImmutableList<WekaLeafNode> leafNodes;
+	private final int treeDepth;
+	private volatile RoutingNode routingRoot; // Compiled on first use
+
+	/**
+	 * Builds the nodes of the tree once. If the classifier is a
+	 * {@link TreeModel}, the splits and leaves are read directly from it.
+	 * Otherwise, the output of {@link Drawable#graph()} is parsed.
+	 * 
+	 * @param treeClassifier
+	 * @param dataset
+	 *            the classifier was trained on
+	 * @param attributeType
+	 */
 	public WekaTreeClassificationAdapter(Drawable treeClassifier, final Instances dataset,
 			Map<String, Type> attributeType) {
 		super();
@@ -431,66 +569,207 @@ public class WekaTreeClassificationAdapter {
 		this.treeClassifier = treeClassifier;
 		this.dataset = dataset;
 		this.attributeType = attributeType;
-		try {
-			this.rootNote = new TreeBuild().create(new StringReader(treeClassifier.graph()));
-		} catch (Exception e) {
-			throw new RuntimeException("Could not parse WEKA result graph!", e);
+		if (treeClassifier instanceof TreeModel) {
+			this.rootNode = buildTree(((TreeModel) treeClassifier).getTreeRoot());
+		} else {
+			Node graphRoot;
+			try {
+				graphRoot = new TreeBuild().create(new StringReader(treeClassifier.graph()));
+			} catch (Exception e) {
+				throw new RuntimeException("Could not parse WEKA result graph!", e);
+			}
+			this.rootNode = buildTree(graphRoot);
+		}
+
+		// Guava traverses iteratively
+		TreeTraverser<WekaNode> traverser = treeTraverser();
+		this.preOrderNodes = traverser.preOrderTraversal(rootNode).toList();
+		this.postOrderNodes = traverser.postOrderTraversal(rootNode).toList();
+		this.leafNodes = FluentIterable.from(preOrderNodes).filter(WekaLeafNode.class).toList();
+		this.treeDepth = computeDepth(rootNode);
+	}
+
+	private WekaNode buildTree(TreeModel.TreeNode root) {
+		Deque<WekaCondition> path = new ArrayDeque<>();
+		if (root.isLeaf()) {
+			return createLeaf(root, path);
+		}
+		Deque<BuildFrame<TreeModel.TreeNode>> stack = new ArrayDeque<>();
+		stack.push(new BuildFrame<TreeModel.TreeNode>(root, null, root.getChildren()));
+		while (true) {
+			BuildFrame<TreeModel.TreeNode> frame = stack.peek();
+			if (frame.next < frame.childNodes.size()) {
+				int i = frame.next++;
+				Attribute attribute = dataset.attribute(frame.node.getSplitAttribute());
+				WekaCondition childCondition = new WekaCondition(attribute, frame.node.getSplitOperator(i),
+						frame.node.getSplitValue(i), attributeType.get(attribute.name()));
+				TreeModel.TreeNode child = frame.childNodes.get(i);
+				path.addLast(childCondition);
+				if (child.isLeaf()) {
+					frame.children.add(createLeaf(child, path));
+					path.removeLast();
+				} else {
+					stack.push(new BuildFrame<TreeModel.TreeNode>(child, childCondition, child.getChildren()));
+				}
+			} else {
+				stack.pop();
+				WekaNode wekaNode = new WekaNode(null, frame.condition);
+				wekaNode.children = ImmutableList.copyOf(frame.children);
+				if (stack.isEmpty()) {
+					return wekaNode;
+				}
+				stack.peek().children.add(wekaNode);
+				path.removeLast();
+			}
+		}
+	}
+
+	private WekaLeafNode createLeaf(TreeModel.TreeNode leaf, Deque<WekaCondition> path) {
+		String className = dataset.classAttribute().value(leaf.getClassIndex());
+		// Each leaf simplifies its own copy of the conditions
+		return new WekaLeafNode(dataset, className, new ArrayDeque<>(path), leaf.getInstanceCount(),
+				leaf.getWrongInstanceCount(), attributeType);
+	}
+
+	private WekaNode buildTree(Node root) {
+		if (root.getChild(0) == null) {
+			return new WekaLeafNode(root, dataset, attributeType);
+		}
+		WekaTreeTraverser traverser = new WekaTreeTraverser();
+		Deque<BuildFrame<Node>> stack = new ArrayDeque<>();
+		stack.push(new BuildFrame<Node>(root, null, traverser.children(root)));
+		while (true) {
+			BuildFrame<Node> frame = stack.peek();
+			if (frame.next < frame.childNodes.size()) {
+				Node child = frame.childNodes.get(frame.next++);
+				if (child.getChild(0) == null) {
+					frame.children.add(new WekaLeafNode(child, dataset, attributeType));
+				} else {
+					stack.push(new BuildFrame<Node>(child, null, traverser.children(child)));
+				}
+			} else {
+				stack.pop();
+				WekaNode wekaNode = new WekaNode(frame.node, dataset, attributeType);
+				wekaNode.children = ImmutableList.copyOf(frame.children);
+				if (stack.isEmpty()) {
+					return wekaNode;
+				}
+				stack.peek().children.add(wekaNode);
+			}
 		}
 	}
 
+	private static int computeDepth(WekaNode root) {
+		int maxDepth = 0;
+		Deque<WekaNode> nodes = new ArrayDeque<>();
+		Deque<Integer> depths = new ArrayDeque<>();
+		nodes.push(root);
+		depths.push(0);
+		while (!nodes.isEmpty()) {
+			WekaNode node = nodes.pop();
+			int depth = depths.pop();
+			maxDepth = Math.max(maxDepth, depth);
+			for (WekaNode child : node.getChildren()) {
+				nodes.push(child);
+				depths.push(depth + 1);
+			}
+		}
+		return maxDepth;
+	}
+
 	public FluentIterable<WekaNode> preOrderTraversal() {
-		return treeTraverser().preOrderTraversal(getRootNode());
+		return FluentIterable.from(preOrderNodes);
 	}
 
 	public FluentIterable<WekaNode> postOrderTraversal() {
-		return treeTraverser().postOrderTraversal(getRootNode());
+		return FluentIterable.from(postOrderNodes);
 	}
 
 	public TreeTraverser<WekaNode> treeTraverser() {
-		final WekaTreeTraverser wekaTreeTraverser = new WekaTreeTraverser();
 		return new TreeTraverser<WekaTreeClassificationAdapter.WekaNode>() {
 
 			public Iterable<WekaNode> children(WekaNode node) {
-				return Iterables.transform(wekaTreeTraverser.children(node.getOriginalNode()),
-						new Function<Node, WekaNode>() {
-
-							public WekaNode apply(Node node) {
-								if (node.getChild(0) == null) {
-									return new WekaLeafNode(node, dataset, attributeType);
-								} else {
-									return new WekaNode(node, dataset, attributeType);
-								}
-							}
-						});
+				return node.getChildren();
 			}
 		};
 	}
 
+	/**
+	 * @return the leaves in pre-order, the same objects on every call
+	 */
 	public FluentIterable<WekaLeafNode> traverseLeafNodes() {
-		return treeTraverser().preOrderTraversal(getRootNode()).filter(new Predicate<WekaNode>() {
+		return FluentIterable.from(leafNodes);
+	}
 
-			public boolean apply(WekaNode n) {
-				return n instanceof WekaLeafNode;
-			}
-		}).transform(new Function<WekaNode, WekaLeafNode>() {
+	public WekaNode getRootNode() {
+		return rootNode;
+	}
 
-			public WekaLeafNode apply(WekaNode n) {
-				return (WekaLeafNode) n;
-			}
-		});
+	public Drawable getTreeClassifier() {
+		return treeClassifier;
 	}
 
-	public WekaNode getRootNode() {
-		if (rootNote.getChild(0) == null) {
-			// single leaf root
-			return new WekaLeafNode(rootNote, dataset, attributeType);
+	/**
+	 * Routes each instance from the root to its leaf, only evaluating the
+	 * conditions on its path. The attributes and values of the conditions are
+	 * resolved once for the whole tree.
+	 * 
+	 * @param instances
+	 *            with the attributes of the dataset of this adapter
+	 * @return for each instance the index of its leaf in the order of
+	 *         {@link #traverseLeafNodes()}, -1 if a value tested on its path
+	 *         is missing
+	 */
+	public int[] routeInstances(Instances instances) {
+		RoutingNode root = getRoutingRoot();
+		int[] leafIndices = new int[instances.size()];
+		for (int i = 0; i < leafIndices.length; i++) {
+			leafIndices[i] = root.route(instances.get(i));
 		}
-		return new WekaNode(rootNote, dataset, attributeType);
+		return leafIndices;
+	}
+
+	private RoutingNode getRoutingRoot() {
+		RoutingNode root = routingRoot;
+		if (root == null) {
+			root = compileRoutingNodes();
+			routingRoot = root;
+		}
+		return root;
+	}
+
+	private RoutingNode compileRoutingNodes() {
+		Map<WekaNode, Integer> leafIndex = new IdentityHashMap<>();
+		for (WekaLeafNode leaf : leafNodes) {
+			// Leaves are numbered in pre-order as by traverseLeafNodes
+			leafIndex.put(leaf, leafIndex.size());
+		}
+		// Children are compiled before their parent in post-order
+		Map<WekaNode, RoutingNode> compiled = new IdentityHashMap<>();
+		for (WekaNode node : postOrderNodes) {
+			if (node instanceof WekaLeafNode) {
+				compiled.put(node, new RoutingNode(leafIndex.get(node)));
+				continue;
+			}
+			List<WekaNode> childNodes = node.getChildren();
+			int attributeIndex = -1;
+			int[] operators = new int[childNodes.size()];
+			double[] values = new double[childNodes.size()];
+			RoutingNode[] children = new RoutingNode[childNodes.size()];
+			for (int i = 0; i < children.length; i++) {
+				WekaCondition condition = childNodes.get(i).getCondition();
+				attributeIndex = condition.getAttribute().index();
+				operators[i] = ConditionOperator.code(condition);
+				values[i] = ConditionOperator.value(condition);
+				children[i] = compiled.get(childNodes.get(i));
+			}
+			compiled.put(node, new RoutingNode(attributeIndex, operators, values, children));
+		}
+		return compiled.get(rootNode);
 	}
 
 	public int treeDepth() {
-		WekaTreeTraverser wekaTreeTraverser = new WekaTreeTraverser();
-		return treeDepth(rootNote, wekaTreeTraverser);
+		return treeDepth;
 	}
 
 	public int treeDepth(Node node) {
@@ -510,6 +789,11 @@ public class WekaTreeClassificationAdapter {
 		}
 	}
 
+	static String formatNumber(double value) {
+		// Plain notation as expected by the expression parser
+		return BigDecimal.valueOf(value).toPlainString();
+	}
+
 	public String toString() {
 		return treeClassifier.toString();
 	}
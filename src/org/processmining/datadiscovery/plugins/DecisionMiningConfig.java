@@ -0,0 +1,365 @@
+package org.processmining.datadiscovery.plugins;
+
+import java.util.Set;
+
+import org.processmining.datadiscovery.estimators.TreeBackend;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Immutable configuration of the {@link DecisionMiningEngine}. The user
+ * interface of {@link DecisionMining} only populates an instance of this class,
+ * so the same settings can be used in batch runs without any Swing component.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class DecisionMiningConfig {
+
+	public enum Algorithm {
+		BASIC("Basic Decision Tree "), TRUE_FALSE("True/False Decision Tree"), PAIRWISE(
+				"Pairwise Decision Tree"), OVERLAPPING("Overlapping Decision Tree");
+
+		private final String label;
+
+		private Algorithm(String label) {
+			this.label = label;
+		}
+
+		public String toString() {
+			return label;
+		}
+	}
+
+	public static final class Builder {
+
+		private Algorithm algorithm = Algorithm.BASIC;
+		private double minimalFitness = 0.5;
+		private int instancesPerLeafPermil = 20;
+		private boolean pruneTree = true;
+		private boolean binarySplit = true;
+		private boolean crossValidate = false;
+		private TreeBackend treeBackend = TreeBackend.WEKA_J48;
+		private int histogramBins = 0;
+		private int maxPartitions = 0;
+		private double minConfusion = 0.0;
+		private boolean prunePartitionCandidates = false;
+		private boolean mineWriteOperations = true;
+		private int writeOperationPercentage = 66;
+		private boolean removeAttributesNotInGuard = true;
+		private Set<String> consideredAttributes = null;
+		private Set<Place> consideredPlaces = null;
+
+		private Builder() {
+			super();
+		}
+
+		public Builder algorithm(Algorithm algorithm) {
+			this.algorithm = algorithm;
+			return this;
+		}
+
+		/**
+		 * @param minimalFitness
+		 *            traces whose alignment has a lower fitness are skipped
+		 * @return
+		 */
+		public Builder minimalFitness(double minimalFitness) {
+			this.minimalFitness = minimalFitness;
+			return this;
+		}
+
+		/**
+		 * @param instancesPerLeafPermil
+		 *            minimal number of instances per leaf, in per mille of the
+		 *            number of instances of a decision point
+		 * @return
+		 */
+		public Builder instancesPerLeafPermil(int instancesPerLeafPermil) {
+			this.instancesPerLeafPermil = instancesPerLeafPermil;
+			return this;
+		}
+
+		public Builder pruneTree(boolean pruneTree) {
+			this.pruneTree = pruneTree;
+			return this;
+		}
+
+		public Builder binarySplit(boolean binarySplit) {
+			this.binarySplit = binarySplit;
+			return this;
+		}
+
+		public Builder crossValidate(boolean crossValidate) {
+			this.crossValidate = crossValidate;
+			return this;
+		}
+
+		/**
+		 * @param treeBackend
+		 *            implementation used to induce the decision trees
+		 * @return
+		 */
+		public Builder treeBackend(TreeBackend treeBackend) {
+			this.treeBackend = treeBackend;
+			return this;
+		}
+
+		/**
+		 * @param histogramBins
+		 *            if positive, the trees of all algorithms only consider
+		 *            the boundaries of this many quantile buckets as
+		 *            thresholds of numeric attributes, 0 to consider all
+		 *            values. Requires the {@link TreeBackend#C45} backend.
+		 * @return
+		 */
+		public Builder histogramBins(int histogramBins) {
+			this.histogramBins = histogramBins;
+			return this;
+		}
+
+		/**
+		 * @param maxPartitions
+		 *            the maximum number of pairs of classes that the
+		 *            {@link Algorithm#PAIRWISE} algorithm tries to combine, in
+		 *            the order of their confusion by the normal tree, 0 for
+		 *            no limit
+		 * @return
+		 */
+		public Builder maxPartitions(int maxPartitions) {
+			this.maxPartitions = maxPartitions;
+			return this;
+		}
+
+		/**
+		 * @param minConfusion
+		 *            pairs of classes whose instances are confused by the
+		 *            normal tree with less than this weight are not combined
+		 *            by the {@link Algorithm#PAIRWISE} algorithm, 0 to combine
+		 *            all pairs
+		 * @return
+		 */
+		public Builder minConfusion(double minConfusion) {
+			this.minConfusion = minConfusion;
+			return this;
+		}
+
+		/**
+		 * @param prunePartitionCandidates
+		 *            whether the {@link Algorithm#PAIRWISE} algorithm skips
+		 *            pairs of classes that are unlikely to improve the
+		 *            estimation, which may miss improvements
+		 * @return
+		 */
+		public Builder prunePartitionCandidates(boolean prunePartitionCandidates) {
+			this.prunePartitionCandidates = prunePartitionCandidates;
+			return this;
+		}
+
+		public Builder mineWriteOperations(boolean mineWriteOperations) {
+			this.mineWriteOperations = mineWriteOperations;
+			return this;
+		}
+
+		/**
+		 * @param writeOperationPercentage
+		 *            percentage of the executions of a transition that need to
+		 *            write a variable for the write operation to be mined
+		 * @return
+		 */
+		public Builder writeOperationPercentage(int writeOperationPercentage) {
+			this.writeOperationPercentage = writeOperationPercentage;
+			return this;
+		}
+
+		public Builder removeAttributesNotInGuard(boolean removeAttributesNotInGuard) {
+			this.removeAttributesNotInGuard = removeAttributesNotInGuard;
+			return this;
+		}
+
+		/**
+		 * @param consideredAttributes
+		 *            escaped attribute names to be considered, NULL to consider
+		 *            all attributes
+		 * @return
+		 */
+		public Builder consideredAttributes(Set<String> consideredAttributes) {
+			this.consideredAttributes = consideredAttributes;
+			return this;
+		}
+
+		/**
+		 * @param consideredPlaces
+		 *            decision points to be considered, NULL to consider all
+		 *            places
+		 * @return
+		 */
+		public Builder consideredPlaces(Set<Place> consideredPlaces) {
+			this.consideredPlaces = consideredPlaces;
+			return this;
+		}
+
+		public DecisionMiningConfig build() {
+			if (algorithm == null) {
+				throw new IllegalArgumentException("Missing algorithm!");
+			}
+			if (treeBackend == null) {
+				throw new IllegalArgumentException("Missing tree backend!");
+			}
+			if (histogramBins < 0 || histogramBins == 1 || histogramBins >= Short.MAX_VALUE) {
+				throw new IllegalArgumentException("Invalid number of histogram buckets " + histogramBins);
+			}
+			if (histogramBins > 0 && treeBackend != TreeBackend.C45) {
+				throw new IllegalArgumentException("Histogram buckets are only supported by the "
+						+ TreeBackend.C45 + " backend, not by " + treeBackend);
+			}
+			if (maxPartitions < 0) {
+				throw new IllegalArgumentException("Invalid maximum number of partitions " + maxPartitions);
+			}
+			if (minConfusion < 0) {
+				throw new IllegalArgumentException("Invalid minimum confusion " + minConfusion);
+			}
+			if (instancesPerLeafPermil < 0 || instancesPerLeafPermil > 1000) {
+				throw new IllegalArgumentException("Invalid number of instances per leaf " + instancesPerLeafPermil);
+			}
+			return new DecisionMiningConfig(this);
+		}
+
+	}
+
+	private final Algorithm algorithm;
+	private final double minimalFitness;
+	private final int instancesPerLeafPermil;
+	private final boolean pruneTree;
+	private final boolean binarySplit;
+	private final boolean crossValidate;
+	private final TreeBackend treeBackend;
+	private final int histogramBins;
+	private final int maxPartitions;
+	private final double minConfusion;
+	private final boolean prunePartitionCandidates;
+	private final boolean mineWriteOperations;
+	private final int writeOperationPercentage;
+	private final boolean removeAttributesNotInGuard;
+	private final Set<String> consideredAttributes;
+	private final Set<Place> consideredPlaces;
+
+	private DecisionMiningConfig(Builder builder) {
+		this.algorithm = builder.algorithm;
+		this.minimalFitness = builder.minimalFitness;
+		this.instancesPerLeafPermil = builder.instancesPerLeafPermil;
+		this.pruneTree = builder.pruneTree;
+		this.binarySplit = builder.binarySplit;
+		this.crossValidate = builder.crossValidate;
+		this.treeBackend = builder.treeBackend;
+		this.histogramBins = builder.histogramBins;
+		this.maxPartitions = builder.maxPartitions;
+		this.minConfusion = builder.minConfusion;
+		this.prunePartitionCandidates = builder.prunePartitionCandidates;
+		this.mineWriteOperations = builder.mineWriteOperations;
+		this.writeOperationPercentage = builder.writeOperationPercentage;
+		this.removeAttributesNotInGuard = builder.removeAttributesNotInGuard;
+		this.consideredAttributes = builder.consideredAttributes != null
+				? ImmutableSet.copyOf(builder.consideredAttributes) : null;
+		this.consideredPlaces = builder.consideredPlaces != null ? ImmutableSet.copyOf(builder.consideredPlaces)
+				: null;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return a {@link Builder} initialised with the settings of this
+	 *         configuration
+	 */
+	public Builder toBuilder() {
+		return new Builder().algorithm(algorithm).minimalFitness(minimalFitness)
+				.instancesPerLeafPermil(instancesPerLeafPermil).pruneTree(pruneTree).binarySplit(binarySplit)
+				.crossValidate(crossValidate).treeBackend(treeBackend).histogramBins(histogramBins)
+				.maxPartitions(maxPartitions).minConfusion(minConfusion)
+				.prunePartitionCandidates(prunePartitionCandidates).mineWriteOperations(mineWriteOperations)
+				.writeOperationPercentage(writeOperationPercentage)
+				.removeAttributesNotInGuard(removeAttributesNotInGuard).consideredAttributes(consideredAttributes)
+				.consideredPlaces(consideredPlaces);
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public double getMinimalFitness() {
+		return minimalFitness;
+	}
+
+	public int getInstancesPerLeafPermil() {
+		return instancesPerLeafPermil;
+	}
+
+	public boolean isPruneTree() {
+		return pruneTree;
+	}
+
+	public boolean isBinarySplit() {
+		return binarySplit;
+	}
+
+	public boolean isCrossValidate() {
+		return crossValidate;
+	}
+
+	public TreeBackend getTreeBackend() {
+		return treeBackend;
+	}
+
+	public int getHistogramBins() {
+		return histogramBins;
+	}
+
+	public int getMaxPartitions() {
+		return maxPartitions;
+	}
+
+	public double getMinConfusion() {
+		return minConfusion;
+	}
+
+	public boolean isPrunePartitionCandidates() {
+		return prunePartitionCandidates;
+	}
+
+	public boolean isMineWriteOperations() {
+		return mineWriteOperations;
+	}
+
+	public int getWriteOperationPercentage() {
+		return writeOperationPercentage;
+	}
+
+	public boolean isRemoveAttributesNotInGuard() {
+		return removeAttributesNotInGuard;
+	}
+
+	public Set<String> getConsideredAttributes() {
+		return consideredAttributes;
+	}
+
+	public Set<Place> getConsideredPlaces() {
+		return consideredPlaces;
+	}
+
+	public boolean isConsideredAttribute(String attributeName) {
+		return consideredAttributes == null || consideredAttributes.contains(attributeName);
+	}
+
+	public boolean isConsideredPlace(Place place) {
+		return consideredPlaces == null || consideredPlaces.contains(place);
+	}
+
+	public String toString() {
+		return String.format("%s, min instances per leaf: %d, pruning: %s, binary: %s", algorithm,
+				instancesPerLeafPermil, pruneTree, binarySplit);
+	}
+
+}
@@ -0,0 +1,688 @@
+package org.processmining.datadiscovery.plugins;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.deckfour.xes.extension.std.XOrganizationalExtension;
+import org.deckfour.xes.model.XAttribute;
+import org.deckfour.xes.model.XAttributeBoolean;
+import org.deckfour.xes.model.XAttributeContinuous;
+import org.deckfour.xes.model.XAttributeDiscrete;
+import org.deckfour.xes.model.XAttributeLiteral;
+import org.deckfour.xes.model.XAttributeTimestamp;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.DecisionTreeBasedFunctionEstimator;
+import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.FunctionEstimator;
+import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.impl.DecisionTreeFunctionEstimator;
+import org.processmining.datadiscovery.estimators.impl.DiscriminatingFunctionEstimator;
+import org.processmining.datadiscovery.estimators.impl.HistogramDecisionTreeFunctionEstimator;
+import org.processmining.datadiscovery.estimators.impl.OverlappingEstimatorLocalDecisionTree;
+import org.processmining.datadiscovery.estimators.impl.OverlappingEstimatorPairwiseDecisionTrees;
+import org.processmining.datadiscovery.estimators.weka.WekaUtil;
+import org.processmining.datadiscovery.model.DecisionPointResult;
+import org.processmining.datadiscovery.model.DiscoveredPetriNetWithData;
+import org.processmining.datadiscovery.plugins.alignment.StreamingLogReplayer;
+import org.processmining.datadiscovery.plugins.alignment.TraceProcessingPipeline;
+import org.processmining.datapetrinets.expression.GuardExpression;
+import org.processmining.framework.plugin.PluginContext;
+import org.processmining.framework.plugin.Progress;
+import org.processmining.log.utils.XUtils;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.graphbased.directed.petrinetwithdata.newImpl.DataElement;
+import org.processmining.models.graphbased.directed.petrinetwithdata.newImpl.PNWDTransition;
+import org.processmining.models.graphbased.directed.petrinetwithdata.newImpl.PetriNetWithDataFactory;
+import org.processmining.models.semantics.petrinet.Marking;
+import org.processmining.plugins.petrinet.replayresult.PNRepResult;
+import org.processmining.plugins.replayer.replayresult.SyncReplayResult;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+
+/**
+ * Discovers the data-flow of a Petri net on the basis of control-flow
+ * alignments. The engine does not use any static or user interface state: it
+ * is configured by an immutable {@link DecisionMiningConfig}, so several
+ * discoveries can run concurrently in one JVM and the engine can be used on a
+ * headless server.
+ * <p>
+ * Note that the engine does not change the default {@link java.util.Locale},
+ * which is left to the caller.
+ *
+ * @author Massimiliano de Leoni
+ * @author F. Mannhardt
+ *
+ */
+public final class DecisionMiningEngine {
+
+	/**
+	 * Result of the discovery with the discovered Petri net with data and its
+	 * initial and final marking.
+	 */
+	public static final class Result {
+
+		private final DiscoveredPetriNetWithData net;
+		private final Marking initialMarking;
+		private final Marking finalMarking;
+
+		private Result(DiscoveredPetriNetWithData net, Marking initialMarking, Marking finalMarking) {
+			this.net = net;
+			this.initialMarking = initialMarking;
+			this.finalMarking = finalMarking;
+		}
+
+		public DiscoveredPetriNetWithData getNet() {
+			return net;
+		}
+
+		public Marking getInitialMarking() {
+			return initialMarking;
+		}
+
+		public Marking getFinalMarking() {
+			return finalMarking;
+		}
+
+		/**
+		 * @return the result in the format returned by the ProM plug-in
+		 */
+		public Object[] toArray() {
+			return new Object[] { net, initialMarking, finalMarking };
+		}
+
+	}
+
+	private final DecisionMiningConfig config;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates an engine that uses its own thread pool for each discovery.
+	 *
+	 * @param config
+	 */
+	public DecisionMiningEngine(DecisionMiningConfig config) {
+		this(config, null);
+	}
+
+	/**
+	 * Creates an engine that uses the supplied executor. The executor is not
+	 * shut down by the engine.
+	 *
+	 * @param config
+	 * @param executor
+	 *            (may be NULL) to use a fresh thread pool for each discovery
+	 */
+	public DecisionMiningEngine(DecisionMiningConfig config, ExecutorService executor) {
+		this.config = config;
+		this.executor = executor;
+	}
+
+	public DecisionMiningConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Discovers guards and write operations for the supplied Petri net. The
+	 * attribute information is extracted from the log.
+	 *
+	 * @param context
+	 *            used for logging, progress and the markings
+	 * @param net
+	 * @param log
+	 * @param alignment
+	 *            the control-flow alignment of log and net
+	 * @return the result or NULL if cancelled
+	 * @throws Exception
+	 */
+	public Result discover(PluginContext context, PetrinetGraph net, XLog log, PNRepResult alignment)
+			throws Exception {
+		return discover(context, net, log, alignment, extractAttributeInformation(log), getLiteralValuesMap(log));
+	}
+
+	/**
+	 * Discovers guards and write operations for the supplied Petri net.
+	 *
+	 * @param context
+	 *            used for logging, progress and the markings
+	 * @param net
+	 * @param log
+	 * @param alignment
+	 *            the control-flow alignment of log and net
+	 * @param attributeTypes
+	 *            types of the (escaped) attributes, only those attributes
+	 *            accepted by
+	 *            {@link DecisionMiningConfig#isConsideredAttribute(String)}
+	 *            are used
+	 * @param literalValues
+	 *            values of the literal attributes
+	 * @return the result or NULL if cancelled
+	 * @throws Exception
+	 */
+	public Result discover(PluginContext context, PetrinetGraph net, XLog log, PNRepResult alignment,
+			Map<String, Type> attributeTypes, Map<String, Set<String>> literalValues) throws Exception {
+
+		if (alignment.getInfo().get(PNRepResult.TRACEFITNESS) == null) {
+			throw new IllegalArgumentException(
+					"It is impossible to create the control-flow alignments. Make sure that the model and the log are as intended.");
+		}
+		return discover(context, net, log, (Iterable<SyncReplayResult>) alignment, attributeTypes, literalValues);
+	}
+
+	/**
+	 * Discovers guards and write operations for the supplied Petri net. The
+	 * alignments are processed in the order they are returned by the
+	 * {@link Iterable}, which may block until the next alignment is computed
+	 * (e.g., {@link StreamingLogReplayer}). Instances are extracted while the
+	 * remaining alignments are still being computed.
+	 *
+	 * @param context
+	 *            used for logging, progress and the markings
+	 * @param net
+	 * @param log
+	 * @param alignments
+	 *            the control-flow alignments of log and net, iterated once
+	 * @param attributeTypes
+	 *            types of the (escaped) attributes, only those attributes
+	 *            accepted by
+	 *            {@link DecisionMiningConfig#isConsideredAttribute(String)}
+	 *            are used
+	 * @param literalValues
+	 *            values of the literal attributes
+	 * @return the result or NULL if cancelled
+	 * @throws Exception
+	 */
+	public Result discover(PluginContext context, PetrinetGraph net, XLog log, Iterable<SyncReplayResult> alignments,
+			Map<String, Type> attributeTypes, Map<String, Set<String>> literalValues) throws Exception {
+
+		Map<String, Type> classTypes = new HashMap<>(attributeTypes);
+		Iterator<String> iter = classTypes.keySet().iterator();
+		while (iter.hasNext()) {
+			if (!config.isConsideredAttribute(iter.next())) {
+				iter.remove();
+			}
+		}
+
+		ExecutorService pool = executor;
+		if (pool == null) {
+			int maxConcurrentThreads = Runtime.getRuntime().availableProcessors();
+			ThreadPoolExecutor ownPool = new ThreadPoolExecutor(maxConcurrentThreads, maxConcurrentThreads, 60,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+			ownPool.allowCoreThreadTimeOut(false);
+			pool = ownPool;
+		}
+		try {
+			return doDiscover(context, net, log, alignments, classTypes, literalValues, pool);
+		} finally {
+			if (pool != executor) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	private Result doDiscover(final PluginContext context, PetrinetGraph net, XLog log,
+			Iterable<SyncReplayResult> alignments, Map<String, Type> classTypes,
+			Map<String, Set<String>> literalValues, ExecutorService pool) throws Exception {
+
+		/*
+		 * Initialize a HashMap<Place, FunctionEstimator>, linking a
+		 * FunctionEstimator to each Place
+		 */
+		Map<Place, FunctionEstimator> estimators = new HashMap<>();
+
+		/*
+		 * Initialize a thread-safe AtomicLongMap<Transition> denoting the
+		 * numberOfExecutions per Transition
+		 */
+		AtomicLongMap<Transition> numberOfExecutions = AtomicLongMap.create();
+
+		/*
+		 * Initialize a HashMap<Transition, Map<String, Integer>> denoting the
+		 * number of writes per Transition FM: Does not need to be thread-safe!!
+		 * Only get is executed!
+		 */
+		Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition = new HashMap<>();
+
+		for (Transition trans : net.getTransitions()) {
+			/*
+			 * For each transition, set the numberOfExecutions to 0 and
+			 * initialize the HashMap<String, Integer>
+			 */
+			numberOfExecutions.put(trans, 0);
+			numberOfWritesPerTransition.put(trans, AtomicLongMap.<String>create());
+		}
+
+		/*
+		 * For each place with at least 2 outgoing edges in the net ..
+		 */
+		for (Place place : net.getPlaces()) {
+			// If 'place' does not represent an OR-split (outgoing edges < 2), goto next iteration of for-loop (skip the place, not interesting)
+			if (net.getOutEdges(place).size() < 2) {
+				continue;
+			}
+
+			if (!config.isConsideredPlace(place)) {
+				continue;
+			}
+
+			/*
+			 * 'place' is part of an OR-split decision point with >= 2 outgoing
+			 * edges. Prepare an array outputValues[] to collect the target
+			 * Transitions of the outgoing edges of 'place'
+			 */
+			Transition outputValues[] = new Transition[net.getOutEdges(place).size()];
+			int index = 0;
+			for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> arc : net.getOutEdges(place)) {
+				outputValues[index++] = (Transition) arc.getTarget();
+			}
+
+			estimators.put(place, createEstimator(place, outputValues, classTypes, literalValues, log.size(), pool));
+		}
+		// POST: Each Place 'place' which is part of a decision part has an associated FunctionEstimator in Map<Place, FunctionEstimator> 'estimators'
+
+		// Prepare context progress bar
+		final Progress progress = context.getProgress();
+		progress.setMaximum(log.size() + estimators.entrySet().size());
+		progress.setValue(0);
+		context.log("Processing the log traces...");
+
+		// The estimators lay out their attributes in the order of classTypes, too
+		AttributeSchema schema = new AttributeSchema(classTypes, literalValues);
+		TraceProcessingPipeline pipeline = new TraceProcessingPipeline(net, log, estimators, schema,
+				numberOfExecutions, numberOfWritesPerTransition, progress, config.getMinimalFitness(), pool,
+				TraceProcessingPipeline.DEFAULT_CHUNK_SIZE, 2 * Runtime.getRuntime().availableProcessors());
+
+		/*
+		 * Have the pipeline process each trace in the alignments, adding
+		 * instances to the estimator and keeping track of attribute values. For
+		 * each step in the alignment, For each in-edge of the transition, If
+		 * the source-Place of that in-edge has an estimator, Add an instance
+		 * corresponding to the variable values in that place, before executing
+		 * the transition corresponding to the step. An instance is a set of
+		 * attribute values' pre-values and a transition to be executed
+		 */
+		for (SyncReplayResult alignment : alignments) {
+			if (!pipeline.add(alignment)) {
+				break;
+			}
+		}
+
+		// This blocks until all traces are processed
+		if (!pipeline.await()) {
+			return null;
+		}
+		context.log("Skipped " + pipeline.getNumSkippedTraces() + " low-fitting traces out of "
+				+ pipeline.getNumTraces());
+
+		// For each place
+		for (Place place : net.getPlaces()) {
+			// Configure the corresponding function estimator's decision tree parameters
+			FunctionEstimator f = estimators.get(place);
+			if (f instanceof DecisionTreeBasedFunctionEstimator) {
+				DecisionTreeBasedFunctionEstimator treeEstimator = (DecisionTreeBasedFunctionEstimator) f;
+				int numInstances = treeEstimator.getNumInstances();
+				// Set the minimal number of instances per leaf, in per mille (relative to numInstances)
+				treeEstimator.setMinNumObj((int) (numInstances * (config.getInstancesPerLeafPermil() / 1000F)));
+				treeEstimator.setUnpruned(!config.isPruneTree());
+				treeEstimator.setBinarySplit(config.isBinarySplit());
+				treeEstimator.setCrossValidate(config.isCrossValidate());
+				treeEstimator.setTreeBackend(config.getTreeBackend());
+				// Buckets apply to the trees of all algorithms, the basic one already sketched the values
+				treeEstimator.setHistogramBins(config.getHistogramBins());
+				treeEstimator.setExecutor(pool);
+			}
+		}
+
+		/*
+		 * Collect result for each decision point
+		 */
+		Map<Place, Future<DecisionPointResult>> results = new HashMap<>();
+		for (Entry<Place, FunctionEstimator> estimatorPlacePair : estimators.entrySet()) {
+
+			final Place place = estimatorPlacePair.getKey();
+			final FunctionEstimator f = estimatorPlacePair.getValue();
+
+			Future<DecisionPointResult> result = pool.submit(new Callable<DecisionPointResult>() {
+
+				public DecisionPointResult call() throws Exception {
+
+					// Calculate the conditions with likelihoods for each target transition of place entry2.getKey()
+					final Map<Object, FunctionEstimation> estimationTransitionExpression = f
+							.getFunctionEstimation(null);
+
+					double sumFMeasures = 0;
+					int numRules = 0;
+					for (FunctionEstimation val : estimationTransitionExpression.values()) {
+						sumFMeasures += val.getQualityMeasure();
+						numRules++;
+					}
+
+					final double singleFScore = numRules > 0 ? sumFMeasures / numRules : 0;
+					final String decisionPointClassifier = f.toString();
+
+					DecisionPointResult result = new DecisionPointResult() {
+
+						public String toString() {
+							return decisionPointClassifier;
+						}
+
+						public double getQualityMeasure() {
+							return singleFScore;
+						}
+
+						public Map<Object, FunctionEstimation> getEstimatedGuards() {
+
+							return estimationTransitionExpression;
+						}
+
+					};
+
+					if (result.getQualityMeasure() > 0) {
+						context.log(String.format("Generated the conditions for decision point %s with f-score %s",
+								place.getLabel(), result.getQualityMeasure()));
+					}
+					if (f instanceof HistogramDecisionTreeFunctionEstimator) {
+						Map<String, Double> thresholdErrors = ((HistogramDecisionTreeFunctionEstimator) f)
+								.getThresholdErrors();
+						if (!thresholdErrors.isEmpty()) {
+							context.log(String.format(
+									"Thresholds of decision point %s may deviate from the exact ones by up to %s",
+									place.getLabel(), thresholdErrors));
+						}
+					}
+					progress.inc();
+
+					return result;
+				}
+
+			});
+			results.put(place, result);
+		}
+
+		/*
+		 * Prepare the mining algorithm's resulting PetriNetWithData.
+		 */
+		String dpnName = String.format("%s (%s)", net.getLabel(), config);
+		final PetriNetWithDataFactory factory = new PetriNetWithDataFactory(net,
+				new DiscoveredPetriNetWithData(dpnName), false);
+		DiscoveredPetriNetWithData discoveredDPN = (DiscoveredPetriNetWithData) factory.getRetValue(); // cast if safe
+
+		/*
+		 * For each entry in classTypes, <String, Type> representing (Attribute
+		 * name, attribute type), depending on the type add a new Variable to
+		 * the new PetriNetWithData without min or max values
+		 */
+		for (Entry<String, Type> entry : classTypes.entrySet()) {
+			Class<?> classType = null;
+			switch (entry.getValue()) {
+				case BOOLEAN :
+					classType = Boolean.class;
+					break;
+				case CONTINUOS :
+					classType = Double.class;
+					break;
+				case DISCRETE :
+					classType = Long.class;
+					break;
+				case LITERAL :
+					classType = String.class;
+					break;
+				case TIMESTAMP :
+					classType = Date.class;
+					break;
+				default :
+					break;
+
+			}
+			String wekaUnescaped = WekaUtil.wekaUnescape(entry.getKey());
+			String saneVariableName = GuardExpression.Factory.transformToVariableIdentifier(wekaUnescaped);
+			discoveredDPN.addVariable(saneVariableName, classType, null, null);
+		}
+
+		double sumFScores = 0;
+		int numEstimators = 0;
+
+		Map<Place, Place> placeMapping = factory.getPlaceMapping();
+
+		for (Entry<Place, Future<DecisionPointResult>> futureEntry : results.entrySet()) {
+			try {
+				DecisionPointResult result = futureEntry.getValue().get();
+				discoveredDPN.storeDecisionPointResult(placeMapping.get(futureEntry.getKey()), result);
+
+				// If, for any Transition at this decision point, an expression is found..
+				if (!result.getEstimatedGuards().isEmpty()) {
+					// Then, for each such Transition, set the guard in the PetriNetWithData
+					for (Entry<Object, FunctionEstimation> transitionEntry : result.getEstimatedGuards().entrySet()) {
+						Transition transitionInPNWithoutData = (Transition) transitionEntry.getKey();
+						PNWDTransition transitionInPNWithData = (PNWDTransition) factory.getTransMapping()
+								.get(transitionInPNWithoutData);
+						FunctionEstimation value = transitionEntry.getValue();
+						if (transitionInPNWithData.getGuardExpression() != null) {
+							//TODO find correct method to update f-score / what to do in the general case for more than two incoming arcs
+							Double combinedFScore = (value.getQualityMeasure() + transitionInPNWithData.getQuality())
+									/ 2;
+							GuardExpression existingGuard = transitionInPNWithData.getGuardExpression();
+							GuardExpression additionalGuard = value.getExpression();
+							GuardExpression combinedGuard = GuardExpression.Operation.and(existingGuard,
+									additionalGuard);
+							context.log(
+									String.format("Combining two guards for non-free choice construct: %s (%s) %s (%s)",
+											existingGuard, value.getQualityMeasure(), additionalGuard,
+											transitionInPNWithData.getQuality()));
+							discoveredDPN.setGuard(transitionInPNWithData, combinedGuard, combinedFScore);
+						} else {
+							discoveredDPN.setGuard(transitionInPNWithData, value.getExpression(),
+									value.getQualityMeasure());
+						}
+					}
+
+					sumFScores += result.getQualityMeasure();
+					numEstimators++;
+				}
+			} catch (ExecutionException e) {
+				context.log(e);
+			}
+		}
+
+		if (sumFScores > 0) {
+			context.log("Average F Score: " + sumFScores / numEstimators);
+		}
+
+		for (Transition transitionInPNWithoutData : net.getTransitions()) {
+			PNWDTransition transitionInPNWithData = (PNWDTransition) factory.getTransMapping()
+					.get(transitionInPNWithoutData);
+
+			if (config.isMineWriteOperations() && !transitionInPNWithData.isInvisible()) {
+
+				//Set the read operations
+				if (transitionInPNWithData.getGuardExpression() != null) {
+					// Only use normal variables as those are read
+					Set<String> normalVariables = transitionInPNWithData.getGuardExpression().getNormalVariables();
+					for (String varName : normalVariables) {
+						discoveredDPN.assignReadOperation(transitionInPNWithData, discoveredDPN.getVariable(varName));
+					}
+				}
+
+				//Set the write operations
+				long numberOfExecution = numberOfExecutions.get(transitionInPNWithoutData);
+				for (Entry<String, Long> numWritesVariable : numberOfWritesPerTransition.get(transitionInPNWithoutData)
+						.asMap().entrySet()) {
+					if (numWritesVariable.getValue() > (numberOfExecution * config.getWriteOperationPercentage())
+							/ 100) {
+						DataElement dataElem = discoveredDPN.getVariable(numWritesVariable.getKey());
+						if (dataElem != null)
+							discoveredDPN.assignWriteOperation(transitionInPNWithData, dataElem);
+					}
+				}
+			}
+		}
+
+		if (config.isRemoveAttributesNotInGuard())
+			discoveredDPN.removeAllVariablesNotInGuard();
+
+		Marking[] markings = factory.cloneInitialAndFinalConnection(context);
+
+		return new Result(discoveredDPN, markings[0], markings[1]);
+	}
+
+	/**
+	 * Prepare a {@link FunctionEstimator} with the attribute types, values and
+	 * resulting Transitions for the place according to the configured
+	 * algorithm.
+	 */
+	private FunctionEstimator createEstimator(Place place, Transition[] outputValues, Map<String, Type> classTypes,
+			Map<String, Set<String>> literalValues, int capacity, ExecutorService pool) {
+		switch (config.getAlgorithm()) {
+			case BASIC :
+				if (config.getHistogramBins() > 0) {
+					return new HistogramDecisionTreeFunctionEstimator(classTypes, literalValues, outputValues,
+							place.getLabel(), capacity, config.getHistogramBins());
+				}
+				return new DecisionTreeFunctionEstimator(classTypes, literalValues, outputValues, place.getLabel(),
+						capacity);
+			case TRUE_FALSE :
+				return new DiscriminatingFunctionEstimator(classTypes, literalValues, outputValues, capacity,
+						place.getLabel());
+			case PAIRWISE :
+				OverlappingEstimatorPairwiseDecisionTrees pairwiseEstimator = new OverlappingEstimatorPairwiseDecisionTrees(
+						classTypes, literalValues, outputValues, capacity, place.getLabel(), pool);
+				pairwiseEstimator.setMaxPartitions(config.getMaxPartitions());
+				pairwiseEstimator.setMinConfusion(config.getMinConfusion());
+				pairwiseEstimator.setPruneCandidates(config.isPrunePartitionCandidates());
+				return pairwiseEstimator;
+			case OVERLAPPING :
+				return new OverlappingEstimatorLocalDecisionTree(classTypes, literalValues, outputValues, capacity,
+						place.getLabel());
+		}
+		throw new IllegalArgumentException("Algorithm Unforeseen!!");
+	}
+
+	public static Map<String, Set<String>> getLiteralValuesMap(XLog log) {
+		return getLiteralValuesMap(log, false);
+	}
+
+	public static Map<String, Set<String>> getLiteralValuesMap(XLog log, boolean forgetTraceAttribute) {
+
+		Map<String, Set<String>> retValue = new HashMap<>();
+
+		for (XTrace trace : log) {
+
+			if (!forgetTraceAttribute) {
+				for (XAttribute attributeEntry : trace.getAttributes().values()) {
+					addLiteralValue(retValue, attributeEntry);
+				}
+			}
+
+			for (XEvent event : trace) {
+				for (XAttribute attributeEntry : event.getAttributes().values()) {
+					addLiteralValue(retValue, attributeEntry);
+				}
+			}
+		}
+
+		return retValue;
+	}
+
+	private static void addLiteralValue(Map<String, Set<String>> literalValueMap, XAttribute attributeEntry) {
+		if (attributeEntry instanceof XAttributeLiteral) {
+			String value = ((XAttributeLiteral) attributeEntry).getValue();
+			String varName = WekaUtil.fixVarName(attributeEntry.getKey());
+			Set<String> literalValues = literalValueMap.get(varName);
+			if (literalValues == null) {
+				literalValues = new TreeSet<>();
+				literalValueMap.put(varName, literalValues);
+			}
+			literalValues.add(value);
+		}
+	}
+
+	public static Map<String, Type> extractAttributeInformation(XLog log) {
+		return extractAttributeInformation(log, true);
+	}
+
+	public static Map<String, Type> extractAttributeInformation(XLog log, boolean forgetTraceAttribute) {
+		HashMap<String, Type> retValue = new HashMap<>();
+		for (XTrace trace : log) {
+
+			if (!forgetTraceAttribute) {
+				for (XAttribute attr : trace.getAttributes().values()) {
+					if (!shouldIgnoreAttribute(attr)) {
+						Type classType = generateDataElement(attr);
+						if (classType != null)
+							retValue.put(WekaUtil.fixVarName(attr.getKey()), classType);
+					}
+				}
+			}
+
+			for (XEvent event : trace) {
+				for (XAttribute attr : event.getAttributes().values()) {
+					if (!shouldIgnoreAttribute(attr)) {
+						Type classType = generateDataElement(attr);
+						if (classType != null) {
+							String fixedVarName = WekaUtil.fixVarName(attr.getKey());
+							//TODO what if attributes have inconsistent types
+							if (!retValue.containsKey(fixedVarName)) {
+								retValue.put(fixedVarName, classType);
+							}
+						}
+					}
+				}
+			}
+
+		}
+		return retValue;
+	}
+
+	private static boolean shouldIgnoreAttribute(XAttribute attr) {
+		if (XOrganizationalExtension.KEY_ROLE.equals(attr.getKey())
+				|| XOrganizationalExtension.KEY_RESOURCE.equals(attr.getKey())
+				|| XOrganizationalExtension.KEY_GROUP.equals(attr.getKey())) {
+			// organisational attributes might be interesting
+			return false;
+		}
+		return XUtils.isStandardExtensionAttribute(attr);
+	}
+
+	/**
+	 * Return the specific Data Type corresponding to the given XAttribute
+	 *
+	 * @param xAttrib
+	 * @return the Type of the XAttribute, corresponding to the actual
+	 *         XAttribute instance of xAttrib.
+	 */
+	private static Type generateDataElement(XAttribute xAttrib) {
+
+		if (xAttrib instanceof XAttributeBoolean) {
+			return Type.BOOLEAN;
+		} else if (xAttrib instanceof XAttributeContinuous) {
+			return Type.CONTINUOS;
+		} else if (xAttrib instanceof XAttributeDiscrete) {
+			return Type.DISCRETE;
+		} else if (xAttrib instanceof XAttributeTimestamp) {
+			return Type.TIMESTAMP;
+		} else if (xAttrib instanceof XAttributeLiteral) {
+			return Type.LITERAL;
+		}
+
+		return null;
+	}
+
+}
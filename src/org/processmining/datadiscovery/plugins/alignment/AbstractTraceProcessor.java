@@ -1,19 +1,14 @@
 package org.processmining.datadiscovery.plugins.alignment;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.deckfour.xes.model.XAttribute;
-import org.deckfour.xes.model.XAttributeBoolean;
-import org.deckfour.xes.model.XAttributeContinuous;
-import org.deckfour.xes.model.XAttributeDiscrete;
-import org.deckfour.xes.model.XAttributeLiteral;
 import org.deckfour.xes.model.XAttributeMap;
-import org.deckfour.xes.model.XAttributeTimestamp;
 import org.deckfour.xes.model.XEvent;
 import org.deckfour.xes.model.XTrace;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.AttributeVector;
 import org.processmining.datadiscovery.estimators.FunctionEstimator;
 import org.processmining.datadiscovery.estimators.weka.WekaUtil;
 import org.processmining.datapetrinets.expression.GuardExpression;
@@ -40,7 +35,7 @@ abstract public class AbstractTraceProcessor implements Runnable {
 	protected XTrace xTrace;
 	protected Map<Place, FunctionEstimator> estimators;
 	protected Progress progress;
-	protected Map<String,Object> variableValues = new HashMap<String,Object>();
+	protected final AttributeVector variableValues;
 	protected AtomicLongMap<Transition> numberOfExecutions;
 	protected Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition;
 	protected float weight;
@@ -49,12 +44,14 @@ abstract public class AbstractTraceProcessor implements Runnable {
 	public AbstractTraceProcessor(PetrinetGraph net, 
 						  XTrace xTrace, 
 						  Map<Place, FunctionEstimator> estimators,
+						  AttributeSchema schema,
 						  AtomicLongMap<Transition> numberOfExecutions, 
 						  Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition, 
 						  Progress progress) {
 		this.net = net;
 		this.xTrace = xTrace;
 		this.estimators = estimators;
+		this.variableValues = new AttributeVector(schema);
 		this.progress = progress;
 		this.numberOfExecutions = numberOfExecutions;
 		this.numberOfWritesPerTransition = numberOfWritesPerTransition;
@@ -79,24 +76,8 @@ abstract public class AbstractTraceProcessor implements Runnable {
 	}
 
 	protected void updateAttributes(XAttributeMap xAttributeMap) {
-		
-		for (XAttribute xAttrib : xAttributeMap.values())
-		{
-			String attributeKey = xAttrib.getKey();
-			String varName=WekaUtil.fixVarName(attributeKey);
-			if (xAttrib instanceof XAttributeBoolean) {
-				variableValues.put(varName, ((XAttributeBoolean)xAttrib).getValue());
-			} else if (xAttrib instanceof XAttributeContinuous) {
-				variableValues.put(varName, ((XAttributeContinuous)xAttrib).getValue());
-			} else if (xAttrib instanceof XAttributeDiscrete) {
-				variableValues.put(varName, ((XAttributeDiscrete)xAttrib).getValue());
-			} else if (xAttrib instanceof XAttributeTimestamp) {
-				variableValues.put(varName, ((XAttributeTimestamp)xAttrib).getValue());
-			} else if (xAttrib instanceof XAttributeLiteral) {
-				variableValues.put(varName,((XAttributeLiteral)xAttrib).getValue());
-			}
-			
-		}
+		// FM, values are stored encoded in the schema's order, no boxing
+		variableValues.update(xAttributeMap);
 	}
 	
 	protected void processAlignment(List<StepTypes> steps, List<Object> nodeInstanceList) {
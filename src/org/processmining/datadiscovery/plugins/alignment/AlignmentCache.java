@@ -0,0 +1,678 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.deckfour.xes.classification.XEventClass;
+import org.deckfour.xes.classification.XEventClassifier;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.models.semantics.petrinet.Marking;
+import org.processmining.plugins.connectionfactories.logpetrinet.TransEvClassMapping;
+import org.processmining.plugins.petrinet.replayer.algorithms.costbasedcomplete.CostBasedCompleteParam;
+import org.processmining.plugins.petrinet.replayresult.PNRepResult;
+import org.processmining.plugins.petrinet.replayresult.StepTypes;
+import org.processmining.plugins.replayer.replayresult.SyncReplayResult;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Persistent cache of control-flow alignments. Only the information needed to
+ * discover the data-flow is stored: the trace indices, the trace fitness and
+ * the step types with the executed transitions. Alignments are stored in a
+ * binary file named after a fingerprint of the net, the event class sequences
+ * of the log, the mapping and the replay parameters. Cached files are
+ * memory-mapped and decoded while being iterated. Only a bounded number of
+ * mapped files is retained in memory, using soft references.
+ * <p>
+ * The disk usage of the cache is bounded: whenever alignments are committed,
+ * files that have not been used for longer than the maximum age are deleted,
+ * and the least recently used files are deleted until the remaining files fit
+ * into the maximum size. The most recently committed file is always kept.
+ * <p>
+ * Alignments can only be cached if the transitions of the net can be
+ * identified by their label and neighbourhood, as the cache needs to be
+ * independent of the object identity of the transitions.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class AlignmentCache {
+
+	/**
+	 * Identifies the alignments of a log and a net, and fixes the order in
+	 * which the transitions are stored.
+	 */
+	public static final class Key {
+
+		private final String fingerprint;
+		private final Transition[] transitions;
+		private final Map<Transition, Integer> transitionIds;
+
+		private Key(String fingerprint, Transition[] transitions) {
+			this.fingerprint = fingerprint;
+			this.transitions = transitions;
+			this.transitionIds = new HashMap<>();
+			for (int i = 0; i < transitions.length; i++) {
+				transitionIds.put(transitions[i], i);
+			}
+		}
+
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+	}
+
+	/**
+	 * Writes the alignments of a {@link Key} to a temporary file, which is
+	 * moved into the cache by {@link #commit()}.
+	 */
+	public final class Writer {
+
+		private final Key key;
+		private final File tempFile;
+		private final DataOutputStream out;
+		private int numAlignments = 0;
+		private int numTraces = 0;
+		private double sumFitness = 0;
+		private boolean valid = true;
+
+		private Writer(Key key) throws IOException {
+			this.key = key;
+			this.tempFile = File.createTempFile(key.fingerprint, ".tmp", directory);
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(key.fingerprint);
+			out.writeInt(key.transitions.length);
+		}
+
+		/**
+		 * Appends the alignment. Alignments with steps that cannot be cached
+		 * invalidate the writer.
+		 *
+		 * @param alignment
+		 */
+		public void write(SyncReplayResult alignment) {
+			if (!valid) {
+				return;
+			}
+			try {
+				List<StepTypes> steps = alignment.getStepTypes();
+				List<Object> nodeInstances = alignment.getNodeInstance();
+				int[] stepCodes = new int[steps.size()];
+				int[] transitionIds = new int[steps.size()];
+				for (int i = 0; i < stepCodes.length; i++) {
+					StepTypes step = steps.get(i);
+					stepCodes[i] = encodeStep(step);
+					if (stepCodes[i] < 0) {
+						valid = false;
+						return;
+					}
+					if (isModelStep(stepCodes[i])) {
+						Integer transitionId = key.transitionIds.get(nodeInstances.get(i));
+						if (transitionId == null) {
+							valid = false;
+							return;
+						}
+						transitionIds[i] = transitionId;
+					}
+				}
+				double fitness = alignment.getInfo().get(PNRepResult.TRACEFITNESS);
+
+				out.writeInt(alignment.getTraceIndex().size());
+				for (Integer traceIndex : alignment.getTraceIndex()) {
+					out.writeInt(traceIndex);
+				}
+				out.writeDouble(fitness);
+				out.writeBoolean(alignment.isReliable());
+				out.writeInt(stepCodes.length);
+				for (int i = 0; i < stepCodes.length; i++) {
+					out.writeByte(stepCodes[i]);
+					if (isModelStep(stepCodes[i])) {
+						out.writeInt(transitionIds[i]);
+					}
+				}
+
+				numAlignments++;
+				numTraces += alignment.getTraceIndex().size();
+				sumFitness += fitness * alignment.getTraceIndex().size();
+			} catch (IOException | RuntimeException e) {
+				valid = false;
+			}
+		}
+
+		/**
+		 * Finishes the file and moves it into the cache.
+		 *
+		 * @return whether the alignments have been cached
+		 */
+		public boolean commit() {
+			if (!valid) {
+				abort();
+				return false;
+			}
+			try {
+				out.writeInt(END_OF_ALIGNMENTS);
+				out.writeInt(numAlignments);
+				out.writeDouble(numTraces > 0 ? sumFitness / numTraces : 0);
+				out.close();
+				File cacheFile = getCacheFile(key);
+				if (cacheFile.exists() && !cacheFile.delete()) {
+					abort();
+					return false;
+				}
+				if (!tempFile.renameTo(cacheFile)) {
+					abort();
+					return false;
+				}
+				evict(cacheFile);
+				return true;
+			} catch (IOException e) {
+				abort();
+				return false;
+			}
+		}
+
+		/**
+		 * Discards the alignments written so far.
+		 */
+		public void abort() {
+			valid = false;
+			try {
+				out.close();
+			} catch (IOException e) {
+			}
+			tempFile.delete();
+		}
+
+	}
+
+	/**
+	 * Alignments read from the cache.
+	 */
+	public static final class CachedAlignments implements Iterable<SyncReplayResult> {
+
+		private final ByteBuffer alignmentData;
+		private final int numAlignments;
+		private final double averageFitness;
+		private final Transition[] transitions;
+
+		private CachedAlignments(ByteBuffer alignmentData, int numAlignments, double averageFitness,
+				Transition[] transitions) {
+			this.alignmentData = alignmentData;
+			this.numAlignments = numAlignments;
+			this.averageFitness = averageFitness;
+			this.transitions = transitions;
+		}
+
+		public Iterator<SyncReplayResult> iterator() {
+			final ByteBuffer buffer = alignmentData.duplicate();
+			return new Iterator<SyncReplayResult>() {
+
+				private int alignmentIndex = 0;
+
+				public boolean hasNext() {
+					return alignmentIndex < numAlignments;
+				}
+
+				public SyncReplayResult next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					alignmentIndex++;
+					return decodeAlignment(buffer, transitions);
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+			};
+		}
+
+		public int getNumAlignments() {
+			return numAlignments;
+		}
+
+		public double getAverageFitness() {
+			return averageFitness;
+		}
+
+	}
+
+	private static final int MAGIC = 0x414C4E43;
+	private static final int VERSION = 1;
+	private static final int END_OF_ALIGNMENTS = -1;
+	private static final String FILE_EXTENSION = ".alignments";
+
+	private static final int STEP_LMGOOD = 0;
+	private static final int STEP_LMNOGOOD = 1;
+	private static final int STEP_L = 2;
+	private static final int STEP_MREAL = 3;
+	private static final int STEP_MINVI = 4;
+	private static final StepTypes[] DECODED_STEPS = new StepTypes[] { StepTypes.LMGOOD, StepTypes.LMNOGOOD,
+			StepTypes.L, StepTypes.MREAL, StepTypes.MINVI };
+
+	private static final int MAX_RETAINED_FILES = 8;
+
+	public static final long DEFAULT_MAX_SIZE_MB = 2048;
+	public static final long DEFAULT_MAX_AGE_DAYS = 30;
+	private static final long MB = 1024 * 1024;
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private static AlignmentCache defaultCache;
+
+	private final File directory;
+	private final long maxSize;
+	private final long maxAge;
+	private final Cache<String, CachedAlignments> retainedAlignments = CacheBuilder.newBuilder()
+			.maximumSize(MAX_RETAINED_FILES).softValues().build();
+
+	/**
+	 * @param directory
+	 *            in which the cache files are stored, limited to
+	 *            {@link #DEFAULT_MAX_SIZE_MB} and {@link #DEFAULT_MAX_AGE_DAYS}
+	 */
+	public AlignmentCache(File directory) {
+		this(directory, DEFAULT_MAX_SIZE_MB * MB, DEFAULT_MAX_AGE_DAYS * DAY);
+	}
+
+	/**
+	 * @param directory
+	 *            in which the cache files are stored
+	 * @param maxSize
+	 *            in bytes of all cache files
+	 * @param maxAge
+	 *            in milliseconds since a cache file was last used
+	 */
+	public AlignmentCache(File directory, long maxSize, long maxAge) {
+		if (maxSize < 0 || maxAge < 0) {
+			throw new IllegalArgumentException("Invalid cache limits " + maxSize + " bytes, " + maxAge + " ms");
+		}
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * @return the cache in the directory configured by the system property
+	 *         <code>datadiscovery.alignmentcache</code> or in the temporary
+	 *         directory. Its files are limited to the size in megabytes
+	 *         configured by <code>datadiscovery.alignmentcache.maxsize</code>
+	 *         (default {@link #DEFAULT_MAX_SIZE_MB}) and the age in days since
+	 *         their last use configured by
+	 *         <code>datadiscovery.alignmentcache.maxage</code> (default
+	 *         {@link #DEFAULT_MAX_AGE_DAYS}).
+	 */
+	public static synchronized AlignmentCache getDefault() {
+		if (defaultCache == null) {
+			String directoryName = System.getProperty("datadiscovery.alignmentcache");
+			File directory = directoryName != null ? new File(directoryName)
+					: new File(System.getProperty("java.io.tmpdir"), "prom-datadiscovery-alignments");
+			long maxSizeMB = Long.getLong("datadiscovery.alignmentcache.maxsize", DEFAULT_MAX_SIZE_MB);
+			long maxAgeDays = Long.getLong("datadiscovery.alignmentcache.maxage", DEFAULT_MAX_AGE_DAYS);
+			defaultCache = new AlignmentCache(directory, maxSizeMB * MB, maxAgeDays * DAY);
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Computes the key of the alignments of the log and net.
+	 *
+	 * @param net
+	 * @param log
+	 * @param mapping
+	 * @param parameters
+	 * @return the key or NULL if the alignments cannot be cached
+	 */
+	public Key createKey(PetrinetGraph net, XLog log, TransEvClassMapping mapping,
+			CostBasedCompleteParam parameters) {
+		Map<Place, String> placeKeys = new HashMap<>();
+		for (Place place : net.getPlaces()) {
+			placeKeys.put(place, getPlaceKey(net, place));
+		}
+
+		TreeMap<String, Transition> transitionsByKey = new TreeMap<>();
+		for (Transition transition : net.getTransitions()) {
+			if (transitionsByKey.put(getTransitionKey(net, transition, placeKeys), transition) != null) {
+				// Transitions cannot be distinguished
+				return null;
+			}
+		}
+		Transition[] transitions = transitionsByKey.values().toArray(new Transition[transitionsByKey.size()]);
+
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putInt(VERSION);
+
+		// Net
+		for (Entry<String, Transition> entry : transitionsByKey.entrySet()) {
+			hasher.putString(entry.getKey(), Charsets.UTF_8);
+			XEventClass eventClass = mapping.get(entry.getValue());
+			hasher.putString(eventClass != null ? eventClass.getId() : "", Charsets.UTF_8);
+		}
+		hashSorted(hasher, placeKeys.values());
+
+		// Parameters
+		hashMarking(hasher, parameters.getInitialMarking(), placeKeys);
+		if (parameters.getFinalMarkings() != null) {
+			for (Marking finalMarking : parameters.getFinalMarkings()) {
+				hashMarking(hasher, finalMarking, placeKeys);
+			}
+		}
+		if (parameters.getMapEvClass2Cost() != null) {
+			TreeMap<String, Integer> eventClassCosts = new TreeMap<>();
+			for (Entry<XEventClass, Integer> entry : parameters.getMapEvClass2Cost().entrySet()) {
+				eventClassCosts.put(entry.getKey().getId(), entry.getValue());
+			}
+			for (Entry<String, Integer> entry : eventClassCosts.entrySet()) {
+				hasher.putString(entry.getKey(), Charsets.UTF_8).putInt(entry.getValue());
+			}
+		}
+		if (parameters.getMapTrans2Cost() != null) {
+			for (int i = 0; i < transitions.length; i++) {
+				Integer cost = parameters.getMapTrans2Cost().get(transitions[i]);
+				hasher.putInt(i).putInt(cost != null ? cost : -1);
+			}
+		}
+
+		// Log
+		XEventClassifier classifier = mapping.getEventClassifier();
+		hasher.putInt(log.size());
+		for (XTrace trace : log) {
+			hasher.putInt(trace.size());
+			for (XEvent event : trace) {
+				hasher.putString(classifier.getClassIdentity(event), Charsets.UTF_8);
+			}
+		}
+
+		HashCode hash = hasher.hash();
+		return new Key(hash.toString(), transitions);
+	}
+
+	private static String getPlaceKey(PetrinetGraph net, Place place) {
+		List<String> inputs = new ArrayList<>();
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : net.getInEdges(place)) {
+			inputs.add(edge.getSource().getLabel());
+		}
+		List<String> outputs = new ArrayList<>();
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : net.getOutEdges(place)) {
+			outputs.add(edge.getTarget().getLabel());
+		}
+		return sortedString(inputs) + "->" + sortedString(outputs);
+	}
+
+	private static String getTransitionKey(PetrinetGraph net, Transition transition, Map<Place, String> placeKeys) {
+		List<String> inputs = new ArrayList<>();
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : net.getInEdges(transition)) {
+			inputs.add(placeKeys.get(edge.getSource()));
+		}
+		List<String> outputs = new ArrayList<>();
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : net.getOutEdges(transition)) {
+			outputs.add(placeKeys.get(edge.getTarget()));
+		}
+		return transition.getLabel() + "|" + transition.isInvisible() + "|" + sortedString(inputs) + "|"
+				+ sortedString(outputs);
+	}
+
+	private static String sortedString(List<String> values) {
+		String[] array = values.toArray(new String[values.size()]);
+		Arrays.sort(array);
+		return Arrays.toString(array);
+	}
+
+	private static void hashSorted(Hasher hasher, Collection<String> values) {
+		String[] array = values.toArray(new String[values.size()]);
+		Arrays.sort(array);
+		for (String value : array) {
+			hasher.putString(value, Charsets.UTF_8);
+		}
+	}
+
+	private static void hashMarking(Hasher hasher, Marking marking, Map<Place, String> placeKeys) {
+		if (marking == null) {
+			hasher.putInt(-1);
+			return;
+		}
+		List<String> tokens = new ArrayList<>();
+		for (Place place : marking.baseSet()) {
+			tokens.add(placeKeys.get(place) + "=" + marking.occurrences(place));
+		}
+		hasher.putInt(tokens.size());
+		hashSorted(hasher, tokens);
+	}
+
+	/**
+	 * Returns the cached alignments for the key.
+	 *
+	 * @param key
+	 * @return the alignments or NULL if they are not cached
+	 */
+	public CachedAlignments get(Key key) {
+		CachedAlignments alignments = retainedAlignments.getIfPresent(key.fingerprint);
+		if (alignments == null) {
+			alignments = load(key);
+			if (alignments == null) {
+				return null;
+			}
+			retainedAlignments.put(key.fingerprint, alignments);
+		}
+		// The modification time tracks the last use for the eviction
+		getCacheFile(key).setLastModified(System.currentTimeMillis());
+		// Retained alignments are not bound to any net, bind them to the transitions of the requested net
+		return new CachedAlignments(alignments.alignmentData, alignments.numAlignments,
+				alignments.averageFitness, key.transitions);
+	}
+
+	private CachedAlignments load(Key key) {
+		File cacheFile = getCacheFile(key);
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(cacheFile, "r")) {
+			FileChannel channel = file.getChannel();
+			// The mapping stays valid after the channel is closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			if (!key.fingerprint.equals(readUTF(buffer)) || buffer.getInt() != key.transitions.length) {
+				return null;
+			}
+			ByteBuffer alignmentData = buffer.slice();
+
+			// Validate the file and read the trailer
+			int numAlignments = 0;
+			ByteBuffer scanBuffer = alignmentData.duplicate();
+			while (true) {
+				int numTraces = scanBuffer.getInt();
+				if (numTraces == END_OF_ALIGNMENTS) {
+					break;
+				}
+				skipAlignment(scanBuffer, numTraces);
+				numAlignments++;
+			}
+			if (scanBuffer.getInt() != numAlignments) {
+				return null;
+			}
+			double averageFitness = scanBuffer.getDouble();
+			return new CachedAlignments(alignmentData, numAlignments, averageFitness, null);
+		} catch (IOException | RuntimeException e) {
+			// Truncated or otherwise corrupt file
+			return null;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return a writer for the alignments or NULL if the cache is not writable
+	 */
+	public Writer createWriter(Key key) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			return null;
+		}
+		try {
+			return new Writer(key);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the cache files and left-over temporary files that have not been
+	 * used within the maximum age, and the least recently used cache files
+	 * that exceed the maximum size.
+	 *
+	 * @param keptFile
+	 *            cache file that is never deleted
+	 */
+	synchronized void evict(File keptFile) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<File> cacheFiles = new ArrayList<>();
+		final Map<File, Long> lastUsed = new HashMap<>();
+		for (File file : files) {
+			boolean isCacheFile = file.getName().endsWith(FILE_EXTENSION);
+			if (!file.isFile() || file.equals(keptFile) || !(isCacheFile || file.getName().endsWith(".tmp"))) {
+				continue;
+			}
+			long lastModified = file.lastModified();
+			if (now - lastModified > maxAge) {
+				delete(file);
+			} else if (isCacheFile) {
+				cacheFiles.add(file);
+				lastUsed.put(file, lastModified);
+			}
+		}
+		// Most recently used first
+		Collections.sort(cacheFiles, new Comparator<File>() {
+
+			public int compare(File f1, File f2) {
+				return Long.compare(lastUsed.get(f2), lastUsed.get(f1));
+			}
+		});
+		long size = keptFile != null ? keptFile.length() : 0;
+		for (File file : cacheFiles) {
+			size += file.length();
+			if (size > maxSize) {
+				delete(file);
+			}
+		}
+	}
+
+	private void delete(File file) {
+		String name = file.getName();
+		if (name.endsWith(FILE_EXTENSION)) {
+			retainedAlignments.invalidate(name.substring(0, name.length() - FILE_EXTENSION.length()));
+		}
+		// Files that are still mapped cannot be deleted on some platforms, they are retried on the next commit
+		file.delete();
+	}
+
+	private File getCacheFile(Key key) {
+		return new File(directory, key.fingerprint + FILE_EXTENSION);
+	}
+
+	private static String readUTF(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		// Fingerprints are plain ASCII, for which modified UTF-8 is identical to UTF-8
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	private static void skipAlignment(ByteBuffer buffer, int numTraces) {
+		buffer.position(buffer.position() + numTraces * 4 + 8 + 1);
+		int numSteps = buffer.getInt();
+		for (int i = 0; i < numSteps; i++) {
+			if (isModelStep(buffer.get())) {
+				buffer.position(buffer.position() + 4);
+			}
+		}
+	}
+
+	private static SyncReplayResult decodeAlignment(ByteBuffer buffer, Transition[] transitions) {
+		int numTraces = buffer.getInt();
+		int[] traceIndices = new int[numTraces];
+		for (int i = 0; i < numTraces; i++) {
+			traceIndices[i] = buffer.getInt();
+		}
+		double fitness = buffer.getDouble();
+		boolean reliable = buffer.get() != 0;
+		int numSteps = buffer.getInt();
+		List<Object> nodeInstances = new ArrayList<>(numSteps);
+		List<StepTypes> steps = new ArrayList<>(numSteps);
+		for (int i = 0; i < numSteps; i++) {
+			int stepCode = buffer.get();
+			steps.add(DECODED_STEPS[stepCode]);
+			// Log moves only advance the trace, the event class is not needed
+			nodeInstances.add(isModelStep(stepCode) ? transitions[buffer.getInt()] : null);
+		}
+
+		SyncReplayResult alignment = new SyncReplayResult(nodeInstances, steps, traceIndices[0]);
+		for (int i = 1; i < numTraces; i++) {
+			alignment.addNewCase(traceIndices[i]);
+		}
+		Map<String, Double> info = new HashMap<>();
+		info.put(PNRepResult.TRACEFITNESS, fitness);
+		alignment.setInfo(info);
+		alignment.setReliable(reliable);
+		return alignment;
+	}
+
+	private static int encodeStep(StepTypes step) {
+		switch (step) {
+			case LMGOOD :
+				return STEP_LMGOOD;
+			case LMNOGOOD :
+				return STEP_LMNOGOOD;
+			case L :
+				return STEP_L;
+			case MREAL :
+				return STEP_MREAL;
+			case MINVI :
+				return STEP_MINVI;
+			default :
+				// Replaced and swapped moves carry additional information
+				return -1;
+		}
+	}
+
+	private static boolean isModelStep(int stepCode) {
+		return stepCode == STEP_LMGOOD || stepCode == STEP_MREAL || stepCode == STEP_MINVI;
+	}
+
+}
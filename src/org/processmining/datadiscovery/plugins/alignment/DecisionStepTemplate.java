@@ -0,0 +1,229 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.processmining.datadiscovery.estimators.FunctionEstimator;
+import org.processmining.datadiscovery.estimators.weka.WekaUtil;
+import org.processmining.datapetrinets.expression.GuardExpression;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetEdge;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetNode;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.plugins.petrinet.replayresult.StepTypes;
+import org.processmining.plugins.petrinet.replayresult.SwappedMove;
+import org.processmining.plugins.petrinet.replayresult.ViolatingSyncMove;
+import org.processmining.plugins.replayer.replayresult.SyncReplayResult;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.AtomicLongMap;
+
+/**
+ * The steps of an alignment that are relevant for the discovery of the
+ * data-flow, compiled once for all traces that share the alignment. Each step
+ * executes a transition and refers to:
+ * <ul>
+ * <li>the position of the event that is synchronously executed by the step (or
+ * -1), whose attributes are written after the step,</li>
+ * <li>the estimators of the decision points in the preset of the
+ * transition.</li>
+ * </ul>
+ * Steps without decision points and without event are omitted. The number of
+ * executions of each transition is accounted once for all traces and the
+ * variable identifiers of the written attributes are escaped once for all
+ * traces.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class DecisionStepTemplate {
+
+	private static final FunctionEstimator[] NO_ESTIMATORS = new FunctionEstimator[0];
+
+	private final SyncReplayResult alignment;
+	private final int[] eventPositions;
+	private final Transition[] transitions;
+	private final FunctionEstimator[][] decisionPoints;
+	private final AtomicLongMap<String>[] writeCounters;
+	private final Multiset<Transition> synchronousExecutions;
+	private final ConcurrentMap<String, String> variableIdentifiers = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	private DecisionStepTemplate(SyncReplayResult alignment, List<Integer> eventPositions,
+			List<Transition> transitions, List<FunctionEstimator[]> decisionPoints,
+			Multiset<Transition> synchronousExecutions,
+			Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition) {
+		this.alignment = alignment;
+		int numSteps = transitions.size();
+		this.eventPositions = new int[numSteps];
+		this.transitions = transitions.toArray(new Transition[numSteps]);
+		this.decisionPoints = decisionPoints.toArray(new FunctionEstimator[numSteps][]);
+		this.writeCounters = new AtomicLongMap[numSteps];
+		for (int i = 0; i < numSteps; i++) {
+			this.eventPositions[i] = eventPositions.get(i);
+			if (this.eventPositions[i] >= 0) {
+				this.writeCounters[i] = numberOfWritesPerTransition.get(this.transitions[i]);
+			}
+		}
+		this.synchronousExecutions = synchronousExecutions;
+	}
+
+	/**
+	 * Compiles the alignment into a template.
+	 *
+	 * @param net
+	 * @param alignment
+	 * @param estimators
+	 *            decision points of the net
+	 * @param numberOfWritesPerTransition
+	 * @return the template
+	 */
+	public static DecisionStepTemplate compile(PetrinetGraph net, SyncReplayResult alignment,
+			Map<Place, FunctionEstimator> estimators,
+			Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition) {
+		List<Integer> eventPositions = new ArrayList<>();
+		List<Transition> transitions = new ArrayList<>();
+		List<FunctionEstimator[]> decisionPoints = new ArrayList<>();
+		Multiset<Transition> synchronousExecutions = HashMultiset.create();
+
+		int eventPosition = 0;
+		Iterator<Object> nodeIter = alignment.getNodeInstance().iterator();
+		for (StepTypes step : alignment.getStepTypes()) {
+			Transition transition;
+			int stepEventPosition = -1;
+			switch (step) {
+				case LMGOOD :
+					stepEventPosition = eventPosition++;
+					transition = (Transition) nodeIter.next();
+					synchronousExecutions.add(transition);
+					break;
+
+				case L :
+				case LMNOGOOD :
+					eventPosition++;
+					nodeIter.next();
+					continue;
+
+				case MINVI :
+				case MREAL :
+					transition = (Transition) nodeIter.next();
+					break;
+
+				case LMREPLACED :
+					transition = ((ViolatingSyncMove) nodeIter.next()).getTransition();
+					break;
+
+				case LMSWAPPED :
+					transition = ((SwappedMove) nodeIter.next()).getInsteadOf();
+					break;
+
+				default :
+					nodeIter.next();
+					continue;
+			}
+
+			FunctionEstimator[] stepDecisionPoints = getDecisionPoints(net, transition, estimators);
+			if (stepEventPosition >= 0 || stepDecisionPoints.length > 0) {
+				eventPositions.add(stepEventPosition);
+				transitions.add(transition);
+				decisionPoints.add(stepDecisionPoints);
+			}
+		}
+
+		return new DecisionStepTemplate(alignment, eventPositions, transitions, decisionPoints,
+				synchronousExecutions, numberOfWritesPerTransition);
+	}
+
+	private static FunctionEstimator[] getDecisionPoints(PetrinetGraph net, Transition transition,
+			Map<Place, FunctionEstimator> estimators) {
+		List<FunctionEstimator> decisionPoints = null;
+		for (PetrinetEdge<? extends PetrinetNode, ? extends PetrinetNode> edge : net.getInEdges(transition)) {
+			if (edge.getSource() instanceof Place) {
+				FunctionEstimator estimator = estimators.get(edge.getSource());
+				if (estimator != null) {
+					if (decisionPoints == null) {
+						decisionPoints = new ArrayList<>(2);
+					}
+					decisionPoints.add(estimator);
+				}
+			}
+		}
+		return decisionPoints == null ? NO_ESTIMATORS
+				: decisionPoints.toArray(new FunctionEstimator[decisionPoints.size()]);
+	}
+
+	/**
+	 * Accounts the synchronous executions of transitions for the given number
+	 * of traces that follow this template.
+	 *
+	 * @param numberOfExecutions
+	 * @param numTraces
+	 */
+	public void addExecutions(AtomicLongMap<Transition> numberOfExecutions, int numTraces) {
+		for (Multiset.Entry<Transition> entry : synchronousExecutions.entrySet()) {
+			numberOfExecutions.addAndGet(entry.getElement(), (long) entry.getCount() * numTraces);
+		}
+	}
+
+	public SyncReplayResult getAlignment() {
+		return alignment;
+	}
+
+	public int getNumSteps() {
+		return transitions.length;
+	}
+
+	/**
+	 * @param step
+	 * @return position of the event executed by the step or -1 for model moves
+	 */
+	public int getEventPosition(int step) {
+		return eventPositions[step];
+	}
+
+	public Transition getTransition(int step) {
+		return transitions[step];
+	}
+
+	/**
+	 * @param step
+	 * @return the estimators of the decision points in the preset of the
+	 *         transition executed by the step
+	 */
+	public FunctionEstimator[] getDecisionPoints(int step) {
+		return decisionPoints[step];
+	}
+
+	/**
+	 * @param step
+	 * @return counters of the written variables of the transition or NULL for
+	 *         model moves
+	 */
+	public AtomicLongMap<String> getWriteCounter(int step) {
+		return writeCounters[step];
+	}
+
+	/**
+	 * Returns the escaped variable identifier of an attribute written by an
+	 * event. Identifiers are computed once and shared by all traces of the
+	 * template.
+	 *
+	 * @param attributeKey
+	 * @return the variable identifier used by the write counters
+	 */
+	public String getVariableIdentifier(String attributeKey) {
+		String identifier = variableIdentifiers.get(attributeKey);
+		if (identifier == null) {
+			identifier = GuardExpression.Factory.transformToVariableIdentifier(WekaUtil.fixVarName(attributeKey));
+			variableIdentifiers.putIfAbsent(attributeKey, identifier);
+		}
+		return identifier;
+	}
+
+}
@@ -0,0 +1,352 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.deckfour.xes.classification.XEventClassifier;
+import org.deckfour.xes.factory.XFactoryRegistry;
+import org.deckfour.xes.model.XAttributeMap;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.processmining.framework.plugin.PluginContext;
+import org.processmining.models.graphbased.directed.petrinet.InhibitorNet;
+import org.processmining.models.graphbased.directed.petrinet.Petrinet;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.ResetInhibitorNet;
+import org.processmining.models.graphbased.directed.petrinet.ResetNet;
+import org.processmining.plugins.astar.petrinet.PetrinetReplayerWithILP;
+import org.processmining.plugins.connectionfactories.logpetrinet.TransEvClassMapping;
+import org.processmining.plugins.petrinet.replayer.PNLogReplayer;
+import org.processmining.plugins.petrinet.replayer.algorithms.costbasedcomplete.CostBasedCompleteParam;
+import org.processmining.plugins.petrinet.replayresult.PNRepResult;
+import org.processmining.plugins.petrinet.replayresult.PNRepResultImpl;
+import org.processmining.plugins.petrinet.replayresult.StepTypes;
+import org.processmining.plugins.replayer.replayresult.SyncReplayResult;
+
+/**
+ * Computes the control-flow alignments of a log in consecutive blocks of traces
+ * on a background thread and returns them, with trace indices relative to the
+ * whole log, as soon as a block is aligned. Consumers can, thus, process the
+ * alignments of one block while the next block is being aligned.
+ * <p>
+ * The traces are grouped by their sequence of event classes under the
+ * classifier of the mapping beforehand. Only one trace of each variant is
+ * aligned and its alignment is returned with the indices of all traces of the
+ * variant, so that each variant is aligned once regardless of the block size.
+ * <p>
+ * Only one iteration is supported. The iterator blocks until the next alignment
+ * is available. A bounded queue between the replayer and the consumer limits
+ * the number of alignments held in memory. {@link #close()} stops the
+ * replayer.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class StreamingLogReplayer implements Iterable<SyncReplayResult>, Closeable {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1000;
+	private static final int QUEUE_CAPACITY = 1024;
+
+	// Signals the end of the stream
+	private static final SyncReplayResult END_OF_STREAM = new SyncReplayResult(new ArrayList<Object>(0),
+			new ArrayList<StepTypes>(0), -1);
+
+	private final PluginContext context;
+	private final PetrinetGraph net;
+	private final XLog log;
+	private final TransEvClassMapping mapping;
+	private final CostBasedCompleteParam parameters;
+	private final int blockSize;
+	private final boolean retainResults;
+
+	private final BlockingQueue<SyncReplayResult> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final List<SyncReplayResult> retainedResults;
+
+	private AlignmentCache.Writer cacheWriter = null;
+
+	private volatile boolean closed = false;
+	private volatile Throwable failure = null;
+	private Thread producer;
+
+	private double sumFitness = 0;
+	private int numTraces = 0;
+
+	/**
+	 * @param context
+	 * @param net
+	 * @param log
+	 * @param mapping
+	 * @param parameters
+	 *            used for each block
+	 * @param blockSize
+	 *            number of variants aligned at once
+	 * @param retainResults
+	 *            whether all alignments should be kept for
+	 *            {@link #getReplayResult()}
+	 */
+	public StreamingLogReplayer(PluginContext context, PetrinetGraph net, XLog log, TransEvClassMapping mapping,
+			CostBasedCompleteParam parameters, int blockSize, boolean retainResults) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid block size " + blockSize);
+		}
+		this.context = context;
+		this.net = net;
+		this.log = log;
+		this.mapping = mapping;
+		this.parameters = parameters;
+		this.blockSize = blockSize;
+		this.retainResults = retainResults;
+		this.retainedResults = retainResults ? new ArrayList<SyncReplayResult>() : null;
+	}
+
+	/**
+	 * Stores all alignments with the writer, which is committed once the whole
+	 * log is aligned. Needs to be set before iterating.
+	 *
+	 * @param cacheWriter
+	 */
+	public synchronized void setCacheWriter(AlignmentCache.Writer cacheWriter) {
+		this.cacheWriter = cacheWriter;
+	}
+
+	public synchronized Iterator<SyncReplayResult> iterator() {
+		if (producer != null) {
+			throw new IllegalStateException("The alignments can only be iterated once!");
+		}
+		producer = new Thread(new Runnable() {
+
+			public void run() {
+				produce();
+			}
+
+		}, "Alignment of " + net.getLabel());
+		producer.setDaemon(true);
+		producer.start();
+
+		return new Iterator<SyncReplayResult>() {
+
+			private SyncReplayResult next = null;
+
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = queue.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("Interrupted while waiting for alignments", e);
+					}
+				}
+				if (next == END_OF_STREAM) {
+					if (failure != null) {
+						throw new IllegalStateException("Failed to compute the alignments", failure);
+					}
+					return false;
+				}
+				return true;
+			}
+
+			public SyncReplayResult next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				SyncReplayResult result = next;
+				next = null;
+				return result;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		};
+	}
+
+	private void produce() {
+		boolean completed = false;
+		try {
+			List<List<Integer>> variants = groupVariants(log, mapping.getEventClassifier());
+			for (int start = 0; start < variants.size() && !isStopped(); start += blockSize) {
+				int end = Math.min(variants.size(), start + blockSize);
+				XLog block = XFactoryRegistry.instance().currentDefault()
+						.createLog((XAttributeMap) log.getAttributes().clone());
+				for (int i = start; i < end; i++) {
+					block.add(log.get(variants.get(i).get(0)));
+				}
+				PNRepResult blockResult = replayBlock(block);
+				if (blockResult == null) {
+					// Replayer was cancelled
+					return;
+				}
+				for (SyncReplayResult alignment : blockResult) {
+					SyncReplayResult logAlignment = toLogTraceIndices(alignment, variants.subList(start, end));
+					if (retainResults) {
+						retainedResults.add(logAlignment);
+					}
+					if (cacheWriter != null) {
+						cacheWriter.write(logAlignment);
+					}
+					Double fitness = alignment.getInfo().get(PNRepResult.TRACEFITNESS);
+					if (fitness != null) {
+						sumFitness += fitness * logAlignment.getTraceIndex().size();
+						numTraces += logAlignment.getTraceIndex().size();
+					}
+					while (!queue.offer(logAlignment, 100, TimeUnit.MILLISECONDS)) {
+						if (isStopped()) {
+							return;
+						}
+					}
+				}
+			}
+			completed = !isStopped();
+		} catch (Throwable e) {
+			failure = e;
+		} finally {
+			if (cacheWriter != null) {
+				if (completed) {
+					cacheWriter.commit();
+				} else {
+					cacheWriter.abort();
+				}
+			}
+			signalEndOfStream();
+		}
+	}
+
+	private void signalEndOfStream() {
+		try {
+			while (!queue.offer(END_OF_STREAM, 100, TimeUnit.MILLISECONDS)) {
+				if (isStopped()) {
+					// The consumer is gone, make room for the end marker
+					queue.clear();
+				}
+			}
+		} catch (InterruptedException e) {
+			queue.clear();
+			queue.offer(END_OF_STREAM);
+		}
+	}
+
+	private boolean isStopped() {
+		return closed || (context != null && context.getProgress().isCancelled());
+	}
+
+	/**
+	 * Aligns the traces of one block, each of a different variant.
+	 *
+	 * @param block
+	 * @return the alignments with trace indices relative to the block or NULL
+	 *         if the replayer was cancelled
+	 * @throws Exception
+	 */
+	PNRepResult replayBlock(XLog block) throws Exception {
+		return replayLog(context, net, block, mapping, parameters);
+	}
+
+	/**
+	 * Groups the traces of the log by their sequence of event classes.
+	 *
+	 * @param log
+	 * @param classifier
+	 * @return the indices of the traces of each variant in the order of the
+	 *         first trace of each variant
+	 */
+	static List<List<Integer>> groupVariants(XLog log, XEventClassifier classifier) {
+		Map<List<String>, List<Integer>> variants = new LinkedHashMap<>();
+		for (int i = 0; i < log.size(); i++) {
+			XTrace trace = log.get(i);
+			List<String> eventClasses = new ArrayList<>(trace.size());
+			for (XEvent event : trace) {
+				eventClasses.add(classifier.getClassIdentity(event));
+			}
+			List<Integer> traceIndices = variants.get(eventClasses);
+			if (traceIndices == null) {
+				traceIndices = new ArrayList<>(1);
+				variants.put(eventClasses, traceIndices);
+			}
+			traceIndices.add(i);
+		}
+		return new ArrayList<>(variants.values());
+	}
+
+	private static SyncReplayResult toLogTraceIndices(SyncReplayResult alignment, List<List<Integer>> blockVariants) {
+		SyncReplayResult logAlignment = null;
+		for (Integer blockIndex : alignment.getTraceIndex()) {
+			for (Integer traceIndex : blockVariants.get(blockIndex)) {
+				if (logAlignment == null) {
+					logAlignment = new SyncReplayResult(alignment.getNodeInstance(), alignment.getStepTypes(),
+							traceIndex);
+				} else {
+					logAlignment.addNewCase(traceIndex);
+				}
+			}
+		}
+		logAlignment.setInfo(alignment.getInfo());
+		logAlignment.setReliable(alignment.isReliable());
+		return logAlignment;
+	}
+
+	/**
+	 * Stops the computation of further alignments.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	/**
+	 * @return all alignments, after the iteration is finished, or NULL if the
+	 *         results have not been retained
+	 */
+	public PNRepResult getReplayResult() {
+		if (!retainResults) {
+			return null;
+		}
+		PNRepResult result = new PNRepResultImpl(retainedResults);
+		result.getInfo().put(PNRepResult.TRACEFITNESS, getAverageFitness());
+		return result;
+	}
+
+	/**
+	 * @return the average trace fitness of the alignments computed so far
+	 */
+	public double getAverageFitness() {
+		return numTraces > 0 ? sumFitness / numTraces : 0;
+	}
+
+	/**
+	 * Computes the alignments of the whole log with the ILP-based replayer.
+	 *
+	 * @param context
+	 * @param net
+	 * @param log
+	 * @param mapping
+	 * @param parameters
+	 * @return the alignments
+	 */
+	public static PNRepResult replayLog(PluginContext context, PetrinetGraph net, XLog log,
+			TransEvClassMapping mapping, CostBasedCompleteParam parameters) throws Exception {
+		if (net instanceof InhibitorNet)
+			return new PNLogReplayer().replayLog(context, (InhibitorNet) net, log, mapping,
+					new PetrinetReplayerWithILP(), parameters);
+		else if (net instanceof Petrinet)
+			return new PNLogReplayer().replayLog(context, (Petrinet) net, log, mapping,
+					new PetrinetReplayerWithILP(), parameters);
+		else if (net instanceof ResetInhibitorNet)
+			return new PNLogReplayer().replayLog(context, (ResetInhibitorNet) net, log, mapping,
+					new PetrinetReplayerWithILP(), parameters);
+		else if (net instanceof ResetNet)
+			return new PNLogReplayer().replayLog(context, (ResetNet) net, log, mapping,
+					new PetrinetReplayerWithILP(), parameters);
+		else
+			throw (new IllegalArgumentException("The net is of a form that was not expected"));
+	}
+
+}
@@ -0,0 +1,68 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.util.Map;
+
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XTrace;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.FunctionEstimator;
+import org.processmining.framework.plugin.Progress;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+
+/**
+ * Processes a trace by following a {@link DecisionStepTemplate} instead of
+ * walking its alignment. The executions of transitions are accounted by the
+ * template for all traces at once.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class TemplateTraceProcessor extends AbstractTraceProcessor {
+
+	private final DecisionStepTemplate template;
+
+	public TemplateTraceProcessor(PetrinetGraph net, XTrace xTrace, Map<Place, FunctionEstimator> estimators,
+			AttributeSchema schema, DecisionStepTemplate template, AtomicLongMap<Transition> numberOfExecutions,
+			Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition, Progress progress) {
+		super(net, xTrace, estimators, schema, numberOfExecutions, numberOfWritesPerTransition, progress);
+		this.template = template;
+	}
+
+	public void run() {
+		updateAttributes(xTrace.getAttributes());
+
+		for (int step = 0; step < template.getNumSteps(); step++) {
+			Transition transition = template.getTransition(step);
+
+			for (FunctionEstimator estimator : template.getDecisionPoints(step)) {
+				try {
+					estimator.addInstance(variableValues, transition, this.weight);
+				} catch (Exception e) {
+					// Failures are collected by the pipeline and reported by await()
+					throw new RuntimeException("Failed to add the instance of trace "
+							+ XConceptExtension.instance().extractName(xTrace) + " at transition "
+							+ transition.getLabel(), e);
+				}
+			}
+
+			int eventPosition = template.getEventPosition(step);
+			if (eventPosition >= 0) {
+				XEvent event = xTrace.get(eventPosition);
+				AtomicLongMap<String> numberOfWritePerVariable = template.getWriteCounter(step);
+				for (String varName : event.getAttributes().keySet()) {
+					numberOfWritePerVariable.incrementAndGet(template.getVariableIdentifier(varName));
+				}
+				updateAttributes(event.getAttributes());
+			}
+		}
+
+		//FM, Progress is thread-safe no need to synchronize
+		progress.inc();
+	}
+
+}
@@ -0,0 +1,221 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.deckfour.xes.model.XLog;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.FunctionEstimator;
+import org.processmining.framework.plugin.Progress;
+import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
+import org.processmining.models.graphbased.directed.petrinet.elements.Place;
+import org.processmining.models.graphbased.directed.petrinet.elements.Transition;
+import org.processmining.plugins.petrinet.replayresult.PNRepResult;
+import org.processmining.plugins.replayer.replayresult.SyncReplayResult;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+
+/**
+ * Processes aligned traces in chunks of contiguous (alignment, trace) pairs.
+ * Each alignment is compiled once into a {@link DecisionStepTemplate}, which
+ * is followed by a {@link TemplateTraceProcessor} for each trace. Alignments
+ * can be added as soon as they are computed; traces with a fitness below the
+ * minimal fitness are skipped. At most a fixed number of chunks is in-flight,
+ * {@link #add(SyncReplayResult)} blocks until one of them is finished.
+ * Cancellation through the {@link Progress} is checked between chunks.
+ * <p>
+ * The pipeline is meant to be fed by a single thread, which calls
+ * {@link #await()} once all traces have been added.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class TraceProcessingPipeline {
+
+	public static final int DEFAULT_CHUNK_SIZE = 128;
+
+	private final class Chunk implements Runnable {
+
+		private final DecisionStepTemplate[] templates = new DecisionStepTemplate[chunkSize];
+		private final int[] traceIndices = new int[chunkSize];
+		private int size = 0;
+
+		public void run() {
+			try {
+				if (!progress.isCancelled() && failure.get() == null) {
+					for (int i = 0; i < size; i++) {
+						new TemplateTraceProcessor(net, log.get(traceIndices[i]), estimators, schema, templates[i],
+								numberOfExecutions, numberOfWritesPerTransition, progress).run();
+					}
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				inFlight.release();
+			}
+		}
+
+	}
+
+	private final PetrinetGraph net;
+	private final XLog log;
+	private final Map<Place, FunctionEstimator> estimators;
+	private final AttributeSchema schema;
+	private final AtomicLongMap<Transition> numberOfExecutions;
+	private final Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition;
+	private final Progress progress;
+	private final double minimalFitness;
+
+	private final Executor executor;
+	private final int chunkSize;
+	private final int maxChunksInFlight;
+	private final Semaphore inFlight;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private Chunk currentChunk;
+	private int numTraces = 0;
+	private int numSkippedTraces = 0;
+
+	/**
+	 * @param net
+	 * @param log
+	 * @param estimators
+	 * @param schema
+	 *            attributes considered by the estimators
+	 * @param numberOfExecutions
+	 * @param numberOfWritesPerTransition
+	 * @param progress
+	 *            incremented for each trace, checked for cancellation between
+	 *            chunks
+	 * @param minimalFitness
+	 *            traces whose alignment has a lower fitness are skipped
+	 * @param executor
+	 *            used to process the chunks
+	 * @param chunkSize
+	 *            number of traces per chunk
+	 * @param maxChunksInFlight
+	 *            number of chunks that may be queued or running at the same
+	 *            time
+	 */
+	public TraceProcessingPipeline(PetrinetGraph net, XLog log, Map<Place, FunctionEstimator> estimators,
+			AttributeSchema schema, AtomicLongMap<Transition> numberOfExecutions,
+			Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition, Progress progress,
+			double minimalFitness, Executor executor, int chunkSize, int maxChunksInFlight) {
+		if (chunkSize < 1 || maxChunksInFlight < 1) {
+			throw new IllegalArgumentException("Chunk size and number of chunks in-flight need to be positive!");
+		}
+		this.net = net;
+		this.log = log;
+		this.estimators = estimators;
+		this.schema = schema;
+		this.numberOfExecutions = numberOfExecutions;
+		this.numberOfWritesPerTransition = numberOfWritesPerTransition;
+		this.progress = progress;
+		this.minimalFitness = minimalFitness;
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.maxChunksInFlight = maxChunksInFlight;
+		this.inFlight = new Semaphore(maxChunksInFlight);
+	}
+
+	/**
+	 * Adds all traces aligned by the alignment unless its fitness is below the
+	 * minimal fitness. Blocks if too many chunks are in-flight.
+	 *
+	 * @param alignment
+	 * @return whether the pipeline still accepts alignments, i.e., it has
+	 *         neither been cancelled nor failed
+	 * @throws InterruptedException
+	 */
+	public boolean add(SyncReplayResult alignment) throws InterruptedException {
+		numTraces += alignment.getTraceIndex().size();
+		if (alignment.getInfo().get(PNRepResult.TRACEFITNESS).floatValue() < minimalFitness) {
+			numSkippedTraces += alignment.getTraceIndex().size();
+			return isAccepting();
+		}
+		DecisionStepTemplate template = DecisionStepTemplate.compile(net, alignment, estimators,
+				numberOfWritesPerTransition);
+		template.addExecutions(numberOfExecutions, alignment.getTraceIndex().size());
+		for (Integer traceIndex : alignment.getTraceIndex()) {
+			if (!add(template, traceIndex)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean add(DecisionStepTemplate template, int traceIndex) throws InterruptedException {
+		if (currentChunk == null) {
+			currentChunk = new Chunk();
+		}
+		currentChunk.templates[currentChunk.size] = template;
+		currentChunk.traceIndices[currentChunk.size] = traceIndex;
+		currentChunk.size++;
+		if (currentChunk.size == chunkSize) {
+			return dispatch();
+		}
+		return isAccepting();
+	}
+
+	private boolean dispatch() throws InterruptedException {
+		Chunk chunk = currentChunk;
+		currentChunk = null;
+		if (chunk == null || chunk.size == 0 || !isAccepting()) {
+			return isAccepting();
+		}
+		inFlight.acquire();
+		if (!isAccepting()) {
+			inFlight.release();
+			return false;
+		}
+		try {
+			executor.execute(chunk);
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+		return true;
+	}
+
+	private boolean isAccepting() {
+		return !progress.isCancelled() && failure.get() == null;
+	}
+
+	/**
+	 * Dispatches the remaining traces and waits until all chunks are
+	 * processed.
+	 *
+	 * @return TRUE if all traces have been processed, FALSE if cancelled
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             if processing a trace failed
+	 */
+	public boolean await() throws InterruptedException, ExecutionException {
+		dispatch();
+		inFlight.acquire(maxChunksInFlight);
+		inFlight.release(maxChunksInFlight);
+		Throwable e = failure.get();
+		if (e != null) {
+			throw new ExecutionException(e);
+		}
+		return !progress.isCancelled();
+	}
+
+	/**
+	 * @return the number of traces of all added alignments
+	 */
+	public int getNumTraces() {
+		return numTraces;
+	}
+
+	/**
+	 * @return the number of traces skipped due to their fitness
+	 */
+	public int getNumSkippedTraces() {
+		return numSkippedTraces;
+	}
+
+}
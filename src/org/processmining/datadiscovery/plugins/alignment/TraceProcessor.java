@@ -3,6 +3,7 @@ package org.processmining.datadiscovery.plugins.alignment;
 import java.util.Map;
 
 import org.deckfour.xes.model.XTrace;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
 import org.processmining.datadiscovery.estimators.FunctionEstimator;
 import org.processmining.framework.plugin.Progress;
 import org.processmining.models.graphbased.directed.petrinet.PetrinetGraph;
@@ -20,12 +21,13 @@ public class TraceProcessor extends AbstractTraceProcessor {
 	public TraceProcessor(PetrinetGraph net, 
 						  XTrace xTrace, 
 						  Map<Place, FunctionEstimator> estimators,
+						  AttributeSchema schema,
 						  SyncReplayResult alignment, 
 						  AtomicLongMap<Transition> numberOfExecutions, 
 						  Map<Transition, AtomicLongMap<String>> numberOfWritesPerTransition, 
 						  Progress progress) {
 		
-		super(net, xTrace, estimators, numberOfExecutions, numberOfWritesPerTransition, progress);
+		super(net, xTrace, estimators, schema, numberOfExecutions, numberOfWritesPerTransition, progress);
 		
 		this.alignment = alignment;
 		this.fitness = alignment.getInfo().get(PNRepResult.TRACEFITNESS).floatValue();
@@ -0,0 +1,182 @@
+package org.processmining.datadiscovery.serving;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.processmining.datadiscovery.RuleDiscovery.Rule;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.AttributeVector;
+import org.processmining.datadiscovery.estimators.CompiledGuardProducer;
+import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
+import org.processmining.datapetrinets.expression.GuardExpression;
+
+/**
+ * Rule of a decision point compiled for classifying rows laid out and encoded
+ * as the vectors of an {@link AttributeSchema}. The classes are identified by
+ * their position in {@link #getClasses()}. As {@link Rule#classify(Map)}, the
+ * first class whose guard is true is returned.
+ * <p>
+ * Guards that are not available in compiled form are interpreted on the
+ * decoded row, which is considerably slower. Instances are immutable and can
+ * be shared between threads.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class CompiledDecisionPoint {
+
+	public static final int NO_CLASS = -1;
+
+	private final Object decisionPoint;
+	private final AttributeSchema schema;
+	private final Object[] classes;
+	private final CompiledGuard[] guards; // NULL entries are interpreted
+	private final GuardExpression[] expressions;
+	private final boolean isCompiled;
+
+	private CompiledDecisionPoint(Object decisionPoint, AttributeSchema schema, Object[] classes,
+			CompiledGuard[] guards, GuardExpression[] expressions) {
+		this.decisionPoint = decisionPoint;
+		this.schema = schema;
+		this.classes = classes;
+		this.guards = guards;
+		this.expressions = expressions;
+		boolean allCompiled = true;
+		for (CompiledGuard guard : guards) {
+			allCompiled &= guard != null;
+		}
+		this.isCompiled = allCompiled;
+	}
+
+	/**
+	 * @param rule
+	 *            discovered rule, its compiled guards are used if it is a
+	 *            {@link CompiledGuardProducer}
+	 * @param schema
+	 *            of the rows to be classified
+	 * @return the compiled decision point
+	 */
+	public static CompiledDecisionPoint compile(Rule rule, AttributeSchema schema) {
+		Map<Object, CompiledGuard> compiledGuards = Collections.emptyMap();
+		if (rule instanceof CompiledGuardProducer) {
+			compiledGuards = ((CompiledGuardProducer) rule).getCompiledGuards();
+		}
+		List<Object> classes = new ArrayList<>();
+		List<CompiledGuard> guards = new ArrayList<>();
+		List<GuardExpression> expressions = new ArrayList<>();
+		for (Entry<Object, FunctionEstimation> entry : rule.getRules().entrySet()) {
+			CompiledGuard guard = compiledGuards.get(entry.getKey());
+			classes.add(entry.getKey());
+			guards.add(guard != null ? guard.bind(schema) : null);
+			expressions.add(entry.getValue().getExpression());
+		}
+		return new CompiledDecisionPoint(rule.getDecisionPoint(), schema, classes.toArray(),
+				guards.toArray(new CompiledGuard[guards.size()]),
+				expressions.toArray(new GuardExpression[expressions.size()]));
+	}
+
+	public Object getDecisionPoint() {
+		return decisionPoint;
+	}
+
+	public AttributeSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the classes in the order of their ids
+	 */
+	public List<Object> getClasses() {
+		return Collections.unmodifiableList(Arrays.asList(classes));
+	}
+
+	/**
+	 * @param classId
+	 * @return the class with the id
+	 */
+	public Object getClass(int classId) {
+		return classes[classId];
+	}
+
+	/**
+	 * @return whether all guards are evaluated in compiled form
+	 */
+	public boolean isCompiled() {
+		return isCompiled;
+	}
+
+	/**
+	 * @param row
+	 *            values in the encoding of the schema, NaN for missing values
+	 * @return the id of the class or {@link #NO_CLASS}
+	 */
+	public int classify(double[] row) {
+		Map<String, Object> decodedRow = null;
+		for (int i = 0; i < guards.length; i++) {
+			if (guards[i] != null) {
+				if (guards[i].isTrue(row)) {
+					return i;
+				}
+			} else {
+				if (decodedRow == null) {
+					decodedRow = AttributeVector.toMap(schema, row);
+				}
+				if (expressions[i].isTrue(decodedRow)) {
+					return i;
+				}
+			}
+		}
+		return NO_CLASS;
+	}
+
+	/**
+	 * @param rows
+	 *            in the encoding of the schema, NaN for missing values
+	 * @param classIds
+	 *            receives the id of the class of each row or
+	 *            {@link #NO_CLASS}
+	 */
+	public void classify(double[][] rows, int[] classIds) {
+		for (int r = 0; r < rows.length; r++) {
+			classIds[r] = classify(rows[r]);
+		}
+	}
+
+	/**
+	 * @param columns
+	 *            values of each attribute of the schema in its encoding, NaN
+	 *            for missing values
+	 * @param numRows
+	 *            number of rows in the columns
+	 * @param classIds
+	 *            receives the id of the class of each row or
+	 *            {@link #NO_CLASS}
+	 */
+	public void classify(double[][] columns, int numRows, int[] classIds) {
+		if (!isCompiled) {
+			double[] row = new double[schema.size()];
+			for (int r = 0; r < numRows; r++) {
+				for (int a = 0; a < row.length; a++) {
+					row[a] = columns[a][r];
+				}
+				classIds[r] = classify(row);
+			}
+			return;
+		}
+		rowFor: for (int r = 0; r < numRows; r++) {
+			for (int i = 0; i < guards.length; i++) {
+				if (guards[i].isTrue(columns, r)) {
+					classIds[r] = i;
+					continue rowFor;
+				}
+			}
+			classIds[r] = NO_CLASS;
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package org.processmining.datadiscovery.serving;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.processmining.datadiscovery.RuleDiscovery;
+import org.processmining.datadiscovery.RuleDiscovery.Rule;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Serves the discovered rules of several decision points. The rules are
+ * compiled once (see {@link CompiledDecisionPoint}) and batches of rows in
+ * the encoding of the {@link AttributeSchema} are classified without creating
+ * maps or Weka instances. Decision points are looked up once by
+ * {@link #indexOf(Object)}, after which only array accesses are needed.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public final class DecisionServer {
+
+	private final AttributeSchema schema;
+	private final CompiledDecisionPoint[] decisionPoints;
+	private final ImmutableMap<Object, Integer> indexByDecisionPoint;
+
+	private DecisionServer(AttributeSchema schema, CompiledDecisionPoint[] decisionPoints,
+			ImmutableMap<Object, Integer> indexByDecisionPoint) {
+		this.schema = schema;
+		this.decisionPoints = decisionPoints;
+		this.indexByDecisionPoint = indexByDecisionPoint;
+	}
+
+	/**
+	 * @param rules
+	 *            of distinct decision points, rules without decision point
+	 *            (see {@link RuleDiscovery#discover(Object, java.util.Set)})
+	 *            cannot be looked up and are rejected
+	 * @param schema
+	 *            of the rows to be classified
+	 * @return a server for all rules
+	 * @throws IllegalArgumentException
+	 *             if a rule has no decision point or two rules have the same
+	 *             decision point
+	 */
+	public static DecisionServer compile(Iterable<? extends Rule> rules, AttributeSchema schema) {
+		Map<Object, Integer> index = new HashMap<>();
+		List<CompiledDecisionPoint> compiled = new ArrayList<>();
+		for (Rule rule : rules) {
+			Object decisionPoint = rule.getDecisionPoint();
+			if (decisionPoint == null) {
+				throw new IllegalArgumentException("Cannot serve rule " + rule + " without decision point");
+			}
+			if (index.containsKey(decisionPoint)) {
+				throw new IllegalArgumentException("Duplicate rule for decision point " + decisionPoint);
+			}
+			index.put(decisionPoint, compiled.size());
+			compiled.add(CompiledDecisionPoint.compile(rule, schema));
+		}
+		return new DecisionServer(schema, compiled.toArray(new CompiledDecisionPoint[compiled.size()]),
+				ImmutableMap.copyOf(index));
+	}
+
+	public AttributeSchema getSchema() {
+		return schema;
+	}
+
+	public int size() {
+		return decisionPoints.length;
+	}
+
+	/**
+	 * @param decisionPoint
+	 * @return the index of the decision point or -1 if there is no rule for it
+	 */
+	public int indexOf(Object decisionPoint) {
+		Integer index = indexByDecisionPoint.get(decisionPoint);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param index
+	 *            of the decision point, see {@link #indexOf(Object)}
+	 * @return the compiled rule of the decision point
+	 */
+	public CompiledDecisionPoint getDecisionPoint(int index) {
+		return decisionPoints[index];
+	}
+
+	/**
+	 * @param index
+	 *            of the decision point
+	 * @param row
+	 *            in the encoding of the schema, NaN for missing values
+	 * @return the id of the class or {@link CompiledDecisionPoint#NO_CLASS}
+	 */
+	public int classify(int index, double[] row) {
+		return decisionPoints[index].classify(row);
+	}
+
+	/**
+	 * @param index
+	 *            of the decision point
+	 * @param rows
+	 *            in the encoding of the schema, NaN for missing values
+	 * @param classIds
+	 *            receives the id of the class of each row
+	 */
+	public void classify(int index, double[][] rows, int[] classIds) {
+		decisionPoints[index].classify(rows, classIds);
+	}
+
+	/**
+	 * @param index
+	 *            of the decision point
+	 * @param columns
+	 *            values of each attribute of the schema, NaN for missing
+	 *            values
+	 * @param numRows
+	 * @param classIds
+	 *            receives the id of the class of each row
+	 */
+	public void classify(int index, double[][] columns, int numRows, int[] classIds) {
+		decisionPoints[index].classify(columns, numRows, classIds);
+	}
+
+}
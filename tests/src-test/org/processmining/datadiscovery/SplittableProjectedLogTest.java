@@ -0,0 +1,222 @@
+package org.processmining.datadiscovery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.RowTable;
+import org.processmining.datadiscovery.estimators.Type;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Checks that the discovery gives the same results for a
+ * {@link SplittableProjectedLog}, whose ranges are processed in parallel, as
+ * for the same traces as plain {@link Iterable}.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class SplittableProjectedLogTest extends TestCase {
+
+	private static final int NUM_TRACES = 1100; // 4 ranges of at least 256 traces
+	private static final String DECISION_POINT = "p1";
+	private static final Set<String> CLASSES = ImmutableSet.of("b", "c");
+
+	private static final class ListEvent implements ProjectedEvent {
+
+		private final Object activity;
+		private final Map<String, Object> attributes;
+
+		private ListEvent(Object activity, Map<String, Object> attributes) {
+			this.activity = activity;
+			this.attributes = attributes;
+		}
+
+		public Object getActivity() {
+			return activity;
+		}
+
+		public Object getAttributeValue(String attributeName) {
+			return attributes.get(attributeName);
+		}
+
+		public Set<String> getAttributes() {
+			return attributes.keySet();
+		}
+
+	}
+
+	private static final class ListTrace implements ProjectedTrace {
+
+		private final List<ProjectedEvent> events = new ArrayList<>();
+
+		public Iterator<ProjectedEvent> iterator() {
+			return events.iterator();
+		}
+
+		public Object getAttributeValue(String attributeName) {
+			return null;
+		}
+
+		public Set<String> getAttributes() {
+			return ImmutableSet.of();
+		}
+
+	}
+
+	private static final class ListProjectedLog implements SplittableProjectedLog {
+
+		private final List<ProjectedTrace> traces;
+		private int numSplits = 0;
+
+		private ListProjectedLog(List<ProjectedTrace> traces) {
+			this.traces = traces;
+		}
+
+		public Iterator<ProjectedTrace> iterator() {
+			return traces.iterator();
+		}
+
+		public Set<String> getAttributes() {
+			return ImmutableSet.of("amount", "kind");
+		}
+
+		public Object getInitialValue(String attributeName) {
+			return null;
+		}
+
+		public int size() {
+			return traces.size();
+		}
+
+		public synchronized Iterable<ProjectedTrace> getTraces(int fromIndex, int toIndex) {
+			numSplits++;
+			return traces.subList(fromIndex, toIndex);
+		}
+
+	}
+
+	/**
+	 * Same traces, but without random access.
+	 */
+	private static final class PlainProjectedLog implements ProjectedLog {
+
+		private final List<ProjectedTrace> traces;
+
+		private PlainProjectedLog(List<ProjectedTrace> traces) {
+			this.traces = traces;
+		}
+
+		public Iterator<ProjectedTrace> iterator() {
+			return traces.iterator();
+		}
+
+		public Set<String> getAttributes() {
+			return ImmutableSet.of("amount", "kind");
+		}
+
+		public Object getInitialValue(String attributeName) {
+			return null;
+		}
+
+	}
+
+	private static List<ProjectedTrace> createTraces(long seed) {
+		Random random = new Random(seed);
+		List<ProjectedTrace> traces = new ArrayList<>();
+		for (int i = 0; i < NUM_TRACES; i++) {
+			ListTrace trace = new ListTrace();
+			int amount = random.nextInt(10); // Few distinct rows
+			// Conflicting type: the first occurrence (a Long) determines the type
+			Object amountValue = i < NUM_TRACES / 2 ? Long.valueOf(amount) : Double.valueOf(amount);
+			// Literal value only in the last range
+			String kind = i >= NUM_TRACES - 100 ? "z" : (random.nextBoolean() ? "x" : "y");
+			trace.events.add(new ListEvent("a", ImmutableMap.<String, Object>of("amount", amountValue, "kind", kind)));
+			boolean isB = amount > 4 || "z".equals(kind);
+			if (random.nextDouble() < 0.05) {
+				isB = !isB;
+			}
+			trace.events.add(new ListEvent(isB ? "b" : "c", ImmutableMap.<String, Object>of()));
+			traces.add(trace);
+		}
+		return traces;
+	}
+
+	private static DecisionTreeConfig createConfig(ExecutorService executor) {
+		DecisionTreeConfig config = new DecisionTreeConfig();
+		config.setMinPercentageObjectsOnLeaf(0.02);
+		config.setExecutor(executor);
+		return config;
+	}
+
+	private static List<String> toRows(Map<Object, RowTable> classInstances) throws Exception {
+		final List<String> rows = new ArrayList<>();
+		for (String clazz : CLASSES) {
+			classInstances.get(clazz).forEachRow(new RowTable.RowVisitor() {
+
+				public void visit(double[] row, int count) {
+					rows.add(Arrays.toString(row) + "x" + count);
+				}
+			});
+			rows.add("|");
+		}
+		return rows;
+	}
+
+	private static Map<Object, String> toGuards(RuleDiscovery.Rule rule) {
+		ImmutableMap.Builder<Object, String> guards = ImmutableMap.builder();
+		for (Entry<Object, FunctionEstimation> entry : rule.getRules().entrySet()) {
+			guards.put(entry.getKey(), entry.getValue().getExpression().toString());
+		}
+		return guards.build();
+	}
+
+	@Test
+	public void testSameResultAsIterable() throws Exception {
+		List<ProjectedTrace> traces = createTraces(42);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ListProjectedLog splittableLog = new ListProjectedLog(traces);
+			BasicDecisionTreeImpl splitDiscovery = new BasicDecisionTreeImpl(createConfig(executor), splittableLog,
+					NUM_TRACES);
+			assertTrue("The log was not split", splittableLog.numSplits >= 2);
+
+			BasicDecisionTreeImpl plainDiscovery = new BasicDecisionTreeImpl(createConfig(executor),
+					new PlainProjectedLog(traces), NUM_TRACES);
+
+			assertEquals(Type.DISCRETE, plainDiscovery.attributeType.get("amount"));
+			assertEquals(plainDiscovery.attributeType, splitDiscovery.attributeType);
+			assertEquals(ImmutableSet.of("x", "y", "z"), plainDiscovery.literalValues.get("kind"));
+			assertEquals(plainDiscovery.literalValues, splitDiscovery.literalValues);
+
+			Map<Object, Set<String>> classesByDecisionPoint = ImmutableMap.<Object, Set<String>>of(DECISION_POINT,
+					CLASSES);
+			int numSplits = splittableLog.numSplits;
+			List<String> splitRows = toRows(splitDiscovery.collectInstances(classesByDecisionPoint).get(DECISION_POINT));
+			assertTrue("The log was not split", splittableLog.numSplits > numSplits);
+			List<String> plainRows = toRows(plainDiscovery.collectInstances(classesByDecisionPoint).get(DECISION_POINT));
+			assertEquals(plainRows, splitRows);
+			// Repeated rows are counted, not stored again
+			assertTrue(plainRows.size() < NUM_TRACES / 10);
+
+			assertEquals(toGuards(plainDiscovery.discover(DECISION_POINT, CLASSES)),
+					toGuards(splitDiscovery.discover(DECISION_POINT, CLASSES)));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.processmining.datadiscovery.estimators.weka.LeafDistributionJ48;
+import org.processmining.datadiscovery.estimators.weka.TreeModel;
+import org.processmining.datadiscovery.estimators.weka.TreeModel.TreeNode;
+
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Checks that {@link C45Classifier} builds the same trees as J48 with the same
+ * settings.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class C45ClassifierTest extends TestCase {
+
+	private static final double DELTA = 1E-6;
+
+	/**
+	 * Creates instances with two nominal and two numeric attributes and a
+	 * noisy class that depends on all of them.
+	 *
+	 * @param numInstances
+	 * @param missingRate
+	 *            probability of a missing attribute value
+	 * @param seed
+	 * @return the instances
+	 */
+	public static Instances createInstances(int numInstances, double missingRate, long seed) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		attributes.add(new Attribute("color", nominalValues("c", 4)));
+		attributes.add(new Attribute("size", nominalValues("s", 3)));
+		attributes.add(new Attribute("amount"));
+		attributes.add(new Attribute("duration"));
+		attributes.add(new Attribute("class", nominalValues("t", 3)));
+		Instances data = new Instances("test", attributes, numInstances);
+		data.setClassIndex(4);
+
+		Random random = new Random(seed);
+		for (int i = 0; i < numInstances; i++) {
+			int color = random.nextInt(4);
+			int size = random.nextInt(3);
+			double amount = Math.round(random.nextDouble() * 1000) / 10.0;
+			double duration = random.nextInt(50);
+			int target;
+			if (amount > 60) {
+				target = color == 0 ? 1 : 2;
+			} else if (duration < 20 || size == 2) {
+				target = 0;
+			} else {
+				target = 1;
+			}
+			if (random.nextDouble() < 0.1) {
+				target = random.nextInt(3);
+			}
+			double[] values = new double[] { color, size, amount, duration, target };
+			for (int a = 0; a < 4; a++) {
+				if (random.nextDouble() < missingRate) {
+					values[a] = Utils.missingValue();
+				}
+			}
+			data.add(new DenseInstance(1 + random.nextInt(3) / 2.0, values));
+		}
+		return data;
+	}
+
+	private static List<String> nominalValues(String prefix, int numValues) {
+		List<String> values = new ArrayList<>(numValues);
+		for (int i = 0; i < numValues; i++) {
+			values.add(prefix + i);
+		}
+		return values;
+	}
+
+	private static void assertSameTree(Instances data, String... options) throws Exception {
+		J48 j48 = new LeafDistributionJ48();
+		j48.setOptions(options.clone());
+		j48.buildClassifier(data);
+		C45Classifier c45 = new C45Classifier();
+		c45.setOptions(options.clone());
+		c45.buildClassifier(data);
+		assertSameTree(j48, c45, data);
+	}
+
+	private static void assertSameTree(J48 j48, C45Classifier c45, Instances data) throws Exception {
+		assertSameNode(((TreeModel) j48).getTreeRoot(), c45.getTreeRoot());
+
+		List<double[]> expectedLeaves = ((LeafDistributionJ48) j48).getLeafDistributions();
+		List<double[]> actualLeaves = c45.getLeafDistributions();
+		assertEquals(expectedLeaves.size(), actualLeaves.size());
+		for (int i = 0; i < expectedLeaves.size(); i++) {
+			assertArrayEquals(expectedLeaves.get(i), actualLeaves.get(i));
+		}
+
+		for (Instance instance : data) {
+			assertArrayEquals(j48.distributionForInstance(instance), c45.distributionForInstance(instance));
+		}
+	}
+
+	private static void assertSameNode(TreeNode expected, TreeNode actual) {
+		assertEquals(expected.isLeaf(), actual.isLeaf());
+		if (expected.isLeaf()) {
+			assertEquals(expected.getClassIndex(), actual.getClassIndex());
+			assertEquals(expected.getInstanceCount(), actual.getInstanceCount(), DELTA);
+			assertEquals(expected.getWrongInstanceCount(), actual.getWrongInstanceCount(), DELTA);
+			return;
+		}
+		assertEquals(expected.getSplitAttribute(), actual.getSplitAttribute());
+		List<? extends TreeNode> expectedChildren = expected.getChildren();
+		List<? extends TreeNode> actualChildren = actual.getChildren();
+		assertEquals(expectedChildren.size(), actualChildren.size());
+		for (int i = 0; i < expectedChildren.size(); i++) {
+			assertEquals(expected.getSplitOperator(i), actual.getSplitOperator(i));
+			assertEquals(expected.getSplitValue(i), actual.getSplitValue(i), DELTA);
+			assertSameNode(expectedChildren.get(i), actualChildren.get(i));
+		}
+	}
+
+	private static void assertArrayEquals(double[] expected, double[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], DELTA);
+		}
+	}
+
+	@Test
+	public void testDefaultSettings() throws Exception {
+		assertSameTree(createInstances(500, 0, 1));
+	}
+
+	@Test
+	public void testBinarySplits() throws Exception {
+		assertSameTree(createInstances(500, 0, 2), "-B");
+	}
+
+	@Test
+	public void testUnpruned() throws Exception {
+		assertSameTree(createInstances(500, 0, 3), "-U");
+	}
+
+	@Test
+	public void testMinNumObjAndConfidence() throws Exception {
+		assertSameTree(createInstances(500, 0, 4), "-C", "0.1", "-M", "5");
+	}
+
+	@Test
+	public void testMissingValues() throws Exception {
+		Instances data = createInstances(500, 0.15, 5);
+		assertSameTree(data);
+		assertSameTree(data, "-B");
+		assertSameTree(data, "-U");
+	}
+
+	@Test
+	public void testMissingClass() throws Exception {
+		Instances data = createInstances(300, 0.1, 6);
+		for (int i = 0; i < data.numInstances(); i += 7) {
+			data.instance(i).setClassMissing();
+		}
+		assertSameTree(data);
+	}
+
+	/**
+	 * Nominal attributes with many values compared to the number of all
+	 * instances are excluded from the average information gain.
+	 */
+	@Test
+	public void testManyNominalValues() throws Exception {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		attributes.add(new Attribute("id", nominalValues("i", 20)));
+		attributes.add(new Attribute("amount"));
+		attributes.add(new Attribute("class", nominalValues("t", 2)));
+		Instances data = new Instances("test", attributes, 60);
+		data.setClassIndex(2);
+		Random random = new Random(7);
+		for (int i = 0; i < 60; i++) {
+			double amount = random.nextInt(100);
+			int target = (amount > 40) != (random.nextDouble() < 0.2) ? 1 : 0;
+			data.add(new DenseInstance(1, new double[] { i % 20, amount, target }));
+		}
+		assertSameTree(data);
+		assertSameTree(data, "-B");
+	}
+
+	@Test
+	public void testExecutor() throws Exception {
+		Instances data = createInstances(20000, 0.05, 8);
+		J48 j48 = new LeafDistributionJ48();
+		j48.buildClassifier(data);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			C45Classifier c45 = new C45Classifier();
+			c45.setExecutor(executor);
+			c45.buildClassifier(data);
+			assertSameTree(j48, c45, data);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package org.processmining.datadiscovery.estimators.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.processmining.datadiscovery.estimators.weka.TreeModel.TreeNode;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Checks the quantile buckets of {@link QuantileSketch} and the approximate
+ * trees of {@link HistogramTreeInducer}.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class HistogramTreeInducerTest extends TestCase {
+
+	private static final double DELTA = 1E-9;
+
+	@Test
+	public void testWeightedSketch() {
+		QuantileSketch weighted = new QuantileSketch();
+		QuantileSketch replicated = new QuantileSketch();
+		for (int i = 1; i <= 100; i++) {
+			int weight = i > 50 ? 3 : 1;
+			weighted.add(i, weight);
+			for (int j = 0; j < weight; j++) {
+				replicated.add(i);
+			}
+		}
+		assertEquals(replicated.getTotalWeight(), weighted.getTotalWeight(), DELTA);
+		double[] cutPoints = weighted.cutPoints(4);
+		assertTrue(Arrays.equals(replicated.cutPoints(4), cutPoints));
+		// A quarter of the weight lies below 50
+		assertTrue(cutPoints[0] <= 50);
+		assertTrue(cutPoints[1] > 50);
+	}
+
+	@Test
+	public void testWeightedSketchSampled() {
+		QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_CAPACITY, 42);
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			double value = random.nextDouble();
+			// Values above 0.5 carry 3/4 of the weight
+			sketch.add(value, value > 0.5 ? 3 : 1);
+		}
+		double[] cutPoints = sketch.cutPoints(4);
+		assertEquals(3, cutPoints.length);
+		assertEquals(0.5, cutPoints[0], 0.05);
+	}
+
+	@Test
+	public void testMergedSketch() {
+		QuantileSketch merged = new QuantileSketch(QuantileSketch.DEFAULT_CAPACITY, 43);
+		QuantileSketch other = new QuantileSketch(QuantileSketch.DEFAULT_CAPACITY, 44);
+		Random random = new Random(2);
+		for (int i = 0; i < 50000; i++) {
+			merged.add(random.nextDouble());
+			other.add(1 + random.nextDouble());
+		}
+		merged.merge(other);
+		assertEquals(100000, merged.getCount());
+		double[] cutPoints = merged.cutPoints(2);
+		assertEquals(1, cutPoints.length);
+		assertEquals(1.0, cutPoints[0], 0.05);
+	}
+
+	/**
+	 * Repeated runs on the same instances need to give the same buckets,
+	 * regardless of the order in which the instances were added.
+	 */
+	@Test
+	public void testSketchIndependentOfOrder() {
+		Instances data = C45ClassifierTest.createInstances(20000, 0.1, 12);
+		Instances shuffled = new Instances(data);
+		shuffled.randomize(new Random(5));
+		for (int a = 0; a < data.numAttributes(); a++) {
+			if (a != data.classIndex() && data.attribute(a).isNumeric()) {
+				QuantileSketch sketch = QuantileSketch.of(data, a);
+				assertEquals(data.numInstances() - data.attributeStats(a).missingCount, sketch.getCount());
+				assertTrue(Arrays.equals(sketch.cutPoints(16), QuantileSketch.of(data, a).cutPoints(16)));
+				assertTrue(Arrays.equals(sketch.cutPoints(16), QuantileSketch.of(shuffled, a).cutPoints(16)));
+			}
+		}
+	}
+
+	/**
+	 * The histograms of the largest child are obtained by subtraction, they
+	 * need to be equal to those computed from its instances.
+	 */
+	@Test
+	public void testSubtractedHistograms() {
+		Instances data = C45ClassifierTest.createInstances(1000, 0.1, 11);
+		double[][] cutPoints = new double[data.numAttributes()][];
+		for (int a = 0; a < data.numAttributes(); a++) {
+			if (a != data.classIndex() && data.attribute(a).isNumeric()) {
+				QuantileSketch sketch = new QuantileSketch();
+				for (int i = 0; i < data.numInstances(); i++) {
+					sketch.add(data.instance(i).value(a), data.instance(i).weight());
+				}
+				cutPoints[a] = sketch.cutPoints(16);
+			}
+		}
+		HistogramTreeInducer inducer = new HistogramTreeInducer(data, cutPoints, 2, 0.25f, false, false);
+
+		List<C45Split> splits = new ArrayList<>();
+		splits.add(C45Split.multiway(0, data.attribute(0).numValues(), 0, 0));
+		splits.add(C45Split.binary(1, 2, 0, 0));
+		splits.add(C45Split.numeric(2, cutPoints[2][cutPoints[2].length / 3], 0, 0));
+		for (C45Split split : splits) {
+			C45Node root = inducer.createRoot();
+			double[][] histograms = inducer.rootStatistics(root);
+			int[][] childPositions = new int[split.getNumBags()][];
+			root.split = split;
+			root.children = inducer.partition(split, root.rows, root.rowWeights, childPositions);
+			List<double[][]> childHistograms = inducer.childStatistics(root, histograms, childPositions);
+			for (int bag = 0; bag < split.getNumBags(); bag++) {
+				double[][] expected = inducer.histograms(root.children[bag]);
+				double[][] actual = childHistograms.get(bag);
+				for (int a = 0; a < data.numAttributes(); a++) {
+					if (expected[a] == null) {
+						assertNull(actual[a]);
+					} else {
+						assertEquals(expected[a].length, actual[a].length);
+						for (int i = 0; i < expected[a].length; i++) {
+							assertEquals(expected[a][i], actual[a][i], 1E-6);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The threshold of the approximate tree is at most the reported threshold
+	 * error away from the threshold of the exact tree.
+	 */
+	@Test
+	public void testThresholdError() throws Exception {
+		for (int numBins : new int[] { 8, 32, 255 }) {
+			for (long seed = 0; seed < 5; seed++) {
+				Instances data = createThresholdInstances(2000, 37.3, seed);
+
+				C45Classifier exact = new C45Classifier();
+				exact.buildClassifier(data);
+				C45Classifier approximate = new C45Classifier();
+				approximate.setNumBins(numBins);
+				approximate.buildClassifier(data);
+
+				TreeNode exactRoot = exact.getTreeRoot();
+				TreeNode approximateRoot = approximate.getTreeRoot();
+				assertFalse(exactRoot.isLeaf());
+				assertFalse(approximateRoot.isLeaf());
+				assertEquals(exactRoot.getSplitAttribute(), approximateRoot.getSplitAttribute());
+				double difference = Math.abs(exactRoot.getSplitValue(0) - approximateRoot.getSplitValue(0));
+				assertTrue(difference + " > " + approximate.measureMaxThresholdError(),
+						difference <= approximate.measureMaxThresholdError() + DELTA);
+				assertEquals(0, exact.measureMaxThresholdError(), DELTA);
+			}
+		}
+	}
+
+	private static Instances createThresholdInstances(int numInstances, double threshold, long seed) {
+		ArrayList<Attribute> attributes = new ArrayList<>();
+		attributes.add(new Attribute("noise", Arrays.asList("a", "b")));
+		attributes.add(new Attribute("amount"));
+		attributes.add(new Attribute("class", Arrays.asList("low", "high")));
+		Instances data = new Instances("threshold", attributes, numInstances);
+		data.setClassIndex(2);
+		Random random = new Random(seed);
+		for (int i = 0; i < numInstances; i++) {
+			double amount = random.nextDouble() * 100;
+			double weight = random.nextBoolean() ? 1 : 4;
+			data.add(new DenseInstance(weight,
+					new double[] { random.nextInt(2), amount, amount > threshold ? 1 : 0 }));
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.processmining.datadiscovery.estimators.weka;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.processmining.datadiscovery.estimators.tree.C45Classifier;
+import org.processmining.datadiscovery.estimators.tree.C45ClassifierTest;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instances;
+
+/**
+ * Checks that {@link LeafEvaluation} gives the same result as classifying all
+ * training instances.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class LeafEvaluationTest extends TestCase {
+
+	private static final double DELTA = 1E-6;
+
+	private static void assertSameEvaluation(Instances data, Classifier tree) throws Exception {
+		tree.buildClassifier(data);
+		Evaluation expected = new Evaluation(data);
+		expected.evaluateModel(tree, data);
+		Evaluation actual = LeafEvaluation.evaluate(data, tree);
+
+		assertEquals(expected.correct(), actual.correct(), DELTA);
+		assertEquals(expected.incorrect(), actual.incorrect(), DELTA);
+		assertEquals(expected.weightedFMeasure(), actual.weightedFMeasure(), DELTA);
+		assertEquals(expected.meanAbsoluteError(), actual.meanAbsoluteError(), DELTA);
+		double[][] expectedMatrix = expected.confusionMatrix();
+		double[][] actualMatrix = actual.confusionMatrix();
+		for (int i = 0; i < expectedMatrix.length; i++) {
+			for (int j = 0; j < expectedMatrix[i].length; j++) {
+				assertEquals(expectedMatrix[i][j], actualMatrix[i][j], DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void testWithoutMissingValues() throws Exception {
+		Instances data = C45ClassifierTest.createInstances(500, 0, 21);
+		assertSameEvaluation(data, new LeafDistributionJ48());
+		assertSameEvaluation(data, new C45Classifier());
+	}
+
+	@Test
+	public void testMissingValues() throws Exception {
+		Instances data = C45ClassifierTest.createInstances(500, 0.2, 22);
+		assertSameEvaluation(data, new LeafDistributionJ48());
+		assertSameEvaluation(data, new C45Classifier());
+		LeafDistributionJ48 binary = new LeafDistributionJ48();
+		binary.setBinarySplits(true);
+		assertSameEvaluation(data, binary);
+	}
+
+	@Test
+	public void testMissingClass() throws Exception {
+		Instances data = C45ClassifierTest.createInstances(500, 0.2, 23);
+		for (int i = 0; i < data.numInstances(); i += 5) {
+			data.instance(i).setClassMissing();
+		}
+		assertSameEvaluation(data, new LeafDistributionJ48());
+	}
+
+}
@@ -0,0 +1,61 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link AlignmentCache} limits the age and size of its files.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class AlignmentCacheTest extends TestCase {
+
+	private static final long HOUR = 60 * 60 * 1000L;
+	private static final long DAY = 24 * HOUR;
+
+	private static File createFile(File directory, String name, int size, long lastUsed) throws IOException {
+		File file = new File(directory, name);
+		Files.write(file.toPath(), new byte[size]);
+		assertTrue(file.setLastModified(lastUsed));
+		return file;
+	}
+
+	@Test
+	public void testEvictsOldAndLeastRecentlyUsedFiles() throws IOException {
+		File directory = Files.createTempDirectory("alignmentcache").toFile();
+		try {
+			long now = System.currentTimeMillis();
+			File kept = createFile(directory, "k.alignments", 50, now - 30 * DAY);
+			File a = createFile(directory, "a.alignments", 100, now - HOUR);
+			File b = createFile(directory, "b.alignments", 100, now - 2 * HOUR);
+			File c = createFile(directory, "c.alignments", 100, now - 3 * HOUR);
+			File old = createFile(directory, "d.alignments", 10, now - 20 * DAY);
+			File oldTemp = createFile(directory, "x.tmp", 10, now - 20 * DAY);
+			File temp = createFile(directory, "y.tmp", 10, now);
+			File other = createFile(directory, "other.txt", 10, now - 20 * DAY);
+
+			new AlignmentCache(directory, 250, 10 * DAY).evict(kept);
+
+			assertTrue(kept.exists());
+			assertTrue(a.exists());
+			assertTrue(b.exists());
+			assertFalse("Exceeds the size", c.exists());
+			assertFalse("Exceeds the age", old.exists());
+			assertFalse("Exceeds the age", oldTemp.exists());
+			assertTrue(temp.exists());
+			assertTrue("Not a file of the cache", other.exists());
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+}
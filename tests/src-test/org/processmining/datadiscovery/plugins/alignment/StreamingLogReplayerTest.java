@@ -0,0 +1,130 @@
+package org.processmining.datadiscovery.plugins.alignment;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.deckfour.xes.classification.XEventClass;
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.factory.XFactory;
+import org.deckfour.xes.factory.XFactoryRegistry;
+import org.deckfour.xes.info.impl.XLogInfoImpl;
+import org.deckfour.xes.model.XEvent;
+import org.deckfour.xes.model.XLog;
+import org.deckfour.xes.model.XTrace;
+import org.junit.Test;
+import org.processmining.models.graphbased.directed.petrinet.impl.PetrinetFactory;
+import org.processmining.plugins.connectionfactories.logpetrinet.TransEvClassMapping;
+import org.processmining.plugins.petrinet.replayresult.PNRepResult;
+import org.processmining.plugins.petrinet.replayresult.PNRepResultImpl;
+import org.processmining.plugins.petrinet.replayresult.StepTypes;
+import org.processmining.plugins.replayer.replayresult.SyncReplayResult;
+
+/**
+ * Checks that {@link StreamingLogReplayer} aligns each variant of a log only
+ * once, even if its traces are spread over several blocks.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class StreamingLogReplayerTest extends TestCase {
+
+	private static final String[][] VARIANTS = new String[][] { { "a", "b", "c" }, { "a", "c", "b" },
+			{ "a", "d" }, { "a", "b", "c", "d" }, { "a" } };
+
+	/**
+	 * Aligns each trace to itself and records the traces that were aligned.
+	 */
+	private static final class RecordingReplayer extends StreamingLogReplayer {
+
+		private final List<String> alignedTraces = new ArrayList<>();
+		private int numBlocks = 0;
+
+		private RecordingReplayer(XLog log, int blockSize) {
+			super(null, PetrinetFactory.newPetrinet("test"), log,
+					new TransEvClassMapping(XLogInfoImpl.NAME_CLASSIFIER, new XEventClass("DUMMY", -1)), null,
+					blockSize, true);
+		}
+
+		PNRepResult replayBlock(XLog block) {
+			numBlocks++;
+			List<SyncReplayResult> alignments = new ArrayList<>();
+			for (int i = 0; i < block.size(); i++) {
+				List<Object> nodeInstance = new ArrayList<>();
+				List<StepTypes> stepTypes = new ArrayList<>();
+				for (XEvent event : block.get(i)) {
+					nodeInstance.add(XConceptExtension.instance().extractName(event));
+					stepTypes.add(StepTypes.LMGOOD);
+				}
+				alignedTraces.add(nodeInstance.toString());
+				SyncReplayResult alignment = new SyncReplayResult(nodeInstance, stepTypes, i);
+				alignment.addInfo(PNRepResult.TRACEFITNESS, 1.0);
+				alignments.add(alignment);
+			}
+			return new PNRepResultImpl(alignments);
+		}
+
+	}
+
+	private static XLog createLog(int numTraces) {
+		XFactory factory = XFactoryRegistry.instance().currentDefault();
+		XLog log = factory.createLog();
+		for (int i = 0; i < numTraces; i++) {
+			XTrace trace = factory.createTrace();
+			XConceptExtension.instance().assignName(trace, "case" + i);
+			for (String activity : VARIANTS[(i * 7 + i / 3) % VARIANTS.length]) {
+				XEvent event = factory.createEvent();
+				XConceptExtension.instance().assignName(event, activity);
+				trace.add(event);
+			}
+			log.add(trace);
+		}
+		return log;
+	}
+
+	@Test
+	public void testAlignsEachVariantOnce() {
+		XLog log = createLog(2500);
+		RecordingReplayer replayer = new RecordingReplayer(log, 2);
+		BitSet seenTraces = new BitSet();
+		int numAlignments = 0;
+		for (SyncReplayResult alignment : replayer) {
+			numAlignments++;
+			for (Integer traceIndex : alignment.getTraceIndex()) {
+				assertFalse("Trace " + traceIndex + " aligned twice", seenTraces.get(traceIndex));
+				seenTraces.set(traceIndex);
+				// The alignment belongs to the variant of each of its traces
+				List<Object> expected = new ArrayList<>();
+				for (XEvent event : log.get(traceIndex)) {
+					expected.add(XConceptExtension.instance().extractName(event));
+				}
+				assertEquals(expected, alignment.getNodeInstance());
+			}
+		}
+		assertEquals(VARIANTS.length, numAlignments);
+		assertEquals(VARIANTS.length, replayer.alignedTraces.size());
+		assertEquals(3, replayer.numBlocks);
+		assertEquals(log.size(), seenTraces.cardinality());
+		assertEquals(1.0, replayer.getAverageFitness(), 1E-9);
+		assertEquals(VARIANTS.length, replayer.getReplayResult().size());
+	}
+
+	@Test
+	public void testGroupVariants() {
+		XLog log = createLog(1000);
+		List<List<Integer>> variants = StreamingLogReplayer.groupVariants(log, XLogInfoImpl.NAME_CLASSIFIER);
+		assertEquals(VARIANTS.length, variants.size());
+		int numTraces = 0;
+		for (List<Integer> traceIndices : variants) {
+			numTraces += traceIndices.size();
+			for (int i = 1; i < traceIndices.size(); i++) {
+				assertTrue(traceIndices.get(i - 1) < traceIndices.get(i));
+				assertEquals(log.get(traceIndices.get(0)).size(), log.get(traceIndices.get(i)).size());
+			}
+		}
+		assertEquals(log.size(), numTraces);
+	}
+
+}
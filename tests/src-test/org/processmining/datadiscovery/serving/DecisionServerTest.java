@@ -0,0 +1,238 @@
+package org.processmining.datadiscovery.serving;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.processmining.datadiscovery.RuleDiscovery.Rule;
+import org.processmining.datadiscovery.estimators.AttributeSchema;
+import org.processmining.datadiscovery.estimators.AttributeVector;
+import org.processmining.datadiscovery.estimators.CompiledGuardProducer;
+import org.processmining.datadiscovery.estimators.FunctionEstimation;
+import org.processmining.datadiscovery.estimators.Type;
+import org.processmining.datadiscovery.estimators.impl.DecisionTreeFunctionEstimator;
+import org.processmining.datadiscovery.estimators.weka.CompiledGuard;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Checks that the compiled rules of {@link DecisionServer} classify rows as
+ * the guard expressions of the rules do.
+ *
+ * @author F. Mannhardt
+ *
+ */
+public class DecisionServerTest extends TestCase {
+
+	private static final long START = 1420070400000L; // 2015-01-01
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	private static final Object[] CLASSES = new Object[] { "A", "B", "C" };
+
+	private static final class TestRule implements Rule, CompiledGuardProducer {
+
+		private final Object decisionPoint;
+		private final Map<Object, FunctionEstimation> estimation;
+		private final Map<Object, CompiledGuard> compiledGuards;
+
+		private TestRule(Object decisionPoint, Map<Object, FunctionEstimation> estimation,
+				Map<Object, CompiledGuard> compiledGuards) {
+			this.decisionPoint = decisionPoint;
+			this.estimation = estimation;
+			this.compiledGuards = compiledGuards;
+		}
+
+		public Object getDecisionPoint() {
+			return decisionPoint;
+		}
+
+		public Map<Object, FunctionEstimation> getRules() {
+			return estimation;
+		}
+
+		public Map<Object, CompiledGuard> getCompiledGuards() {
+			return compiledGuards;
+		}
+
+		public Object classify(Map<String, Object> attributes) {
+			for (Entry<Object, FunctionEstimation> entry : estimation.entrySet()) {
+				if (entry.getValue().getExpression().isTrue(attributes)) {
+					return entry.getKey();
+				}
+			}
+			return null;
+		}
+
+	}
+
+	private static Map<String, Type> createTypes() {
+		Map<String, Type> types = new LinkedHashMap<>();
+		types.put("amount", Type.CONTINUOS);
+		types.put("kind", Type.LITERAL);
+		types.put("time", Type.TIMESTAMP);
+		return types;
+	}
+
+	private static Map<String, Set<String>> createLiteralValues() {
+		Map<String, Set<String>> literalValues = new HashMap<>();
+		literalValues.put("kind", ImmutableSet.of("x", "y", "z"));
+		return literalValues;
+	}
+
+	private static double[] createRow(AttributeVector vector, Random random, double missingRate) {
+		vector.clear();
+		AttributeSchema schema = vector.getSchema();
+		Object amount = random.nextInt(1000) / 10.0;
+		Object kind = ImmutableList.of("x", "y", "z").get(random.nextInt(3));
+		// Whole seconds, as the guard expressions only keep seconds
+		Object time = new Date(START + random.nextInt(60) * DAY + random.nextInt(86400) * 1000L);
+		vector.update(schema.indexOf("amount"), random.nextDouble() < missingRate ? null : amount);
+		vector.update(schema.indexOf("kind"), random.nextDouble() < missingRate ? null : kind);
+		vector.update(schema.indexOf("time"), random.nextDouble() < missingRate ? null : time);
+		return vector.toArray(schema.size());
+	}
+
+	private static Object classOf(AttributeVector vector, Random random) {
+		AttributeSchema schema = vector.getSchema();
+		int amount = schema.indexOf("amount");
+		int kind = schema.indexOf("kind");
+		int time = schema.indexOf("time");
+		Object clazz;
+		if (!vector.isMissing(amount) && vector.getValue(amount) > 50) {
+			clazz = "A";
+		} else if (!vector.isMissing(kind) && "x".equals(schema.decode(kind, (int) vector.getValue(kind)))) {
+			clazz = "B";
+		} else if (!vector.isMissing(time) && vector.getValue(time) < START + 30 * DAY) {
+			clazz = "C";
+		} else {
+			clazz = "A";
+		}
+		// Some noise
+		return random.nextDouble() < 0.05 ? CLASSES[random.nextInt(CLASSES.length)] : clazz;
+	}
+
+	private static TestRule discoverRule(Object decisionPoint, AttributeSchema schema, boolean treatNoLeafAsFalse,
+			long seed) throws Exception {
+		DecisionTreeFunctionEstimator estimator = new DecisionTreeFunctionEstimator(createTypes(),
+				createLiteralValues(), CLASSES, decisionPoint.toString(), 1000);
+		estimator.setTreatNoLeafAsFalse(treatNoLeafAsFalse);
+		estimator.setMinNumObj(5);
+		Random random = new Random(seed);
+		AttributeVector vector = new AttributeVector(schema);
+		for (int i = 0; i < 1000; i++) {
+			createRow(vector, random, 0.1);
+			estimator.addInstance(vector, classOf(vector, random), 1.0f);
+		}
+		Map<Object, FunctionEstimation> estimation = estimator.getFunctionEstimation(null);
+		return new TestRule(decisionPoint, estimation, estimator.getCompiledGuards());
+	}
+
+	private static int classifyByExpressions(CompiledDecisionPoint compiled, Rule rule, double[] row) {
+		Map<String, Object> decodedRow = AttributeVector.toMap(compiled.getSchema(), row);
+		List<Object> classes = compiled.getClasses();
+		for (int i = 0; i < classes.size(); i++) {
+			if (rule.getRules().get(classes.get(i)).getExpression().isTrue(decodedRow)) {
+				return i;
+			}
+		}
+		return CompiledDecisionPoint.NO_CLASS;
+	}
+
+	private static void assertAgrees(boolean treatNoLeafAsFalse, long seed) throws Exception {
+		AttributeSchema schema = new AttributeSchema(createTypes(), createLiteralValues());
+		TestRule rule = discoverRule("p1", schema, treatNoLeafAsFalse, seed);
+		DecisionServer server = DecisionServer.compile(ImmutableList.of(rule), schema);
+		int index = server.indexOf("p1");
+		assertEquals(0, index);
+		assertEquals(-1, server.indexOf("p2"));
+		CompiledDecisionPoint compiled = server.getDecisionPoint(index);
+		assertTrue(compiled.isCompiled());
+
+		Random random = new Random(seed + 1);
+		AttributeVector vector = new AttributeVector(schema);
+		int numRows = 2000;
+		double[][] rows = new double[numRows][];
+		double[][] columns = new double[schema.size()][numRows];
+		for (int r = 0; r < numRows; r++) {
+			rows[r] = createRow(vector, random, 0.2);
+			for (int a = 0; a < schema.size(); a++) {
+				columns[a][r] = rows[r][a];
+			}
+		}
+		int[] rowClassIds = new int[numRows];
+		int[] columnClassIds = new int[numRows];
+		server.classify(index, rows, rowClassIds);
+		server.classify(index, columns, numRows, columnClassIds);
+		for (int r = 0; r < numRows; r++) {
+			int expected = classifyByExpressions(compiled, rule, rows[r]);
+			assertEquals("Row " + AttributeVector.toMap(schema, rows[r]), expected, server.classify(index, rows[r]));
+			assertEquals(expected, rowClassIds[r]);
+			assertEquals(expected, columnClassIds[r]);
+		}
+	}
+
+	@Test
+	public void testCompiledAgreesWithExpressions() throws Exception {
+		assertAgrees(false, 42);
+		assertAgrees(true, 43);
+	}
+
+	@Test
+	public void testInterpretedGuards() throws Exception {
+		AttributeSchema schema = new AttributeSchema(createTypes(), createLiteralValues());
+		TestRule rule = discoverRule("p1", schema, false, 44);
+		TestRule interpretedRule = new TestRule("p1", rule.getRules(), ImmutableMap.<Object, CompiledGuard>of());
+		CompiledDecisionPoint compiled = CompiledDecisionPoint.compile(rule, schema);
+		CompiledDecisionPoint interpreted = CompiledDecisionPoint.compile(interpretedRule, schema);
+		assertFalse(interpreted.isCompiled());
+		assertEquals(compiled.getClasses(), interpreted.getClasses());
+
+		Random random = new Random(45);
+		AttributeVector vector = new AttributeVector(schema);
+		for (int r = 0; r < 500; r++) {
+			double[] row = createRow(vector, random, 0.2);
+			assertEquals(compiled.classify(row), interpreted.classify(row));
+		}
+	}
+
+	@Test
+	public void testRejectsRuleWithoutDecisionPoint() throws Exception {
+		AttributeSchema schema = new AttributeSchema(createTypes(), createLiteralValues());
+		TestRule rule = new TestRule(null, ImmutableMap.<Object, FunctionEstimation>of(),
+				ImmutableMap.<Object, CompiledGuard>of());
+		try {
+			DecisionServer.compile(ImmutableList.of(rule), schema);
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRejectsDuplicateDecisionPoints() throws Exception {
+		AttributeSchema schema = new AttributeSchema(createTypes(), createLiteralValues());
+		List<TestRule> rules = new ArrayList<>();
+		rules.add(new TestRule("p1", ImmutableMap.<Object, FunctionEstimation>of(),
+				ImmutableMap.<Object, CompiledGuard>of()));
+		rules.add(new TestRule("p1", ImmutableMap.<Object, FunctionEstimation>of(),
+				ImmutableMap.<Object, CompiledGuard>of()));
+		try {
+			DecisionServer.compile(rules, schema);
+			fail("Expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}